@@ -1,16 +1,25 @@
 package com.kopi.kopi.controller;
 
+import com.kopi.kopi.service.DemandHeatmapService;
+import com.kopi.kopi.service.ReportJobService;
 import com.kopi.kopi.service.ReportService;
+import com.kopi.kopi.service.RevenueTickerService;
+import com.kopi.kopi.service.SketchAnalyticsService;
+import com.kopi.kopi.service.StaffPerformanceService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/apiv1/adminPanel")
@@ -18,6 +27,11 @@ import java.util.Map;
 public class AdminReportController {
 
     private final ReportService reportService;
+    private final DemandHeatmapService demandHeatmapService;
+    private final ReportJobService reportJobService;
+    private final SketchAnalyticsService sketchAnalyticsService;
+    private final RevenueTickerService revenueTickerService;
+    private final StaffPerformanceService staffPerformanceService;
 
     @GetMapping("/reports")
     @PreAuthorize("hasRole('ADMIN')")
@@ -72,6 +86,80 @@ public class AdminReportController {
         return new ResponseEntity<>(bytes, headers, HttpStatus.OK);
     }
 
+    // Báo cáo dài chạy nền: submit -> poll trạng thái -> tải kết quả
+    @PostMapping("/reports/jobs")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> submitJob(
+            @RequestParam(name = "type", defaultValue = "export") String type,
+            @RequestParam(name = "view", defaultValue = "monthly") String view,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to",   required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "buckets", defaultValue = "0") int buckets) {
+        ReportJobService.JobType jobType = "revenue".equalsIgnoreCase(type)
+                ? ReportJobService.JobType.revenue : ReportJobService.JobType.export;
+        try {
+            var job = reportJobService.submit(jobType, parseView(view), from, to, buckets);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("data", job));
+        } catch (RejectedExecutionException ex) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("message", "Hàng đợi báo cáo đang đầy, vui lòng thử lại sau"));
+        }
+    }
+
+    @GetMapping("/reports/jobs/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getJob(@PathVariable("id") String id) {
+        return reportJobService.status(id)
+                .<ResponseEntity<?>>map(job -> ResponseEntity.ok(Map.of("data", job)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Job not found")));
+    }
+
+    @GetMapping("/reports/jobs/{id}/result")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getJobResult(@PathVariable("id") String id) throws IOException {
+        var status = reportJobService.status(id).orElse(null);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Job not found"));
+        }
+        var file = reportJobService.result(id).orElse(null);
+        if (file == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", "Job chưa hoàn tất", "status", status.getStatus()));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        if ("export".equals(status.getType())) {
+            headers.setContentType(MediaType.parseMediaType(
+                    "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
+            headers.setContentDispositionFormData("attachment", status.getFileName());
+        } else {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+        headers.setContentLength(Files.size(file));
+        return new ResponseEntity<>(new org.springframework.core.io.FileSystemResource(file), headers, HttpStatus.OK);
+    }
+
+    // Heatmap số đơn theo thứ x giờ (slot=60) hoặc thứ x 15 phút (slot=15) để xếp ca
+    @GetMapping("/reports/heatmap")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getHeatmap(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to",   required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "slot", defaultValue = "60") int slot) {
+        return ResponseEntity.ok(Map.of("data", demandHeatmapService.heatmap(from, to, slot)));
+    }
+
+    @PostMapping("/reports/heatmap/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuildHeatmap(
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to")   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (from.isAfter(to)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "from must be before to"));
+        }
+        int weeks = demandHeatmapService.rebuild(from, to);
+        return ResponseEntity.ok(Map.of("message", "OK", "weeks", weeks));
+    }
+
     // Parse view an toàn: không phân biệt hoa/thường + alias
     private ReportService.Granularity parseView(String v) {
         if (v == null || v.isBlank()) return ReportService.Granularity.monthly;
@@ -103,4 +191,72 @@ public class AdminReportController {
         }
     }
 
+    // Khách phân biệt + median/p90 giá trị đơn từ sketch ngày; exact=true để so với truy vấn chính xác
+    @GetMapping("/reports/summary/sketch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getSketchSummary(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to",   required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "exact", defaultValue = "false") boolean exact) {
+        return ResponseEntity.ok(Map.of("data", sketchAnalyticsService.summary(from, to, exact)));
+    }
+
+    @PostMapping("/reports/summary/sketch/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuildSketches(
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to")   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (from.isAfter(to)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "from must be before to"));
+        }
+        int days = sketchAnalyticsService.rebuild(from, to);
+        return ResponseEntity.ok(Map.of("message", "OK", "days", days));
+    }
+
+    // Dashboard mở stream này thay cho poll /reports/summary: "snapshot" khi kết nối,
+    // "revenue" mỗi khi có payment PAID, "reset" khi sang ngày mới (Asia/Ho_Chi_Minh)
+    // EventSource của trình duyệt: ?access_token= lấy từ POST /apiv1/notifications/stream/token
+    @GetMapping(value = "/reports/summary/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public SseEmitter streamSummary() {
+        return revenueTickerService.subscribe();
+    }
+
+    @GetMapping("/reports/summary/live")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getLiveSummary() {
+        return ResponseEntity.ok(Map.of("data", revenueTickerService.current()));
+    }
+
+    // Hiệu suất nhân viên/shipper từ bộ đếm ngày (mặc định 30 ngày gần nhất)
+    @GetMapping("/reports/staff")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getStaffPerformance(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to",   required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        var data = staffPerformanceService.report(from, to);
+        Map<String, Object> meta = new LinkedHashMap<>();
+        if (from != null) meta.put("from", from);
+        if (to   != null) meta.put("to", to);
+        meta.put("bucketUpperMinutes", staffPerformanceService.bucketUpperMinutes());
+        meta.put("count", data.size());
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("data", data);
+        body.put("meta", meta);
+        return ResponseEntity.ok(body);
+    }
+
+    @PostMapping("/reports/staff/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuildStaffStats(
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to")   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (from.isAfter(to)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "from must be before to"));
+        }
+        int rows = staffPerformanceService.rebuild(from, to);
+        return ResponseEntity.ok(Map.of("message", "OK", "rows", rows));
+    }
+
 }
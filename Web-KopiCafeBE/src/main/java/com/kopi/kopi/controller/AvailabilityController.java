@@ -0,0 +1,84 @@
+package com.kopi.kopi.controller;
+
+import com.kopi.kopi.entity.AvailabilityWindow;
+import com.kopi.kopi.service.AvailabilityService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/apiv1/admin/availability")
+@PreAuthorize("hasRole('ADMIN')")
+public class AvailabilityController {
+    private final AvailabilityService availabilityService;
+
+    public AvailabilityController(AvailabilityService availabilityService) {
+        this.availabilityService = availabilityService;
+    }
+
+    // days: ["MON", "TUE", ...], rỗng = mọi ngày; start_time/end_time "HH:mm", end <= start = qua nửa đêm
+    public record WindowPayload(Integer product_id, Integer category_id, List<String> days, LocalTime start_time,
+                                LocalTime end_time, LocalDate starts_on, LocalDate ends_on, String note) {
+    }
+
+    @GetMapping("/windows")
+    public ResponseEntity<?> windows() {
+        return ResponseEntity.ok(Map.of("data", availabilityService.windows()));
+    }
+
+    @GetMapping("/status")
+    public ResponseEntity<?> status() {
+        return ResponseEntity.ok(Map.of("data", availabilityService.status()));
+    }
+
+    @PostMapping("/windows")
+    public ResponseEntity<?> create(@RequestBody WindowPayload body) {
+        return ResponseEntity.ok(Map.of("data", availabilityService.create(toWindow(body))));
+    }
+
+    @PutMapping("/windows/{id}")
+    public ResponseEntity<?> update(@PathVariable("id") Integer id, @RequestBody WindowPayload body) {
+        return ResponseEntity.ok(Map.of("data", availabilityService.update(id, toWindow(body))));
+    }
+
+    @DeleteMapping("/windows/{id}")
+    public ResponseEntity<?> delete(@PathVariable("id") Integer id) {
+        availabilityService.delete(id);
+        return ResponseEntity.ok(Map.of("message", "deleted"));
+    }
+
+    private static AvailabilityWindow toWindow(WindowPayload body) {
+        return AvailabilityWindow.builder()
+                .productId(body.product_id())
+                .categoryId(body.category_id())
+                .daysMask(daysMask(body.days()))
+                .startTime(body.start_time())
+                .endTime(body.end_time())
+                .startsOn(body.starts_on())
+                .endsOn(body.ends_on())
+                .note(body.note())
+                .build();
+    }
+
+    private static Integer daysMask(List<String> days) {
+        if (days == null || days.isEmpty()) return null;
+        int mask = 0;
+        for (String d : days) {
+            String key = d == null ? "" : d.trim().toUpperCase(Locale.ROOT);
+            DayOfWeek dow = null;
+            for (DayOfWeek x : DayOfWeek.values()) {
+                if (key.length() >= 3 && x.name().startsWith(key)) dow = x;
+            }
+            if (dow == null) throw new IllegalArgumentException("Ngày không hợp lệ: " + d);
+            mask |= 1 << (dow.getValue() - 1);
+        }
+        return mask;
+    }
+}
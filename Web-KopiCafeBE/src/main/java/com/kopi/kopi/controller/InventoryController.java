@@ -0,0 +1,88 @@
+package com.kopi.kopi.controller;
+
+import com.kopi.kopi.entity.RecipeItem;
+import com.kopi.kopi.security.UserPrincipal;
+import com.kopi.kopi.service.InventoryService;
+import com.kopi.kopi.service.LowStockService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/apiv1/admin/inventory")
+@PreAuthorize("hasRole('ADMIN')")
+public class InventoryController {
+    private final InventoryService inventoryService;
+    private final LowStockService lowStockService;
+
+    public InventoryController(InventoryService inventoryService, LowStockService lowStockService) {
+        this.inventoryService = inventoryService;
+        this.lowStockService = lowStockService;
+    }
+
+    public record CreateItemPayload(String name, String unit, BigDecimal quantity_on_hand, BigDecimal reorder_level, String notes) {
+    }
+
+    public record AdjustPayload(BigDecimal change, String reason) {
+    }
+
+    public record RecipeLinePayload(Integer inventory_item_id, Integer size_id, BigDecimal quantity) {
+    }
+
+    @GetMapping("/items")
+    public ResponseEntity<?> items() {
+        return ResponseEntity.ok(Map.of("data", inventoryService.items(), "meta", Map.of("pending_orders", inventoryService.pendingOrders())));
+    }
+
+    @GetMapping("/low-stock")
+    public ResponseEntity<?> lowStock() {
+        return ResponseEntity.ok(Map.of("data", lowStockService.current()));
+    }
+
+    @PostMapping("/items")
+    public ResponseEntity<?> createItem(@RequestBody CreateItemPayload body) {
+        return ResponseEntity.ok(Map.of("data", inventoryService.createItem(body.name(), body.unit(),
+                body.quantity_on_hand(), body.reorder_level(), body.notes())));
+    }
+
+    @PostMapping("/items/{id}/adjust")
+    public ResponseEntity<?> adjust(@PathVariable("id") Integer id, @RequestBody AdjustPayload body, Authentication auth) {
+        Integer userId = auth != null && auth.getPrincipal() instanceof UserPrincipal p ? p.getUser().getUserId() : null;
+        return ResponseEntity.ok(Map.of("data", inventoryService.adjust(id, body.change(), body.reason(), userId)));
+    }
+
+    @GetMapping("/recipes/products/{productId}")
+    public ResponseEntity<?> productRecipe(@PathVariable("productId") Integer productId) {
+        return ResponseEntity.ok(Map.of("data", inventoryService.productRecipe(productId)));
+    }
+
+    // Thay toàn bộ công thức của sản phẩm: dòng không có size_id là công thức gốc, có size_id là phần cộng thêm
+    @PutMapping("/recipes/products/{productId}")
+    public ResponseEntity<?> replaceProductRecipe(@PathVariable("productId") Integer productId,
+                                                  @RequestBody List<RecipeLinePayload> body) {
+        return ResponseEntity.ok(Map.of("data", inventoryService.replaceProductRecipe(productId, toRows(body))));
+    }
+
+    @PutMapping("/recipes/addons/{addOnId}")
+    public ResponseEntity<?> replaceAddOnRecipe(@PathVariable("addOnId") Integer addOnId,
+                                                @RequestBody List<RecipeLinePayload> body) {
+        return ResponseEntity.ok(Map.of("data", inventoryService.replaceAddOnRecipe(addOnId, toRows(body))));
+    }
+
+    @PostMapping("/flush")
+    public ResponseEntity<?> flush() {
+        return ResponseEntity.ok(Map.of("data", Map.of("orders", inventoryService.flush())));
+    }
+
+    private static List<RecipeItem> toRows(List<RecipeLinePayload> body) {
+        if (body == null) return List.of();
+        return body.stream()
+                .map(l -> RecipeItem.builder().inventoryItemId(l.inventory_item_id()).sizeId(l.size_id()).quantity(l.quantity()).build())
+                .toList();
+    }
+}
@@ -2,10 +2,17 @@ package com.kopi.kopi.controller;
 
 import java.util.List;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.kopi.kopi.dto.MenuSnapshot;
 import com.kopi.kopi.service.MenuService;
 
 @RestController
@@ -17,9 +24,41 @@ public class MenuController {
 		this.menuService = menuService;
 	}
 
+	// Trả thẳng byte đã serialize sẵn; client nhận gzip thì gửi bản gzip
 	@GetMapping
-	public List<MenuCategoryDto> getMenu() {
-		return menuService.getMenu();
+	public ResponseEntity<byte[]> getMenu(
+		@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+		@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+		MenuSnapshot menu = menuService.snapshot();
+		boolean gzip = acceptsGzip(acceptEncoding);
+		// ETag theo bản sẽ gửi: cache không được trả bản gzip cho request không nhận gzip và ngược lại
+		String etag = menu.etag(gzip);
+		if (ProductController.etagMatches(ifNoneMatch, etag)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+				.eTag(etag)
+				.cacheControl(CacheControl.noCache())
+				.varyBy(HttpHeaders.ACCEPT_ENCODING)
+				.build();
+		}
+		ResponseEntity.BodyBuilder resp = ResponseEntity.ok()
+			.eTag(etag)
+			.cacheControl(CacheControl.noCache())
+			.varyBy(HttpHeaders.ACCEPT_ENCODING)
+			.contentType(MediaType.APPLICATION_JSON);
+		if (gzip) resp.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+		return resp.body(gzip ? menu.gzip() : menu.json());
+	}
+
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) return false;
+		for (String part : acceptEncoding.split(",")) {
+			String[] tokens = part.trim().split(";");
+			String coding = tokens[0].trim();
+			if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) continue;
+			if (tokens.length > 1 && tokens[1].trim().replace(" ", "").matches("q=0(\\.0*)?")) return false;
+			return true;
+		}
+		return false;
 	}
 
 	public static class MenuCategoryDto {
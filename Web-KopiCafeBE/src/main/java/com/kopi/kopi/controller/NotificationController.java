@@ -1,16 +1,27 @@
 package com.kopi.kopi.controller;
 
+import com.kopi.kopi.dto.NotificationFeedItem;
 import com.kopi.kopi.entity.Notification;
 import com.kopi.kopi.repository.NotificationRepository;
+import com.kopi.kopi.security.JwtTokenProvider;
 import com.kopi.kopi.security.UserPrincipal;
+import com.kopi.kopi.service.EmailDigestService;
+import com.kopi.kopi.service.EmailOutboxService;
+import com.kopi.kopi.service.NotificationDispatcher;
+import com.kopi.kopi.service.NotificationFeedService;
+import com.kopi.kopi.service.NotificationFeedService.Cursor;
+import com.kopi.kopi.service.NotificationFeedService.Viewer;
+import com.kopi.kopi.service.NotificationRetentionService;
+import com.kopi.kopi.service.NotificationStreamService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -22,75 +33,78 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class NotificationController {
 
+    // Trang "chưa đọc" chỉ trả về tối đa chừng này dòng
+    private static final int UNREAD_LIMIT = 500;
+    // Kích thước trang theo cursor (mặc định / tối đa)
+    private static final int DEFAULT_CURSOR_SIZE = 50;
+    private static final int MAX_CURSOR_SIZE = 100;
+    // page/limit đọc (offset + limit) dòng đầu của mỗi nguồn: sâu hơn thì phải dùng cursor
+    static final int MAX_PAGE_DEPTH = 1000;
+
     private final NotificationRepository notificationRepository;
+    private final NotificationDispatcher notificationDispatcher;
+    private final EmailOutboxService emailOutboxService;
+    private final NotificationStreamService notificationStreamService;
+    private final NotificationFeedService notificationFeedService;
+    private final NotificationRetentionService notificationRetentionService;
+    private final EmailDigestService emailDigestService;
+    private final JwtTokenProvider jwtTokenProvider;
 
     /**
-     * Lấy danh sách thông báo của user hiện tại (có phân trang)
-     * GET /apiv1/notifications?page=1&limit=50
-     * Nếu không có page/limit thì trả về tất cả (dùng cho trang xem tất cả)
+     * Lấy danh sách thông báo của user hiện tại (có phân trang), gồm thông báo riêng và thông báo theo role
+     * GET /apiv1/notifications?page=1&limit=50 — chỉ tới 1000 dòng đầu (page * limit), sâu hơn trả 400
+     * Nếu không có page/limit thì đọc theo cursor (dùng cho trang xem tất cả):
+     * GET /apiv1/notifications?size=50&cursor=... — tối đa 100 dòng mỗi lần, meta.nextCursor để lấy trang kế
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> listNotifications(
             @RequestParam(name = "page", required = false) Integer page,
-            @RequestParam(name = "limit", required = false) Integer limit
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", required = false) Integer size
     ) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
-        Integer userId = principal.getUser().getUserId();
-        String userRole = principal.getUser().getRole() != null 
-            ? principal.getUser().getRole().getName() 
-            : "CUSTOMER";
+        UserPrincipal principal = currentPrincipal();
+        Viewer viewer = viewer(principal);
+        String userRole = roleOf(principal);
 
         List<Map<String, Object>> items;
         Map<String, Object> meta = new HashMap<>();
 
-        // Nếu không có page/limit, trả về tất cả thông báo (dùng cho trang xem tất cả)
+        // Không có page/limit: đọc theo cursor, mỗi lần có giới hạn (không tải toàn bộ lịch sử)
         if (page == null && limit == null) {
-            List<Notification> allNotifications = notificationRepository.findAllByUserIdWithOrder(userId);
-            // Log để debug
-            org.slf4j.LoggerFactory.getLogger(getClass()).info(
-                "Fetching all notifications for user {}: found {} notifications", 
-                userId, allNotifications.size()
-            );
-            items = allNotifications.stream()
-                    .map(n -> notificationToMap(n, userRole))
+            int n = Math.min(Math.max(size != null ? size : DEFAULT_CURSOR_SIZE, 1), MAX_CURSOR_SIZE);
+            Cursor after = cursor != null && !cursor.isBlank() ? Cursor.decode(cursor) : null;
+            // Lấy dư một dòng để biết còn trang sau hay không
+            List<NotificationFeedItem> rows = notificationFeedService.page(viewer, after, n + 1, false);
+            boolean hasMore = rows.size() > n;
+            List<NotificationFeedItem> pageRows = hasMore ? rows.subList(0, n) : rows;
+            items = pageRows.stream()
+                    .map(item -> notificationToMap(item, userRole))
                     .collect(Collectors.toList());
-            meta.put("totalItems", allNotifications.size());
-            meta.put("currentPage", 1);
-            meta.put("totalPage", 1);
-            meta.put("prev", false);
-            meta.put("next", false);
+            meta.put("size", n);
+            meta.put("hasMore", hasMore);
+            meta.put("nextCursor", hasMore ? Cursor.of(pageRows.get(pageRows.size() - 1)).encode() : null);
         } else {
-            // Có phân trang
+            // Có phân trang: lấy (offset + limit) dòng đầu của feed đã trộn rồi cắt trang
             int pageNum = Math.max(page != null ? page - 1 : 0, 0);
-            int limitNum = Math.max(limit != null ? limit : 50, 1);
-            Pageable pageable = PageRequest.of(pageNum, limitNum);
-            Page<Notification> pageData = notificationRepository.findByUser_UserIdOrderByCreatedAtDesc(userId, pageable);
-
-            // Load order để tránh lazy loading
-            List<Notification> notifications = pageData.getContent();
-            notifications.forEach(n -> {
-                if (n.getOrder() != null) {
-                    // Trigger lazy load
-                    n.getOrder().getOrderId();
-                    if (n.getOrder().getTable() != null) {
-                        n.getOrder().getTable().getTableId();
-                    }
-                    if (n.getOrder().getAddress() != null) {
-                        n.getOrder().getAddress().getAddressId();
-                    }
-                }
-            });
-
-            items = notifications.stream()
+            int limitNum = Math.min(Math.max(limit != null ? limit : 50, 1), MAX_CURSOR_SIZE);
+            long offset = (long) pageNum * limitNum;
+            if (offset + limitNum > MAX_PAGE_DEPTH) {
+                return ResponseEntity.badRequest().body(Map.of("message",
+                        "page too deep (max " + MAX_PAGE_DEPTH + " items), use size/cursor instead"));
+            }
+            List<NotificationFeedItem> head = notificationFeedService.page(viewer, null, (int) offset + limitNum, false);
+            items = head.subList(Math.min((int) offset, head.size()), head.size()).stream()
                     .map(n -> notificationToMap(n, userRole))
                     .collect(Collectors.toList());
 
-            meta.put("currentPage", pageData.getNumber() + 1);
-            meta.put("totalPage", pageData.getTotalPages());
-            meta.put("totalItems", pageData.getTotalElements());
-            meta.put("prev", pageData.hasPrevious());
-            meta.put("next", pageData.hasNext());
+            long total = notificationFeedService.count(viewer);
+            int totalPages = (int) ((total + limitNum - 1) / limitNum);
+            meta.put("currentPage", pageNum + 1);
+            meta.put("totalPage", totalPages);
+            meta.put("totalItems", total);
+            meta.put("prev", pageNum > 0);
+            meta.put("next", pageNum + 1 < totalPages);
         }
 
         return ResponseEntity.ok(Map.of(
@@ -100,15 +114,91 @@ public class NotificationController {
     }
 
     /**
-     * Lấy số lượng thông báo chưa đọc
+     * Số liệu hàng đợi gửi thông báo (độ sâu, số bị bỏ khi đầy, số đã ghi/gửi)
+     * GET /apiv1/notifications/dispatcher
+     */
+    @GetMapping("/dispatcher")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> dispatcherStats() {
+        return ResponseEntity.ok(Map.of("data", notificationDispatcher.stats()));
+    }
+
+    /**
+     * Số liệu outbox email (đang chờ, đã gửi, thử lại, lỗi hẳn, token còn lại)
+     * GET /apiv1/notifications/email-outbox
+     */
+    @GetMapping("/email-outbox")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> emailOutboxStats() {
+        return ResponseEntity.ok(Map.of("data", emailOutboxService.stats()));
+    }
+
+    /**
+     * Số liệu gộp email đổi trạng thái đơn (số sự kiện, số email thực gửi, digest đang chờ)
+     * GET /apiv1/notifications/email-digest
+     */
+    @GetMapping("/email-digest")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> emailDigestStats() {
+        return ResponseEntity.ok(Map.of("data", emailDigestService.stats()));
+    }
+
+    /**
+     * Chạy dọn thông báo cũ ngay (bình thường chạy nền mỗi giờ)
+     * POST /apiv1/notifications/retention/run
+     */
+    @PostMapping("/retention/run")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> runRetention() {
+        return ResponseEntity.ok(Map.of("data", notificationRetentionService.purge()));
+    }
+
+    /**
+     * Kênh SSE của user hiện tại, thay cho poll /unread-count:
+     * "unread" khi kết nối và mỗi khi số chưa đọc đổi, "notification" khi có thông báo mới
+     * GET /apiv1/notifications/stream
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return notificationStreamService.subscribe(viewer(currentPrincipal()));
+    }
+
+    /**
+     * Token ngắn hạn để mở SSE bằng EventSource của trình duyệt (không gửi được header Authorization):
+     * new EventSource(".../stream?access_token=" + token). Token chỉ dùng được cho các kênh SSE; phải kết nối
+     * trong expiresInMs, sau đó EventSource tự kết nối lại bằng đúng URL đó vẫn được nhận tới reconnectUntil.
+     * Quá reconnectUntil (hoặc nhận lỗi 401) thì client xin token mới và mở EventSource mới.
+     * POST /apiv1/notifications/stream/token
+     */
+    @PostMapping("/stream/token")
+    public ResponseEntity<Map<String, Object>> streamToken(
+            @RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ") || authorization.length() == "Bearer ".length()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Unauthorized"));
+        }
+        String token = jwtTokenProvider.generateStreamToken(authorization.substring("Bearer ".length()));
+        return ResponseEntity.ok(Map.of("data", Map.of("token", token,
+                "expiresInMs", jwtTokenProvider.getStreamExpirationMs(),
+                "reconnectUntil", jwtTokenProvider.parseClaims(token).getExpiration().toInstant())));
+    }
+
+    /**
+     * Số liệu bộ đếm chưa đọc và kết nối SSE
+     * GET /apiv1/notifications/stream/stats
+     */
+    @GetMapping("/stream/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> streamStats() {
+        return ResponseEntity.ok(Map.of("data", notificationStreamService.stats()));
+    }
+
+    /**
+     * Lấy số lượng thông báo chưa đọc (từ bộ đếm trong bộ nhớ, không query mỗi lần)
      * GET /apiv1/notifications/unread-count
      */
     @GetMapping("/unread-count")
     public ResponseEntity<Map<String, Object>> getUnreadCount() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        Integer userId = ((UserPrincipal) auth.getPrincipal()).getUser().getUserId();
-
-        long unreadCount = notificationRepository.countByUser_UserIdAndIsReadFalse(userId);
+        long unreadCount = notificationStreamService.unreadCount(viewer(currentPrincipal()));
         return ResponseEntity.ok(Map.of("unreadCount", unreadCount));
     }
 
@@ -118,15 +208,10 @@ public class NotificationController {
      */
     @GetMapping("/unread")
     public ResponseEntity<Map<String, Object>> getUnreadNotifications() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
-        Integer userId = principal.getUser().getUserId();
-        String userRole = principal.getUser().getRole() != null 
-            ? principal.getUser().getRole().getName() 
-            : "CUSTOMER";
-        
-        List<Notification> unreadNotifications = notificationRepository.findByUser_UserIdAndIsReadFalseOrderByCreatedAtDesc(userId);
-        List<Map<String, Object>> items = unreadNotifications.stream()
+        UserPrincipal principal = currentPrincipal();
+        String userRole = roleOf(principal);
+
+        List<Map<String, Object>> items = notificationFeedService.page(viewer(principal), null, UNREAD_LIMIT, true).stream()
                 .map(n -> notificationToMap(n, userRole))
                 .collect(Collectors.toList());
 
@@ -134,13 +219,23 @@ public class NotificationController {
     }
 
     /**
-     * Đánh dấu thông báo là đã đọc
+     * Đánh dấu thông báo là đã đọc (id âm = thông báo theo role)
      * PATCH /apiv1/notifications/{id}/read
      */
     @PatchMapping("/{id}/read")
     public ResponseEntity<Map<String, Object>> markAsRead(@PathVariable("id") Integer id) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        Integer userId = ((UserPrincipal) auth.getPrincipal()).getUser().getUserId();
+        UserPrincipal principal = currentPrincipal();
+        Integer userId = principal.getUser().getUserId();
+        String userRole = roleOf(principal);
+
+        if (id < 0) {
+            Viewer viewer = viewer(principal);
+            NotificationFeedItem item = notificationFeedService.findBroadcast(viewer, -id)
+                    .orElseThrow(() -> new RuntimeException("Notification not found"));
+            if (notificationFeedService.markBroadcastRead(viewer, -id)) notificationStreamService.onRead(userId, 1);
+            item.setIsRead(true);
+            return ResponseEntity.ok(Map.of("message", "OK", "data", notificationToMap(item, userRole)));
+        }
 
         Notification notification = notificationRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Notification not found"));
@@ -150,15 +245,12 @@ public class NotificationController {
             return ResponseEntity.status(403).body(Map.of("message", "Forbidden"));
         }
 
-        UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
-        String userRole = principal.getUser().getRole() != null 
-            ? principal.getUser().getRole().getName() 
-            : "CUSTOMER";
-        
+        boolean wasUnread = !Boolean.TRUE.equals(notification.getIsRead());
         notification.setIsRead(true);
         notificationRepository.save(notification);
+        if (wasUnread) notificationStreamService.onRead(userId, 1);
 
-        return ResponseEntity.ok(Map.of("message", "OK", "data", notificationToMap(notification, userRole)));
+        return ResponseEntity.ok(Map.of("message", "OK", "data", notificationToMap(NotificationFeedItem.from(notification), userRole)));
     }
 
     /**
@@ -167,24 +259,33 @@ public class NotificationController {
      */
     @PatchMapping("/read-all")
     public ResponseEntity<Map<String, Object>> markAllAsRead() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        Integer userId = ((UserPrincipal) auth.getPrincipal()).getUser().getUserId();
+        UserPrincipal principal = currentPrincipal();
+        Integer userId = principal.getUser().getUserId();
 
-        List<Notification> unreadNotifications = notificationRepository.findByUser_UserIdAndIsReadFalseOrderByCreatedAtDesc(userId);
-        unreadNotifications.forEach(n -> n.setIsRead(true));
-        notificationRepository.saveAll(unreadNotifications);
+        int personal = notificationRepository.markAllReadByUserId(userId);
+        // Thông báo theo role: chỉ dời watermark, không cập nhật từng dòng
+        long broadcasts = notificationFeedService.markAllBroadcastsRead(viewer(principal));
+        notificationStreamService.onAllRead(userId);
 
-        return ResponseEntity.ok(Map.of("message", "OK", "count", unreadNotifications.size()));
+        return ResponseEntity.ok(Map.of("message", "OK", "count", personal + broadcasts));
     }
 
     /**
-     * Xóa thông báo
+     * Xóa thông báo (thông báo theo role chỉ bị ẩn với user hiện tại)
      * DELETE /apiv1/notifications/{id}
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Map<String, Object>> deleteNotification(@PathVariable("id") Integer id) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        Integer userId = ((UserPrincipal) auth.getPrincipal()).getUser().getUserId();
+        UserPrincipal principal = currentPrincipal();
+        Integer userId = principal.getUser().getUserId();
+
+        if (id < 0) {
+            Viewer viewer = viewer(principal);
+            notificationFeedService.findBroadcast(viewer, -id)
+                    .orElseThrow(() -> new RuntimeException("Notification not found"));
+            if (notificationFeedService.hideBroadcast(viewer, -id)) notificationStreamService.onRead(userId, 1);
+            return ResponseEntity.ok(Map.of("message", "OK"));
+        }
 
         Notification notification = notificationRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Notification not found"));
@@ -195,40 +296,58 @@ public class NotificationController {
         }
 
         notificationRepository.delete(notification);
+        if (!Boolean.TRUE.equals(notification.getIsRead())) notificationStreamService.onRead(userId, 1);
         return ResponseEntity.ok(Map.of("message", "OK"));
     }
 
+    private static UserPrincipal currentPrincipal() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return (UserPrincipal) auth.getPrincipal();
+    }
+
+    private static String roleOf(UserPrincipal principal) {
+        return principal.getUser().getRole() != null
+            ? principal.getUser().getRole().getName()
+            : "CUSTOMER";
+    }
+
+    // Thông báo theo role chỉ hiện từ lúc tạo tài khoản trở đi
+    private static Viewer viewer(UserPrincipal principal) {
+        return new Viewer(principal.getUser().getUserId(), roleOf(principal), principal.getUser().getCreatedAt());
+    }
+
     /**
-     * Chuyển đổi Notification entity thành Map để trả về JSON
-     * @param n Notification entity
+     * Chuyển đổi một dòng feed thành Map để trả về JSON
+     * @param n dòng feed (thông báo riêng hoặc theo role)
      * @param userRole Role của user hiện tại (CUSTOMER, STAFF, ADMIN)
      */
-    private Map<String, Object> notificationToMap(Notification n, String userRole) {
+    private Map<String, Object> notificationToMap(NotificationFeedItem n, String userRole) {
         Map<String, Object> map = new HashMap<>();
-        map.put("id", n.getNotificationId());
+        map.put("id", n.getId());
+        map.put("scope", n.getScope());
         map.put("title", n.getTitle());
         map.put("message", n.getMessage());
         map.put("type", n.getType());
         map.put("isRead", n.getIsRead());
         map.put("createdAt", n.getCreatedAt());
-        
+
         // Thêm thông tin order nếu có
-        if (n.getOrder() != null) {
+        if (n.getOrderId() != null) {
             Map<String, Object> orderInfo = new HashMap<>();
-            orderInfo.put("orderId", n.getOrder().getOrderId());
-            orderInfo.put("orderCode", n.getOrder().getOrderCode());
-            orderInfo.put("status", n.getOrder().getStatus());
-            
+            orderInfo.put("orderId", n.getOrderId());
+            orderInfo.put("orderCode", n.getOrderCode());
+            orderInfo.put("status", n.getOrderStatus());
+
             // Xác định loại đơn hàng: SHIPPING (có address) hoặc TABLE (có table)
             String orderType = null;
-            if (n.getOrder().getAddress() != null) {
+            if (Boolean.TRUE.equals(n.getShipping())) {
                 orderType = "SHIPPING";
-            } else if (n.getOrder().getTable() != null) {
+            } else if (n.getTableNumber() != null) {
                 orderType = "TABLE";
-                orderInfo.put("tableNumber", n.getOrder().getTable().getNumber());
+                orderInfo.put("tableNumber", n.getTableNumber());
             }
             orderInfo.put("orderType", orderType);
-            
+
             // Thêm redirect URL dựa trên role và order type
             String redirectUrl = null;
             if ("CUSTOMER".equalsIgnoreCase(userRole)) {
@@ -243,11 +362,10 @@ public class NotificationController {
                 }
             }
             orderInfo.put("redirectUrl", redirectUrl);
-            
+
             map.put("order", orderInfo);
         }
-        
+
         return map;
     }
 }
-
@@ -1,8 +1,14 @@
 package com.kopi.kopi.controller;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.Map;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,37 +17,69 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.kopi.kopi.dto.CachedJson;
+import com.kopi.kopi.service.CatalogImportService;
 import com.kopi.kopi.service.ProductService;
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping("/apiv1/products")
 public class ProductController {
 	private final ProductService productService;
+	private final CatalogImportService catalogImportService;
 
-	public ProductController(ProductService productService) {
+	public ProductController(ProductService productService, CatalogImportService catalogImportService) {
 		this.productService = productService;
+		this.catalogImportService = catalogImportService;
 	}
 
 	@GetMapping
-	public Map<String, Object> list(
+	public ResponseEntity<byte[]> list(
 		@RequestParam(name = "category", required = false) Integer categoryId,
 		@RequestParam(name = "orderBy", required = false) String orderBy,
 		@RequestParam(name = "sort", required = false) String sort,
 		@RequestParam(name = "searchByName", required = false, defaultValue = "") String searchByName,
 		@RequestParam(name = "limit", required = false, defaultValue = "8") Integer limit,
-		@RequestParam(name = "page", required = false, defaultValue = "1") Integer page
+		@RequestParam(name = "page", required = false, defaultValue = "1") Integer page,
+		@RequestParam(name = "expand", required = false) String expand,
+		@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
 	) {
-		return productService.list(categoryId, orderBy, sort, searchByName, limit, page);
+		return cached(productService.listJson(categoryId, orderBy, sort, searchByName, limit, page, expand), ifNoneMatch);
 	}
 
 	@GetMapping("/{id}")
-	public Map<String, Object> detail(@PathVariable("id") Integer id) {
-		return productService.detail(id);
+	public ResponseEntity<byte[]> detail(@PathVariable("id") Integer id,
+		@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+		return cached(productService.detailJson(id), ifNoneMatch);
+	}
+
+	// ETag khớp thì trả 304 rỗng; ngược lại trả nguyên byte JSON đã cache, không serialize lại
+	private static ResponseEntity<byte[]> cached(CachedJson json, String ifNoneMatch) {
+		if (etagMatches(ifNoneMatch, json.etag())) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(json.etag()).cacheControl(CacheControl.noCache()).build();
+		}
+		return ResponseEntity.ok()
+			.eTag(json.etag())
+			.cacheControl(CacheControl.noCache())
+			.contentType(MediaType.APPLICATION_JSON)
+			.body(json.body());
+	}
+
+	static boolean etagMatches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+		for (String candidate : ifNoneMatch.split(",")) {
+			String c = candidate.trim();
+			if (c.equals("*")) return true;
+			if (c.startsWith("W/")) c = c.substring(2);
+			if (c.equals(etag)) return true;
+		}
+		return false;
 	}
 
 	@PostMapping
@@ -71,6 +109,25 @@ public class ProductController {
 		return productService.update(id, image, imgUrl, name, categoryId, desc, price);
 	}
 
+	// Upsert hàng loạt từ .xlsx/.csv, trả về số dòng thêm/cập nhật và lỗi theo từng dòng
+	@PostMapping("/import")
+	@PreAuthorize("hasRole('ADMIN')")
+	public ResponseEntity<?> importCatalog(@RequestParam("file") MultipartFile file) {
+		return ResponseEntity.ok(Map.of("data", catalogImportService.importCatalog(file)));
+	}
+
+	@GetMapping("/export")
+	@PreAuthorize("hasRole('ADMIN')")
+	public void exportCatalog(@RequestParam(name = "format", required = false, defaultValue = "xlsx") String format,
+		HttpServletResponse response) throws IOException {
+		boolean csv = "csv".equalsIgnoreCase(format);
+		response.setContentType(csv ? "text/csv; charset=UTF-8"
+			: "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+			"attachment; filename=\"kopi-products-" + LocalDate.now() + (csv ? ".csv" : ".xlsx") + "\"");
+		catalogImportService.export(csv ? "csv" : "xlsx", response.getOutputStream());
+	}
+
 	@DeleteMapping("/{id}")
 	@PreAuthorize("hasRole('ADMIN')")
 	public ResponseEntity<?> delete(@PathVariable("id") Integer id) {
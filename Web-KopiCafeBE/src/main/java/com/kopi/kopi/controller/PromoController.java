@@ -5,17 +5,24 @@ import com.kopi.kopi.entity.DiscountEvent;
 import com.kopi.kopi.entity.DiscountEventProduct;
 import com.kopi.kopi.entity.Product;
 import com.kopi.kopi.entity.enums.DiscountType;
+import com.kopi.kopi.event.PromoChangedEvent;
 import com.kopi.kopi.repository.DiscountCodeRepository;
 import com.kopi.kopi.repository.DiscountEventRepository;
 import com.kopi.kopi.repository.ProductRepository;
+import com.kopi.kopi.service.CouponBatchService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Map;
 import java.util.List;
 import java.time.LocalDateTime;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.kopi.kopi.service.IPromoService;
 
@@ -26,12 +33,17 @@ public class PromoController {
     private final DiscountEventRepository discountEventRepository;
     private final ProductRepository productRepository;
     private final IPromoService promoService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CouponBatchService couponBatchService;
 
-    public PromoController(DiscountCodeRepository discountCodeRepository, DiscountEventRepository discountEventRepository, ProductRepository productRepository, IPromoService promoService) {
+    public PromoController(DiscountCodeRepository discountCodeRepository, DiscountEventRepository discountEventRepository, ProductRepository productRepository, IPromoService promoService,
+                           ApplicationEventPublisher eventPublisher, CouponBatchService couponBatchService) {
         this.discountCodeRepository = discountCodeRepository;
         this.discountEventRepository = discountEventRepository;
         this.productRepository = productRepository;
         this.promoService = promoService;
+        this.eventPublisher = eventPublisher;
+        this.couponBatchService = couponBatchService;
     }
 
     public record CreateCodePayload(
@@ -81,9 +93,60 @@ public class PromoController {
         dc.setCreatedAt(LocalDateTime.now());
 
         discountCodeRepository.save(dc);
+        eventPublisher.publishEvent(new PromoChangedEvent());
         return ResponseEntity.ok(Map.of("message", "created"));
     }
 
+    public record CreateBatchPayload(
+            Integer count,
+            String prefix,
+            Integer length,
+            String discount_type,
+            String discount_value,
+            String min_order_amount,
+            String desc,
+            String start_date,
+            String end_date
+    ) {}
+
+    // Sinh hàng loạt mã dùng một lần chạy nền: submit -> poll tiến độ -> tải CSV
+    @PostMapping("/batches")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> createBatch(@RequestBody CreateBatchPayload body) {
+        if (body == null || body.count() == null) {
+            return ResponseEntity.badRequest().body(Map.of("message", "count is required"));
+        }
+        try {
+            var job = couponBatchService.submit(new CouponBatchService.BatchRequest(
+                    body.count(), body.prefix(), body.length(), parseDiscountType(body.discount_type()),
+                    parseDecimal(body.discount_value(), null), parseDecimal(body.min_order_amount(), null),
+                    body.desc(), parseDateTime(body.start_date()), parseDateTime(body.end_date())));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("data", job));
+        } catch (RejectedExecutionException ex) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("message", "Hàng đợi sinh mã đang đầy, vui lòng thử lại sau"));
+        }
+    }
+
+    @GetMapping("/batches/{batchId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getBatch(@PathVariable("batchId") String batchId) {
+        return couponBatchService.status(batchId)
+                .<ResponseEntity<?>>map(job -> ResponseEntity.ok(Map.of("data", job)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Batch not found")));
+    }
+
+    @GetMapping("/batches/{batchId}/codes")
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exportBatch(@PathVariable("batchId") String batchId, HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv; charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"coupons_" + batchId + ".csv\"");
+        if (!couponBatchService.exportCsv(batchId, response.getOutputStream())) {
+            response.reset();
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Batch not found");
+        }
+    }
+
     public record CreateEventPayload(
             String name,
             String desc,
@@ -125,6 +188,7 @@ public class PromoController {
         }
 
         discountEventRepository.save(ev);
+        eventPublisher.publishEvent(new PromoChangedEvent());
         return ResponseEntity.ok(Map.of("message", "created"));
     }
 
@@ -136,6 +200,9 @@ public class PromoController {
      * - available (true|false) - when true, include only active and not ended items (includes current and upcoming)
      * - status (all|current|upcoming) - alternative to available for finer filtering
      * - searchByName (optional) - matches code or name contains (case-insensitive)
+     * - cursor (optional) - keyset paging instead of page: pass meta.nextCursor of the previous response
+     *   (empty = first page); meta has limit/hasMore/nextCursor and no totals
+     * Codes generated in batches are not listed; look them up by code.
      */
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
@@ -144,8 +211,12 @@ public class PromoController {
             @RequestParam(name = "limit", required = false, defaultValue = "8") Integer limit,
             @RequestParam(name = "available", required = false) String available,
             @RequestParam(name = "status", required = false) String status,
-            @RequestParam(name = "searchByName", required = false, defaultValue = "") String searchByName
+            @RequestParam(name = "searchByName", required = false, defaultValue = "") String searchByName,
+            @RequestParam(name = "cursor", required = false) String cursor
     ) {
+        if (cursor != null) {
+            return promoService.listAfter(cursor, limit, available, status, searchByName);
+        }
         return promoService.list(page, limit, available, status, searchByName);
     }
 
@@ -232,6 +303,7 @@ public class PromoController {
             if (body.start_date() != null) dc.setStartsAt(parseDateTime(body.start_date()));
             if (body.end_date() != null) dc.setEndsAt(parseDateTime(body.end_date()));
             discountCodeRepository.save(dc);
+            eventPublisher.publishEvent(new PromoChangedEvent());
             return ResponseEntity.ok(Map.of("message", "updated"));
         }
         var ev = discountEventRepository.findById(id).orElse(null);
@@ -255,6 +327,7 @@ public class PromoController {
                 }
             }
             discountEventRepository.save(ev);
+            eventPublisher.publishEvent(new PromoChangedEvent());
             return ResponseEntity.ok(Map.of("message", "updated"));
         }
         return ResponseEntity.notFound().build();
@@ -267,12 +340,14 @@ public class PromoController {
         if (dc != null) {
             dc.setActive(false);
             discountCodeRepository.save(dc);
+            eventPublisher.publishEvent(new PromoChangedEvent());
             return ResponseEntity.ok(Map.of("message", "deleted"));
         }
         var ev = discountEventRepository.findById(id).orElse(null);
         if (ev != null) {
             ev.setActive(false);
             discountEventRepository.save(ev);
+            eventPublisher.publishEvent(new PromoChangedEvent());
             return ResponseEntity.ok(Map.of("message", "deleted"));
         }
         return ResponseEntity.notFound().build();
@@ -0,0 +1,33 @@
+package com.kopi.kopi.controller;
+
+import com.kopi.kopi.service.RecommendationService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/apiv1/products/recommendations")
+public class RecommendationController {
+	private static final int MAX_LIMIT = 20;
+
+	private final RecommendationService recommendationService;
+
+	public RecommendationController(RecommendationService recommendationService) {
+		this.recommendationService = recommendationService;
+	}
+
+	// ?product_ids=1,5,9&limit=5 : các món thường được mua cùng giỏ hiện tại
+	@GetMapping
+	public ResponseEntity<?> forCart(
+		@RequestParam(name = "product_ids") List<Integer> productIds,
+		@RequestParam(name = "limit", required = false, defaultValue = "5") Integer limit
+	) {
+		int k = Math.min(Math.max(limit == null ? 5 : limit, 1), MAX_LIMIT);
+		return ResponseEntity.ok(Map.of("data", recommendationService.companionViews(productIds, k)));
+	}
+}
@@ -0,0 +1,4 @@
+package com.kopi.kopi.dto;
+
+// Body JSON đã serialize sẵn + strong ETag (hash của body), dùng lại nguyên xi cho mọi request
+public record CachedJson(byte[] body, String etag) {}
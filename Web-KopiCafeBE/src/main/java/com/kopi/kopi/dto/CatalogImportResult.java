@@ -0,0 +1,18 @@
+package com.kopi.kopi.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class CatalogImportResult {
+    private Integer totalRows;      // không tính dòng tiêu đề và dòng trống
+    private Integer inserted;
+    private Integer updated;
+    private Integer failed;
+    private List<RowError> errors;  // tối đa app.catalog.import.max-errors dòng đầu tiên
+    private Long tookMs;
+
+    public record RowError(int row, String message) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.kopi.kopi.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class CouponBatchStatus {
+    private String batchId;
+    private String status;          // QUEUED | RUNNING | DONE | FAILED
+    private Integer progress;       // 0..100
+    private Integer requested;
+    private Integer inserted;
+    private Integer collisions;     // mã sinh ra trùng mã đã có (đã sinh lại)
+    private Integer falsePositives; // Bloom filter báo trùng nhưng kiểm tra chính xác thì không
+    private String prefix;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,16 @@
+package com.kopi.kopi.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class DemandHeatmap {
+    private String from;
+    private String to;
+    private Integer slotMinutes;     // 15 hoặc 60
+    private Integer weeks;           // số tuần ISO chạm vào khoảng [from, to]
+    private Long total;
+    private List<String> days;       // MONDAY..SUNDAY, trùng thứ tự với counts
+    private long[][] counts;         // counts[day][slot]
+}
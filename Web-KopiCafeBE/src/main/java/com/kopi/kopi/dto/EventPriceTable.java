@@ -0,0 +1,87 @@
+package com.kopi.kopi.dto;
+
+import com.kopi.kopi.entity.enums.DiscountType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bảng giá khuyến mãi theo sản phẩm tại một thời điểm, bất biến: tính giá cả giỏ không cần đọc DB.
+ * Mỗi sản phẩm giữ tối đa hai luật (phần trăm lớn nhất, số tiền lớn nhất); khi chồng chéo thì
+ * luật nào cho giá thấp hơn ở mức giá đó được áp dụng.
+ */
+public final class EventPriceTable {
+    public static final EventPriceTable EMPTY = new EventPriceTable(Map.of(), null);
+
+    public record Rule(Integer eventId, DiscountType type, BigDecimal value) {
+    }
+
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+    private final Map<Integer, Rule[]> rules;
+    private final LocalDateTime validUntil;
+
+    private EventPriceTable(Map<Integer, Rule[]> rules, LocalDateTime validUntil) {
+        this.rules = rules;
+        this.validUntil = validUntil;
+    }
+
+    public static EventPriceTable of(Map<Integer, List<Rule>> byProduct, LocalDateTime validUntil) {
+        Map<Integer, Rule[]> compiled = new HashMap<>();
+        byProduct.forEach((productId, list) -> {
+            Rule percent = null, amount = null;
+            for (Rule r : list) {
+                if (r.value() == null || r.value().signum() <= 0) continue;
+                if (r.type() == DiscountType.PERCENT) {
+                    if (percent == null || r.value().compareTo(percent.value()) > 0) percent = r;
+                } else if (amount == null || r.value().compareTo(amount.value()) > 0) {
+                    amount = r;
+                }
+            }
+            if (percent != null && amount != null) compiled.put(productId, new Rule[]{percent, amount});
+            else if (percent != null) compiled.put(productId, new Rule[]{percent});
+            else if (amount != null) compiled.put(productId, new Rule[]{amount});
+        });
+        return new EventPriceTable(Map.copyOf(compiled), validUntil);
+    }
+
+    /** Giá sau khuyến mãi của một đơn vị (không âm); không có luật thì trả lại nguyên giá */
+    public BigDecimal price(Integer productId, BigDecimal unit) {
+        Rule best = bestRule(productId, unit);
+        return best == null ? unit : apply(best, unit);
+    }
+
+    public Rule bestRule(Integer productId, BigDecimal unit) {
+        Rule[] candidates = productId == null || unit == null ? null : rules.get(productId);
+        if (candidates == null) return null;
+        Rule best = candidates[0];
+        for (int i = 1; i < candidates.length; i++) {
+            if (apply(candidates[i], unit).compareTo(apply(best, unit)) < 0) best = candidates[i];
+        }
+        return best;
+    }
+
+    private static BigDecimal apply(Rule r, BigDecimal unit) {
+        BigDecimal out = r.type() == DiscountType.PERCENT
+                ? unit.multiply(HUNDRED.subtract(r.value().min(HUNDRED))).divide(HUNDRED, 0, RoundingMode.HALF_UP)
+                : unit.subtract(r.value());
+        return out.signum() < 0 ? BigDecimal.ZERO : out;
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    /** Mốc kế tiếp bảng này hết đúng (event bắt đầu/kết thúc); null nếu không còn mốc nào */
+    public LocalDateTime validUntil() {
+        return validUntil;
+    }
+}
@@ -0,0 +1,6 @@
+package com.kopi.kopi.dto;
+
+import java.nio.file.Path;
+
+// File ảnh cần phục vụ; fallback = variant chưa sinh xong, đang trả tạm ảnh gốc (không được cache lâu)
+public record ImageFile(Path path, String contentType, String etag, boolean fallback) {}
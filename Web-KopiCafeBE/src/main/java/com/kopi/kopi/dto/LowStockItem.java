@@ -0,0 +1,9 @@
+package com.kopi.kopi.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Nguyên liệu đang ở trạng thái "sắp hết"; since = lúc bắt đầu vào trạng thái này
+public record LowStockItem(Integer itemId, String name, String unit, BigDecimal quantityOnHand,
+                           BigDecimal reorderLevel, LocalDateTime since) {
+}
@@ -0,0 +1,10 @@
+package com.kopi.kopi.dto;
+
+import java.time.LocalDateTime;
+
+// Menu đã serialize sẵn: bản gốc và bản gzip; mỗi content-coding một ETag riêng (bản gzip thêm hậu tố -gz)
+public record MenuSnapshot(byte[] json, byte[] gzip, String etag, LocalDateTime builtAt) {
+    public String etag(boolean gzipped) {
+        return gzipped ? etag.substring(0, etag.length() - 1) + "-gz\"" : etag;
+    }
+}
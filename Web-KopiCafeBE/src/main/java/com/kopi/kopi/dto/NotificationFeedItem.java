@@ -0,0 +1,56 @@
+package com.kopi.kopi.dto;
+
+import com.kopi.kopi.entity.Notification;
+import com.kopi.kopi.entity.OrderEntity;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng trong feed thông báo, gộp từ thông báo riêng (dbo.notifications) và thông báo theo role
+ * (dbo.broadcast_notifications). Id trả cho frontend: thông báo riêng giữ nguyên id, thông báo theo role
+ * dùng id âm (-broadcast_id) để các API /{id}/read, DELETE /{id} phân biệt được.
+ */
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class NotificationFeedItem {
+    public static final String PERSONAL = "PERSONAL";
+    public static final String BROADCAST = "BROADCAST";
+
+    private String scope;          // PERSONAL | BROADCAST
+    private Integer sourceId;      // notification_id hoặc broadcast_id
+    private String title;
+    private String message;
+    private String type;
+    private Boolean isRead;
+    private LocalDateTime createdAt;
+    private Integer orderId;
+    private String orderCode;
+    private String orderStatus;
+    private Boolean shipping;      // đơn có địa chỉ giao
+    private Integer tableNumber;   // đơn tại bàn
+
+    public Integer getId() {
+        return BROADCAST.equals(scope) ? -sourceId : sourceId;
+    }
+
+    public static NotificationFeedItem from(Notification n) {
+        NotificationFeedItem item = NotificationFeedItem.builder()
+                .scope(PERSONAL)
+                .sourceId(n.getNotificationId())
+                .title(n.getTitle())
+                .message(n.getMessage())
+                .type(n.getType())
+                .isRead(n.getIsRead())
+                .createdAt(n.getCreatedAt())
+                .build();
+        OrderEntity o = n.getOrder();
+        if (o != null) {
+            item.setOrderId(o.getOrderId());
+            item.setOrderCode(o.getOrderCode());
+            item.setOrderStatus(o.getStatus());
+            item.setShipping(o.getAddress() != null);
+            item.setTableNumber(o.getTable() != null ? o.getTable().getNumber() : null);
+        }
+        return item;
+    }
+}
@@ -0,0 +1,5 @@
+package com.kopi.kopi.dto;
+
+// Sản phẩm hay được mua kèm giỏ hiện tại; score đã chuẩn hoá, gợi ý tốt nhất = 1.0
+public record ProductCompanion(Integer productId, double score) {
+}
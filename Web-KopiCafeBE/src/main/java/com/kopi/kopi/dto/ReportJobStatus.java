@@ -0,0 +1,18 @@
+package com.kopi.kopi.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class ReportJobStatus {
+    private String jobId;
+    private String type;            // revenue | export
+    private String status;          // QUEUED | RUNNING | DONE | FAILED
+    private Integer progress;       // 0..100
+    private Boolean cached;         // true nếu lấy lại kết quả đã lưu trên đĩa
+    private String fileName;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
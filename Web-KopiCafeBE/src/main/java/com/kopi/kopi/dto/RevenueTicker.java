@@ -0,0 +1,28 @@
+package com.kopi.kopi.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueTicker {
+    private LocalDate day;           // ngày hiện tại theo Asia/Ho_Chi_Minh
+
+    private BigDecimal todayRevenue;
+    private Integer todayOrders;
+
+    private BigDecimal weekRevenue;
+    private Integer weekOrders;
+
+    private BigDecimal monthRevenue;
+    private Integer monthOrders;
+
+    private Integer orderId;         // đơn vừa thanh toán (null với snapshot/reset)
+    private BigDecimal delta;        // số tiền vừa cộng thêm
+    private LocalDateTime at;
+}
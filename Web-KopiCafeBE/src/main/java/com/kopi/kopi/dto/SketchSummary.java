@@ -0,0 +1,29 @@
+package com.kopi.kopi.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class SketchSummary {
+    private String from;
+    private String to;
+    private Long orders;
+    private Long distinctCustomers;     // HyperLogLog, chỉ tính đơn có customer_id
+    private BigDecimal medianOrderValue; // t-digest
+    private BigDecimal p90OrderValue;    // t-digest
+
+    private Exact exact;                 // chỉ có khi gọi với exact=true
+
+    @Data @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class Exact {
+        private Long orders;
+        private Long distinctCustomers;
+        private BigDecimal medianOrderValue;
+        private BigDecimal p90OrderValue;
+        private Double distinctCustomersErrorPct;
+        private Double medianErrorPct;
+        private Double p90ErrorPct;
+        private Long elapsedMs;
+    }
+}
@@ -0,0 +1,23 @@
+package com.kopi.kopi.dto;
+
+import lombok.*;
+
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class StaffPerformance {
+    private Integer userId;
+    private String fullName;
+    private String role;
+
+    private Integer ordersCreated;       // đơn do nhân viên tạo (không tính khách tự đặt)
+    private Integer ordersCompleted;
+    private Integer ordersCancelled;     // CANCELLED hoặc REJECTED
+    private Double avgCompleteMinutes;   // từ lúc tạo đến COMPLETED
+    private Integer p50CompleteMinutes;  // cận trên của bucket, null nếu rơi vào bucket cuối
+    private Integer p90CompleteMinutes;
+    private long[] completeHistogram;
+
+    private Integer deliveries;          // đơn giao hàng COMPLETED với vai trò shipper
+    private Double avgDeliveryMinutes;
+    private Integer p90DeliveryMinutes;
+    private long[] deliveryHistogram;
+}
@@ -0,0 +1,51 @@
+package com.kopi.kopi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+@Entity
+@Table(name = "availability_windows", schema = "dbo")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityWindow {
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "window_id")
+	private Integer windowId;
+
+	// product_id hoặc category_id, xem V2026_10_19_0011__availability_windows.sql
+	@Column(name = "product_id")
+	private Integer productId;
+
+	@Column(name = "category_id")
+	private Integer categoryId;
+
+	// bit 0 = thứ Hai ... bit 6 = Chủ nhật
+	@Column(name = "days_mask", nullable = false)
+	private Integer daysMask;
+
+	// null = cả ngày; end <= start = qua nửa đêm
+	@Column(name = "start_time")
+	private LocalTime startTime;
+
+	@Column(name = "end_time")
+	private LocalTime endTime;
+
+	@Column(name = "starts_on")
+	private LocalDate startsOn;
+
+	@Column(name = "ends_on")
+	private LocalDate endsOn;
+
+	@Column(name = "note", length = 255)
+	private String note;
+
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt;
+}
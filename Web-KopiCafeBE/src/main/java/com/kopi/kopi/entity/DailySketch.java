@@ -0,0 +1,37 @@
+package com.kopi.kopi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Sketch gần đúng của các đơn COMPLETED trong một ngày (theo ngày tạo đơn):
+ * HyperLogLog khách hàng phân biệt + t-digest giá trị đơn.
+ */
+@Entity
+@Table(name = "analytics_daily_sketches", schema = "dbo")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailySketch {
+	@Id
+	@Column(name = "sketch_date")
+	private LocalDate sketchDate;
+
+	@Column(name = "order_count", nullable = false)
+	private Long orderCount;
+
+	@Column(name = "customers_hll", nullable = false)
+	@ToString.Exclude
+	private byte[] customersHll;
+
+	@Column(name = "order_value_digest", nullable = false)
+	@ToString.Exclude
+	private byte[] orderValueDigest;
+
+	@Column(name = "updated_at", nullable = false)
+	private LocalDateTime updatedAt;
+}
@@ -0,0 +1,30 @@
+package com.kopi.kopi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Lưới đếm đơn hàng của một tuần ISO (thứ Hai -> Chủ nhật) theo ô 15 phút.
+ * counts là 7 x 96 số int big-endian, xếp theo thứ tự ngày rồi tới ô.
+ */
+@Entity
+@Table(name = "demand_heatmap_weeks", schema = "dbo")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DemandHeatmapWeek {
+	@Id
+	@Column(name = "week_start")
+	private LocalDate weekStart;
+
+	@Column(name = "counts", nullable = false)
+	@ToString.Exclude
+	private byte[] counts;
+
+	@Column(name = "updated_at", nullable = false)
+	private LocalDateTime updatedAt;
+}
@@ -58,6 +58,10 @@ public class DiscountCode {
 	@Column(name = "created_at", nullable = false)
 	private LocalDateTime createdAt;
 
+	// Id job sinh mã hàng loạt; null với mã tạo lẻ
+	@Column(name = "batch_id", length = 36)
+	private String batchId;
+
 	@OneToMany(mappedBy = "discountCode", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
 	@ToString.Exclude
 	@EqualsAndHashCode.Exclude
@@ -0,0 +1,51 @@
+package com.kopi.kopi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "email_outbox", schema = "dbo")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailOutbox {
+	public static final String PENDING = "PENDING";
+	public static final String SENT = "SENT";
+	public static final String FAILED = "FAILED";
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "email_id")
+	private Long emailId;
+
+	@Column(name = "to_address", nullable = false, length = 320)
+	private String toAddress;
+
+	@Column(name = "subject", nullable = false, length = 255)
+	private String subject;
+
+	@Column(name = "body", nullable = false, columnDefinition = "NVARCHAR(MAX)")
+	private String body;
+
+	// PENDING | SENT | FAILED
+	@Column(name = "status", nullable = false, length = 10)
+	private String status;
+
+	@Column(name = "attempts", nullable = false)
+	private Integer attempts;
+
+	@Column(name = "next_attempt_at", nullable = false)
+	private LocalDateTime nextAttemptAt;
+
+	@Column(name = "last_error", length = 500)
+	private String lastError;
+
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt;
+
+	@Column(name = "sent_at")
+	private LocalDateTime sentAt;
+}
@@ -0,0 +1,35 @@
+package com.kopi.kopi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Entity
+@Table(name = "recipe_items", schema = "dbo")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipeItem {
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "recipe_item_id")
+	private Integer recipeItemId;
+
+	// product_id (+ size_id) hoặc add_on_id, xem V2026_10_19_0010__recipe_items.sql
+	@Column(name = "product_id")
+	private Integer productId;
+
+	@Column(name = "size_id")
+	private Integer sizeId;
+
+	@Column(name = "add_on_id")
+	private Integer addOnId;
+
+	@Column(name = "inventory_item_id", nullable = false)
+	private Integer inventoryItemId;
+
+	@Column(name = "quantity", nullable = false, precision = 18, scale = 3)
+	private BigDecimal quantity;
+}
@@ -0,0 +1,60 @@
+package com.kopi.kopi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Bộ đếm hiệu suất theo nhân viên/shipper theo ngày. Histogram là các bucket phút cố định
+ * (xem StaffPerformanceServiceImpl.BUCKET_UPPER_MINUTES), mỗi bucket một int32.
+ */
+@Entity
+@Table(name = "staff_daily_stats", schema = "dbo",
+		uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "stat_date"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StaffDailyStat {
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "stat_id")
+	private Long statId;
+
+	@Column(name = "user_id", nullable = false)
+	private Integer userId;
+
+	@Column(name = "stat_date", nullable = false)
+	private LocalDate statDate;
+
+	@Column(name = "orders_created", nullable = false)
+	private Integer ordersCreated;
+
+	@Column(name = "orders_completed", nullable = false)
+	private Integer ordersCompleted;
+
+	@Column(name = "orders_cancelled", nullable = false)
+	private Integer ordersCancelled;
+
+	@Column(name = "complete_seconds_sum", nullable = false)
+	private Long completeSecondsSum;
+
+	@Column(name = "complete_histogram", nullable = false)
+	@ToString.Exclude
+	private byte[] completeHistogram;
+
+	@Column(name = "deliveries", nullable = false)
+	private Integer deliveries;
+
+	@Column(name = "delivery_seconds_sum", nullable = false)
+	private Long deliverySecondsSum;
+
+	@Column(name = "delivery_histogram", nullable = false)
+	@ToString.Exclude
+	private byte[] deliveryHistogram;
+
+	@Column(name = "updated_at", nullable = false)
+	private LocalDateTime updatedAt;
+}
@@ -0,0 +1,18 @@
+package com.kopi.kopi.event;
+
+import java.util.List;
+
+/**
+ * Phát ra khi dữ liệu menu thay đổi (sản phẩm, size, add-on, tồn kho).
+ * productIds = null nghĩa là không biết cụ thể sản phẩm nào: xoá toàn bộ cache.
+ */
+public record CatalogChangedEvent(List<Integer> productIds) {
+
+    public static CatalogChangedEvent product(Integer productId) {
+        return new CatalogChangedEvent(List.of(productId));
+    }
+
+    public static CatalogChangedEvent all() {
+        return new CatalogChangedEvent(null);
+    }
+}
@@ -0,0 +1,9 @@
+package com.kopi.kopi.event;
+
+import java.util.List;
+
+/**
+ * Phát ra sau khi quantity_on_hand của các nguyên liệu đã được ghi (lô trừ kho, nhập/điều chỉnh tay).
+ */
+public record InventoryChangedEvent(List<Integer> inventoryItemIds) {
+}
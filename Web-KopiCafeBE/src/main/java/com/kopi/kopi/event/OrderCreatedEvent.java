@@ -0,0 +1,7 @@
+package com.kopi.kopi.event;
+
+/**
+ * Phát ra khi một đơn hàng mới được lưu (khách, nhân viên hoặc khách tại bàn).
+ */
+public record OrderCreatedEvent(OrderSnapshot order) {
+}
@@ -0,0 +1,64 @@
+package com.kopi.kopi.event;
+
+import com.kopi.kopi.entity.OrderDetail;
+import com.kopi.kopi.entity.OrderEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bản chụp bất biến của một đơn hàng tại thời điểm phát sự kiện.
+ * Listener chạy sau commit nên không được chạm vào entity lazy-loaded.
+ */
+public record OrderSnapshot(
+        Integer orderId,
+        String status,
+        LocalDateTime createdAt,
+        Integer customerId,
+        Integer createdById,
+        Integer shipperId,
+        Integer tableId,
+        boolean delivery,
+        BigDecimal amount,
+        List<Line> lines) {
+
+    public record Line(Integer orderDetailId, Integer productId, Integer sizeId, int quantity, BigDecimal unitPrice) {
+    }
+
+    public static OrderSnapshot of(OrderEntity o) {
+        List<Line> lines = new ArrayList<>();
+        if (o.getOrderDetails() != null) {
+            for (OrderDetail d : o.getOrderDetails()) {
+                lines.add(new Line(
+                        d.getOrderDetailId(),
+                        d.getProduct() != null ? d.getProduct().getProductId() : null,
+                        d.getSize() != null ? d.getSize().getSizeId() : null,
+                        d.getQuantity() != null ? d.getQuantity() : 0,
+                        d.getUnitPrice()));
+            }
+        }
+        return new OrderSnapshot(
+                o.getOrderId(),
+                o.getStatus(),
+                o.getCreatedAt(),
+                o.getCustomer() != null ? o.getCustomer().getUserId() : null,
+                o.getCreatedBy() != null ? o.getCreatedBy().getUserId() : null,
+                o.getShipper() != null ? o.getShipper().getUserId() : null,
+                o.getTable() != null ? o.getTable().getTableId() : null,
+                o.getAddress() != null,
+                amountOf(o),
+                List.copyOf(lines));
+    }
+
+    // Giá trị đơn đúng như cột total_amount (subtotal - discount + shipping), để sketch khớp đối soát exact.
+    // total_amount là cột computed (insertable=false) nên ngay sau khi tạo sẽ null -> tự tính theo cùng công thức
+    private static BigDecimal amountOf(OrderEntity o) {
+        if (o.getTotalAmount() != null) return o.getTotalAmount();
+        BigDecimal sub = o.getSubtotalAmount() != null ? o.getSubtotalAmount() : BigDecimal.ZERO;
+        BigDecimal ship = o.getShippingAmount() != null ? o.getShippingAmount() : BigDecimal.ZERO;
+        BigDecimal disc = o.getDiscountAmount() != null ? o.getDiscountAmount() : BigDecimal.ZERO;
+        return sub.subtract(disc).add(ship);
+    }
+}
@@ -0,0 +1,14 @@
+package com.kopi.kopi.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Phát ra khi trạng thái đơn hàng thực sự thay đổi (previousStatus != status).
+ */
+public record OrderStatusChangedEvent(OrderSnapshot order, String previousStatus, String status,
+                                      LocalDateTime changedAt) {
+
+    public boolean becameCompleted() {
+        return "COMPLETED".equals(status) && !"COMPLETED".equals(previousStatus);
+    }
+}
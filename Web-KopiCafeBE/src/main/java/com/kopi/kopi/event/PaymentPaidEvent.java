@@ -0,0 +1,11 @@
+package com.kopi.kopi.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Phát ra khi payment của đơn chuyển sang PAID qua changeStatus (trước đó chưa PAID),
+ * hoặc khi đơn được tạo đã thanh toán sẵn (createTransaction / createGuestTableOrder với paid=true).
+ */
+public record PaymentPaidEvent(Integer orderId, BigDecimal amount, LocalDateTime paidAt) {
+}
@@ -0,0 +1,7 @@
+package com.kopi.kopi.event;
+
+/**
+ * Phát ra khi mã giảm giá hoặc chương trình khuyến mãi được tạo/sửa/xoá mềm.
+ */
+public record PromoChangedEvent() {
+}
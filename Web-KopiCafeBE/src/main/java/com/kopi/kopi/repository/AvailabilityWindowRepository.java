@@ -0,0 +1,10 @@
+package com.kopi.kopi.repository;
+
+import com.kopi.kopi.entity.AvailabilityWindow;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface AvailabilityWindowRepository extends JpaRepository<AvailabilityWindow, Integer> {
+	List<AvailabilityWindow> findAllByOrderByWindowIdAsc();
+}
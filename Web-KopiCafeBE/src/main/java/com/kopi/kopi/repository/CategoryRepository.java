@@ -1,11 +1,21 @@
 package com.kopi.kopi.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.kopi.kopi.entity.Category;
 
 public interface CategoryRepository extends JpaRepository<Category, Integer> {
 	Optional<Category> findByName(String name);
-} 
\ No newline at end of file
+
+	// Menu trong một truy vấn: mỗi dòng (categoryId, tên danh mục, tên sản phẩm, giá, productId); danh mục rỗng có sản phẩm null
+	@Query("""
+		select c.categoryId, c.name, p.name, p.price, p.productId
+		from Category c left join c.products p on p.available = true
+		order by c.categoryId, p.productId
+		""")
+	List<Object[]> findMenuRows();
+}
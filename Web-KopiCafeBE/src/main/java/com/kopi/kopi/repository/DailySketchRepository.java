@@ -0,0 +1,13 @@
+package com.kopi.kopi.repository;
+
+import com.kopi.kopi.entity.DailySketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailySketchRepository extends JpaRepository<DailySketch, LocalDate> {
+    List<DailySketch> findBySketchDateBetween(LocalDate from, LocalDate to);
+}
@@ -0,0 +1,13 @@
+package com.kopi.kopi.repository;
+
+import com.kopi.kopi.entity.DemandHeatmapWeek;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DemandHeatmapWeekRepository extends JpaRepository<DemandHeatmapWeek, LocalDate> {
+    List<DemandHeatmapWeek> findByWeekStartBetween(LocalDate from, LocalDate to);
+}
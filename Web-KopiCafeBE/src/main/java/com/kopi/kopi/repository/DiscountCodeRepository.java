@@ -2,11 +2,25 @@ package com.kopi.kopi.repository;
 
 import com.kopi.kopi.entity.DiscountCode;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface DiscountCodeRepository extends JpaRepository<DiscountCode, Integer> {
     Optional<DiscountCode> findByCodeIgnoreCase(String code);
-}
 
+    boolean existsByCodeIgnoreCase(String code);
+
+    boolean existsByBatchId(String batchId);
 
+    // Mã thường (không thuộc lô phát hành hàng loạt); mã trong lô chỉ tra theo code
+    List<DiscountCode> findByBatchIdIsNull();
+
+    // Tăng lượt dùng ngay trong DB, không cần đọc entity trước (và không mất lượt khi hai đơn cùng lúc)
+    @Modifying
+    @Query("update DiscountCode d set d.usageCount = coalesce(d.usageCount, 0) + 1 where d.discountCodeId = :id")
+    int incrementUsage(@Param("id") Integer id);
+}
@@ -2,8 +2,18 @@ package com.kopi.kopi.repository;
 
 import com.kopi.kopi.entity.DiscountEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface DiscountEventRepository extends JpaRepository<DiscountEvent, Integer> {
+    // Luật giá cho bảng khuyến mãi: (eventId, discountType, discountValue, startsAt, endsAt, productId) của event còn hiệu lực
+    @Query("""
+            select e.discountEventId, e.discountType, e.discountValue, e.startsAt, e.endsAt, p.productId
+            from DiscountEvent e join e.products dep join dep.product p
+            where e.active = true and e.endsAt >= :now
+            """)
+    List<Object[]> findActiveRuleRows(@Param("now") LocalDateTime now);
 }
-
-
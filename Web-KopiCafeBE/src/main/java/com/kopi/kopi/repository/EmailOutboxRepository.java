@@ -0,0 +1,23 @@
+package com.kopi.kopi.repository;
+
+import com.kopi.kopi.entity.EmailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+	List<EmailOutbox> findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(String status, LocalDateTime now, Pageable page);
+
+	long countByStatus(String status);
+
+	@Modifying
+	@Transactional
+	@Query("delete from EmailOutbox e where e.status = :status and e.createdAt < :before")
+	int deleteByStatusCreatedBefore(@Param("status") String status, @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,16 @@
+package com.kopi.kopi.repository;
+
+import com.kopi.kopi.entity.InventoryItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface InventoryItemRepository extends JpaRepository<InventoryItem, Integer> {
+    List<InventoryItem> findAllByOrderByNameAsc();
+
+    @Query("select i from InventoryItem i where i.active = true and i.quantityOnHand <= i.reorderLevel")
+    List<InventoryItem> findLowStock();
+}
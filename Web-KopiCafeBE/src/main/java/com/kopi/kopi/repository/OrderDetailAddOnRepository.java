@@ -2,12 +2,19 @@ package com.kopi.kopi.repository;
 
 import com.kopi.kopi.entity.OrderDetailAddOn;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderDetailAddOnRepository extends JpaRepository<OrderDetailAddOn, Integer> {
     List<OrderDetailAddOn> findByOrderDetail_OrderDetailId(Integer orderDetailId);
+
+    // [orderDetailId, addOnId] cho nhiều dòng đơn một lần, không load entity
+    @Query("select a.orderDetail.orderDetailId, a.addOn.addOnId from OrderDetailAddOn a where a.orderDetail.orderDetailId in :ids")
+    List<Object[]> findAddOnIdsByOrderDetailIds(@Param("ids") Collection<Integer> orderDetailIds);
 }
 
 
@@ -4,6 +4,10 @@ import com.kopi.kopi.entity.OrderEntity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface OrderRepository extends JpaRepository<OrderEntity, Integer> {
@@ -15,6 +19,51 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Integer> {
     Page<OrderEntity> findByStatusNotInAndAddressIsNull(List<String> statuses, Pageable pageable);
     long countByShipper_UserIdAndStatusNotIn(Integer userId, List<String> statuses);
     long countByTable_TableIdAndStatus(Integer tableId, String status);
-}
 
+    // Đếm đơn theo ngày + ô 15 phút, chỉ dùng để dựng lại heatmap một lần (backfill)
+    @Query(value = """
+  SELECT CAST(o.created_at AS date) AS day,
+         DATEPART(HOUR, o.created_at) * 4 + DATEPART(MINUTE, o.created_at) / 15 AS slot,
+         COUNT(1) AS order_count
+  FROM dbo.orders o
+  WHERE o.created_at >= :from AND o.created_at < :to
+  GROUP BY CAST(o.created_at AS date), DATEPART(HOUR, o.created_at) * 4 + DATEPART(MINUTE, o.created_at) / 15
+  """, nativeQuery = true)
+    List<Object[]> countCreatedByQuarterHour(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // --- Đối soát sketch (exact=true): chạy trên toàn bộ đơn COMPLETED trong khoảng, chỉ dùng khi so sánh độ chính xác
+    @Query(value = """
+  SELECT COUNT(1) AS order_count, COUNT(DISTINCT o.customer_id) AS customer_count
+  FROM dbo.orders o
+  WHERE o.status = 'COMPLETED' AND o.created_at >= :from AND o.created_at < :to
+  """, nativeQuery = true)
+    List<Object[]> countCompletedAndDistinctCustomers(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 
+    @Query(value = """
+  SELECT TOP 1
+         PERCENTILE_CONT(0.5) WITHIN GROUP (ORDER BY o.total_amount) OVER () AS p50,
+         PERCENTILE_CONT(0.9) WITHIN GROUP (ORDER BY o.total_amount) OVER () AS p90
+  FROM dbo.orders o
+  WHERE o.status = 'COMPLETED' AND o.created_at >= :from AND o.created_at < :to
+  """, nativeQuery = true)
+    List<Object[]> completedOrderValuePercentiles(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query(value = """
+  SELECT CAST(o.created_at AS date) AS day, o.customer_id, o.total_amount
+  FROM dbo.orders o
+  WHERE o.status = 'COMPLETED' AND o.created_at >= :from AND o.created_at < :to
+  """, nativeQuery = true)
+    List<Object[]> findCompletedForSketch(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Backfill bộ đếm nhân viên: đơn tạo trong khoảng, hoặc kết thúc (COMPLETED/CANCELLED/REJECTED) trong khoảng
+    @Query(value = """
+  SELECT o.created_by_user_id, o.customer_id, o.shipper_user_id,
+         CASE WHEN o.address_id IS NULL THEN 0 ELSE 1 END AS delivery,
+         o.status, o.created_at, COALESCE(o.closed_at, o.updated_at) AS finished_at
+  FROM dbo.orders o
+  WHERE (o.created_at >= :from AND o.created_at < :to)
+     OR (o.status IN ('COMPLETED', 'CANCELLED', 'REJECTED')
+         AND COALESCE(o.closed_at, o.updated_at) >= :from AND COALESCE(o.closed_at, o.updated_at) < :to)
+  """, nativeQuery = true)
+    List<Object[]> findForStaffStats(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
@@ -2,7 +2,10 @@ package com.kopi.kopi.repository;
 
 import com.kopi.kopi.entity.ProductAddOn;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,6 +13,10 @@ import java.util.Optional;
 public interface ProductAddOnRepository extends JpaRepository<ProductAddOn, Integer> {
     List<ProductAddOn> findByProduct_ProductIdAndAvailableTrue(Integer productId);
     Optional<ProductAddOn> findByProduct_ProductIdAndAddOn_AddOnId(Integer productId, Integer addOnId);
+
+    // Add-on đang bán của nhiều sản phẩm trong một truy vấn (kèm AddOn để không lazy-load từng dòng)
+    @Query("select pa from ProductAddOn pa join fetch pa.addOn where pa.product.productId in :productIds and pa.available = true")
+    List<ProductAddOn> findAvailableByProductIds(@Param("productIds") Collection<Integer> productIds);
 }
 
 
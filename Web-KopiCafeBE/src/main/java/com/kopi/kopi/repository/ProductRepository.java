@@ -3,6 +3,11 @@ package com.kopi.kopi.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 import com.kopi.kopi.entity.Product;
 
@@ -13,4 +18,21 @@ public interface ProductRepository extends JpaRepository<Product, Integer> {
 	// Only active products
 	Page<Product> findByAvailableTrueAndNameContainingIgnoreCase(String name, Pageable pageable);
 	Page<Product> findByAvailableTrueAndCategory_CategoryIdAndNameContainingIgnoreCase(Integer categoryId, String name, Pageable pageable);
+	Page<Product> findByAvailableTrueAndProductIdIn(Collection<Integer> productIds, Pageable pageable);
+
+	// Loại các sản phẩm/danh mục đang ngoài khung giờ bán (AvailabilityService); chỉ dùng khi danh sách loại trừ không rỗng.
+	// LEFT JOIN: sản phẩm chưa có danh mục vẫn được trả về
+	@Query(value = "select p from Product p left join p.category c where p.available = true"
+			+ " and lower(p.name) like lower(concat('%', :#{escape(#name)}, '%')) escape :#{escapeCharacter()}"
+			+ " and p.productId not in :productIds and (c is null or c.categoryId not in :categoryIds)",
+			countQuery = "select count(p) from Product p left join p.category c where p.available = true"
+			+ " and lower(p.name) like lower(concat('%', :#{escape(#name)}, '%')) escape :#{escapeCharacter()}"
+			+ " and p.productId not in :productIds and (c is null or c.categoryId not in :categoryIds)")
+	Page<Product> findAvailableByNameExcluding(@Param("name") String name, @Param("productIds") Collection<Integer> productIds,
+			@Param("categoryIds") Collection<Integer> categoryIds, Pageable pageable);
+	Page<Product> findByAvailableTrueAndCategory_CategoryIdAndNameContainingIgnoreCaseAndProductIdNotIn(Integer categoryId, String name, Collection<Integer> productIds, Pageable pageable);
+
+	// Dữ liệu cho search index: (productId, categoryId, name, description) của sản phẩm đang bán
+	@Query("select p.productId, c.categoryId, p.name, p.description from Product p left join p.category c where p.available = true")
+	List<Object[]> findSearchRows();
 } 
\ No newline at end of file
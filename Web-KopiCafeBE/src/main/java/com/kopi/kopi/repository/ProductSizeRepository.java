@@ -2,7 +2,10 @@ package com.kopi.kopi.repository;
 
 import com.kopi.kopi.entity.ProductSize;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,6 +13,10 @@ import java.util.Optional;
 public interface ProductSizeRepository extends JpaRepository<ProductSize, Integer> {
     List<ProductSize> findByProduct_ProductIdAndAvailableTrue(Integer productId);
     Optional<ProductSize> findByProduct_ProductIdAndSize_SizeId(Integer productId, Integer sizeId);
+
+    // Size đang bán của nhiều sản phẩm trong một truy vấn (kèm Size để không lazy-load từng dòng)
+    @Query("select ps from ProductSize ps join fetch ps.size where ps.product.productId in :productIds and ps.available = true")
+    List<ProductSize> findAvailableByProductIds(@Param("productIds") Collection<Integer> productIds);
 }
 
 
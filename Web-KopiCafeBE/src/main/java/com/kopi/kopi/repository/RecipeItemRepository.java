@@ -0,0 +1,21 @@
+package com.kopi.kopi.repository;
+
+import com.kopi.kopi.entity.RecipeItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RecipeItemRepository extends JpaRepository<RecipeItem, Integer> {
+    List<RecipeItem> findByProductIdOrderBySizeIdAscInventoryItemIdAsc(Integer productId);
+
+    List<RecipeItem> findByAddOnIdOrderByInventoryItemIdAsc(Integer addOnId);
+
+    @Modifying
+    void deleteByProductId(Integer productId);
+
+    @Modifying
+    void deleteByAddOnId(Integer addOnId);
+}
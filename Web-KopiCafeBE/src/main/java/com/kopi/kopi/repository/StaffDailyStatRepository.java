@@ -0,0 +1,15 @@
+package com.kopi.kopi.repository;
+
+import com.kopi.kopi.entity.StaffDailyStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StaffDailyStatRepository extends JpaRepository<StaffDailyStat, Long> {
+    Optional<StaffDailyStat> findByUserIdAndStatDate(Integer userId, LocalDate statDate);
+    List<StaffDailyStat> findByStatDateBetween(LocalDate from, LocalDate to);
+}
@@ -3,6 +3,7 @@ package com.kopi.kopi.security;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Set;
 
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -22,6 +23,12 @@ import jakarta.servlet.http.HttpServletResponse;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
+	// Các kênh SSE: nhận thêm token scope sse qua ?access_token= (EventSource không gửi được header)
+	static final Set<String> STREAM_ROUTES = Set.of(
+		"/apiv1/notifications/stream",
+		"/apiv1/adminPanel/reports/summary/stream");
+	static final String STREAM_TOKEN_PARAM = "access_token";
+
 	private final JwtTokenProvider tokenProvider;
 	private final CustomUserDetailsService userDetailsService;
 
@@ -29,13 +36,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 		this.tokenProvider = tokenProvider;
 		this.userDetailsService = userDetailsService;
 	}
-    @Override
-    protected boolean shouldNotFilter(HttpServletRequest request) {
+    private static String path(HttpServletRequest request) {
         String uri = request.getRequestURI();        // ví dụ: /Kopi/apiv1/auth/forgotPass
         String ctx = request.getContextPath();       // "/Kopi"
         if (ctx != null && !ctx.isEmpty() && uri.startsWith(ctx)) {
             uri = uri.substring(ctx.length());       // còn: /apiv1/auth/forgotPass
         }
+        return uri;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = path(request);
         if ("OPTIONS".equalsIgnoreCase(request.getMethod())) return true;
 
         // CHỈ bỏ qua filter cho các endpoint công khai này:
@@ -53,11 +65,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             filterChain.doFilter(request, response);
             return;
         }
+        boolean streamRoute = "GET".equalsIgnoreCase(request.getMethod()) && STREAM_ROUTES.contains(path(request));
         String header = request.getHeader(HttpHeaders.AUTHORIZATION);
-		if (header != null && header.startsWith("Bearer ")) {
-			String token = header.substring(7);
-			if (tokenProvider.validateToken(token)) {
-				Claims claims = tokenProvider.parseClaims(token);
+        boolean fromHeader = header != null && header.startsWith("Bearer ");
+        String token = fromHeader ? header.substring(7)
+                : streamRoute ? request.getParameter(STREAM_TOKEN_PARAM) : null;
+		if (token != null && !token.isBlank()) {
+			Claims claims = tokenProvider.validateToken(token) ? tokenProvider.parseClaims(token) : null;
+			// Token SSE chỉ mở được kênh SSE; qua query thì chỉ nhận token SSE (không để lộ token đăng nhập trên URL)
+			boolean streamToken = claims != null && JwtTokenProvider.STREAM_SCOPE.equals(claims.get("scope"));
+			if (claims != null && (streamToken ? streamRoute && tokenProvider.acceptStreamConnect(claims) : fromHeader)) {
 				String subject = claims.getSubject();
 				Object roleClaim = claims.get("role");
 				Collection<? extends GrantedAuthority> authorities = Collections.emptyList();
@@ -1,9 +1,14 @@
 package com.kopi.kopi.security;
 
 import java.security.Key;
+import java.time.Clock;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -15,14 +20,38 @@ import io.jsonwebtoken.security.Keys;
 
 @Component
 public class JwtTokenProvider {
-	@Value("${app.jwt.secret}")
-	private String jwtSecret;
+	// Token riêng cho SSE: EventSource của trình duyệt không gửi được header Authorization, nên token đi qua query
+	public static final String STREAM_SCOPE = "sse";
 
-	@Value("${app.jwt.expiration-ms}")
-	private long jwtExpirationMs;
+	static final String CONNECT_BY = "connectBy";
 
-	@Value("${app.jwt.remember-expiration-ms}")
-	private long jwtRememberExpirationMs;
+	private final String jwtSecret;
+	private final long jwtExpirationMs;
+	private final long jwtRememberExpirationMs;
+	private final long streamExpirationMs;
+	private final long streamReconnectMs;
+	private final Clock clock;
+	// jti của token SSE đã mở kết nối -> hạn (ms): EventSource tự kết nối lại bằng đúng URL cũ
+	private final Map<String, Long> connectedStreams = new ConcurrentHashMap<>();
+
+	@Autowired
+	public JwtTokenProvider(@Value("${app.jwt.secret}") String jwtSecret,
+							@Value("${app.jwt.expiration-ms}") long jwtExpirationMs,
+							@Value("${app.jwt.remember-expiration-ms}") long jwtRememberExpirationMs,
+							@Value("${app.jwt.stream-expiration-ms:60000}") long streamExpirationMs,
+							@Value("${app.jwt.stream-reconnect-ms:43200000}") long streamReconnectMs) {
+		this(jwtSecret, jwtExpirationMs, jwtRememberExpirationMs, streamExpirationMs, streamReconnectMs, Clock.systemUTC());
+	}
+
+	JwtTokenProvider(String jwtSecret, long jwtExpirationMs, long jwtRememberExpirationMs,
+					 long streamExpirationMs, long streamReconnectMs, Clock clock) {
+		this.jwtSecret = jwtSecret;
+		this.jwtExpirationMs = jwtExpirationMs;
+		this.jwtRememberExpirationMs = jwtRememberExpirationMs;
+		this.streamExpirationMs = streamExpirationMs;
+		this.streamReconnectMs = Math.max(streamReconnectMs, streamExpirationMs);
+		this.clock = clock;
+	}
 
 	private Key getSigningKey() {
 		byte[] keyBytes = Decoders.BASE64.decode(java.util.Base64.getEncoder().encodeToString(jwtSecret.getBytes()));
@@ -30,7 +59,7 @@ public class JwtTokenProvider {
 	}
 
 	public String generateToken(String subject, int roleNumber, Integer userId, String fullName, String email, boolean rememberMe) {
-		long now = System.currentTimeMillis();
+		long now = clock.millis();
 		long exp = now + (rememberMe ? jwtRememberExpirationMs : jwtExpirationMs);
 
 		return Jwts.builder()
@@ -47,9 +76,59 @@ public class JwtTokenProvider {
 			.compact();
 	}
 
+	/**
+	 * Token SSE (?access_token=...), cấp từ token đăng nhập. Có claim scope = sse nên filter không nhận nó cho
+	 * các API khác. Lần kết nối đầu phải trong stream-expiration-ms; sau đó EventSource kết nối lại bằng
+	 * đúng URL này vẫn được nhận tới hết stream-reconnect-ms (không quá hạn của token đăng nhập).
+	 */
+	public String generateStreamToken(String accessToken) {
+		Claims claims = parseClaims(accessToken);
+		if (STREAM_SCOPE.equals(claims.get("scope"))) throw new IllegalArgumentException("Stream token cannot mint stream tokens");
+		long now = clock.millis();
+		long exp = now + streamReconnectMs;
+		if (claims.getExpiration() != null) exp = Math.min(exp, claims.getExpiration().getTime());
+		Map<String, Object> streamClaims = new HashMap<>();
+		streamClaims.put("scope", STREAM_SCOPE);
+		streamClaims.put(CONNECT_BY, Math.min(now + streamExpirationMs, exp));
+		// Không có role thì filter lấy quyền từ user
+		if (claims.get("role") != null) streamClaims.put("role", claims.get("role"));
+		return Jwts.builder()
+			.setSubject(claims.getSubject())
+			.setId(UUID.randomUUID().toString())
+			.addClaims(streamClaims)
+			.setIssuedAt(new Date(now))
+			.setExpiration(new Date(exp))
+			.signWith(getSigningKey(), SignatureAlgorithm.HS256)
+			.compact();
+	}
+
+	/**
+	 * Kiểm tra lúc mở kết nối SSE bằng token scope sse (claims đã qua validateToken): token chưa dùng phải
+	 * kết nối trước connectBy; token đã kết nối rồi được dùng lại (EventSource reconnect) tới khi hết hạn.
+	 */
+	public boolean acceptStreamConnect(Claims claims) {
+		long now = clock.millis();
+		connectedStreams.values().removeIf(exp -> exp <= now);
+		String id = claims.getId();
+		if (id == null || claims.getExpiration() == null) return false;
+		if (connectedStreams.containsKey(id)) return true;
+		Object connectBy = claims.get(CONNECT_BY);
+		if (!(connectBy instanceof Number n) || now > n.longValue()) return false;
+		connectedStreams.put(id, claims.getExpiration().getTime());
+		return true;
+	}
+
+	public long getStreamExpirationMs() {
+		return streamExpirationMs;
+	}
+
+	private Date now() {
+		return new Date(clock.millis());
+	}
+
 	public boolean validateToken(String token) {
 		try {
-			Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(token);
+			Jwts.parserBuilder().setSigningKey(getSigningKey()).setClock(this::now).build().parseClaimsJws(token);
 			return true;
 		} catch (Exception e) {
 			return false;
@@ -59,6 +138,7 @@ public class JwtTokenProvider {
 	public Claims parseClaims(String token) {
 		return Jwts.parserBuilder()
 			.setSigningKey(getSigningKey())
+			.setClock(this::now)
 			.build()
 			.parseClaimsJws(token)
 			.getBody();
@@ -102,6 +102,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/apiv1/tables/by-qr/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/apiv1/products/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/apiv1/categories/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/apiv1/images/**").permitAll()
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .requestMatchers("/oauth2/**", "/login/oauth2/**").permitAll()
                         .requestMatchers(org.springframework.http.HttpMethod.POST, "/apiv1/auth/force-change-password").authenticated()
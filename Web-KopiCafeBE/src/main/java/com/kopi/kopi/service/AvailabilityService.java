@@ -0,0 +1,27 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.entity.AvailabilityWindow;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface AvailabilityService {
+    /** Tra cứu O(1) trên trạng thái đã tính sẵn tại mốc gần nhất, không đánh giá lại khung giờ */
+    boolean isOrderable(Integer productId, Integer categoryId);
+
+    /** Sản phẩm đang ngoài khung giờ của chính nó (không gồm sản phẩm bị đóng theo danh mục) */
+    Set<Integer> closedProductIds();
+
+    Set<Integer> closedCategoryIds();
+
+    List<Map<String, Object>> windows();
+
+    Map<String, Object> create(AvailabilityWindow window);
+
+    Map<String, Object> update(Integer id, AvailabilityWindow window);
+
+    void delete(Integer id);
+
+    Map<String, Object> status();
+}
@@ -0,0 +1,13 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.CachedJson;
+
+import java.util.function.Supplier;
+
+public interface CatalogCacheService {
+    CachedJson page(String key, Supplier<Object> loader);
+    CachedJson detail(Integer productId, Supplier<Object> loader);
+    void evictProduct(Integer productId);
+    void evictPages();
+    void evictAll();
+}
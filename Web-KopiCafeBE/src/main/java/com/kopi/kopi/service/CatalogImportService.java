@@ -0,0 +1,15 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.CatalogImportResult;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface CatalogImportService {
+    /** Upsert sản phẩm + size + add-on từ .xlsx/.csv (cùng định dạng với export) */
+    CatalogImportResult importCatalog(MultipartFile file);
+
+    /** format = "xlsx" hoặc "csv" */
+    void export(String format, OutputStream out) throws IOException;
+}
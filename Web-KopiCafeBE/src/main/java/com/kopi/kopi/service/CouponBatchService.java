@@ -0,0 +1,25 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.CouponBatchStatus;
+import com.kopi.kopi.entity.enums.DiscountType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface CouponBatchService {
+    /** Tham số một đợt sinh mã dùng một lần; length = số ký tự ngẫu nhiên sau prefix (null = mặc định) */
+    record BatchRequest(int count, String prefix, Integer length, DiscountType discountType, BigDecimal discountValue,
+                        BigDecimal minOrderAmount, String description, LocalDateTime startsAt, LocalDateTime endsAt) {
+    }
+
+    /** Kiểm tra tham số rồi đưa job vào hàng đợi; tham số sai ném IllegalArgumentException */
+    CouponBatchStatus submit(BatchRequest request);
+
+    Optional<CouponBatchStatus> status(String batchId);
+
+    /** Stream CSV các mã của một đợt; trả về false nếu đợt không có mã nào */
+    boolean exportCsv(String batchId, OutputStream out) throws IOException;
+}
@@ -0,0 +1,16 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.entity.DiscountCode;
+
+import java.util.Optional;
+
+public interface CouponLookupService {
+    /**
+     * Tra mã giảm giá không phân biệt hoa thường. Mã chắc chắn không tồn tại bị loại ngay
+     * mà không truy vấn DB. Bản trả về là bản sao chỉ đọc, không dùng để ghi.
+     */
+    Optional<DiscountCode> find(String code);
+
+    /** Bỏ cache của một mã (vd. sau khi số lượt dùng thay đổi) */
+    void evict(String code);
+}
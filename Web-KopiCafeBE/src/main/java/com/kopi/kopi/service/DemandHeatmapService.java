@@ -0,0 +1,13 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.DemandHeatmap;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public interface DemandHeatmapService {
+    void record(LocalDateTime orderCreatedAt);
+    DemandHeatmap heatmap(LocalDate from, LocalDate to, int slotMinutes);
+    int rebuild(LocalDate from, LocalDate to);
+    void flush();
+}
@@ -0,0 +1,37 @@
+package com.kopi.kopi.service;
+
+import java.util.Map;
+import java.util.Set;
+
+public interface EmailDigestService {
+    /** Người nhận email: một địa chỉ (khách) hoặc mọi user ACTIVE thuộc các role (staff) */
+    record Recipient(String email, Set<String> roles) {
+        public static Recipient email(String email) {
+            return new Recipient(email.trim().toLowerCase(), Set.of());
+        }
+
+        public static Recipient roles(Set<String> roles) {
+            return new Recipient(null, Set.copyOf(roles));
+        }
+    }
+
+    /**
+     * Một lần đổi trạng thái đơn. headline là câu mô tả trạng thái mới (dùng nếu đây là trạng thái cuối cùng
+     * trong digest); các nhãn trạng thái trước đó được gộp thành dòng "Trước đó: ...".
+     */
+    record StatusChange(Integer orderId, String orderCode, String previousLabel, String status, String statusLabel,
+                        String headline, String footer) {
+    }
+
+    /**
+     * Gom vào digest của người nhận; email được gửi khi hết cửa sổ hoặc ngay khi đơn tới trạng thái kết thúc.
+     * Trong transaction thì chỉ gom sau khi commit.
+     */
+    void record(Recipient recipient, StatusChange change);
+
+    /** Gửi các digest đã đến hạn; trả về số email đã đưa đi */
+    int flushDue();
+
+    /** Số liệu: pending_recipients, events, emails, flushed_window, flushed_early */
+    Map<String, Object> stats();
+}
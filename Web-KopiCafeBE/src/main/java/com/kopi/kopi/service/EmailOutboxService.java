@@ -0,0 +1,22 @@
+package com.kopi.kopi.service;
+
+import java.util.Map;
+
+public interface EmailOutboxService {
+    /** Ghi email vào outbox (trong transaction của caller nếu có); sender nền sẽ gửi sau */
+    void enqueue(String to, String subject, String body);
+
+    /**
+     * Làn ưu tiên cho email chứa bí mật (OTP, mật khẩu tạm): gửi đồng bộ ngay, không ghi outbox,
+     * không chờ token bucket và không retry/backoff.
+     */
+    void sendNow(String to, String subject, String body);
+
+    /** Gửi một lượt các email đến hạn trong giới hạn tốc độ; trả về số email gửi thành công */
+    int drain();
+
+    /** Xoá dòng SENT / FAILED quá hạn giữ; trả về số dòng đã xoá */
+    int purge();
+
+    Map<String, Object> stats();
+}
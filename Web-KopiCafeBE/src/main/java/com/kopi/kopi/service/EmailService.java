@@ -2,4 +2,10 @@ package com.kopi.kopi.service;
 
 public interface EmailService {
     void send(String to, String subject, String text);
+
+    /**
+     * Gửi ngay qua SMTP, không qua outbox và không lưu nội dung: dùng cho OTP, mật khẩu tạm.
+     * Lỗi thì ném exception để caller tự xử lý.
+     */
+    void sendNow(String to, String subject, String text);
 }
@@ -0,0 +1,8 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.EventPriceTable;
+
+public interface EventPricingService {
+    /** Bảng giá khuyến mãi hiện hành; lấy một lần cho cả giỏ để mọi dòng dùng cùng một phiên bản */
+    EventPriceTable current();
+}
@@ -4,6 +4,12 @@ import java.util.Map;
 
 public interface IPromoService {
     Map<String, Object> list(Integer page, Integer limit, String available, String status, String searchByName);
+
+    /**
+     * Trang theo cursor: tối đa limit mục đứng sau cursor (null/rỗng = từ đầu) trong thứ tự hiển thị.
+     * meta gồm limit, hasMore, nextCursor; không tính tổng số trang.
+     */
+    Map<String, Object> listAfter(String cursor, Integer limit, String available, String status, String searchByName);
 }
 
 
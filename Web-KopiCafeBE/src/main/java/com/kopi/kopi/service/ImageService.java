@@ -0,0 +1,17 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.ImageFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Map;
+import java.util.Optional;
+
+public interface ImageService {
+    /** Lưu ảnh upload theo SHA-256 nội dung và lên lịch sinh các bản thu nhỏ; trả về URL bản full */
+    String store(MultipartFile file);
+
+    Optional<ImageFile> resolve(String hash, String variant);
+
+    /** URL thumb/card/full + srcset nếu imgUrl là ảnh do hệ thống lưu, ngược lại null */
+    Map<String, String> responsive(String imgUrl);
+}
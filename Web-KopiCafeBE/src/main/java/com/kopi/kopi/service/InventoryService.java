@@ -0,0 +1,27 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.entity.RecipeItem;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+public interface InventoryService {
+    List<Map<String, Object>> items();
+
+    Map<String, Object> createItem(String name, String unit, BigDecimal quantityOnHand, BigDecimal reorderLevel, String notes);
+
+    /** Nhập kho (change > 0) hoặc điều chỉnh tay; ghi inventory_log ngay, không qua lô */
+    Map<String, Object> adjust(Integer itemId, BigDecimal change, String reason, Integer userId);
+
+    List<Map<String, Object>> productRecipe(Integer productId);
+
+    List<Map<String, Object>> replaceProductRecipe(Integer productId, List<RecipeItem> rows);
+
+    List<Map<String, Object>> replaceAddOnRecipe(Integer addOnId, List<RecipeItem> rows);
+
+    /** Áp các dòng inventory_log chưa trừ (đơn COMPLETED) vào tồn kho theo lô; trả về số đơn đã áp */
+    int flush();
+
+    int pendingOrders();
+}
@@ -0,0 +1,13 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.LowStockItem;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface LowStockService {
+    List<LowStockItem> current();
+
+    /** Đánh giá lại ngưỡng chỉ cho các nguyên liệu vừa thay đổi, báo admin khi đổi trạng thái */
+    void evaluate(Collection<Integer> inventoryItemIds);
+}
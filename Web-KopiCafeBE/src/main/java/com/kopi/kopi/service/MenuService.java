@@ -1,9 +1,10 @@
 package com.kopi.kopi.service;
 
 import com.kopi.kopi.controller.MenuController;
+import com.kopi.kopi.dto.MenuSnapshot;
 import java.util.List;
 
 public interface MenuService {
     List<MenuController.MenuCategoryDto> getMenu();
+    MenuSnapshot snapshot();
 }
-
@@ -0,0 +1,41 @@
+package com.kopi.kopi.service;
+
+import java.util.Map;
+import java.util.Set;
+
+public interface NotificationDispatcher {
+    /**
+     * Một thông báo cần gửi: cho một user (userId + email) hoặc cho mọi user ACTIVE thuộc các role
+     * (danh sách người nhận được tra ở worker, không phải ở thread gọi). emailText null = không gửi email;
+     * message null = chỉ gửi email, không ghi thông báo trong app.
+     */
+    record Message(Integer userId, String email, Set<String> roles, Integer orderId, String title, String message,
+                   String type, String emailText) {
+        public static Message toUser(Integer userId, String email, Integer orderId, String title, String message,
+                                     String type, String emailText) {
+            return new Message(userId, email, Set.of(), orderId, title, message, type, emailText);
+        }
+
+        public static Message toRoles(Set<String> roles, Integer orderId, String title, String message,
+                                      String type, String emailText) {
+            return new Message(null, null, Set.copyOf(roles), orderId, title, message, type, emailText);
+        }
+
+        public static Message emailOnly(String email, String subject, String emailText) {
+            return new Message(null, email, Set.of(), null, subject, null, null, emailText);
+        }
+
+        public static Message emailOnlyToRoles(Set<String> roles, String subject, String emailText) {
+            return new Message(null, null, Set.copyOf(roles), null, subject, null, null, emailText);
+        }
+    }
+
+    /**
+     * Đưa vào hàng đợi, không bao giờ chặn. Trong transaction thì chỉ đưa vào sau khi commit.
+     * Trả về false nếu hàng đợi đầy và thông báo bị bỏ.
+     */
+    boolean dispatch(Message message);
+
+    /** Số liệu hàng đợi: queued, dropped, inserted, emails_sent, emails_failed, batches... */
+    Map<String, Object> stats();
+}
@@ -0,0 +1,63 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.NotificationFeedItem;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+public interface NotificationFeedService {
+    /** Người xem feed: thông báo theo role chỉ hiện với user có role đó và được tạo từ {@code since} (ngày tạo tài khoản) */
+    record Viewer(Integer userId, String role, LocalDateTime since) {
+    }
+
+    /**
+     * Vị trí trong feed (dòng cuối của trang trước). Thứ tự feed: created_at giảm dần, cùng thời điểm thì
+     * thông báo riêng trước thông báo theo role, rồi id giảm dần.
+     */
+    record Cursor(LocalDateTime createdAt, String scope, int sourceId) {
+        public static Cursor of(NotificationFeedItem item) {
+            return new Cursor(item.getCreatedAt(), item.getScope(), item.getSourceId());
+        }
+
+        /** Chuỗi mờ trả cho client (base64url của "createdAt|scope|id") */
+        public String encode() {
+            String raw = createdAt + "|" + scope + "|" + sourceId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Cursor decode(String token) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+                if (parts.length != 3) throw new IllegalArgumentException("invalid cursor");
+                if (!NotificationFeedItem.PERSONAL.equals(parts[1]) && !NotificationFeedItem.BROADCAST.equals(parts[1])) {
+                    throw new IllegalArgumentException("invalid cursor");
+                }
+                return new Cursor(LocalDateTime.parse(parts[0]), parts[1], Integer.parseInt(parts[2]));
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("invalid cursor");
+            }
+        }
+    }
+
+    /** Tối đa {@code limit} dòng sau {@code after} (null = từ đầu), gộp thông báo riêng và theo role */
+    List<NotificationFeedItem> page(Viewer viewer, Cursor after, int limit, boolean unreadOnly);
+
+    /** Tổng số dòng trong feed (riêng + theo role chưa bị ẩn) */
+    long count(Viewer viewer);
+
+    long unreadBroadcasts(Viewer viewer);
+
+    Optional<NotificationFeedItem> findBroadcast(Viewer viewer, int broadcastId);
+
+    /** Đánh dấu đã đọc; trả về true nếu trước đó chưa đọc */
+    boolean markBroadcastRead(Viewer viewer, int broadcastId);
+
+    /** Dời watermark lên broadcast mới nhất của role và dọn các receipt đã nằm dưới watermark; trả về số vừa chuyển sang đã đọc */
+    long markAllBroadcastsRead(Viewer viewer);
+
+    /** Ẩn (xoá) thông báo theo role với riêng user này; trả về true nếu trước đó chưa đọc */
+    boolean hideBroadcast(Viewer viewer, int broadcastId);
+}
@@ -0,0 +1,8 @@
+package com.kopi.kopi.service;
+
+import java.util.Map;
+
+public interface NotificationRetentionService {
+    /** Xoá theo từng đợt nhỏ thông báo đã đọc / broadcast quá hạn giữ; trả về số dòng đã xoá theo bảng */
+    Map<String, Object> purge();
+}
@@ -0,0 +1,30 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.service.NotificationFeedService.Viewer;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+
+public interface NotificationStreamService {
+    /** Kênh SSE riêng của user: gửi "unread" ngay khi mở, sau đó "notification" + "unread" mỗi khi có thay đổi */
+    SseEmitter subscribe(Viewer viewer);
+
+    /**
+     * Số thông báo chưa đọc (riêng + theo role), lấy từ bộ đếm trong bộ nhớ
+     * (chỉ đếm lại từ DB khi chưa có hoặc đã quá hạn đối soát)
+     */
+    long unreadCount(Viewer viewer);
+
+    /** Thông báo riêng chưa đọc vừa được ghi (đã commit) cho user */
+    void onCreated(Integer userId, Map<String, Object> notification);
+
+    /** Thông báo theo role vừa được ghi (đã commit) */
+    void onBroadcast(String role, Map<String, Object> notification);
+
+    /** {@code count} thông báo của user không còn ở trạng thái chưa đọc (đánh dấu đã đọc hoặc bị xoá) */
+    void onRead(Integer userId, long count);
+
+    void onAllRead(Integer userId);
+
+    Map<String, Object> stats();
+}
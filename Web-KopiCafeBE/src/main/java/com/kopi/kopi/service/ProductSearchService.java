@@ -0,0 +1,15 @@
+package com.kopi.kopi.service;
+
+import java.util.List;
+import java.util.Set;
+
+public interface ProductSearchService {
+    // productId đã xếp hạng (liên quan nhất trước), chỉ sản phẩm đang bán; categoryId null/<=0 = mọi danh mục
+    default List<Integer> search(String query, Integer categoryId, int limit) {
+        return search(query, categoryId, limit, Set.of(), Set.of());
+    }
+
+    // Bỏ sản phẩm/danh mục đang ngoài khung giờ bán ngay khi xếp hạng để tổng số trang vẫn đúng
+    List<Integer> search(String query, Integer categoryId, int limit, Set<Integer> excludedProducts, Set<Integer> excludedCategories);
+    void rebuild();
+}
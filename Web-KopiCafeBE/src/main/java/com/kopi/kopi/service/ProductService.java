@@ -1,5 +1,6 @@
 package com.kopi.kopi.service;
 
+import com.kopi.kopi.dto.CachedJson;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -8,7 +9,12 @@ import java.util.Map;
 
 public interface ProductService {
     Map<String, Object> list(Integer categoryId, String orderBy, String sort, String searchByName, Integer limit, Integer page);
+    // expand: "sizes", "addons" (phân cách bằng dấu phẩy) để nhúng luôn size/add-on vào từng sản phẩm
+    Map<String, Object> list(Integer categoryId, String orderBy, String sort, String searchByName, Integer limit, Integer page, String expand);
     Map<String, Object> detail(Integer id);
+    // Bản đã serialize + ETag, đi qua catalog cache
+    CachedJson listJson(Integer categoryId, String orderBy, String sort, String searchByName, Integer limit, Integer page, String expand);
+    CachedJson detailJson(Integer id);
     ResponseEntity<?> create(MultipartFile image, String imgUrl, String name, Integer categoryId, String desc, BigDecimal price);
     ResponseEntity<?> update(Integer id, MultipartFile image, String imgUrl, String name, Integer categoryId, String desc, BigDecimal price);
     ResponseEntity<?> delete(Integer id);
@@ -0,0 +1,18 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.ProductCompanion;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface RecommendationService {
+    /** Top-k sản phẩm hay mua cùng giỏ (không gồm chính các sản phẩm trong giỏ); rỗng nếu ma trận chưa dựng xong */
+    List<ProductCompanion> companions(Collection<Integer> cartProductIds, int limit);
+
+    /** Như companions nhưng kèm tên/giá/ảnh, bỏ sản phẩm ngừng bán hoặc đang ngoài khung giờ bán */
+    List<Map<String, Object>> companionViews(Collection<Integer> cartProductIds, int limit);
+
+    /** Dựng lại ma trận từ lịch sử đơn COMPLETED trong một lượt đọc */
+    void rebuild();
+}
@@ -0,0 +1,22 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.ReportJobStatus;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface ReportJobService {
+    enum JobType { revenue, export }
+
+    /**
+     * Đưa một báo cáo vào hàng đợi. Trả về job đang chạy nếu đã có yêu cầu giống hệt,
+     * hoặc job đã xong ngay nếu kết quả còn trong cache đĩa.
+     */
+    ReportJobStatus submit(JobType type, ReportService.Granularity g, LocalDate from, LocalDate to, int buckets);
+
+    Optional<ReportJobStatus> status(String jobId);
+
+    /** File kết quả của job đã DONE, rỗng nếu job chưa xong / không tồn tại. */
+    Optional<Path> result(String jobId);
+}
@@ -9,5 +9,6 @@ public interface ReportService {
     enum Granularity { daily, weekly, monthly, quarterly, yearly }
     List<RevenuePoint> revenue(Granularity g, LocalDate from, LocalDate to, int buckets);
     byte[] exportRevenueToExcel(Granularity g, LocalDate from, LocalDate to, int buckets);
+    byte[] writeRevenueExcel(Granularity g, LocalDate from, LocalDate to, List<RevenuePoint> points);
     DashboardSummary summary();
 }
@@ -0,0 +1,12 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.RevenueTicker;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+
+public interface RevenueTickerService {
+    SseEmitter subscribe();
+    RevenueTicker current();
+    void recordPaid(Integer orderId, BigDecimal amount);
+}
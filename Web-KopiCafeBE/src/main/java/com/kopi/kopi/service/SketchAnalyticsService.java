@@ -0,0 +1,13 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.SketchSummary;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface SketchAnalyticsService {
+    void recordCompleted(LocalDate day, Integer customerId, BigDecimal orderValue);
+    SketchSummary summary(LocalDate from, LocalDate to, boolean compareExact);
+    int rebuild(LocalDate from, LocalDate to);
+    void flush();
+}
@@ -0,0 +1,13 @@
+package com.kopi.kopi.service;
+
+import com.kopi.kopi.dto.StaffPerformance;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface StaffPerformanceService {
+    List<StaffPerformance> report(LocalDate from, LocalDate to);
+    int[] bucketUpperMinutes();
+    int rebuild(LocalDate from, LocalDate to);
+    void flush();
+}
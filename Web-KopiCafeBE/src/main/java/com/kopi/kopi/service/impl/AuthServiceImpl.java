@@ -141,7 +141,8 @@ public class AuthServiceImpl implements IAuthService {
 
         try {
             // 🟨 FIX THỨ TỰ THAM SỐ: to, subject, body
-            emailService.send(user.getEmail(), subject, content);
+            // OTP sống ngắn: gửi ngay, không qua outbox (không chờ rate limit, không lưu mã vào DB)
+            emailService.sendNow(user.getEmail(), subject, content);
         } catch (Exception ex) {
             // Không để lỗi gửi mail làm vỡ flow đăng ký; log cảnh báo để dev kiểm tra
             org.slf4j.LoggerFactory.getLogger(getClass())
@@ -0,0 +1,351 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.AvailabilityWindow;
+import com.kopi.kopi.event.CatalogChangedEvent;
+import com.kopi.kopi.repository.AvailabilityWindowRepository;
+import com.kopi.kopi.repository.CategoryRepository;
+import com.kopi.kopi.repository.ProductRepository;
+import com.kopi.kopi.service.AvailabilityService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Khung giờ bán theo sản phẩm/danh mục được biên dịch thành các đoạn [bắt đầu, kết thúc) theo phút
+ * cho {@code horizonDays} ngày tới, kèm danh sách mốc thay đổi đã sắp xếp. Trạng thái "đang đóng"
+ * chỉ tính lại đúng tại mốc kế tiếp (TaskScheduler), rồi phát CatalogChangedEvent.all() để cache
+ * trang sản phẩm, menu snapshot và search index dựng lại; mỗi request chỉ tra một Set.
+ */
+@Service
+public class AvailabilityServiceImpl implements AvailabilityService {
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityServiceImpl.class);
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    static final int ALL_DAYS = 127;
+
+    private final AvailabilityWindowRepository windowRepository;
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TaskScheduler scheduler;
+    private final Clock clock;
+    private final int horizonDays;
+
+    private record State(Index index, Set<Integer> closedProducts, Set<Integer> closedCategories, LocalDateTime nextChange) {
+    }
+
+    private volatile State state;
+    private ScheduledFuture<?> pending;
+
+    @Autowired
+    public AvailabilityServiceImpl(AvailabilityWindowRepository windowRepository, ProductRepository productRepository,
+                                   CategoryRepository categoryRepository, ApplicationEventPublisher eventPublisher,
+                                   TaskScheduler scheduler,
+                                   @Value("${app.availability.horizon-days:7}") int horizonDays) {
+        this(windowRepository, productRepository, categoryRepository, eventPublisher, scheduler, Clock.system(ZONE), horizonDays);
+    }
+
+    AvailabilityServiceImpl(AvailabilityWindowRepository windowRepository, ProductRepository productRepository,
+                            CategoryRepository categoryRepository, ApplicationEventPublisher eventPublisher,
+                            TaskScheduler scheduler, Clock clock, int horizonDays) {
+        this.windowRepository = windowRepository;
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.eventPublisher = eventPublisher;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.horizonDays = Math.max(horizonDays, 1);
+    }
+
+    // Các đoạn đã gộp của từng sản phẩm/danh mục, dạng phẳng [s0, e0, s1, e1, ...] theo phút giờ địa phương
+    static final class Index {
+        final long until;
+        final Map<Integer, long[]> products;
+        final Map<Integer, long[]> categories;
+        final long[] boundaries;
+
+        Index(long until, Map<Integer, long[]> products, Map<Integer, long[]> categories, long[] boundaries) {
+            this.until = until;
+            this.products = products;
+            this.categories = categories;
+            this.boundaries = boundaries;
+        }
+
+        static long minute(LocalDateTime t) {
+            return t.toEpochSecond(ZoneOffset.UTC) / 60;
+        }
+
+        static LocalDateTime time(long minute) {
+            return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+        }
+
+        static boolean open(long[] intervals, long t) {
+            int lo = 0, hi = intervals.length / 2 - 1, hit = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (intervals[2 * mid] <= t) {
+                    hit = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return hit >= 0 && t < intervals[2 * hit + 1];
+        }
+
+        static Set<Integer> closed(Map<Integer, long[]> targets, long t) {
+            Set<Integer> out = new HashSet<>();
+            targets.forEach((id, intervals) -> {
+                if (!open(intervals, t)) out.add(id);
+            });
+            return Set.copyOf(out);
+        }
+
+        long nextBoundary(long t) {
+            int i = Arrays.binarySearch(boundaries, t + 1);
+            if (i < 0) i = -i - 1;
+            return i < boundaries.length ? Math.min(boundaries[i], until) : until;
+        }
+    }
+
+    static Index compile(List<AvailabilityWindow> windows, LocalDate from, int days) {
+        LocalDate to = from.plusDays(days);
+        Map<Integer, List<long[]>> products = new HashMap<>();
+        Map<Integer, List<long[]>> categories = new HashMap<>();
+        for (AvailabilityWindow w : windows) {
+            boolean byProduct = w.getProductId() != null;
+            Integer id = byProduct ? w.getProductId() : w.getCategoryId();
+            if (id == null) continue;
+            // Có khung mà không trúng ngày nào trong tầm nhìn (hết mùa) vẫn phải ghi nhận là đóng
+            List<long[]> list = (byProduct ? products : categories).computeIfAbsent(id, k -> new ArrayList<>());
+            int mask = w.getDaysMask() == null || w.getDaysMask() == 0 ? ALL_DAYS : w.getDaysMask();
+            LocalTime start = w.getStartTime() != null ? w.getStartTime() : LocalTime.MIDNIGHT;
+            // Bắt đầu từ hôm trước để lấy phần khung chạy qua nửa đêm
+            for (LocalDate d = from.minusDays(1); d.isBefore(to); d = d.plusDays(1)) {
+                if (w.getStartsOn() != null && d.isBefore(w.getStartsOn())) continue;
+                if (w.getEndsOn() != null && d.isAfter(w.getEndsOn())) continue;
+                if ((mask & (1 << (d.getDayOfWeek().getValue() - 1))) == 0) continue;
+                LocalDateTime end;
+                if (w.getEndTime() == null) end = d.plusDays(1).atStartOfDay();
+                else if (!w.getEndTime().isAfter(start)) end = d.plusDays(1).atTime(w.getEndTime());
+                else end = d.atTime(w.getEndTime());
+                list.add(new long[]{Index.minute(d.atTime(start)), Index.minute(end)});
+            }
+        }
+        long until = Index.minute(to.atStartOfDay());
+        TreeSet<Long> boundaries = new TreeSet<>();
+        boundaries.add(until);
+        Map<Integer, long[]> p = merge(products, boundaries, until);
+        Map<Integer, long[]> c = merge(categories, boundaries, until);
+        return new Index(until, p, c, boundaries.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private static Map<Integer, long[]> merge(Map<Integer, List<long[]>> targets, TreeSet<Long> boundaries, long until) {
+        Map<Integer, long[]> out = new HashMap<>();
+        targets.forEach((id, list) -> {
+            list.sort(Comparator.comparingLong(iv -> iv[0]));
+            long[] flat = new long[list.size() * 2];
+            int n = 0;
+            for (long[] iv : list) {
+                if (n > 0 && iv[0] <= flat[n - 1]) {
+                    flat[n - 1] = Math.max(flat[n - 1], iv[1]);
+                } else {
+                    flat[n++] = iv[0];
+                    flat[n++] = iv[1];
+                }
+            }
+            long[] merged = Arrays.copyOf(flat, n);
+            for (long b : merged) if (b <= until) boundaries.add(b);
+            out.put(id, merged);
+        });
+        return out;
+    }
+
+    @Override
+    public boolean isOrderable(Integer productId, Integer categoryId) {
+        State s = current();
+        return (productId == null || !s.closedProducts().contains(productId))
+                && (categoryId == null || !s.closedCategories().contains(categoryId));
+    }
+
+    @Override
+    public Set<Integer> closedProductIds() {
+        return current().closedProducts();
+    }
+
+    @Override
+    public Set<Integer> closedCategoryIds() {
+        return current().closedCategories();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        tick();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (pending != null) pending.cancel(false);
+        pending = null;
+    }
+
+    // Chạy tại mỗi mốc: lỗi DB thì thử lại sau một phút, giữ nguyên trạng thái cũ
+    synchronized void tick() {
+        try {
+            advance(false);
+        } catch (Exception ex) {
+            log.warn("Availability refresh failed: {}", ex.getMessage());
+            schedule(LocalDateTime.now(clock).plusMinutes(1));
+        }
+    }
+
+    private State current() {
+        State s = state;
+        if (s != null) return s;
+        synchronized (this) {
+            if (state == null) advance(false);
+            return state;
+        }
+    }
+
+    private synchronized void advance(boolean reload) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        long t = Index.minute(now);
+        State prev = state;
+        Index index = prev != null && !reload && t < prev.index().until
+                ? prev.index()
+                : compile(windowRepository.findAll(), now.toLocalDate(), horizonDays);
+        Set<Integer> products = Index.closed(index.products, t);
+        Set<Integer> categories = Index.closed(index.categories, t);
+        LocalDateTime next = Index.time(index.nextBoundary(t));
+        state = new State(index, products, categories, next);
+        if (prev != null && (!prev.closedProducts().equals(products) || !prev.closedCategories().equals(categories))) {
+            log.info("Availability changed: {} products, {} categories closed until {}", products.size(), categories.size(), next);
+            eventPublisher.publishEvent(CatalogChangedEvent.all());
+        }
+        schedule(next);
+    }
+
+    private void schedule(LocalDateTime at) {
+        if (pending != null) pending.cancel(false);
+        if (scheduler == null) return;
+        pending = scheduler.schedule(this::tick, at.atZone(clock.getZone()).toInstant());
+    }
+
+    @Override
+    public List<Map<String, Object>> windows() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (AvailabilityWindow w : windowRepository.findAllByOrderByWindowIdAsc()) out.add(view(w));
+        return out;
+    }
+
+    @Override
+    public Map<String, Object> create(AvailabilityWindow window) {
+        validate(window);
+        window.setWindowId(null);
+        window.setCreatedAt(LocalDateTime.now(clock));
+        AvailabilityWindow saved = windowRepository.save(window);
+        advance(true);
+        return view(saved);
+    }
+
+    @Override
+    public Map<String, Object> update(Integer id, AvailabilityWindow window) {
+        AvailabilityWindow w = windowRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy khung giờ " + id));
+        w.setProductId(window.getProductId());
+        w.setCategoryId(window.getCategoryId());
+        w.setDaysMask(window.getDaysMask());
+        w.setStartTime(window.getStartTime());
+        w.setEndTime(window.getEndTime());
+        w.setStartsOn(window.getStartsOn());
+        w.setEndsOn(window.getEndsOn());
+        w.setNote(window.getNote());
+        validate(w);
+        AvailabilityWindow saved = windowRepository.save(w);
+        advance(true);
+        return view(saved);
+    }
+
+    @Override
+    public void delete(Integer id) {
+        if (!windowRepository.existsById(id)) throw new IllegalArgumentException("Không tìm thấy khung giờ " + id);
+        windowRepository.deleteById(id);
+        advance(true);
+    }
+
+    @Override
+    public Map<String, Object> status() {
+        State s = current();
+        Map<String, Object> m = new HashMap<>();
+        m.put("closed_product_ids", new TreeSet<>(s.closedProducts()));
+        m.put("closed_category_ids", new TreeSet<>(s.closedCategories()));
+        m.put("next_change", s.nextChange());
+        return m;
+    }
+
+    private void validate(AvailabilityWindow w) {
+        if ((w.getProductId() == null) == (w.getCategoryId() == null)) {
+            throw new IllegalArgumentException("Cần đúng một trong product_id hoặc category_id");
+        }
+        if (w.getProductId() != null && !productRepository.existsById(w.getProductId())) {
+            throw new IllegalArgumentException("Không tìm thấy sản phẩm " + w.getProductId());
+        }
+        if (w.getCategoryId() != null && !categoryRepository.existsById(w.getCategoryId())) {
+            throw new IllegalArgumentException("Không tìm thấy danh mục " + w.getCategoryId());
+        }
+        if (w.getDaysMask() == null) w.setDaysMask(ALL_DAYS);
+        if (w.getDaysMask() < 1 || w.getDaysMask() > ALL_DAYS) {
+            throw new IllegalArgumentException("days_mask phải trong khoảng 1..127");
+        }
+        if (w.getStartTime() != null && w.getStartTime().equals(w.getEndTime())) {
+            throw new IllegalArgumentException("start_time và end_time không được trùng nhau");
+        }
+        if (w.getStartsOn() != null && w.getEndsOn() != null && w.getStartsOn().isAfter(w.getEndsOn())) {
+            throw new IllegalArgumentException("starts_on phải trước ends_on");
+        }
+    }
+
+    private static Map<String, Object> view(AvailabilityWindow w) {
+        List<String> days = new ArrayList<>();
+        int mask = w.getDaysMask() == null ? ALL_DAYS : w.getDaysMask();
+        for (DayOfWeek d : DayOfWeek.values()) {
+            if ((mask & (1 << (d.getValue() - 1))) != 0) days.add(d.name().substring(0, 3));
+        }
+        Map<String, Object> m = new HashMap<>();
+        m.put("id", w.getWindowId());
+        m.put("product_id", w.getProductId());
+        m.put("category_id", w.getCategoryId());
+        m.put("days", days);
+        m.put("start_time", w.getStartTime());
+        m.put("end_time", w.getEndTime());
+        m.put("starts_on", w.getStartsOn());
+        m.put("ends_on", w.getEndsOn());
+        m.put("note", w.getNote());
+        return m;
+    }
+}
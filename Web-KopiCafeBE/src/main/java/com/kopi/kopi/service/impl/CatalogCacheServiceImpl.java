@@ -0,0 +1,140 @@
+package com.kopi.kopi.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kopi.kopi.dto.CachedJson;
+import com.kopi.kopi.event.CatalogChangedEvent;
+import com.kopi.kopi.event.OrderSnapshot;
+import com.kopi.kopi.event.OrderStatusChangedEvent;
+import com.kopi.kopi.service.CatalogCacheService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache read-through cho menu: mỗi trang danh sách / chi tiết sản phẩm giữ sẵn JSON đã serialize
+ * và ETag. Hai vùng LRU có giới hạn số entry riêng.
+ * - Đổi 1 sản phẩm: xoá chi tiết của sản phẩm đó + mọi trang danh sách (thứ tự/lọc có thể đổi).
+ * - Tồn kho bị trừ khi đơn COMPLETED cũng là thay đổi (danh sách có "stock").
+ */
+@Service
+public class CatalogCacheServiceImpl implements CatalogCacheService {
+
+    private final ObjectMapper objectMapper;
+    private final Lru<String> pages;
+    private final Lru<Integer> details;
+
+    // Tăng mỗi lần invalidate; kết quả load bắt đầu trước đó sẽ không được ghi vào cache
+    private final AtomicLong generation = new AtomicLong();
+
+    public CatalogCacheServiceImpl(ObjectMapper objectMapper,
+                                   @Value("${app.catalog.cache.max-pages:500}") int maxPages,
+                                   @Value("${app.catalog.cache.max-details:2000}") int maxDetails) {
+        this.objectMapper = objectMapper;
+        this.pages = new Lru<>(maxPages);
+        this.details = new Lru<>(maxDetails);
+    }
+
+    static final class Lru<K> extends LinkedHashMap<K, CachedJson> {
+        private final int max;
+
+        Lru(int max) {
+            super(64, 0.75f, true);
+            this.max = Math.max(max, 1);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, CachedJson> eldest) {
+            return size() > max;
+        }
+    }
+
+    @Override
+    public CachedJson page(String key, Supplier<Object> loader) {
+        return getOrLoad(pages, key, loader);
+    }
+
+    @Override
+    public CachedJson detail(Integer productId, Supplier<Object> loader) {
+        return getOrLoad(details, productId, loader);
+    }
+
+    private <K> CachedJson getOrLoad(Lru<K> lru, K key, Supplier<Object> loader) {
+        synchronized (lru) {
+            CachedJson hit = lru.get(key);
+            if (hit != null) return hit;
+        }
+        long gen = generation.get();
+        CachedJson loaded = toJson(loader.get());
+        synchronized (lru) {
+            if (generation.get() == gen) lru.put(key, loaded);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void evictProduct(Integer productId) {
+        generation.incrementAndGet();
+        synchronized (details) {
+            details.remove(productId);
+        }
+        synchronized (pages) {
+            pages.clear();
+        }
+    }
+
+    @Override
+    public void evictPages() {
+        generation.incrementAndGet();
+        synchronized (pages) {
+            pages.clear();
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        generation.incrementAndGet();
+        synchronized (details) {
+            details.clear();
+        }
+        synchronized (pages) {
+            pages.clear();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.productIds() == null) {
+            evictAll();
+        } else {
+            event.productIds().forEach(this::evictProduct);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (!event.becameCompleted() || event.order() == null) return;
+        for (OrderSnapshot.Line line : event.order().lines()) {
+            if (line.productId() != null) evictProduct(line.productId());
+        }
+    }
+
+    private CachedJson toJson(Object value) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(value);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return new CachedJson(body, "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"");
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize catalog response", ex);
+        } catch (java.security.NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
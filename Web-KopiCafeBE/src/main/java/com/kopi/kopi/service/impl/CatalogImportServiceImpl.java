@@ -0,0 +1,659 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.CatalogImportResult;
+import com.kopi.kopi.entity.AddOn;
+import com.kopi.kopi.entity.Category;
+import com.kopi.kopi.entity.Size;
+import com.kopi.kopi.event.CatalogChangedEvent;
+import com.kopi.kopi.repository.AddOnRepository;
+import com.kopi.kopi.repository.CategoryRepository;
+import com.kopi.kopi.repository.SizeRepository;
+import com.kopi.kopi.service.CatalogImportService;
+import com.kopi.kopi.util.SheetRowReader;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Import/export menu hàng loạt. Một dòng = một sản phẩm, cột:
+ * id, sku, name, category, price, available, stock, img, description, sizes, addons
+ * - sizes: "S:-5000;M:0;L:10000" (mã hoặc tên size : phần cộng thêm vào giá gốc)
+ * - addons: "Trân châu:5000;Shot espresso:10000" (tên add-on : giá)
+ * Khớp sản phẩm có sẵn theo id, rồi sku, rồi (danh mục, tên). Ô trống = giữ giá trị cũ;
+ * có cột sizes/addons thì thay toàn bộ size/add-on của sản phẩm đó (ô trống = không còn size nào).
+ * File được đọc stream, ghi theo từng chunk trong một transaction bằng JDBC batch (kể cả size/add-on mới);
+ * chunk lỗi thì được ghi lại từng dòng một, nên chỉ dòng hỏng bị báo lỗi, các dòng khác vẫn được ghi.
+ */
+@Service
+public class CatalogImportServiceImpl implements CatalogImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogImportServiceImpl.class);
+
+    static final List<String> COLUMNS = List.of("id", "sku", "name", "category", "price", "available", "stock",
+            "img", "description", "sizes", "addons");
+    private static final Map<String, String> ALIASES = Map.of(
+            "product_id", "id", "category_name", "category", "is_available", "available", "stock_qty", "stock",
+            "img_url", "img", "desc", "description", "add_ons", "addons");
+
+    static final String SELECT_PRODUCTS = "SELECT product_id, sku, category_id, name FROM dbo.products";
+    static final String UPDATE_PRODUCT = "UPDATE dbo.products SET name = ?, category_id = ?, price = ?, sku = COALESCE(?, sku), "
+            + "is_available = COALESCE(?, is_available), stock_qty = COALESCE(?, stock_qty), img_url = COALESCE(?, img_url), "
+            + "description = COALESCE(?, description), updated_at = ? WHERE product_id = ?";
+    static final String INSERT_PRODUCT_PREFIX = "INSERT INTO dbo.products (category_id, name, img_url, description, sku, price, "
+            + "is_available, stock_qty, created_at, updated_at) OUTPUT INSERTED.product_id, INSERTED.sku, INSERTED.category_id, INSERTED.name VALUES ";
+    static final String DELETE_SIZES = "DELETE FROM dbo.product_sizes WHERE product_id = ?";
+    static final String INSERT_SIZE = "INSERT INTO dbo.product_sizes (product_id, size_id, price, is_available) VALUES (?, ?, ?, 1)";
+    static final String DELETE_ADD_ONS = "DELETE FROM dbo.product_add_ons WHERE product_id = ?";
+    static final String INSERT_ADD_ON = "INSERT INTO dbo.product_add_ons (product_id, add_on_id, price, is_available) VALUES (?, ?, ?, 1)";
+
+    // 10 tham số mỗi dòng, SQL Server giới hạn ~2100 tham số mỗi câu lệnh
+    private static final int INSERT_GROUP = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final CategoryRepository categoryRepository;
+    private final SizeRepository sizeRepository;
+    private final AddOnRepository addOnRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public CatalogImportServiceImpl(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    CategoryRepository categoryRepository,
+                                    SizeRepository sizeRepository,
+                                    AddOnRepository addOnRepository,
+                                    ApplicationEventPublisher eventPublisher,
+                                    @Value("${app.catalog.import.chunk-size:1000}") int chunkSize,
+                                    @Value("${app.catalog.import.max-errors:1000}") int maxErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.categoryRepository = categoryRepository;
+        this.sizeRepository = sizeRepository;
+        this.addOnRepository = addOnRepository;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.maxErrors = Math.max(maxErrors, 1);
+    }
+
+    record Priced(String key, BigDecimal price) {
+    }
+
+    record ImportRow(int row, Integer id, String sku, String name, Integer categoryId, BigDecimal price, Boolean available,
+                     Integer stock, String img, String description, List<Priced> sizes, List<Priced> addOns) {
+    }
+
+    record Target(ImportRow row, Integer existingId) {
+    }
+
+    // Tra cứu dựng một lần mỗi lần import: danh mục, size, add-on, khoá của sản phẩm có sẵn
+    static final class Context {
+        final Map<String, Integer> categoriesByName = new HashMap<>();
+        final Set<Integer> categoryIds = new HashSet<>();
+        final Map<String, Integer> sizes = new HashMap<>();
+        final Map<String, Integer> addOns = new HashMap<>();
+        int nextSizeOrder;
+        int nextAddOnOrder;
+        final Set<Integer> productIds = new HashSet<>();
+        final Map<String, Integer> productsBySku = new HashMap<>();
+        final Map<String, Integer> productsByName = new HashMap<>();
+
+        void addProduct(Integer id, String sku, Integer categoryId, String name) {
+            productIds.add(id);
+            if (sku != null && !sku.isBlank()) productsBySku.put(norm(sku), id);
+            if (name != null) productsByName.put(nameKey(categoryId, name), id);
+        }
+    }
+
+    static String norm(String s) {
+        return s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static String nameKey(Integer categoryId, String name) {
+        return categoryId + "|" + norm(name);
+    }
+
+    static final class Header {
+        final Map<String, Integer> index = new HashMap<>();
+
+        Header(List<String> cells) {
+            for (int i = 0; i < cells.size(); i++) {
+                String name = norm(cells.get(i));
+                index.putIfAbsent(ALIASES.getOrDefault(name, name), i);
+            }
+            if (!has("name") || !has("price") || (!has("category") && !has("category_id"))) {
+                throw new IllegalArgumentException("Thiếu cột bắt buộc: name, price, category (hoặc category_id)");
+            }
+        }
+
+        boolean has(String column) {
+            return index.containsKey(column);
+        }
+
+        String get(List<String> cells, String column) {
+            Integer i = index.get(column);
+            if (i == null || i >= cells.size()) return null;
+            String v = cells.get(i).trim();
+            return v.isEmpty() ? null : v;
+        }
+    }
+
+    @Override
+    public CatalogImportResult importCatalog(MultipartFile file) {
+        if (file == null || file.isEmpty()) throw new IllegalArgumentException("File rỗng");
+        String fileName = file.getOriginalFilename();
+        long started = System.nanoTime();
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile("catalog-import-", ".tmp");
+            file.transferTo(tmp);
+            Run run = new Run(loadContext());
+            SheetRowReader.read(tmp, fileName, run::accept);
+            run.finish();
+            if (run.inserted + run.updated > 0) eventPublisher.publishEvent(CatalogChangedEvent.all());
+            log.info("Catalog import {}: {} rows, {} inserted, {} updated, {} failed", fileName,
+                    run.total, run.inserted, run.updated, run.failed);
+            return CatalogImportResult.builder()
+                    .totalRows(run.total)
+                    .inserted(run.inserted)
+                    .updated(run.updated)
+                    .failed(run.failed)
+                    .errors(run.errors)
+                    .tookMs((System.nanoTime() - started) / 1_000_000)
+                    .build();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Không đọc được file import", ex);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    Context loadContext() {
+        Context ctx = new Context();
+        for (Category c : categoryRepository.findAll()) {
+            ctx.categoryIds.add(c.getCategoryId());
+            if (c.getName() != null) ctx.categoriesByName.putIfAbsent(norm(c.getName()), c.getCategoryId());
+        }
+        for (Size s : sizeRepository.findAll()) {
+            if (s.getCode() != null && !s.getCode().isBlank()) ctx.sizes.put(norm(s.getCode()), s.getSizeId());
+            if (s.getName() != null) ctx.sizes.putIfAbsent(norm(s.getName()), s.getSizeId());
+            ctx.nextSizeOrder = Math.max(ctx.nextSizeOrder, (s.getDisplayOrder() != null ? s.getDisplayOrder() : 0) + 1);
+        }
+        for (AddOn a : addOnRepository.findAll()) {
+            if (a.getName() != null) ctx.addOns.put(norm(a.getName()), a.getAddOnId());
+            ctx.nextAddOnOrder = Math.max(ctx.nextAddOnOrder, (a.getDisplayOrder() != null ? a.getDisplayOrder() : 0) + 1);
+        }
+        for (Object[] p : jdbcTemplate.query(SELECT_PRODUCTS, (rs, i) -> new Object[]{
+                rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getString(4)})) {
+            ctx.addProduct((Integer) p[0], (String) p[1], (Integer) p[2], (String) p[3]);
+        }
+        return ctx;
+    }
+
+    // Trạng thái của một lần import: nhận từng dòng từ reader, gom chunk rồi ghi
+    final class Run {
+        final Context ctx;
+        Header header;
+        final List<Target> chunk = new ArrayList<>();
+        final Map<String, Integer> seen = new HashMap<>();
+        final List<CatalogImportResult.RowError> errors = new ArrayList<>();
+        int total;
+        int inserted;
+        int updated;
+        int failed;
+
+        Run(Context ctx) {
+            this.ctx = ctx;
+        }
+
+        void accept(int rowNum, List<String> cells) {
+            if (header == null) {
+                header = new Header(cells);
+                return;
+            }
+            if (cells.stream().allMatch(c -> c == null || c.isBlank())) return;
+            total++;
+            try {
+                ImportRow row = parse(rowNum, cells, header, ctx);
+                Integer existing = match(row);
+                String key = existing != null ? "id:" + existing
+                        : row.sku() != null ? "sku:" + norm(row.sku()) : "n:" + nameKey(row.categoryId(), row.name());
+                Integer firstRow = seen.putIfAbsent(key, rowNum);
+                if (firstRow != null) throw new IllegalArgumentException("Trùng sản phẩm với dòng " + firstRow);
+                chunk.add(new Target(row, existing));
+            } catch (IllegalArgumentException ex) {
+                error(rowNum, ex.getMessage());
+            }
+            if (chunk.size() >= chunkSize) flushChunk();
+        }
+
+        void finish() {
+            if (header == null) throw new IllegalArgumentException("File không có dòng tiêu đề");
+            flushChunk();
+        }
+
+        private Integer match(ImportRow row) {
+            if (row.id() != null) {
+                if (!ctx.productIds.contains(row.id())) throw new IllegalArgumentException("Không tìm thấy sản phẩm id=" + row.id());
+                return row.id();
+            }
+            if (row.sku() != null) {
+                Integer bySku = ctx.productsBySku.get(norm(row.sku()));
+                if (bySku != null) return bySku;
+            }
+            return ctx.productsByName.get(nameKey(row.categoryId(), row.name()));
+        }
+
+        private void error(int rowNum, String message) {
+            failed++;
+            if (errors.size() < maxErrors) errors.add(new CatalogImportResult.RowError(rowNum, message));
+        }
+
+        private void flushChunk() {
+            if (chunk.isEmpty()) return;
+            List<Target> batch = new ArrayList<>(chunk);
+            chunk.clear();
+            try {
+                applied(batch, writeChunk(batch, ctx));
+                return;
+            } catch (RuntimeException ex) {
+                if (batch.size() == 1) {
+                    error(batch.get(0).row().row(), "Lỗi ghi dữ liệu: " + rootMessage(ex));
+                    return;
+                }
+                log.warn("Catalog import chunk failed at row {}, retrying row by row: {}", batch.get(0).row().row(),
+                        rootMessage(ex));
+            }
+            // Chunk đã rollback: ghi lại từng dòng để báo đúng dòng hỏng
+            for (Target t : batch) {
+                try {
+                    applied(List.of(t), writeChunk(List.of(t), ctx));
+                } catch (RuntimeException ex) {
+                    error(t.row().row(), "Lỗi ghi dữ liệu: " + rootMessage(ex));
+                }
+            }
+        }
+
+        private void applied(List<Target> batch, Map<String, Integer> newIds) {
+            for (Target t : batch) {
+                ImportRow r = t.row();
+                if (t.existingId() != null) {
+                    updated++;
+                    ctx.addProduct(t.existingId(), r.sku(), r.categoryId(), r.name());
+                } else {
+                    inserted++;
+                    ctx.addProduct(newIds.get(insertKey(r.sku(), r.categoryId(), r.name())), r.sku(), r.categoryId(), r.name());
+                }
+            }
+        }
+    }
+
+    static ImportRow parse(int rowNum, List<String> cells, Header h, Context ctx) {
+        String name = h.get(cells, "name");
+        if (name == null) throw new IllegalArgumentException("Thiếu tên sản phẩm");
+        if (name.length() > 150) throw new IllegalArgumentException("Tên sản phẩm quá 150 ký tự");
+
+        BigDecimal price = decimal(h.get(cells, "price"), "price");
+        if (price == null) throw new IllegalArgumentException("Thiếu giá");
+        if (price.signum() < 0) throw new IllegalArgumentException("Giá không được âm");
+
+        Integer categoryId = null;
+        String categoryIdCell = h.get(cells, "category_id");
+        if (categoryIdCell != null) {
+            categoryId = integer(categoryIdCell, "category_id");
+            if (!ctx.categoryIds.contains(categoryId)) throw new IllegalArgumentException("Không có danh mục id=" + categoryId);
+        } else {
+            String category = h.get(cells, "category");
+            if (category == null) throw new IllegalArgumentException("Thiếu danh mục");
+            categoryId = ctx.categoriesByName.get(norm(category));
+            if (categoryId == null) throw new IllegalArgumentException("Không có danh mục '" + category + "'");
+        }
+
+        String sku = h.get(cells, "sku");
+        if (sku != null && sku.length() > 50) throw new IllegalArgumentException("SKU quá 50 ký tự");
+        String img = h.get(cells, "img");
+        if (img != null && img.length() > 255) throw new IllegalArgumentException("Đường dẫn ảnh quá 255 ký tự");
+        Integer stock = integer(h.get(cells, "stock"), "stock");
+        if (stock != null && stock < 0) throw new IllegalArgumentException("Tồn kho không được âm");
+
+        return new ImportRow(rowNum,
+                integer(h.get(cells, "id"), "id"),
+                sku, name, categoryId, price,
+                bool(h.get(cells, "available")),
+                stock, img,
+                h.get(cells, "description"),
+                h.has("sizes") ? priced(h.get(cells, "sizes"), "size", 50) : null,
+                h.has("addons") ? priced(h.get(cells, "addons"), "add-on", 100) : null);
+    }
+
+    static List<Priced> priced(String cell, String what, int maxName) {
+        if (cell == null) return List.of();
+        List<Priced> result = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        for (String token : cell.split(";")) {
+            String t = token.trim();
+            if (t.isEmpty()) continue;
+            int colon = t.lastIndexOf(':');
+            if (colon <= 0) throw new IllegalArgumentException("Sai định dạng " + what + " '" + t + "' (dạng TÊN:giá)");
+            String key = t.substring(0, colon).trim();
+            if (key.length() > maxName) throw new IllegalArgumentException("Tên " + what + " '" + key + "' quá " + maxName + " ký tự");
+            BigDecimal price = decimal(t.substring(colon + 1), what);
+            if (price == null) throw new IllegalArgumentException("Thiếu giá " + what + " '" + key + "'");
+            if (!keys.add(norm(key))) throw new IllegalArgumentException("Trùng " + what + " '" + key + "'");
+            result.add(new Priced(key, price));
+        }
+        return result;
+    }
+
+    private static BigDecimal decimal(String v, String column) {
+        if (v == null || v.isBlank()) return null;
+        try {
+            return new BigDecimal(v.trim().replace(" ", ""));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Giá trị " + column + " không hợp lệ: '" + v.trim() + "'");
+        }
+    }
+
+    private static Integer integer(String v, String column) {
+        BigDecimal d = decimal(v, column);
+        if (d == null) return null;
+        try {
+            return d.intValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Giá trị " + column + " phải là số nguyên: '" + v.trim() + "'");
+        }
+    }
+
+    private static Boolean bool(String v) {
+        if (v == null) return null;
+        return switch (norm(v)) {
+            case "1", "true", "yes", "y", "có", "co" -> true;
+            case "0", "false", "no", "n", "không", "khong" -> false;
+            default -> throw new IllegalArgumentException("Giá trị available không hợp lệ: '" + v + "'");
+        };
+    }
+
+    static String insertKey(String sku, Integer categoryId, String name) {
+        return sku != null && !sku.isBlank() ? "sku:" + norm(sku) : "n:" + nameKey(categoryId, name);
+    }
+
+    /** Ghi một chunk trong một transaction; trả về id mới theo insertKey */
+    Map<String, Integer> writeChunk(List<Target> batch, Context ctx) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> updates = new ArrayList<>();
+        List<ImportRow> inserts = new ArrayList<>();
+        for (Target t : batch) {
+            ImportRow r = t.row();
+            if (t.existingId() != null) {
+                updates.add(new Object[]{r.name(), r.categoryId(), r.price(), r.sku(), r.available(), r.stock(),
+                        r.img(), r.description(), now, t.existingId()});
+            } else {
+                inserts.add(r);
+            }
+        }
+
+        Map<String, Integer> newIds = new HashMap<>();
+        int sizeOrder = ctx.nextSizeOrder;
+        int addOnOrder = ctx.nextAddOnOrder;
+        List<String> newSizes = new ArrayList<>();
+        List<String> newAddOns = new ArrayList<>();
+        try {
+            tx.executeWithoutResult(status -> {
+                ensureSizesAndAddOns(batch, ctx, newSizes, newAddOns);
+                writeRows(batch, ctx, updates, inserts, now, newIds);
+            });
+        } catch (RuntimeException ex) {
+            // Size/add-on tạo trong chunk đã rollback cùng chunk: bỏ khỏi bảng tra để lần ghi sau tạo lại
+            newSizes.forEach(ctx.sizes::remove);
+            newAddOns.forEach(ctx.addOns::remove);
+            ctx.nextSizeOrder = sizeOrder;
+            ctx.nextAddOnOrder = addOnOrder;
+            throw ex;
+        }
+        return newIds;
+    }
+
+    private void writeRows(List<Target> batch, Context ctx, List<Object[]> updates, List<ImportRow> inserts,
+                           Timestamp now, Map<String, Integer> newIds) {
+        if (!updates.isEmpty()) jdbcTemplate.batchUpdate(UPDATE_PRODUCT, updates);
+        for (int i = 0; i < inserts.size(); i += INSERT_GROUP) {
+            insertProducts(inserts.subList(i, Math.min(i + INSERT_GROUP, inserts.size())), now, newIds);
+        }
+
+        List<Object[]> sizeDeletes = new ArrayList<>();
+        List<Object[]> sizeInserts = new ArrayList<>();
+        List<Object[]> addOnDeletes = new ArrayList<>();
+        List<Object[]> addOnInserts = new ArrayList<>();
+        for (Target t : batch) {
+            ImportRow r = t.row();
+            Integer productId = t.existingId() != null ? t.existingId() : newIds.get(insertKey(r.sku(), r.categoryId(), r.name()));
+            if (productId == null) throw new IllegalStateException("Không lấy được id sản phẩm mới ở dòng " + r.row());
+            if (r.sizes() != null) {
+                if (t.existingId() != null) sizeDeletes.add(new Object[]{productId});
+                for (Priced p : r.sizes()) sizeInserts.add(new Object[]{productId, ctx.sizes.get(norm(p.key())), p.price()});
+            }
+            if (r.addOns() != null) {
+                if (t.existingId() != null) addOnDeletes.add(new Object[]{productId});
+                for (Priced p : r.addOns()) addOnInserts.add(new Object[]{productId, ctx.addOns.get(norm(p.key())), p.price()});
+            }
+        }
+        if (!sizeDeletes.isEmpty()) jdbcTemplate.batchUpdate(DELETE_SIZES, sizeDeletes);
+        if (!sizeInserts.isEmpty()) jdbcTemplate.batchUpdate(INSERT_SIZE, sizeInserts);
+        if (!addOnDeletes.isEmpty()) jdbcTemplate.batchUpdate(DELETE_ADD_ONS, addOnDeletes);
+        if (!addOnInserts.isEmpty()) jdbcTemplate.batchUpdate(INSERT_ADD_ON, addOnInserts);
+    }
+
+    // INSERT nhiều dòng một câu lệnh; thứ tự OUTPUT không được đảm bảo nên map lại id theo khoá sku / (danh mục, tên)
+    private void insertProducts(List<ImportRow> rows, Timestamp now, Map<String, Integer> into) {
+        StringBuilder sql = new StringBuilder(INSERT_PRODUCT_PREFIX);
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        }
+        String statement = sql.toString();
+        PreparedStatementCreator creator = con -> {
+            PreparedStatement ps = con.prepareStatement(statement);
+            int k = 1;
+            for (ImportRow r : rows) {
+                ps.setInt(k++, r.categoryId());
+                ps.setString(k++, r.name());
+                ps.setString(k++, r.img());
+                ps.setString(k++, r.description());
+                ps.setString(k++, r.sku());
+                ps.setBigDecimal(k++, r.price());
+                ps.setBoolean(k++, r.available() == null || r.available());
+                ps.setInt(k++, r.stock() != null ? r.stock() : 0);
+                ps.setTimestamp(k++, now);
+                ps.setTimestamp(k++, now);
+            }
+            return ps;
+        };
+        for (Object[] out : jdbcTemplate.query(creator, (rs, i) -> new Object[]{
+                rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getString(4)})) {
+            into.put(insertKey((String) out[1], (Integer) out[2], (String) out[3]), (Integer) out[0]);
+        }
+    }
+
+    // Size/add-on chưa có thì tạo mới, trong transaction của chunk; ghi lại khoá đã thêm vào bảng tra
+    private void ensureSizesAndAddOns(List<Target> batch, Context ctx, List<String> newSizes, List<String> newAddOns) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Target t : batch) {
+            if (t.row().sizes() != null) {
+                for (Priced p : t.row().sizes()) {
+                    if (ctx.sizes.containsKey(norm(p.key()))) continue;
+                    Size s = sizeRepository.save(Size.builder().name(p.key()).displayOrder(ctx.nextSizeOrder++)
+                            .createdAt(now).updatedAt(now).build());
+                    ctx.sizes.put(norm(p.key()), s.getSizeId());
+                    newSizes.add(norm(p.key()));
+                }
+            }
+            if (t.row().addOns() != null) {
+                for (Priced p : t.row().addOns()) {
+                    if (ctx.addOns.containsKey(norm(p.key()))) continue;
+                    AddOn a = addOnRepository.save(AddOn.builder().name(p.key()).displayOrder(ctx.nextAddOnOrder++)
+                            .createdAt(now).updatedAt(now).build());
+                    ctx.addOns.put(norm(p.key()), a.getAddOnId());
+                    newAddOns.add(norm(p.key()));
+                }
+            }
+        }
+    }
+
+    private static String rootMessage(Throwable ex) {
+        Throwable t = ex;
+        while (t.getCause() != null && t.getCause() != t) t = t.getCause();
+        return t.getMessage();
+    }
+
+    @Override
+    public void export(String format, OutputStream out) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        Map<Integer, String> sizes = pricedColumn("SELECT ps.product_id, COALESCE(NULLIF(s.code, ''), s.name), ps.price "
+                + "FROM dbo.product_sizes ps JOIN dbo.sizes s ON s.size_id = ps.size_id ORDER BY ps.product_id, s.display_order, s.size_id");
+        Map<Integer, String> addOns = pricedColumn("SELECT pa.product_id, a.name, pa.price "
+                + "FROM dbo.product_add_ons pa JOIN dbo.add_ons a ON a.add_on_id = pa.add_on_id ORDER BY pa.product_id, a.display_order, a.add_on_id");
+
+        try (RowSink sink = csv ? new CsvSink(out) : new XlsxSink(out)) {
+            sink.row(new ArrayList<>(COLUMNS));
+            jdbcTemplate.query("SELECT p.product_id, p.sku, p.name, c.name, p.price, p.is_available, p.stock_qty, p.img_url, p.description "
+                    + "FROM dbo.products p JOIN dbo.categories c ON c.category_id = p.category_id ORDER BY p.product_id", rs -> {
+                int id = rs.getInt(1);
+                List<Object> values = new ArrayList<>(COLUMNS.size());
+                values.add(id);
+                values.add(rs.getString(2));
+                values.add(rs.getString(3));
+                values.add(rs.getString(4));
+                values.add(rs.getBigDecimal(5));
+                values.add(rs.getBoolean(6) ? 1 : 0);
+                values.add(rs.getInt(7));
+                values.add(rs.getString(8));
+                values.add(rs.getString(9));
+                values.add(sizes.getOrDefault(id, ""));
+                values.add(addOns.getOrDefault(id, ""));
+                try {
+                    sink.row(values);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private Map<Integer, String> pricedColumn(String sql) {
+        Map<Integer, StringBuilder> acc = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            StringBuilder sb = acc.computeIfAbsent(rs.getInt(1), k -> new StringBuilder());
+            if (sb.length() > 0) sb.append(';');
+            sb.append(rs.getString(2)).append(':').append(plain(rs.getBigDecimal(3)));
+        });
+        Map<Integer, String> result = new HashMap<>(acc.size() * 2);
+        acc.forEach((k, v) -> result.put(k, v.toString()));
+        return result;
+    }
+
+    private static String plain(BigDecimal v) {
+        return v == null ? "" : v.stripTrailingZeros().toPlainString();
+    }
+
+    interface RowSink extends Closeable {
+        void row(List<Object> values) throws IOException;
+    }
+
+    static final class CsvSink implements RowSink {
+        private final Writer w;
+
+        CsvSink(OutputStream out) throws IOException {
+            this.w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            // BOM để Excel mở đúng tiếng Việt
+            w.write('\uFEFF');
+        }
+
+        @Override
+        public void row(List<Object> values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) w.write(',');
+                Object v = values.get(i);
+                String s = v == null ? "" : v instanceof BigDecimal d ? plain(d) : v.toString();
+                if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0) {
+                    w.write('"');
+                    w.write(s.replace("\"", "\"\""));
+                    w.write('"');
+                } else {
+                    w.write(s);
+                }
+            }
+            w.write("\r\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            w.flush();
+        }
+    }
+
+    // SXSSF chỉ giữ một cửa sổ dòng trong bộ nhớ, phần còn lại ghi ra file tạm
+    static final class XlsxSink implements RowSink {
+        private final OutputStream out;
+        private final SXSSFWorkbook wb = new SXSSFWorkbook(200);
+        private final SXSSFSheet sheet = wb.createSheet("products");
+        private int rowNum;
+
+        XlsxSink(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void row(List<Object> values) {
+            Row row = sheet.createRow(rowNum++);
+            for (int i = 0; i < values.size(); i++) {
+                Object v = values.get(i);
+                if (v == null) continue;
+                Cell cell = row.createCell(i);
+                if (v instanceof Number n) {
+                    cell.setCellValue(n.doubleValue());
+                } else {
+                    cell.setCellValue(v.toString());
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                wb.write(out);
+                out.flush();
+            } finally {
+                wb.dispose();
+                wb.close();
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.kopi.kopi.dto.chat.ChatResponse;
 import com.kopi.kopi.service.IChatService;
 import com.kopi.kopi.service.OrderService;
 import com.kopi.kopi.service.ProductService;
+import com.kopi.kopi.service.RecommendationService;
 import com.kopi.kopi.service.ReportService;
 import com.kopi.kopi.service.ai.GeminiClient;
 import lombok.RequiredArgsConstructor;
@@ -30,6 +31,7 @@ public class ChatServiceImpl implements IChatService {
     private final ProductService productService;
     private final ReportService reportService;
     private final OrderService orderService;
+    private final RecommendationService recommendationService;
     private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -155,6 +157,14 @@ public class ChatServiceImpl implements IChatService {
                             formatPrice(p.get("price")),
                             p.get("stock")));
                 }
+                // Gợi ý mua kèm từ lịch sử đơn hàng
+                List<Integer> found = productList.stream().map(p -> (Integer) p.get("id")).toList();
+                List<Map<String, Object>> companions = recommendationService.companionViews(found, 3);
+                if (!companions.isEmpty()) {
+                    response.append("\nKhách thường mua kèm: ")
+                            .append(companions.stream().map(c -> String.valueOf(c.get("name"))).collect(Collectors.joining(", ")))
+                            .append("\n");
+                }
                 response.append("\nBạn có muốn đặt hàng không?");
 
                 return ChatResponse.builder()
@@ -0,0 +1,371 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.CouponBatchStatus;
+import com.kopi.kopi.entity.enums.DiscountType;
+import com.kopi.kopi.event.PromoChangedEvent;
+import com.kopi.kopi.repository.DiscountCodeRepository;
+import com.kopi.kopi.service.CouponBatchService;
+import com.kopi.kopi.util.BloomFilter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Sinh hàng loạt mã giảm giá dùng một lần trên một worker nền:
+ * - mã có sẵn được nạp một lần vào Bloom filter; mã mới bị filter báo "có thể trùng" mới phải
+ *   kiểm tra chính xác (trong chunk đang chờ + DB), còn lại chắc chắn chưa có nên không cần truy vấn;
+ * - ghi theo chunk bằng JDBC batch, mỗi chunk một transaction, cập nhật tiến độ sau mỗi chunk;
+ * - mã mang batch_id = id job để xuất lại CSV theo stream.
+ */
+@Service
+public class CouponBatchServiceImpl implements CouponBatchService {
+    private static final Logger log = LoggerFactory.getLogger(CouponBatchServiceImpl.class);
+    private static final Pattern PREFIX = Pattern.compile("[A-Z0-9-]{0,20}");
+    private static final int MAX_CODE_LENGTH = 50;
+    // Không gian mã phải lớn hơn số mã cần sinh ít nhất chừng này lần để ít phải sinh lại
+    private static final double MIN_SPACE_RATIO = 1000;
+
+    static final String COUNT_CODES = "SELECT COUNT_BIG(*) FROM dbo.discount_codes";
+    static final String SELECT_CODES = "SELECT code FROM dbo.discount_codes";
+    static final String INSERT_CODE = """
+            INSERT INTO dbo.discount_codes (code, description, discount_type, discount_value, min_order_amount,
+                starts_at, ends_at, total_usage_limit, per_user_limit, is_active, usage_count, created_at, batch_id)
+            VALUES (?, ?, ?, ?, ?, ?, ?, 1, 1, 1, 0, ?, ?)
+            """;
+    static final String EXPORT_CODES = """
+            SELECT code, discount_type, discount_value, min_order_amount, starts_at, ends_at, usage_count, is_active
+            FROM dbo.discount_codes WHERE batch_id = ? ORDER BY discount_code_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final DiscountCodeRepository codeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Executor executor;
+    private final Random random;
+    private final char[] alphabet;
+    private final int codeLength;
+    private final int chunkSize;
+    private final int maxCount;
+    private final double falsePositiveRate;
+    private final Duration retention;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CouponBatchServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  DiscountCodeRepository codeRepository, ApplicationEventPublisher eventPublisher,
+                                  @Value("${app.promo.bulk.alphabet:ABCDEFGHJKLMNPQRSTUVWXYZ23456789}") String alphabet,
+                                  @Value("${app.promo.bulk.code-length:10}") int codeLength,
+                                  @Value("${app.promo.bulk.chunk-size:1000}") int chunkSize,
+                                  @Value("${app.promo.bulk.max-count:500000}") int maxCount,
+                                  @Value("${app.promo.bulk.bloom-fpp:0.001}") double falsePositiveRate,
+                                  @Value("${app.promo.bulk.queue-capacity:4}") int queueCapacity,
+                                  @Value("${app.promo.bulk.retention:PT24H}") Duration retention) {
+        this(jdbcTemplate, transactionManager, codeRepository, eventPublisher, newWorker(queueCapacity), new SecureRandom(),
+                alphabet, codeLength, chunkSize, maxCount, falsePositiveRate, retention);
+    }
+
+    CouponBatchServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           DiscountCodeRepository codeRepository, ApplicationEventPublisher eventPublisher,
+                           Executor executor, Random random, String alphabet, int codeLength, int chunkSize,
+                           int maxCount, double falsePositiveRate, Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.codeRepository = codeRepository;
+        this.eventPublisher = eventPublisher;
+        this.executor = executor;
+        this.random = random;
+        this.alphabet = checkAlphabet(alphabet);
+        this.codeLength = codeLength;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.maxCount = Math.max(maxCount, 1);
+        this.falsePositiveRate = falsePositiveRate;
+        this.retention = retention;
+    }
+
+    // Một worker: hai job cùng lúc sẽ tranh nhau khoá bảng và Bloom filter của mỗi job không thấy mã của job kia
+    private static ThreadPoolExecutor newWorker(int queueCapacity) {
+        AtomicInteger seq = new AtomicInteger();
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)), r -> {
+                    Thread t = new Thread(r, "coupon-batch-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static char[] checkAlphabet(String alphabet) {
+        String a = alphabet == null ? "" : alphabet.trim().toUpperCase(Locale.ROOT);
+        Set<Character> seen = new HashSet<>();
+        for (char c : a.toCharArray()) {
+            if (!((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) || !seen.add(c)) {
+                throw new IllegalArgumentException("app.promo.bulk.alphabet must contain distinct A-Z/0-9 characters");
+            }
+        }
+        if (a.length() < 2) throw new IllegalArgumentException("app.promo.bulk.alphabet needs at least 2 characters");
+        return a.toCharArray();
+    }
+
+    static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final BatchRequest request;
+        final String prefix;
+        final int length;
+        final LocalDateTime createdAt = LocalDateTime.now();
+        final AtomicInteger inserted = new AtomicInteger();
+        volatile String status = "QUEUED";
+        volatile int progress;
+        volatile int collisions;
+        volatile int falsePositives;
+        volatile String error;
+        volatile LocalDateTime finishedAt;
+
+        Job(BatchRequest request, String prefix, int length) {
+            this.request = request;
+            this.prefix = prefix;
+            this.length = length;
+        }
+    }
+
+    @Override
+    public CouponBatchStatus submit(BatchRequest r) {
+        if (r == null) throw new IllegalArgumentException("request is required");
+        if (r.count() < 1 || r.count() > maxCount) {
+            throw new IllegalArgumentException("count must be between 1 and " + maxCount);
+        }
+        String prefix = r.prefix() == null ? "" : r.prefix().trim().toUpperCase(Locale.ROOT);
+        if (!PREFIX.matcher(prefix).matches()) {
+            throw new IllegalArgumentException("prefix must be up to 20 characters of A-Z, 0-9 or '-'");
+        }
+        int length = r.length() != null ? r.length() : codeLength;
+        if (length < 4 || prefix.length() + length > MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException("length must be at least 4 and prefix + length at most " + MAX_CODE_LENGTH);
+        }
+        if (Math.pow(alphabet.length, length) < r.count() * MIN_SPACE_RATIO) {
+            throw new IllegalArgumentException("code space too small for " + r.count() + " codes, increase length");
+        }
+        if (r.discountType() == null || r.discountValue() == null || r.discountValue().signum() <= 0) {
+            throw new IllegalArgumentException("discount_type and a positive discount_value are required");
+        }
+        if (r.discountType() == DiscountType.PERCENT && r.discountValue().compareTo(new BigDecimal("100")) > 0) {
+            throw new IllegalArgumentException("percent discount must be at most 100");
+        }
+        if (r.minOrderAmount() != null && r.minOrderAmount().signum() <= 0) {
+            throw new IllegalArgumentException("min_order_amount must be positive");
+        }
+        if (r.startsAt() == null || r.endsAt() == null || !r.startsAt().isBefore(r.endsAt())) {
+            throw new IllegalArgumentException("start_date must be before end_date");
+        }
+
+        Job job = new Job(r, prefix, length);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RuntimeException ex) {
+            jobs.remove(job.id);
+            throw ex;
+        }
+        return toStatus(job);
+    }
+
+    @Override
+    public Optional<CouponBatchStatus> status(String batchId) {
+        return Optional.ofNullable(batchId == null ? null : jobs.get(batchId)).map(this::toStatus);
+    }
+
+    private void run(Job job) {
+        job.status = "RUNNING";
+        try {
+            generate(job);
+            job.progress = 100;
+            job.status = "DONE";
+            log.info("Coupon batch {}: {} codes, {} collisions, {} bloom false positives",
+                    job.id, job.inserted.get(), job.collisions, job.falsePositives);
+        } catch (Exception ex) {
+            log.warn("Coupon batch {} failed after {} codes: {}", job.id, job.inserted.get(), ex.getMessage());
+            job.error = ex.getClass().getSimpleName() + ": " + (ex.getMessage() == null ? "" : ex.getMessage());
+            job.status = "FAILED";
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            // Các chunk đã ghi vẫn dùng được, nên báo thay đổi kể cả khi job lỗi giữa chừng
+            if (job.inserted.get() > 0) eventPublisher.publishEvent(new PromoChangedEvent());
+        }
+    }
+
+    private void generate(Job job) {
+        int count = job.request.count();
+        Long existing = jdbcTemplate.queryForObject(COUNT_CODES, Long.class);
+        BloomFilter seen = BloomFilter.forCapacity((existing != null ? existing : 0) + count, falsePositiveRate);
+        jdbcTemplate.query(SELECT_CODES, (RowCallbackHandler) rs -> {
+            String c = rs.getString(1);
+            if (c != null) seen.put(c.trim().toUpperCase(Locale.ROOT));
+        });
+        job.progress = 5;
+
+        List<String> chunk = new ArrayList<>(Math.min(chunkSize, count));
+        Set<String> pending = new HashSet<>();
+        char[] buf = new char[job.prefix.length() + job.length];
+        job.prefix.getChars(0, job.prefix.length(), buf, 0);
+        while (job.inserted.get() < count) {
+            for (int i = job.prefix.length(); i < buf.length; i++) buf[i] = alphabet[random.nextInt(alphabet.length)];
+            String code = new String(buf);
+            if (seen.mightContain(code)) {
+                if (pending.contains(code) || codeRepository.existsByCodeIgnoreCase(code)) {
+                    job.collisions++;
+                    continue;
+                }
+                job.falsePositives++;
+            }
+            seen.put(code);
+            chunk.add(code);
+            pending.add(code);
+            if (chunk.size() >= chunkSize || job.inserted.get() + chunk.size() >= count) {
+                job.inserted.addAndGet(flush(job, chunk));
+                job.progress = 5 + (int) (94L * job.inserted.get() / count);
+                chunk.clear();
+                pending.clear();
+            }
+        }
+    }
+
+    // Ghi một chunk; nếu unique index báo trùng (mã vừa được tạo lẻ cùng lúc) thì bỏ các mã đó và ghi lại,
+    // vòng ngoài sẽ sinh bù số còn thiếu
+    private int flush(Job job, List<String> chunk) {
+        try {
+            insert(job, chunk);
+            return chunk.size();
+        } catch (DataIntegrityViolationException ex) {
+            int before = chunk.size();
+            chunk.removeIf(codeRepository::existsByCodeIgnoreCase);
+            if (chunk.size() == before) throw ex;
+            job.collisions += before - chunk.size();
+            if (!chunk.isEmpty()) insert(job, chunk);
+            return chunk.size();
+        }
+    }
+
+    private void insert(Job job, List<String> codes) {
+        BatchRequest r = job.request;
+        Timestamp startsAt = Timestamp.valueOf(r.startsAt());
+        Timestamp endsAt = Timestamp.valueOf(r.endsAt());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            args.add(new Object[]{code, r.description(), r.discountType().name(), r.discountValue(), r.minOrderAmount(),
+                    startsAt, endsAt, now, job.id});
+        }
+        tx.executeWithoutResult(s -> jdbcTemplate.batchUpdate(INSERT_CODE, args));
+    }
+
+    @Override
+    public boolean exportCsv(String batchId, OutputStream out) throws IOException {
+        if (batchId == null || !codeRepository.existsByBatchId(batchId)) return false;
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        w.write("code,discount_type,discount_value,min_order_amount,starts_at,ends_at,usage_count,is_active\r\n");
+        try {
+            jdbcTemplate.query(EXPORT_CODES, (RowCallbackHandler) rs -> {
+                try {
+                    // Mã chỉ gồm A-Z/0-9/'-' nên không cần escape
+                    w.write(rs.getString(1));
+                    w.write(',');
+                    w.write(rs.getString(2));
+                    w.write(',');
+                    w.write(plain(rs.getBigDecimal(3)));
+                    w.write(',');
+                    w.write(plain(rs.getBigDecimal(4)));
+                    w.write(',');
+                    w.write(timestamp(rs.getTimestamp(5)));
+                    w.write(',');
+                    w.write(timestamp(rs.getTimestamp(6)));
+                    w.write(',');
+                    w.write(Integer.toString(rs.getInt(7)));
+                    w.write(',');
+                    w.write(rs.getBoolean(8) ? "1" : "0");
+                    w.write("\r\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, batchId);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        w.flush();
+        return true;
+    }
+
+    private static String plain(BigDecimal d) {
+        return d == null ? "" : d.stripTrailingZeros().toPlainString();
+    }
+
+    private static String timestamp(Timestamp t) {
+        return t == null ? "" : t.toLocalDateTime().toString();
+    }
+
+    private CouponBatchStatus toStatus(Job job) {
+        return CouponBatchStatus.builder()
+                .batchId(job.id)
+                .status(job.status)
+                .progress(job.progress)
+                .requested(job.request.count())
+                .inserted(job.inserted.get())
+                .collisions(job.collisions)
+                .falsePositives(job.falsePositives)
+                .prefix(job.prefix)
+                .error(job.error)
+                .createdAt(job.createdAt)
+                .finishedAt(job.finishedAt)
+                .build();
+    }
+
+    /** Quên trạng thái job đã xong quá hạn giữ; mã đã ghi vẫn xuất được theo batch_id. */
+    @Scheduled(fixedDelayString = "${app.promo.bulk.cleanup-ms:3600000}")
+    public void cleanup() {
+        LocalDateTime threshold = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(threshold));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ThreadPoolExecutor pool) pool.shutdownNow();
+    }
+}
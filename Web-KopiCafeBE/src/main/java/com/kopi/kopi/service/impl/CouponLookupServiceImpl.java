@@ -0,0 +1,145 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.DiscountCode;
+import com.kopi.kopi.event.PromoChangedEvent;
+import com.kopi.kopi.repository.DiscountCodeRepository;
+import com.kopi.kopi.service.CouponLookupService;
+import com.kopi.kopi.util.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache tra mã giảm giá theo mã đã chuẩn hoá (trim + in hoa):
+ * - Bloom filter chứa mọi mã đang có: filter nói "không có" thì trả rỗng ngay, không truy vấn
+ *   (trường hợp phổ biến khi frontend kiểm tra theo từng phím gõ);
+ * - mã có thật được giữ bản sao trong cache dương; mã bị filter báo nhầm được nhớ trong cache âm.
+ * Mọi thay đổi mã (PromoChangedEvent từ PromoController / sinh mã hàng loạt) xoá toàn bộ, lần tra
+ * kế tiếp dựng lại filter.
+ */
+@Service
+public class CouponLookupServiceImpl implements CouponLookupService {
+    private static final Logger log = LoggerFactory.getLogger(CouponLookupServiceImpl.class);
+    private static final int MAX_CODE_LENGTH = 50;
+
+    static final String COUNT_CODES = "SELECT COUNT_BIG(*) FROM dbo.discount_codes";
+    static final String SELECT_CODES = "SELECT code FROM dbo.discount_codes";
+
+    private final DiscountCodeRepository codeRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxEntries;
+    private final double falsePositiveRate;
+
+    private final Map<String, DiscountCode> positive = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> negative = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile BloomFilter known;
+
+    public CouponLookupServiceImpl(DiscountCodeRepository codeRepository, JdbcTemplate jdbcTemplate,
+                                   @Value("${app.promo.lookup.max-entries:10000}") int maxEntries,
+                                   @Value("${app.promo.lookup.bloom-fpp:0.001}") double falsePositiveRate) {
+        this.codeRepository = codeRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxEntries = Math.max(maxEntries, 16);
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    static String fold(String code) {
+        return code == null ? "" : code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    @Override
+    public Optional<DiscountCode> find(String code) {
+        String key = fold(code);
+        if (key.isEmpty() || key.length() > MAX_CODE_LENGTH) return Optional.empty();
+        DiscountCode hit = positive.get(key);
+        if (hit != null) return Optional.of(hit);
+        if (!filter().mightContain(key) || negative.containsKey(key)) return Optional.empty();
+
+        long gen = generation.get();
+        Optional<DiscountCode> loaded = codeRepository.findByCodeIgnoreCase(key).map(CouponLookupServiceImpl::copy);
+        // Bị invalidate trong lúc đọc DB thì không ghi kết quả (có thể đã cũ) vào cache
+        if (gen != generation.get()) return loaded;
+        if (loaded.isPresent()) {
+            if (positive.size() >= maxEntries) positive.clear();
+            positive.put(key, loaded.get());
+        } else {
+            if (negative.size() >= maxEntries) negative.clear();
+            negative.put(key, Boolean.TRUE);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void evict(String code) {
+        positive.remove(fold(code));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPromoChanged(PromoChangedEvent event) {
+        invalidate();
+    }
+
+    // Xoá filter trước rồi mới xoá cache: lần tra sau dựng filter mới đã gồm mã vừa tạo
+    synchronized void invalidate() {
+        generation.incrementAndGet();
+        known = null;
+        positive.clear();
+        negative.clear();
+    }
+
+    private BloomFilter filter() {
+        BloomFilter f = known;
+        if (f != null) return f;
+        synchronized (this) {
+            if (known == null) known = build();
+            return known;
+        }
+    }
+
+    private BloomFilter build() {
+        Long count = jdbcTemplate.queryForObject(COUNT_CODES, Long.class);
+        // Chừa chỗ cho mã tạo thêm giữa hai lần dựng lại
+        BloomFilter f = BloomFilter.forCapacity((count != null ? count : 0) + 1024, falsePositiveRate);
+        int[] loaded = {0};
+        jdbcTemplate.query(SELECT_CODES, (RowCallbackHandler) rs -> {
+            String c = rs.getString(1);
+            if (c != null) {
+                f.put(fold(c));
+                loaded[0]++;
+            }
+        });
+        log.debug("Coupon lookup filter rebuilt with {} codes", loaded[0]);
+        return f;
+    }
+
+    // Bản sao tách khỏi persistence context, không kéo theo danh sách redemptions lazy
+    private static DiscountCode copy(DiscountCode dc) {
+        return DiscountCode.builder()
+                .discountCodeId(dc.getDiscountCodeId())
+                .code(dc.getCode())
+                .description(dc.getDescription())
+                .discountType(dc.getDiscountType())
+                .discountValue(dc.getDiscountValue())
+                .minOrderAmount(dc.getMinOrderAmount())
+                .startsAt(dc.getStartsAt())
+                .endsAt(dc.getEndsAt())
+                .totalUsageLimit(dc.getTotalUsageLimit())
+                .perUserLimit(dc.getPerUserLimit())
+                .active(dc.getActive())
+                .usageCount(dc.getUsageCount())
+                .createdAt(dc.getCreatedAt())
+                .batchId(dc.getBatchId())
+                .build();
+    }
+}
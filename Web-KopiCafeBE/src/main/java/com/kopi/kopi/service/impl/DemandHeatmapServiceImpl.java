@@ -0,0 +1,284 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.DemandHeatmap;
+import com.kopi.kopi.entity.DemandHeatmapWeek;
+import com.kopi.kopi.event.OrderCreatedEvent;
+import com.kopi.kopi.repository.DemandHeatmapWeekRepository;
+import com.kopi.kopi.repository.OrderRepository;
+import com.kopi.kopi.service.DemandHeatmapService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.ByteBuffer;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Heatmap nhu cầu theo giờ x thứ trong tuần.
+ * Mỗi tuần ISO là một lưới 7 x 96 ô (15 phút), tăng dần khi có đơn mới bằng LongAdder
+ * và được ghi xuống bảng demand_heatmap_weeks định kỳ. Truy vấn một khoảng ngày bất kỳ
+ * chỉ cộng các lưới tuần, không quét bảng orders.
+ * Ô được tính theo giờ Asia/Ho_Chi_Minh; created_at của đơn (LocalDateTime.now() theo múi giờ máy chủ)
+ * được đổi sang múi giờ đó trước khi vào lưới.
+ */
+@Service
+public class DemandHeatmapServiceImpl implements DemandHeatmapService {
+
+    private static final Logger log = LoggerFactory.getLogger(DemandHeatmapServiceImpl.class);
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    static final int SLOT_MINUTES = 15;
+    static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    static final int CELLS = 7 * SLOTS_PER_DAY;
+
+    private final DemandHeatmapWeekRepository weekRepository;
+    private final OrderRepository orderRepository;
+    private final Clock clock;
+    // Múi giờ của các LocalDateTime đã lưu (orders.created_at)
+    private final ZoneId storedZone;
+
+    // Các tuần đang "nóng" (được ghi từ lúc khởi động). Giá trị = số đã lưu + số tăng thêm.
+    private final Map<LocalDate, WeekGrid> hotWeeks = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DemandHeatmapServiceImpl(DemandHeatmapWeekRepository weekRepository, OrderRepository orderRepository) {
+        this(weekRepository, orderRepository, Clock.system(ZONE), ZoneId.systemDefault());
+    }
+
+    DemandHeatmapServiceImpl(DemandHeatmapWeekRepository weekRepository, OrderRepository orderRepository,
+                             Clock clock, ZoneId storedZone) {
+        this.weekRepository = weekRepository;
+        this.orderRepository = orderRepository;
+        this.clock = clock;
+        this.storedZone = storedZone;
+    }
+
+    static final class WeekGrid {
+        final LongAdder[] cells = new LongAdder[CELLS];
+        final AtomicBoolean dirty = new AtomicBoolean();
+
+        WeekGrid(long[] base) {
+            for (int i = 0; i < CELLS; i++) {
+                cells[i] = new LongAdder();
+                if (base != null && base[i] != 0) cells[i].add(base[i]);
+            }
+        }
+
+        long[] snapshot() {
+            long[] out = new long[CELLS];
+            for (int i = 0; i < CELLS; i++) out[i] = cells[i].sum();
+            return out;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        if (event.order() != null) record(event.order().createdAt());
+    }
+
+    @Override
+    public void record(LocalDateTime orderCreatedAt) {
+        if (orderCreatedAt == null) return;
+        LocalDateTime at = local(orderCreatedAt);
+        LocalDate weekStart = weekStart(at.toLocalDate());
+        int cell = cellIndex(at);
+        // Tuần hiện tại không bao giờ bị flush bỏ khỏi bộ nhớ: tăng thẳng, không khoá
+        if (!weekStart.isBefore(weekStart(LocalDate.now(clock)))) {
+            increment(hotWeeks.computeIfAbsent(weekStart, this::loadGrid), weekStart, cell);
+            return;
+        }
+        // Tuần cũ (đơn tới trễ qua mốc tuần): tăng trong compute để không lọt vào giữa lúc flush bỏ tuần đó
+        hotWeeks.compute(weekStart, (week, grid) -> {
+            WeekGrid g = grid != null ? grid : loadGrid(week);
+            increment(g, week, cell);
+            return g;
+        });
+    }
+
+    private static void increment(WeekGrid grid, LocalDate weekStart, int cell) {
+        if (grid == null) {
+            log.warn("Heatmap week {} unavailable, dropping one sample", weekStart);
+            return;
+        }
+        grid.cells[cell].increment();
+        grid.dirty.set(true);
+    }
+
+    private LocalDateTime local(LocalDateTime stored) {
+        return stored.atZone(storedZone).withZoneSameInstant(clock.getZone()).toLocalDateTime();
+    }
+
+    @Override
+    public DemandHeatmap heatmap(LocalDate from, LocalDate to, int slotMinutes) {
+        if (to == null) to = LocalDate.now(clock);
+        if (from == null) from = to.minusWeeks(4).plusDays(1);
+        if (from.isAfter(to)) {
+            LocalDate tmp = from; from = to; to = tmp;
+        }
+        int resolution = slotMinutes >= 60 ? 60 : SLOT_MINUTES;
+        int merge = resolution / SLOT_MINUTES;
+        int outSlots = SLOTS_PER_DAY / merge;
+
+        LocalDate firstWeek = weekStart(from);
+        LocalDate lastWeek = weekStart(to);
+        Map<LocalDate, long[]> persisted = new HashMap<>();
+        for (DemandHeatmapWeek w : weekRepository.findByWeekStartBetween(firstWeek, lastWeek)) {
+            persisted.put(w.getWeekStart(), decode(w.getCounts()));
+        }
+
+        long[][] counts = new long[7][outSlots];
+        long total = 0;
+        int weeks = 0;
+        for (LocalDate week = firstWeek; !week.isAfter(lastWeek); week = week.plusWeeks(1)) {
+            weeks++;
+            WeekGrid hot = hotWeeks.get(week);
+            long[] cells = hot != null ? hot.snapshot() : persisted.get(week);
+            if (cells == null) continue;
+            for (int day = 0; day < 7; day++) {
+                LocalDate date = week.plusDays(day);
+                if (date.isBefore(from) || date.isAfter(to)) continue;
+                int base = day * SLOTS_PER_DAY;
+                for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+                    long c = cells[base + slot];
+                    counts[day][slot / merge] += c;
+                    total += c;
+                }
+            }
+        }
+
+        List<String> days = new ArrayList<>(7);
+        for (DayOfWeek d : DayOfWeek.values()) days.add(d.name());
+
+        return DemandHeatmap.builder()
+                .from(from.toString())
+                .to(to.toString())
+                .slotMinutes(resolution)
+                .weeks(weeks)
+                .total(total)
+                .days(days)
+                .counts(counts)
+                .build();
+    }
+
+    /**
+     * Dựng lại lưới từ bảng orders cho các tuần phủ [from, to]. Quét một lần, dùng khi
+     * mới bật tính năng hoặc khi cần đối soát; đường đọc bình thường không gọi tới.
+     */
+    @Override
+    public int rebuild(LocalDate from, LocalDate to) {
+        LocalDate firstWeek = weekStart(from);
+        LocalDate lastWeek = weekStart(to);
+        // Khoảng lọc theo giờ đã lưu, rộng thêm một ngày mỗi phía để gồm các ô bị dời khi đổi múi giờ
+        List<Object[]> rows = orderRepository.countCreatedByQuarterHour(
+                firstWeek.minusDays(1).atStartOfDay(), lastWeek.plusWeeks(1).plusDays(1).atStartOfDay());
+
+        Map<LocalDate, long[]> rebuilt = new TreeMap<>();
+        for (LocalDate week = firstWeek; !week.isAfter(lastWeek); week = week.plusWeeks(1)) {
+            rebuilt.put(week, new long[CELLS]);
+        }
+        for (Object[] row : rows) {
+            int slot = ((Number) row[1]).intValue();
+            long count = ((Number) row[2]).longValue();
+            if (slot < 0 || slot >= SLOTS_PER_DAY) continue;
+            LocalDateTime at = local(toLocalDate(row[0]).atStartOfDay().plusMinutes((long) slot * SLOT_MINUTES));
+            long[] cells = rebuilt.get(weekStart(at.toLocalDate()));
+            if (cells == null) continue;
+            cells[cellIndex(at)] += count;
+        }
+        for (var e : rebuilt.entrySet()) {
+            WeekGrid grid = new WeekGrid(e.getValue());
+            grid.dirty.set(true);
+            hotWeeks.put(e.getKey(), grid);
+        }
+        flush();
+        return rebuilt.size();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.reports.heatmap.flush-ms:60000}")
+    public void flush() {
+        List<DemandHeatmapWeek> batch = new ArrayList<>();
+        List<WeekGrid> flushed = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now(clock);
+        for (var e : hotWeeks.entrySet()) {
+            WeekGrid grid = e.getValue();
+            if (!grid.dirty.compareAndSet(true, false)) continue;
+            flushed.add(grid);
+            batch.add(DemandHeatmapWeek.builder()
+                    .weekStart(e.getKey())
+                    .counts(encode(grid.snapshot()))
+                    .updatedAt(now)
+                    .build());
+        }
+        if (!batch.isEmpty()) {
+            try {
+                weekRepository.saveAll(batch);
+            } catch (Exception ex) {
+                flushed.forEach(g -> g.dirty.set(true));
+                log.warn("Failed to persist {} heatmap weeks: {}", batch.size(), ex.getMessage());
+                return;
+            }
+        }
+        // Tuần cũ đã lưu xong thì bỏ khỏi bộ nhớ, lần đọc sau lấy từ DB. Bỏ trong computeIfPresent: record()
+        // cho tuần cũ cũng tăng trong compute nên không có lượt tăng nào rơi vào lưới đã bị bỏ
+        LocalDate keepFrom = weekStart(LocalDate.now(clock)).minusWeeks(1);
+        for (LocalDate week : List.copyOf(hotWeeks.keySet())) {
+            if (!week.isBefore(keepFrom)) continue;
+            hotWeeks.computeIfPresent(week, (k, grid) -> grid.dirty.get() ? grid : null);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private WeekGrid loadGrid(LocalDate weekStart) {
+        try {
+            return new WeekGrid(weekRepository.findById(weekStart).map(w -> decode(w.getCounts())).orElse(null));
+        } catch (Exception ex) {
+            log.warn("Failed to load heatmap week {}: {}", weekStart, ex.getMessage());
+            return null;
+        }
+    }
+
+    static LocalDate weekStart(LocalDate date) {
+        return date.minusDays(date.getDayOfWeek().getValue() - 1L);
+    }
+
+    static int cellIndex(LocalDateTime at) {
+        int day = at.getDayOfWeek().getValue() - 1;
+        int slot = (at.getHour() * 60 + at.getMinute()) / SLOT_MINUTES;
+        return day * SLOTS_PER_DAY + slot;
+    }
+
+    static byte[] encode(long[] cells) {
+        ByteBuffer buf = ByteBuffer.allocate(CELLS * Integer.BYTES);
+        for (long c : cells) buf.putInt((int) Math.min(c, Integer.MAX_VALUE));
+        return buf.array();
+    }
+
+    static long[] decode(byte[] bytes) {
+        long[] cells = new long[CELLS];
+        if (bytes == null) return cells;
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        for (int i = 0; i < CELLS && buf.remaining() >= Integer.BYTES; i++) cells[i] = buf.getInt();
+        return cells;
+    }
+
+    private static LocalDate toLocalDate(Object v) {
+        if (v instanceof java.sql.Date d) return d.toLocalDate();
+        if (v instanceof java.sql.Timestamp ts) return ts.toLocalDateTime().toLocalDate();
+        if (v instanceof LocalDate ld) return ld;
+        if (v instanceof LocalDateTime ldt) return ldt.toLocalDate();
+        return LocalDate.parse(String.valueOf(v).substring(0, 10));
+    }
+}
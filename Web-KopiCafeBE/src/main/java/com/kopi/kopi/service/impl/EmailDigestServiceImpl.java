@@ -0,0 +1,208 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.service.EmailDigestService;
+import com.kopi.kopi.service.NotificationDispatcher;
+import com.kopi.kopi.service.NotificationDispatcher.Message;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gom email đổi trạng thái đơn theo người nhận: một đơn đi PENDING→ACCEPTED→READY→SHIPPING→COMPLETED trong vài phút
+ * chỉ tạo một email ("hiện ở trạng thái Hoàn thành; trước đó: ...") thay vì một email cho mỗi bước.
+ * - Digest của một người nhận được gửi khi hết cửa sổ (tính từ sự kiện đầu tiên, nên không bị trễ vô hạn),
+ *   khi có đơn tới trạng thái kết thúc, hoặc khi gom quá max-orders đơn.
+ * - Việc gửi chạy ở lượt quét nền (không gửi từ afterCommit của transaction đặt hàng).
+ * - window = 0 thì tắt gom: mỗi lần đổi trạng thái gửi ngay một email như cũ.
+ */
+@Service
+public class EmailDigestServiceImpl implements EmailDigestService {
+    private static final Logger log = LoggerFactory.getLogger(EmailDigestServiceImpl.class);
+    static final Set<String> TERMINAL_STATUSES = Set.of("COMPLETED", "CANCELLED", "REJECTED");
+
+    private final NotificationDispatcher dispatcher;
+    private final Clock clock;
+    private final Duration window;
+    private final int maxOrders;
+    private final Map<Recipient, Digest> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong emails = new AtomicLong();
+    private final AtomicLong flushedEarly = new AtomicLong();
+    private final AtomicLong flushedWindow = new AtomicLong();
+
+    @Autowired
+    public EmailDigestServiceImpl(NotificationDispatcher dispatcher,
+                                  @Value("${app.notifications.digest.window:PT2M}") Duration window,
+                                  @Value("${app.notifications.digest.max-orders:20}") int maxOrders) {
+        this(dispatcher, Clock.systemDefaultZone(), window, maxOrders);
+    }
+
+    EmailDigestServiceImpl(NotificationDispatcher dispatcher, Clock clock, Duration window, int maxOrders) {
+        this.dispatcher = dispatcher;
+        this.clock = clock;
+        this.window = window == null || window.isNegative() ? Duration.ZERO : window;
+        this.maxOrders = Math.max(maxOrders, 1);
+    }
+
+    // Các bước của một đơn trong digest: nhãn trạng thái theo thứ tự, câu mô tả của bước mới nhất
+    private static final class OrderTrail {
+        final String orderCode;
+        final List<String> labels = new ArrayList<>();
+        String headline;
+
+        OrderTrail(String orderCode, String previousLabel) {
+            this.orderCode = orderCode;
+            if (previousLabel != null) labels.add(previousLabel);
+        }
+    }
+
+    private static final class Digest {
+        final Instant dueAt;
+        final Map<Integer, OrderTrail> orders = new LinkedHashMap<>();
+        String footer;
+        // Đọc ở lượt quét ngoài compute
+        volatile boolean flushNow;
+
+        Digest(Instant dueAt) {
+            this.dueAt = dueAt;
+        }
+    }
+
+    @Override
+    public void record(Recipient recipient, StatusChange change) {
+        if (recipient == null || change == null) return;
+        if (window.isZero()) {
+            events.incrementAndGet();
+            Digest single = new Digest(Instant.now(clock));
+            add(single, change);
+            send(recipient, single);
+            return;
+        }
+        // Đổi trạng thái bị rollback thì không được xuất hiện trong email
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    buffer(recipient, change);
+                }
+            });
+            return;
+        }
+        buffer(recipient, change);
+    }
+
+    private void buffer(Recipient recipient, StatusChange change) {
+        events.incrementAndGet();
+        // Mọi thay đổi trên Digest đều nằm trong compute, nên flush (remove) không bao giờ thấy digest đang sửa dở
+        pending.compute(recipient, (key, digest) -> {
+            Digest d = digest != null ? digest : new Digest(Instant.now(clock).plus(window));
+            add(d, change);
+            return d;
+        });
+    }
+
+    private void add(Digest digest, StatusChange change) {
+        OrderTrail trail = digest.orders.computeIfAbsent(change.orderId(),
+                id -> new OrderTrail(change.orderCode(), change.previousLabel()));
+        trail.labels.add(change.statusLabel());
+        trail.headline = change.headline();
+        if (change.footer() != null) digest.footer = change.footer();
+        if ((change.status() != null && TERMINAL_STATUSES.contains(change.status().toUpperCase()))
+                || digest.orders.size() >= maxOrders) {
+            digest.flushNow = true;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.notifications.digest.sweep-ms:1000}")
+    public void sweep() {
+        try {
+            flushDue();
+        } catch (Exception ex) {
+            log.warn("Email digest flush failed: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public int flushDue() {
+        Instant now = Instant.now(clock);
+        int sent = 0;
+        for (Map.Entry<Recipient, Digest> e : pending.entrySet()) {
+            Digest d = e.getValue();
+            boolean expired = !now.isBefore(d.dueAt);
+            if (!expired && !d.flushNow) continue;
+            if (!pending.remove(e.getKey(), d)) continue; // vừa bị thay bởi digest mới
+            (expired ? flushedWindow : flushedEarly).incrementAndGet();
+            if (send(e.getKey(), d)) sent++;
+        }
+        return sent;
+    }
+
+    private boolean send(Recipient recipient, Digest digest) {
+        String subject = digest.orders.size() == 1
+                ? "Cập nhật đơn hàng #" + digest.orders.values().iterator().next().orderCode
+                : "Cập nhật " + digest.orders.size() + " đơn hàng";
+        Message message = recipient.roles().isEmpty()
+                ? Message.emailOnly(recipient.email(), subject, render(digest))
+                : Message.emailOnlyToRoles(recipient.roles(), subject, render(digest));
+        boolean ok = dispatcher.dispatch(message);
+        if (ok) emails.incrementAndGet();
+        return ok;
+    }
+
+    private static String render(Digest digest) {
+        StringBuilder sb = new StringBuilder();
+        for (OrderTrail t : digest.orders.values()) {
+            if (!sb.isEmpty()) sb.append("\n\n");
+            sb.append(t.headline);
+            if (t.labels.size() > 1) {
+                sb.append("\nTrước đó: ").append(String.join(" → ", t.labels.subList(0, t.labels.size() - 1)));
+            }
+        }
+        if (digest.footer != null && !digest.footer.isBlank()) sb.append("\n\n").append(digest.footer);
+        return sb.toString();
+    }
+
+    // Tắt máy: gửi nốt các digest đang chờ (bean này huỷ trước dispatcher nên dispatcher vẫn nhận)
+    @PreDestroy
+    public void flushAll() {
+        for (Recipient key : List.copyOf(pending.keySet())) {
+            Digest d = pending.remove(key);
+            if (d == null) continue;
+            try {
+                send(key, d);
+            } catch (Exception ex) {
+                log.warn("Email digest flush on shutdown failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("window_seconds", window.toSeconds());
+        out.put("pending_recipients", pending.size());
+        out.put("events", events.get());
+        out.put("emails", emails.get());
+        out.put("flushed_window", flushedWindow.get());
+        out.put("flushed_early", flushedEarly.get());
+        return out;
+    }
+}
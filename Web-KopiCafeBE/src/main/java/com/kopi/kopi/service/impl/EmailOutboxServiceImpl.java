@@ -0,0 +1,245 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.EmailOutbox;
+import com.kopi.kopi.repository.EmailOutboxRepository;
+import com.kopi.kopi.service.EmailOutboxService;
+import com.kopi.kopi.util.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbox email: send() chỉ ghi một dòng PENDING; sender nền lấy các dòng đến hạn theo lô và gửi cả lô
+ * bằng một lần {@code JavaMailSender.send(SimpleMailMessage...)} (một kết nối SMTP cho cả lô).
+ * - Token bucket giới hạn số email mỗi phút (giới hạn gửi của Gmail); hết token thì để lượt sau.
+ * - Email lỗi được thử lại với backoff luỹ thừa (base * 2^(lần-1), có jitter, tối đa max-backoff);
+ *   quá max-attempts hoặc địa chỉ/nội dung hỏng thì chuyển FAILED.
+ * - OTP / mật khẩu tạm đi làn sendNow(): gửi ngay, không lưu vào bảng. Dòng đã gửi được xoá nội dung,
+ *   dòng SENT / FAILED quá keep-sent / keep-failed được dọn định kỳ.
+ */
+@Service
+public class EmailOutboxServiceImpl implements EmailOutboxService {
+    private static final Logger log = LoggerFactory.getLogger(EmailOutboxServiceImpl.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final EmailOutboxRepository outboxRepository;
+    private final JavaMailSender mailSender;
+    private final TokenBucket bucket;
+    private final Clock clock;
+    private final String from;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final Duration keepSent;
+    private final Duration keepFailed;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong sentDirect = new AtomicLong();
+
+    @Autowired
+    public EmailOutboxServiceImpl(EmailOutboxRepository outboxRepository, JavaMailSender mailSender,
+                                  @Value("${app.mail.from:${spring.mail.username:}}") String from,
+                                  @Value("${app.mail.outbox.batch-size:50}") int batchSize,
+                                  @Value("${app.mail.outbox.max-attempts:8}") int maxAttempts,
+                                  @Value("${app.mail.outbox.base-backoff:PT30S}") Duration baseBackoff,
+                                  @Value("${app.mail.outbox.max-backoff:PT2H}") Duration maxBackoff,
+                                  @Value("${app.mail.outbox.rate-per-minute:20}") double ratePerMinute,
+                                  @Value("${app.mail.outbox.burst:20}") int burst,
+                                  @Value("${app.mail.outbox.keep-sent:P7D}") Duration keepSent,
+                                  @Value("${app.mail.outbox.keep-failed:P30D}") Duration keepFailed) {
+        this(outboxRepository, mailSender, new TokenBucket(Math.max(burst, 1), ratePerMinute / 60d), Clock.systemDefaultZone(),
+                from, batchSize, maxAttempts, baseBackoff, maxBackoff, keepSent, keepFailed);
+    }
+
+    EmailOutboxServiceImpl(EmailOutboxRepository outboxRepository, JavaMailSender mailSender, TokenBucket bucket,
+                           Clock clock, String from, int batchSize, int maxAttempts, Duration baseBackoff,
+                           Duration maxBackoff, Duration keepSent, Duration keepFailed) {
+        this.outboxRepository = outboxRepository;
+        this.mailSender = mailSender;
+        this.bucket = bucket;
+        this.clock = clock;
+        this.from = from;
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.keepSent = keepSent;
+        this.keepFailed = keepFailed;
+    }
+
+    @Override
+    public void enqueue(String to, String subject, String body) {
+        if (to == null || to.isBlank()) throw new IllegalArgumentException("recipient is required");
+        LocalDateTime now = LocalDateTime.now(clock);
+        outboxRepository.save(EmailOutbox.builder()
+                .toAddress(to.trim())
+                .subject(subject == null ? "" : subject)
+                .body(body == null ? "" : body)
+                .status(EmailOutbox.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+    }
+
+    @Override
+    public void sendNow(String to, String subject, String body) {
+        if (to == null || to.isBlank()) throw new IllegalArgumentException("recipient is required");
+        SimpleMailMessage msg = new SimpleMailMessage();
+        if (from != null && !from.isBlank()) msg.setFrom(from);
+        msg.setTo(to.trim());
+        msg.setSubject(subject == null ? "" : subject);
+        msg.setText(body == null ? "" : body);
+        // Không chờ token, nhưng vẫn trừ nếu còn để làn outbox nhường lại phần quota đã dùng
+        bucket.tryAcquireUpTo(1);
+        mailSender.send(msg);
+        sentDirect.incrementAndGet();
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-ms:2000}")
+    public void poll() {
+        try {
+            drain();
+        } catch (Exception ex) {
+            log.warn("Email outbox drain failed: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized int drain() {
+        int delivered = 0;
+        while (true) {
+            int allowed = bucket.tryAcquireUpTo(batchSize);
+            if (allowed == 0) break;
+            List<EmailOutbox> due = outboxRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+                    EmailOutbox.PENDING, LocalDateTime.now(clock), PageRequest.of(0, allowed));
+            bucket.release(allowed - due.size());
+            if (due.isEmpty()) break;
+            delivered += sendBatch(due);
+            outboxRepository.saveAll(due);
+            if (due.size() < allowed) break;
+        }
+        return delivered;
+    }
+
+    private int sendBatch(List<EmailOutbox> rows) {
+        batches.incrementAndGet();
+        SimpleMailMessage[] messages = new SimpleMailMessage[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            EmailOutbox row = rows.get(i);
+            SimpleMailMessage msg = new SimpleMailMessage();
+            if (from != null && !from.isBlank()) msg.setFrom(from); // Gmail yêu cầu From trùng tài khoản SMTP
+            msg.setTo(row.getToAddress());
+            msg.setSubject(row.getSubject());
+            msg.setText(row.getBody());
+            messages[i] = msg;
+        }
+
+        // SimpleMailMessage so sánh theo nội dung, nên đối chiếu lỗi theo đúng object đã gửi
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        try {
+            mailSender.send(messages);
+        } catch (MailSendException ex) {
+            failures.putAll(ex.getFailedMessages());
+            if (failures.isEmpty()) for (SimpleMailMessage m : messages) failures.put(m, ex);
+        } catch (MailException ex) {
+            // Không kết nối/đăng nhập được: cả lô thử lại sau
+            for (SimpleMailMessage m : messages) failures.put(m, ex);
+        }
+
+        LocalDateTime now = LocalDateTime.now(clock);
+        int ok = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            EmailOutbox row = rows.get(i);
+            Exception error = failures.get(messages[i]);
+            row.setAttempts(row.getAttempts() == null ? 1 : row.getAttempts() + 1);
+            if (error == null) {
+                row.setStatus(EmailOutbox.SENT);
+                row.setSentAt(now);
+                row.setLastError(null);
+                row.setBody(""); // đã gửi thì không giữ nội dung
+                sent.incrementAndGet();
+                ok++;
+            } else if (error instanceof MailParseException || row.getAttempts() >= maxAttempts) {
+                row.setStatus(EmailOutbox.FAILED);
+                row.setLastError(truncate(error));
+                failed.incrementAndGet();
+                log.warn("Email {} to {} failed permanently after {} attempts: {}",
+                        row.getEmailId(), row.getToAddress(), row.getAttempts(), error.getMessage());
+            } else {
+                row.setNextAttemptAt(now.plus(backoff(row.getAttempts())));
+                row.setLastError(truncate(error));
+                retried.incrementAndGet();
+            }
+        }
+        return ok;
+    }
+
+    @Scheduled(cron = "${app.mail.outbox.purge-cron:0 30 3 * * *}")
+    public void scheduledPurge() {
+        try {
+            int n = purge();
+            if (n > 0) log.info("Email outbox purge removed {} rows", n);
+        } catch (Exception ex) {
+            log.warn("Email outbox purge failed: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public int purge() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        return outboxRepository.deleteByStatusCreatedBefore(EmailOutbox.SENT, now.minus(keepSent))
+                + outboxRepository.deleteByStatusCreatedBefore(EmailOutbox.FAILED, now.minus(keepFailed));
+    }
+
+    // base * 2^(attempts-1), giới hạn max-backoff, cộng jitter tới 20% để các email lỗi cùng lúc không dồn lại
+    Duration backoff(int attempts) {
+        long base = baseBackoff.toMillis();
+        int shift = Math.min(Math.max(attempts - 1, 0), 30);
+        long millis = Math.min(maxBackoff.toMillis(), base << shift);
+        long jitter = millis / 5 > 0 ? ThreadLocalRandom.current().nextLong(millis / 5 + 1) : 0;
+        return Duration.ofMillis(millis + jitter);
+    }
+
+    private static String truncate(Exception ex) {
+        String s = ex.getClass().getSimpleName() + ": " + (ex.getMessage() == null ? "" : ex.getMessage());
+        return s.length() > MAX_ERROR_LENGTH ? s.substring(0, MAX_ERROR_LENGTH) : s;
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("pending", outboxRepository.countByStatus(EmailOutbox.PENDING));
+        out.put("failed_total", outboxRepository.countByStatus(EmailOutbox.FAILED));
+        out.put("sent", sent.get());
+        out.put("retried", retried.get());
+        out.put("failed", failed.get());
+        out.put("batches", batches.get());
+        out.put("sent_direct", sentDirect.get());
+        out.put("tokens", (int) bucket.available());
+        return out;
+    }
+}
@@ -23,34 +23,28 @@
 
 package com.kopi.kopi.service.impl;
 
+import com.kopi.kopi.service.EmailOutboxService;
 import com.kopi.kopi.service.EmailService;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
 @Service
 public class EmailServiceImpl implements EmailService {
 
-    private final JavaMailSender mailSender;
+    private final EmailOutboxService emailOutboxService;
 
-    // Ưu tiên dùng app.mail.from; nếu không có thì fallback về spring.mail.username
-    @Value("${app.mail.from:${spring.mail.username}}")
-    private String from;
-
-    public EmailServiceImpl(JavaMailSender mailSender) {
-        this.mailSender = mailSender;
+    public EmailServiceImpl(EmailOutboxService emailOutboxService) {
+        this.emailOutboxService = emailOutboxService;
     }
 
+    // Không gửi trực tiếp nữa: outbox lo retry/backoff và giới hạn tốc độ gửi của Gmail
     @Override
     public void send(@NonNull String to, @NonNull String subject, String content) {
-        SimpleMailMessage msg = new SimpleMailMessage();
-        msg.setFrom(from); // phải trùng tài khoản gửi để tránh bị reject (đặc biệt với Gmail)
-        msg.setTo(to);
-        msg.setSubject(subject);
-        msg.setText(content == null ? "" : content);
-        mailSender.send(msg);
+        emailOutboxService.enqueue(to, subject, content == null ? "" : content);
     }
-}
 
+    @Override
+    public void sendNow(String to, String subject, String content) {
+        emailOutboxService.sendNow(to, subject, content == null ? "" : content);
+    }
+}
@@ -0,0 +1,152 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.EventPriceTable;
+import com.kopi.kopi.entity.enums.DiscountType;
+import com.kopi.kopi.event.PromoChangedEvent;
+import com.kopi.kopi.repository.DiscountEventRepository;
+import com.kopi.kopi.service.EventPricingService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Giá theo discount event: các event còn hiệu lực được nạp một lần thành dòng thời gian
+ * (event, sản phẩm, [startsAt, endsAt]) rồi biên dịch thành {@link EventPriceTable} cho thời điểm hiện tại.
+ * Bảng được thay nguyên khối (volatile) đúng tại mốc event bắt đầu/kết thúc kế tiếp, nên tính giá giỏ
+ * hàng chỉ tra Map trong bộ nhớ; DB chỉ đọc lại khi admin sửa khuyến mãi (PromoChangedEvent).
+ */
+@Service
+public class EventPricingServiceImpl implements EventPricingService {
+    private static final Logger log = LoggerFactory.getLogger(EventPricingServiceImpl.class);
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    private final DiscountEventRepository eventRepository;
+    private final TaskScheduler scheduler;
+    private final Clock clock;
+
+    record Entry(Integer eventId, Integer productId, DiscountType type, BigDecimal value,
+                 LocalDateTime startsAt, LocalDateTime endsAt) {
+    }
+
+    private volatile List<Entry> timeline;
+    private volatile EventPriceTable table;
+    private ScheduledFuture<?> pending;
+
+    @Autowired
+    public EventPricingServiceImpl(DiscountEventRepository eventRepository, TaskScheduler scheduler) {
+        this(eventRepository, scheduler, Clock.system(ZONE));
+    }
+
+    EventPricingServiceImpl(DiscountEventRepository eventRepository, TaskScheduler scheduler, Clock clock) {
+        this.eventRepository = eventRepository;
+        this.scheduler = scheduler;
+        this.clock = clock;
+    }
+
+    @Override
+    public EventPriceTable current() {
+        EventPriceTable t = table;
+        if (t != null) return t;
+        synchronized (this) {
+            if (table == null) advance(true);
+            return table;
+        }
+    }
+
+    // Biên dịch bảng giá tại thời điểm {@code at}: event đang chạy khi startsAt <= at <= endsAt
+    static EventPriceTable compile(List<Entry> timeline, LocalDateTime at) {
+        Map<Integer, List<EventPriceTable.Rule>> byProduct = new HashMap<>();
+        LocalDateTime next = null;
+        for (Entry e : timeline) {
+            LocalDateTime boundary;
+            if (at.isBefore(e.startsAt())) {
+                boundary = e.startsAt();
+            } else if (!at.isAfter(e.endsAt())) {
+                byProduct.computeIfAbsent(e.productId(), k -> new ArrayList<>())
+                        .add(new EventPriceTable.Rule(e.eventId(), e.type(), e.value()));
+                boundary = e.endsAt().plusSeconds(1);
+            } else {
+                continue;
+            }
+            if (next == null || boundary.isBefore(next)) next = boundary;
+        }
+        return EventPriceTable.of(byProduct, next);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        tick();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (pending != null) pending.cancel(false);
+        pending = null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPromoChanged(PromoChangedEvent event) {
+        synchronized (this) {
+            try {
+                advance(true);
+            } catch (Exception ex) {
+                log.warn("Event pricing reload failed: {}", ex.getMessage());
+                schedule(LocalDateTime.now(clock).plusMinutes(1));
+            }
+        }
+    }
+
+    // Chạy tại mỗi mốc: chỉ biên dịch lại từ dòng thời gian đã nạp; lỗi thì thử lại sau một phút
+    synchronized void tick() {
+        try {
+            advance(timeline == null);
+        } catch (Exception ex) {
+            log.warn("Event pricing refresh failed: {}", ex.getMessage());
+            schedule(LocalDateTime.now(clock).plusMinutes(1));
+        }
+    }
+
+    private synchronized void advance(boolean reload) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        if (reload || timeline == null) timeline = load(now);
+        EventPriceTable next = compile(timeline, now);
+        table = next;
+        log.debug("Event pricing: {} discounted products until {}", next.size(), next.validUntil());
+        if (next.validUntil() != null) schedule(next.validUntil());
+        else if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    private List<Entry> load(LocalDateTime now) {
+        List<Entry> out = new ArrayList<>();
+        for (Object[] r : eventRepository.findActiveRuleRows(now)) {
+            out.add(new Entry((Integer) r[0], (Integer) r[5], (DiscountType) r[1], (BigDecimal) r[2],
+                    (LocalDateTime) r[3], (LocalDateTime) r[4]));
+        }
+        return List.copyOf(out);
+    }
+
+    private void schedule(LocalDateTime at) {
+        if (pending != null) pending.cancel(false);
+        if (scheduler == null) return;
+        pending = scheduler.schedule(this::tick, at.atZone(clock.getZone()).toInstant());
+    }
+}
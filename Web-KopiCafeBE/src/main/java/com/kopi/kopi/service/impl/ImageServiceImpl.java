@@ -0,0 +1,318 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.ImageFile;
+import com.kopi.kopi.service.ImageService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Ảnh sản phẩm lưu theo SHA-256 nội dung: {dir}/{2 ký tự đầu}/{hash}/original.{ext} + thumb/card/full.jpg.
+ * - Upload trùng nội dung dùng lại thư mục cũ, không sinh lại.
+ * - Bản thu nhỏ sinh trên pool worker riêng; trong lúc chờ (hoặc khi hàng đợi đầy) request được trả
+ *   ảnh gốc kèm cờ fallback và lần resolve sau sẽ lên lịch sinh lại.
+ * - URL không đổi theo nội dung nên bản đã sinh được cache immutable phía client/CDN.
+ */
+@Service
+public class ImageServiceImpl implements ImageService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageServiceImpl.class);
+
+    // Cạnh dài tối đa của từng bản, từ lớn tới nhỏ để bản sau thu nhỏ từ bản trước
+    static final Map<String, Integer> VARIANTS = new LinkedHashMap<>();
+    static {
+        VARIANTS.put("full", 1280);
+        VARIANTS.put("card", 480);
+        VARIANTS.put("thumb", 160);
+    }
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern OWN_URL = Pattern.compile("/apiv1/images/([0-9a-f]{64})/");
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "jpeg", "jpg", "png", "png", "gif", "gif", "bmp", "bmp");
+
+    private final Path dir;
+    private final String publicBase;
+    private final long maxBytes;
+    private final long maxPixels;
+    private final float jpegQuality;
+    private final Executor executor;
+    private final Set<String> inflight = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public ImageServiceImpl(@Value("${app.images.dir:./data/images}") String dir,
+                            @Value("${server.servlet.context-path:}") String contextPath,
+                            @Value("${app.images.max-bytes:5242880}") long maxBytes,
+                            @Value("${app.images.max-pixels:40000000}") long maxPixels,
+                            @Value("${app.images.jpeg-quality:0.82}") float jpegQuality,
+                            @Value("${app.images.workers:1}") int workers,
+                            @Value("${app.images.queue-capacity:50}") int queueCapacity) {
+        this(dir, contextPath, maxBytes, maxPixels, jpegQuality, newWorkers(workers, queueCapacity));
+    }
+
+    ImageServiceImpl(String dir, String contextPath, long maxBytes, long maxPixels, float jpegQuality, Executor executor) {
+        this.dir = Paths.get(dir);
+        this.publicBase = contextPath + "/apiv1/images";
+        this.maxBytes = maxBytes;
+        this.maxPixels = maxPixels;
+        this.jpegQuality = jpegQuality;
+        this.executor = executor;
+    }
+
+    private static ThreadPoolExecutor newWorkers(int workers, int queueCapacity) {
+        AtomicInteger seq = new AtomicInteger();
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "image-variant-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor instanceof ThreadPoolExecutor pool) pool.shutdownNow();
+    }
+
+    @Override
+    public String store(MultipartFile file) {
+        if (file == null || file.isEmpty()) throw new IllegalArgumentException("Ảnh rỗng");
+        if (file.getSize() > maxBytes) throw new IllegalArgumentException("Ảnh vượt quá dung lượng cho phép");
+        try {
+            byte[] bytes = file.getBytes();
+            String format = probe(bytes);
+            String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+            Path folder = folder(hash);
+            if (findOriginal(folder) == null) {
+                Files.createDirectories(folder);
+                writeAtomically(folder.resolve("original." + EXTENSIONS.get(format)), out -> out.write(bytes));
+            }
+            schedule(hash);
+            return url(hash, "full");
+        } catch (IOException ex) {
+            throw new IllegalStateException("Không lưu được ảnh", ex);
+        } catch (java.security.NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public Optional<ImageFile> resolve(String hash, String variant) {
+        // Chỉ nhận hash/variant đúng định dạng, không ghép chuỗi tuỳ ý vào đường dẫn
+        if (hash == null || !HASH.matcher(hash).matches() || !VARIANTS.containsKey(variant)) return Optional.empty();
+        Path folder = folder(hash);
+        Path file = folder.resolve(variant + ".jpg");
+        if (Files.isRegularFile(file)) {
+            return Optional.of(new ImageFile(file, "image/jpeg", "\"" + hash + "-" + variant + "\"", false));
+        }
+        Path original = findOriginal(folder);
+        if (original == null) return Optional.empty();
+        schedule(hash);
+        String name = original.getFileName().toString();
+        String ext = name.substring(name.lastIndexOf('.') + 1);
+        return Optional.of(new ImageFile(original, "image/" + ("jpg".equals(ext) ? "jpeg" : ext),
+                "\"" + hash + "-original\"", true));
+    }
+
+    @Override
+    public Map<String, String> responsive(String imgUrl) {
+        if (imgUrl == null) return null;
+        Matcher m = OWN_URL.matcher(imgUrl);
+        if (!m.find()) return null;
+        String hash = m.group(1);
+        Map<String, String> urls = new LinkedHashMap<>();
+        StringBuilder srcset = new StringBuilder();
+        for (String v : new String[]{"thumb", "card", "full"}) {
+            urls.put(v, url(hash, v));
+            if (srcset.length() > 0) srcset.append(", ");
+            srcset.append(url(hash, v)).append(' ').append(VARIANTS.get(v)).append('w');
+        }
+        urls.put("srcset", srcset.toString());
+        return urls;
+    }
+
+    private String url(String hash, String variant) {
+        return publicBase + "/" + hash + "/" + variant + ".jpg";
+    }
+
+    private Path folder(String hash) {
+        return dir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private void schedule(String hash) {
+        if (variantsReady(hash) || !inflight.add(hash)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(hash);
+                } catch (Exception ex) {
+                    log.warn("Image variants failed for {}: {}", hash, ex.getMessage());
+                } finally {
+                    inflight.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // Hàng đợi đầy: bỏ qua, lần resolve sau sẽ thử lại
+            inflight.remove(hash);
+        }
+    }
+
+    private boolean variantsReady(String hash) {
+        Path folder = folder(hash);
+        for (String v : VARIANTS.keySet()) {
+            if (!Files.isRegularFile(folder.resolve(v + ".jpg"))) return false;
+        }
+        return true;
+    }
+
+    // Decode ảnh gốc đúng một lần, bản nhỏ hơn thu nhỏ tiếp từ bản lớn hơn
+    void generate(String hash) throws IOException {
+        Path folder = folder(hash);
+        Path original = findOriginal(folder);
+        if (original == null) return;
+        BufferedImage current = ImageIO.read(original.toFile());
+        if (current == null) throw new IOException("Unreadable image " + original);
+        for (Map.Entry<String, Integer> e : VARIANTS.entrySet()) {
+            current = scaleToFit(current, e.getValue());
+            Path target = folder.resolve(e.getKey() + ".jpg");
+            if (Files.isRegularFile(target)) continue;
+            BufferedImage img = current;
+            writeAtomically(target, out -> writeJpeg(img, out));
+        }
+    }
+
+    static BufferedImage scaleToFit(BufferedImage src, int maxSide) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        double scale = Math.min(1.0, (double) maxSide / Math.max(w, h));
+        int tw = Math.max(1, (int) Math.round(w * scale));
+        int th = Math.max(1, (int) Math.round(h * scale));
+        if (tw == w && th == h && src.getType() == BufferedImage.TYPE_INT_RGB) return src;
+        // Giảm từng nửa rồi mới về kích thước đích: bilinear thu nhỏ một lần quá mạnh sẽ bị răng cưa
+        BufferedImage cur = src;
+        int cw = w;
+        int ch = h;
+        do {
+            cw = cw / 2 >= tw ? cw / 2 : tw;
+            ch = ch / 2 >= th ? ch / 2 : th;
+            BufferedImage next = new BufferedImage(cw, ch, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                // JPEG không có kênh alpha: phần trong suốt của PNG phủ nền trắng
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, cw, ch);
+                g.drawImage(cur, 0, 0, cw, ch, null);
+            } finally {
+                g.dispose();
+            }
+            cur = next;
+        } while (cw != tw || ch != th);
+        return cur;
+    }
+
+    private void writeJpeg(BufferedImage img, OutputStream out) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // Đọc header để lấy định dạng + kích thước, chặn file không phải ảnh và ảnh quá nhiều pixel trước khi decode
+    private String probe(byte[] bytes) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) throw new IllegalArgumentException("File không phải ảnh hợp lệ");
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                String format = reader.getFormatName().toLowerCase();
+                if ("jpg".equals(format)) format = "jpeg";
+                if (!EXTENSIONS.containsKey(format)) throw new IllegalArgumentException("Định dạng ảnh không hỗ trợ");
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    throw new IllegalArgumentException("Ảnh có độ phân giải quá lớn");
+                }
+                return format;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static Path findOriginal(Path folder) {
+        if (!Files.isDirectory(folder)) return null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "original.*")) {
+            for (Path p : files) {
+                if (!p.getFileName().toString().endsWith(".tmp")) return p;
+            }
+        } catch (IOException ex) {
+            log.warn("Cannot list {}: {}", folder, ex.getMessage());
+        }
+        return null;
+    }
+
+    interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    // Ghi ra file tạm rồi move, request đọc song song không bao giờ thấy file dở dang
+    private static void writeAtomically(Path target, Writer writer) throws IOException {
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                writer.write(out);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
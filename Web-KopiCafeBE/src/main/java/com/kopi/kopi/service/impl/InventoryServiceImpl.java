@@ -0,0 +1,344 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.InventoryItem;
+import com.kopi.kopi.entity.RecipeItem;
+import com.kopi.kopi.event.InventoryChangedEvent;
+import com.kopi.kopi.event.OrderSnapshot;
+import com.kopi.kopi.event.OrderStatusChangedEvent;
+import com.kopi.kopi.repository.InventoryItemRepository;
+import com.kopi.kopi.repository.OrderDetailAddOnRepository;
+import com.kopi.kopi.repository.RecipeItemRepository;
+import com.kopi.kopi.service.InventoryService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Trừ kho theo công thức (nguyên liệu) cho đơn COMPLETED.
+ * - Listener chạy trong transaction đổi trạng thái đơn: ghi các dòng inventory_log (applied = 0) cho đơn đó,
+ *   nên commit đơn là có nhật ký trừ kho; rollback thì mất cả hai. Không chạm quantity_on_hand ở đây.
+ * - Một thread flush định kỳ nhận (UPDATE TOP ... OUTPUT) các dòng chưa áp, cộng dồn theo nguyên liệu và
+ *   chạy đúng một UPDATE quantity_on_hand cho mỗi nguyên liệu, theo thứ tự id tăng dần để không deadlock
+ *   với điều chỉnh tay. Nhận dòng và cập nhật tồn chung một transaction: lỗi thì các dòng vẫn chưa áp.
+ * - Crash / redeploy trước khi flush không làm mất gì: lần flush sau đọc lại từ inventory_log.
+ */
+@Service
+public class InventoryServiceImpl implements InventoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryServiceImpl.class);
+
+    // applied mặc định 1: nhập kho / điều chỉnh tay cập nhật tồn ngay trong cùng transaction
+    static final String INSERT_LOG = "INSERT INTO dbo.inventory_log (inventory_item_id, change_type, quantity_change, reason, order_id, created_by_user_id, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    static final String INSERT_JOURNAL = "INSERT INTO dbo.inventory_log (inventory_item_id, change_type, quantity_change, reason, order_id, created_by_user_id, created_at, applied) VALUES (?, ?, ?, ?, ?, ?, ?, 0)";
+    static final String CLAIM_JOURNAL = """
+            UPDATE TOP (?) dbo.inventory_log WITH (ROWLOCK, READPAST)
+            SET applied = 1
+            OUTPUT inserted.inventory_item_id, inserted.quantity_change, inserted.order_id
+            WHERE applied = 0
+            """;
+    static final String COUNT_PENDING_ORDERS = "SELECT COUNT(DISTINCT order_id) FROM dbo.inventory_log WHERE applied = 0";
+    static final String UPDATE_ON_HAND = "UPDATE dbo.inventory_items SET quantity_on_hand = quantity_on_hand + ?, updated_at = ? WHERE inventory_item_id = ?";
+
+    private final InventoryItemRepository itemRepository;
+    private final RecipeItemRepository recipeRepository;
+    private final OrderDetailAddOnRepository orderDetailAddOnRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxBatch;
+
+    private volatile Recipes recipes;
+
+    public InventoryServiceImpl(InventoryItemRepository itemRepository,
+                                RecipeItemRepository recipeRepository,
+                                OrderDetailAddOnRepository orderDetailAddOnRepository,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${app.inventory.max-batch:5000}") int maxBatch) {
+        this.itemRepository = itemRepository;
+        this.recipeRepository = recipeRepository;
+        this.orderDetailAddOnRepository = orderDetailAddOnRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.maxBatch = Math.max(maxBatch, 1);
+    }
+
+    record Portion(int itemId, BigDecimal quantity) {
+    }
+
+    // Công thức đã index sẵn: gốc theo product, delta theo (product, size), theo add-on
+    record Recipes(Map<Integer, List<Portion>> base, Map<Long, List<Portion>> sized, Map<Integer, List<Portion>> addOns) {
+        static Recipes of(List<RecipeItem> rows) {
+            Map<Integer, List<Portion>> base = new HashMap<>();
+            Map<Long, List<Portion>> sized = new HashMap<>();
+            Map<Integer, List<Portion>> addOns = new HashMap<>();
+            for (RecipeItem r : rows) {
+                if (r.getInventoryItemId() == null || r.getQuantity() == null) continue;
+                Portion p = new Portion(r.getInventoryItemId(), r.getQuantity());
+                if (r.getAddOnId() != null) {
+                    addOns.computeIfAbsent(r.getAddOnId(), k -> new ArrayList<>()).add(p);
+                } else if (r.getProductId() != null && r.getSizeId() != null) {
+                    sized.computeIfAbsent(sizeKey(r.getProductId(), r.getSizeId()), k -> new ArrayList<>()).add(p);
+                } else if (r.getProductId() != null) {
+                    base.computeIfAbsent(r.getProductId(), k -> new ArrayList<>()).add(p);
+                }
+            }
+            return new Recipes(base, sized, addOns);
+        }
+    }
+
+    static long sizeKey(int productId, int sizeId) {
+        return ((long) productId << 32) | (sizeId & 0xffffffffL);
+    }
+
+    private Recipes recipes() {
+        Recipes r = recipes;
+        if (r == null) {
+            r = Recipes.of(recipeRepository.findAll());
+            recipes = r;
+        }
+        return r;
+    }
+
+    /**
+     * Lượng nguyên liệu của một dòng đơn: (gốc + delta size) x số ly, cộng add-on x số ly.
+     * Delta âm (size nhỏ) không làm một nguyên liệu xuống dưới 0.
+     */
+    static Map<Integer, BigDecimal> lineConsumption(Recipes r, OrderSnapshot.Line line, List<Integer> addOnIds) {
+        Map<Integer, BigDecimal> perCup = new HashMap<>();
+        if (line.productId() != null) {
+            add(perCup, r.base().get(line.productId()));
+            if (line.sizeId() != null) add(perCup, r.sized().get(sizeKey(line.productId(), line.sizeId())));
+        }
+        if (addOnIds != null) {
+            for (Integer addOnId : addOnIds) add(perCup, r.addOns().get(addOnId));
+        }
+        BigDecimal cups = BigDecimal.valueOf(line.quantity());
+        Map<Integer, BigDecimal> result = new HashMap<>();
+        perCup.forEach((itemId, q) -> {
+            if (q.signum() > 0) result.put(itemId, q.multiply(cups));
+        });
+        return result;
+    }
+
+    private static void add(Map<Integer, BigDecimal> into, List<Portion> portions) {
+        if (portions == null) return;
+        for (Portion p : portions) into.merge(p.itemId(), p.quantity(), BigDecimal::add);
+    }
+
+    // Đồng bộ, trong transaction của changeStatus: ghi nhật ký lỗi thì đổi trạng thái đơn cũng rollback
+    @EventListener
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (!event.becameCompleted() || event.order() == null || event.order().lines().isEmpty()) return;
+        OrderSnapshot order = event.order();
+        Map<Integer, List<Integer>> addOnsByDetail = addOnsByDetail(order);
+        Recipes r = recipes();
+        Map<Integer, BigDecimal> perOrder = new TreeMap<>();
+        for (OrderSnapshot.Line line : order.lines()) {
+            lineConsumption(r, line, addOnsByDetail.get(line.orderDetailId()))
+                    .forEach((itemId, q) -> perOrder.merge(itemId, q, BigDecimal::add));
+        }
+        if (perOrder.isEmpty()) return;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(perOrder.size());
+        perOrder.forEach((itemId, q) ->
+                rows.add(new Object[]{itemId, "OUT", q.negate(), "order #" + order.orderId(), order.orderId(), null, now}));
+        jdbcTemplate.batchUpdate(INSERT_JOURNAL, rows);
+    }
+
+    @Override
+    public int pendingOrders() {
+        Integer n = jdbcTemplate.queryForObject(COUNT_PENDING_ORDERS, Integer.class);
+        return n == null ? 0 : n;
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.flush-ms:5000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.warn("Inventory flush failed, journal rows stay pending: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized int flush() {
+        Set<Integer> orders = new HashSet<>();
+        while (true) {
+            Set<Integer> touched = new TreeSet<>();
+            int claimed = tx.execute(status -> applyBatch(orders, touched));
+            if (!touched.isEmpty()) eventPublisher.publishEvent(new InventoryChangedEvent(List.copyOf(touched)));
+            if (claimed < maxBatch) return orders.size();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        scheduledFlush();
+    }
+
+    // Nhận tối đa maxBatch dòng chưa áp và cộng vào tồn theo từng nguyên liệu; trả về số dòng đã nhận
+    private int applyBatch(Set<Integer> orders, Set<Integer> touched) {
+        Map<Integer, BigDecimal> totals = new TreeMap<>();
+        List<Integer> claimedOrders = new ArrayList<>();
+        int claimed = jdbcTemplate.query(CLAIM_JOURNAL, rs -> {
+            int n = 0;
+            while (rs.next()) {
+                n++;
+                totals.merge(rs.getInt(1), rs.getBigDecimal(2), BigDecimal::add);
+                int orderId = rs.getInt(3);
+                if (!rs.wasNull()) claimedOrders.add(orderId);
+            }
+            return n;
+        }, maxBatch);
+        if (totals.isEmpty()) return claimed;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> updates = new ArrayList<>(totals.size());
+        totals.forEach((itemId, q) -> updates.add(new Object[]{q, now, itemId}));
+        jdbcTemplate.batchUpdate(UPDATE_ON_HAND, updates);
+        orders.addAll(claimedOrders);
+        touched.addAll(totals.keySet());
+        return claimed;
+    }
+
+    private Map<Integer, List<Integer>> addOnsByDetail(OrderSnapshot order) {
+        List<Integer> detailIds = new ArrayList<>();
+        for (OrderSnapshot.Line line : order.lines()) {
+            if (line.orderDetailId() != null) detailIds.add(line.orderDetailId());
+        }
+        Map<Integer, List<Integer>> result = new HashMap<>();
+        if (detailIds.isEmpty()) return result;
+        for (Object[] row : orderDetailAddOnRepository.findAddOnIdsByOrderDetailIds(detailIds)) {
+            result.computeIfAbsent((Integer) row[0], k -> new ArrayList<>()).add((Integer) row[1]);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Map<String, Object>> items() {
+        return itemRepository.findAllByOrderByNameAsc().stream().map(InventoryServiceImpl::itemView).toList();
+    }
+
+    @Override
+    public Map<String, Object> createItem(String name, String unit, BigDecimal quantityOnHand, BigDecimal reorderLevel, String notes) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("name is required");
+        if (unit == null || unit.isBlank()) throw new IllegalArgumentException("unit is required");
+        LocalDateTime now = LocalDateTime.now();
+        InventoryItem item = InventoryItem.builder()
+                .name(name.trim())
+                .unit(unit.trim())
+                .quantityOnHand(quantityOnHand != null ? quantityOnHand : BigDecimal.ZERO)
+                .reorderLevel(reorderLevel != null ? reorderLevel : BigDecimal.ZERO)
+                .active(true)
+                .notes(notes)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        InventoryItem saved = itemRepository.save(item);
+        eventPublisher.publishEvent(new InventoryChangedEvent(List.of(saved.getInventoryItemId())));
+        return itemView(saved);
+    }
+
+    @Override
+    public Map<String, Object> adjust(Integer itemId, BigDecimal change, String reason, Integer userId) {
+        if (change == null || change.signum() == 0) throw new IllegalArgumentException("change must be non-zero");
+        if (!itemRepository.existsById(itemId)) throw new IllegalArgumentException("Inventory item not found");
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        // Cộng/trừ tương đối trên DB, không ghi đè số lô flush vừa trừ
+        tx.executeWithoutResult(status -> {
+            jdbcTemplate.update(INSERT_LOG, itemId, change.signum() > 0 ? "IN" : "ADJUST", change, reason, null, userId, now);
+            jdbcTemplate.update(UPDATE_ON_HAND, change, now, itemId);
+        });
+        eventPublisher.publishEvent(new InventoryChangedEvent(List.of(itemId)));
+        return itemView(itemRepository.findById(itemId).orElseThrow());
+    }
+
+    @Override
+    public List<Map<String, Object>> productRecipe(Integer productId) {
+        return recipeRepository.findByProductIdOrderBySizeIdAscInventoryItemIdAsc(productId).stream()
+                .map(InventoryServiceImpl::recipeView).toList();
+    }
+
+    @Override
+    public List<Map<String, Object>> replaceProductRecipe(Integer productId, List<RecipeItem> rows) {
+        List<RecipeItem> toSave = new ArrayList<>();
+        for (RecipeItem row : validated(rows)) {
+            toSave.add(RecipeItem.builder().productId(productId).sizeId(row.getSizeId())
+                    .inventoryItemId(row.getInventoryItemId()).quantity(row.getQuantity()).build());
+        }
+        tx.executeWithoutResult(status -> {
+            recipeRepository.deleteByProductId(productId);
+            recipeRepository.saveAll(toSave);
+        });
+        recipes = null;
+        return productRecipe(productId);
+    }
+
+    @Override
+    public List<Map<String, Object>> replaceAddOnRecipe(Integer addOnId, List<RecipeItem> rows) {
+        List<RecipeItem> toSave = new ArrayList<>();
+        for (RecipeItem row : validated(rows)) {
+            toSave.add(RecipeItem.builder().addOnId(addOnId)
+                    .inventoryItemId(row.getInventoryItemId()).quantity(row.getQuantity()).build());
+        }
+        tx.executeWithoutResult(status -> {
+            recipeRepository.deleteByAddOnId(addOnId);
+            recipeRepository.saveAll(toSave);
+        });
+        recipes = null;
+        return recipeRepository.findByAddOnIdOrderByInventoryItemIdAsc(addOnId).stream()
+                .map(InventoryServiceImpl::recipeView).toList();
+    }
+
+    private List<RecipeItem> validated(List<RecipeItem> rows) {
+        if (rows == null) return List.of();
+        for (RecipeItem row : rows) {
+            if (row.getInventoryItemId() == null || row.getQuantity() == null) {
+                throw new IllegalArgumentException("inventory_item_id and quantity are required");
+            }
+            if (!itemRepository.existsById(row.getInventoryItemId())) {
+                throw new IllegalArgumentException("Unknown inventory item " + row.getInventoryItemId());
+            }
+        }
+        return rows;
+    }
+
+    private static Map<String, Object> itemView(InventoryItem i) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", i.getInventoryItemId());
+        m.put("name", i.getName());
+        m.put("unit", i.getUnit());
+        m.put("quantity_on_hand", i.getQuantityOnHand());
+        m.put("reorder_level", i.getReorderLevel());
+        m.put("active", Boolean.TRUE.equals(i.getActive()));
+        m.put("notes", i.getNotes());
+        m.put("updated_at", i.getUpdatedAt());
+        return m;
+    }
+
+    private static Map<String, Object> recipeView(RecipeItem r) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", r.getRecipeItemId());
+        m.put("product_id", r.getProductId());
+        m.put("size_id", r.getSizeId());
+        m.put("add_on_id", r.getAddOnId());
+        m.put("inventory_item_id", r.getInventoryItemId());
+        m.put("quantity", r.getQuantity());
+        return m;
+    }
+}
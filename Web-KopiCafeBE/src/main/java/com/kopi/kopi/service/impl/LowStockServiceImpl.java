@@ -0,0 +1,152 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.LowStockItem;
+import com.kopi.kopi.entity.InventoryItem;
+import com.kopi.kopi.entity.User;
+import com.kopi.kopi.entity.enums.UserStatus;
+import com.kopi.kopi.event.InventoryChangedEvent;
+import com.kopi.kopi.repository.InventoryItemRepository;
+import com.kopi.kopi.repository.UserRepository;
+import com.kopi.kopi.service.LowStockService;
+import com.kopi.kopi.service.NotificationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cảnh báo sắp hết nguyên liệu, chỉ xét các nguyên liệu vừa bị trừ/nhập (InventoryChangedEvent).
+ * Có vùng trễ để không bắn thông báo liên tục khi tồn dao động quanh ngưỡng:
+ * - vào trạng thái low khi quantity_on_hand <= reorder_level;
+ * - chỉ thoát khi quantity_on_hand > reorder_level x clear-ratio (mặc định 120%).
+ * Danh sách low giữ trong bộ nhớ, nạp một lần bằng truy vấn lúc cần lần đầu.
+ */
+@Service
+public class LowStockServiceImpl implements LowStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(LowStockServiceImpl.class);
+
+    private final InventoryItemRepository itemRepository;
+    private final UserRepository userRepository;
+    private final NotificationService notificationService;
+    private final BigDecimal clearRatio;
+
+    private final Map<Integer, LowStockItem> low = new ConcurrentHashMap<>();
+    private volatile boolean seeded;
+
+    public LowStockServiceImpl(InventoryItemRepository itemRepository,
+                               UserRepository userRepository,
+                               NotificationService notificationService,
+                               @Value("${app.inventory.low-stock.clear-ratio:1.2}") BigDecimal clearRatio) {
+        this.itemRepository = itemRepository;
+        this.userRepository = userRepository;
+        this.notificationService = notificationService;
+        this.clearRatio = clearRatio.max(BigDecimal.ONE);
+    }
+
+    record Transition(InventoryItem item, boolean entered) {
+    }
+
+    private void seed() {
+        if (seeded) return;
+        synchronized (this) {
+            if (seeded) return;
+            // Nguyên liệu đã low từ trước khi khởi động: đưa vào danh sách, không báo lại
+            LocalDateTime now = LocalDateTime.now();
+            for (InventoryItem i : itemRepository.findLowStock()) low.put(i.getInventoryItemId(), view(i, now));
+            seeded = true;
+        }
+    }
+
+    @Override
+    public List<LowStockItem> current() {
+        seed();
+        List<LowStockItem> list = new ArrayList<>(low.values());
+        list.sort(Comparator.comparing(LowStockItem::since).thenComparing(LowStockItem::itemId));
+        return list;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        if (event.inventoryItemIds() == null || event.inventoryItemIds().isEmpty()) return;
+        try {
+            evaluate(event.inventoryItemIds());
+        } catch (Exception ex) {
+            log.warn("Low-stock evaluation failed: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public void evaluate(Collection<Integer> inventoryItemIds) {
+        seed();
+        List<Transition> transitions = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (this) {
+            // Đọc tồn trong khoá: lượt sau luôn thấy số mới hơn lượt trước, không báo trùng từ dữ liệu cũ
+            List<InventoryItem> items = itemRepository.findAllById(inventoryItemIds);
+            for (InventoryItem i : items) {
+                Integer id = i.getInventoryItemId();
+                LowStockItem previous = low.get(id);
+                if (!Boolean.TRUE.equals(i.getActive())) {
+                    low.remove(id);
+                    continue;
+                }
+                if (previous == null) {
+                    if (isLow(i)) {
+                        low.put(id, view(i, now));
+                        transitions.add(new Transition(i, true));
+                    }
+                } else if (isCleared(i)) {
+                    low.remove(id);
+                    transitions.add(new Transition(i, false));
+                } else {
+                    // Vẫn low (hoặc trong vùng trễ): cập nhật số tồn, giữ nguyên mốc since
+                    low.put(id, view(i, previous.since()));
+                }
+            }
+        }
+        if (!transitions.isEmpty()) notifyAdmins(transitions);
+    }
+
+    private boolean isLow(InventoryItem i) {
+        return i.getQuantityOnHand() != null && i.getReorderLevel() != null
+                && i.getQuantityOnHand().compareTo(i.getReorderLevel()) <= 0;
+    }
+
+    private boolean isCleared(InventoryItem i) {
+        if (i.getQuantityOnHand() == null || i.getReorderLevel() == null) return true;
+        return i.getQuantityOnHand().compareTo(i.getReorderLevel().multiply(clearRatio)) > 0;
+    }
+
+    private void notifyAdmins(List<Transition> transitions) {
+        List<User> admins = userRepository.findByRoleNameIn(List.of("ADMIN")).stream()
+                .filter(u -> u.getStatus() == UserStatus.ACTIVE)
+                .toList();
+        for (Transition t : transitions) {
+            InventoryItem i = t.item();
+            String title = t.entered() ? "Sắp hết nguyên liệu: " + i.getName() : "Đã bổ sung nguyên liệu: " + i.getName();
+            String message = String.format("Tồn kho hiện tại %s %s (mức đặt hàng lại %s %s).",
+                    i.getQuantityOnHand().stripTrailingZeros().toPlainString(), i.getUnit(),
+                    i.getReorderLevel().stripTrailingZeros().toPlainString(), i.getUnit());
+            for (User admin : admins) {
+                try {
+                    notificationService.sendNotification(admin, title, message,
+                            t.entered() ? "LOW_STOCK" : "LOW_STOCK_CLEARED", null);
+                } catch (Exception ex) {
+                    log.warn("Low-stock notification to user {} failed: {}", admin.getUserId(), ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private static LowStockItem view(InventoryItem i, LocalDateTime since) {
+        return new LowStockItem(i.getInventoryItemId(), i.getName(), i.getUnit(), i.getQuantityOnHand(),
+                i.getReorderLevel(), since);
+    }
+}
@@ -1,31 +1,105 @@
 package com.kopi.kopi.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kopi.kopi.controller.MenuController;
-import com.kopi.kopi.entity.Category;
+import com.kopi.kopi.dto.MenuSnapshot;
+import com.kopi.kopi.event.CatalogChangedEvent;
 import com.kopi.kopi.repository.CategoryRepository;
+import com.kopi.kopi.service.AvailabilityService;
 import com.kopi.kopi.service.MenuService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Menu được dựng một lần từ một truy vấn (danh mục + sản phẩm đang bán), serialize sẵn thành
+ * JSON và gzip rồi phục vụ thẳng các byte đó. Dựng lại khi có CatalogChangedEvent, kể cả khi
+ * AvailabilityService qua một mốc khung giờ bán.
+ */
 @Service
 public class MenuServiceImpl implements MenuService {
+    private static final Logger log = LoggerFactory.getLogger(MenuServiceImpl.class);
+
     private final CategoryRepository categoryRepository;
+    private final ObjectMapper objectMapper;
+    private final AvailabilityService availabilityService;
+
+    private volatile MenuSnapshot snapshot;
 
-    public MenuServiceImpl(CategoryRepository categoryRepository) {
+    public MenuServiceImpl(CategoryRepository categoryRepository, ObjectMapper objectMapper, AvailabilityService availabilityService) {
         this.categoryRepository = categoryRepository;
+        this.objectMapper = objectMapper;
+        this.availabilityService = availabilityService;
     }
 
     @Override
     public List<MenuController.MenuCategoryDto> getMenu() {
-        List<Category> categories = categoryRepository.findAll();
-        return categories.stream().map(cat -> {
-            List<MenuController.MenuProductDto> products = cat.getProducts().stream()
-                    .map(p -> new MenuController.MenuProductDto(p.getName(), p.getPrice()))
-                    .collect(Collectors.toList());
-            return new MenuController.MenuCategoryDto(cat.getName(), products);
-        }).collect(Collectors.toList());
+        Map<Integer, String> names = new LinkedHashMap<>();
+        Map<Integer, List<MenuController.MenuProductDto>> products = new LinkedHashMap<>();
+        Set<Integer> closedProducts = availabilityService.closedProductIds();
+        Set<Integer> closedCategories = availabilityService.closedCategoryIds();
+        for (Object[] row : categoryRepository.findMenuRows()) {
+            Integer categoryId = (Integer) row[0];
+            // Danh mục ngoài khung giờ (vd. bữa sáng sau 11h) bị ẩn hẳn khỏi menu
+            if (closedCategories.contains(categoryId)) continue;
+            names.putIfAbsent(categoryId, (String) row[1]);
+            List<MenuController.MenuProductDto> list = products.computeIfAbsent(categoryId, k -> new ArrayList<>());
+            if (row[2] != null && !closedProducts.contains((Integer) row[4])) list.add(new MenuController.MenuProductDto((String) row[2], (BigDecimal) row[3]));
+        }
+        List<MenuController.MenuCategoryDto> result = new ArrayList<>();
+        names.forEach((id, name) -> result.add(new MenuController.MenuCategoryDto(name, products.get(id))));
+        return result;
+    }
+
+    @Override
+    public MenuSnapshot snapshot() {
+        MenuSnapshot current = snapshot;
+        if (current != null) return current;
+        synchronized (this) {
+            if (snapshot == null) snapshot = build();
+            return snapshot;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        synchronized (this) {
+            try {
+                snapshot = build();
+            } catch (Exception ex) {
+                // Để request kế tiếp tự dựng lại thay vì phục vụ menu cũ
+                snapshot = null;
+                log.warn("Menu snapshot rebuild failed: {}", ex.getMessage());
+            }
+        }
     }
-}
 
+    private MenuSnapshot build() {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(getMenu());
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(json.length / 4, 64));
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(json);
+            }
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            String etag = "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+            return new MenuSnapshot(json, out.toByteArray(), etag, LocalDateTime.now());
+        } catch (IOException | java.security.NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Cannot build menu snapshot", ex);
+        }
+    }
+}
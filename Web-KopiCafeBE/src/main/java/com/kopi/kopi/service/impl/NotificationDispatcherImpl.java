@@ -0,0 +1,286 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.User;
+import com.kopi.kopi.entity.enums.UserStatus;
+import com.kopi.kopi.repository.UserRepository;
+import com.kopi.kopi.service.EmailService;
+import com.kopi.kopi.service.NotificationDispatcher;
+import com.kopi.kopi.service.NotificationStreamService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gửi thông báo bất đồng bộ: thread gọi (vd. đổi trạng thái đơn) chỉ offer vào hàng đợi có giới hạn,
+ * worker gom tối đa batch-size thông báo, ghi bằng JDBC batch rồi mới gửi email. Thông báo theo role
+ * chỉ ghi một dòng broadcast cho mỗi role (không nhân theo số staff); người nhận theo role chỉ được tra
+ * (một lần cho cả lô) khi cần gửi email. Hàng đợi đầy thì bỏ thông báo mới (đếm vào dropped) thay vì chặn.
+ */
+@Service
+public class NotificationDispatcherImpl implements NotificationDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcherImpl.class);
+
+    static final String INSERT_NOTIFICATION = """
+            INSERT INTO dbo.notifications (user_id, order_id, title, message, type, is_read, created_at)
+            VALUES (?, ?, ?, ?, ?, 0, ?)
+            """;
+
+    static final String INSERT_BROADCAST = """
+            INSERT INTO dbo.broadcast_notifications (audience, order_id, title, message, type, created_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final EmailService emailService;
+    private final NotificationStreamService streamService;
+    private final BlockingQueue<Message> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong insertFailures = new AtomicLong();
+    private final AtomicLong emailsSent = new AtomicLong();
+    private final AtomicLong emailsFailed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong highWater = new AtomicLong();
+
+    public NotificationDispatcherImpl(JdbcTemplate jdbcTemplate, UserRepository userRepository, EmailService emailService,
+                                      NotificationStreamService streamService,
+                                      @Value("${app.notifications.queue-capacity:5000}") int capacity,
+                                      @Value("${app.notifications.workers:2}") int workers,
+                                      @Value("${app.notifications.batch-size:200}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.emailService = emailService;
+        this.streamService = streamService;
+        this.capacity = Math.max(capacity, 1);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        this.batchSize = Math.max(batchSize, 1);
+        // workers = 0: không chạy thread nền (test gọi drainOnce trực tiếp)
+        for (int i = 0; i < workers; i++) {
+            Thread t = new Thread(this::workLoop, "notification-worker-" + (i + 1));
+            t.setDaemon(true);
+            t.start();
+            this.workers.add(t);
+        }
+    }
+
+    @Override
+    public boolean dispatch(Message message) {
+        if (message == null) return false;
+        // Thông báo cho thay đổi chưa commit không được gửi đi; rollback thì bỏ luôn
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(message);
+                }
+            });
+            return true;
+        }
+        return offer(message);
+    }
+
+    private boolean offer(Message message) {
+        if (!queue.offer(message)) {
+            long n = dropped.incrementAndGet();
+            // Không log từng cái khi đang quá tải
+            if (n == 1 || n % 100 == 0) {
+                log.warn("Notification queue full ({}), dropped {} so far", capacity, n);
+            }
+            return false;
+        }
+        queued.incrementAndGet();
+        highWater.accumulateAndGet(queue.size(), Math::max);
+        return true;
+    }
+
+    private void workLoop() {
+        while (running) {
+            try {
+                Message first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) process(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                log.warn("Notification batch failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    /** Xử lý một lô đang có trong hàng đợi trên thread hiện tại; trả về số thông báo đã lấy ra */
+    int drainOnce() {
+        Message first = queue.poll();
+        return first == null ? 0 : process(first);
+    }
+
+    private int process(Message first) {
+        List<Message> batch = new ArrayList<>(Math.min(batchSize, queue.size() + 1));
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        batches.incrementAndGet();
+
+        // Mỗi tập role chỉ tra DB một lần cho cả lô
+        Map<Set<String>, List<User>> audiences = new HashMap<>();
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> broadcasts = new ArrayList<>();
+        List<String[]> emails = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (Message m : batch) {
+            boolean inApp = m.message() != null;
+            if (m.roles() == null || m.roles().isEmpty()) {
+                if (inApp) {
+                    if (m.userId() == null) continue;
+                    rows.add(row(m.userId(), m, now));
+                }
+                if (m.emailText() != null && m.email() != null && !m.email().isBlank()) {
+                    emails.add(new String[]{m.email(), m.title(), m.emailText()});
+                }
+                continue;
+            }
+            if (inApp) {
+                for (String role : m.roles()) {
+                    broadcasts.add(row(role, m, now));
+                }
+            }
+            if (m.emailText() == null) continue;
+            List<User> recipients = audiences.computeIfAbsent(m.roles(), roles -> userRepository.findByRoleNameIn(roles)
+                    .stream().filter(u -> u.getStatus() == UserStatus.ACTIVE).toList());
+            for (User u : recipients) {
+                if (u.getEmail() != null && !u.getEmail().isBlank()) {
+                    emails.add(new String[]{u.getEmail(), m.title(), m.emailText()});
+                }
+            }
+        }
+
+        if (!rows.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(INSERT_NOTIFICATION, rows);
+                inserted.addAndGet(rows.size());
+                push(rows);
+            } catch (Exception ex) {
+                insertFailures.addAndGet(rows.size());
+                log.warn("Failed to insert {} notifications: {}", rows.size(), ex.getMessage());
+            }
+        }
+        if (!broadcasts.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(INSERT_BROADCAST, broadcasts);
+                inserted.addAndGet(broadcasts.size());
+                pushBroadcasts(broadcasts);
+            } catch (Exception ex) {
+                insertFailures.addAndGet(broadcasts.size());
+                log.warn("Failed to insert {} broadcast notifications: {}", broadcasts.size(), ex.getMessage());
+            }
+        }
+        for (String[] e : emails) {
+            try {
+                emailService.send(e[0], e[1], e[2]);
+                emailsSent.incrementAndGet();
+            } catch (Exception ex) {
+                emailsFailed.incrementAndGet();
+                log.warn("Failed to send notification email to {}: {}", e[0], ex.getMessage());
+            }
+        }
+        return batch.size();
+    }
+
+    // Chỉ đẩy SSE / cộng bộ đếm chưa đọc sau khi đã ghi DB thành công
+    private void push(List<Object[]> rows) {
+        for (Object[] r : rows) {
+            try {
+                streamService.onCreated((Integer) r[0], payload(r));
+            } catch (Exception ex) {
+                log.debug("Notification push to user {} failed: {}", r[0], ex.getMessage());
+            }
+        }
+    }
+
+    private void pushBroadcasts(List<Object[]> rows) {
+        for (Object[] r : rows) {
+            try {
+                streamService.onBroadcast((String) r[0], payload(r));
+            } catch (Exception ex) {
+                log.debug("Broadcast push to role {} failed: {}", r[0], ex.getMessage());
+            }
+        }
+    }
+
+    private static Map<String, Object> payload(Object[] r) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("orderId", r[1]);
+        payload.put("title", r[2]);
+        payload.put("message", r[3]);
+        payload.put("type", r[4]);
+        payload.put("isRead", false);
+        payload.put("createdAt", ((Timestamp) r[5]).toLocalDateTime());
+        return payload;
+    }
+
+    // Cột đầu: user_id (thông báo riêng) hoặc audience (broadcast)
+    private static Object[] row(Object recipient, Message m, Timestamp now) {
+        return new Object[]{recipient, m.orderId(), m.title(), m.message(), m.type() != null ? m.type() : "SYSTEM", now};
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("queue_size", queue.size());
+        out.put("queue_capacity", capacity);
+        out.put("queue_high_water", highWater.get());
+        out.put("workers", workers.size());
+        out.put("queued", queued.get());
+        out.put("dropped", dropped.get());
+        out.put("batches", batches.get());
+        out.put("inserted", inserted.get());
+        out.put("insert_failures", insertFailures.get());
+        out.put("emails_sent", emailsSent.get());
+        out.put("emails_failed", emailsFailed.get());
+        return out;
+    }
+
+    // Dừng worker rồi xử lý nốt phần còn trong hàng đợi trên thread tắt máy
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread t : workers) {
+            try {
+                t.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        try {
+            while (drainOnce() > 0) {
+                // tiếp tục cho đến khi rỗng
+            }
+        } catch (Exception ex) {
+            log.warn("Notification flush on shutdown failed: {}", ex.getMessage());
+        }
+    }
+}
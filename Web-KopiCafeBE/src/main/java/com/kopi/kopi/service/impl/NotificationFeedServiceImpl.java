@@ -0,0 +1,253 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.NotificationFeedItem;
+import com.kopi.kopi.service.NotificationFeedService;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Feed thông báo = thông báo riêng của user + thông báo theo role (mỗi sự kiện một dòng cho mỗi role).
+ * Hai nguồn được đọc bằng keyset (created_at, id) giảm dần, mỗi nguồn tối đa {@code limit} dòng,
+ * rồi trộn hai danh sách đã sắp xếp. Trạng thái đọc của thông báo theo role không nhân bản theo user:
+ * watermark (đọc hết) + receipt cho từng broadcast đọc/ẩn lẻ phía trên watermark.
+ */
+@Service
+public class NotificationFeedServiceImpl implements NotificationFeedService {
+    // Chưa có cursor: lấy từ dòng mới nhất
+    private static final LocalDateTime NO_CURSOR = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final LocalDateTime NO_SINCE = LocalDateTime.of(1900, 1, 1, 0, 0);
+
+    static final Comparator<NotificationFeedItem> FEED_ORDER = Comparator
+            .comparing(NotificationFeedItem::getCreatedAt, Comparator.reverseOrder())
+            .thenComparing(i -> NotificationFeedItem.BROADCAST.equals(i.getScope()))
+            .thenComparing(NotificationFeedItem::getSourceId, Comparator.reverseOrder());
+
+    private static final String FEED_COLUMNS = """
+            o.order_id, o.order_code, o.status, o.address_id, t.number
+            """;
+
+    static final String PERSONAL_FEED = """
+            SELECT TOP (?) n.notification_id, n.title, n.message, n.type, CAST(n.is_read AS INT) AS is_read, n.created_at,
+            """ + FEED_COLUMNS + """
+            FROM dbo.notifications n
+            LEFT JOIN dbo.orders o ON o.order_id = n.order_id
+            LEFT JOIN dbo.tables t ON t.table_id = o.table_id
+            WHERE n.user_id = ?
+              AND (n.created_at < ? OR (n.created_at = ? AND n.notification_id < ?))
+              AND (? = 0 OR n.is_read = 0)
+            ORDER BY n.created_at DESC, n.notification_id DESC
+            """;
+
+    private static final String BROADCAST_SELECT = """
+            SELECT TOP (?) b.broadcast_id, b.title, b.message, b.type,
+                   CASE WHEN b.broadcast_id <= ? OR r.broadcast_id IS NOT NULL THEN 1 ELSE 0 END AS is_read, b.created_at,
+            """ + FEED_COLUMNS + """
+            FROM dbo.broadcast_notifications b
+            LEFT JOIN dbo.broadcast_receipts r ON r.user_id = ? AND r.broadcast_id = b.broadcast_id
+            LEFT JOIN dbo.orders o ON o.order_id = b.order_id
+            LEFT JOIN dbo.tables t ON t.table_id = o.table_id
+            WHERE b.audience = ? AND b.created_at >= ?
+              AND (r.is_hidden IS NULL OR r.is_hidden = 0)
+            """;
+
+    static final String BROADCAST_FEED = BROADCAST_SELECT + """
+              AND (b.created_at < ? OR (b.created_at = ? AND b.broadcast_id < ?))
+              AND (? = 0 OR (b.broadcast_id > ? AND r.broadcast_id IS NULL))
+            ORDER BY b.created_at DESC, b.broadcast_id DESC
+            """;
+
+    static final String BROADCAST_BY_ID = BROADCAST_SELECT + """
+              AND b.broadcast_id = ?
+            """;
+
+    static final String COUNT_PERSONAL = "SELECT COUNT_BIG(*) FROM dbo.notifications WHERE user_id = ?";
+
+    static final String COUNT_BROADCASTS = """
+            SELECT COUNT_BIG(*) FROM dbo.broadcast_notifications b
+            WHERE b.audience = ? AND b.created_at >= ?
+              AND NOT EXISTS (SELECT 1 FROM dbo.broadcast_receipts r
+                              WHERE r.user_id = ? AND r.broadcast_id = b.broadcast_id AND r.is_hidden = 1)
+            """;
+
+    static final String COUNT_UNREAD_BROADCASTS = """
+            SELECT COUNT_BIG(*) FROM dbo.broadcast_notifications b
+            WHERE b.audience = ? AND b.created_at >= ? AND b.broadcast_id > ?
+              AND NOT EXISTS (SELECT 1 FROM dbo.broadcast_receipts r WHERE r.user_id = ? AND r.broadcast_id = b.broadcast_id)
+            """;
+
+    static final String SELECT_WATERMARK = "SELECT broadcast_watermark FROM dbo.notification_read_marks WHERE user_id = ?";
+
+    static final String MAX_BROADCAST = "SELECT MAX(broadcast_id) FROM dbo.broadcast_notifications WHERE audience = ?";
+
+    static final String UPSERT_WATERMARK = """
+            MERGE dbo.notification_read_marks AS t
+            USING (SELECT ? AS user_id, ? AS watermark) AS s ON t.user_id = s.user_id
+            WHEN MATCHED AND t.broadcast_watermark < s.watermark THEN
+                UPDATE SET broadcast_watermark = s.watermark, updated_at = ?
+            WHEN NOT MATCHED THEN
+                INSERT (user_id, broadcast_watermark, updated_at) VALUES (s.user_id, s.watermark, ?);
+            """;
+
+    // Receipt đọc lẻ nằm dưới watermark là thừa; receipt ẩn thì phải giữ
+    static final String COMPACT_RECEIPTS = "DELETE FROM dbo.broadcast_receipts WHERE user_id = ? AND broadcast_id <= ? AND is_hidden = 0";
+
+    static final String INSERT_READ_RECEIPT = """
+            INSERT INTO dbo.broadcast_receipts (user_id, broadcast_id, is_hidden, created_at)
+            SELECT ?, ?, 0, ? WHERE NOT EXISTS (SELECT 1 FROM dbo.broadcast_receipts WHERE user_id = ? AND broadcast_id = ?)
+            """;
+
+    static final String HIDE_RECEIPT = "UPDATE dbo.broadcast_receipts SET is_hidden = 1 WHERE user_id = ? AND broadcast_id = ?";
+
+    static final String INSERT_HIDDEN_RECEIPT = "INSERT INTO dbo.broadcast_receipts (user_id, broadcast_id, is_hidden, created_at) VALUES (?, ?, 1, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NotificationFeedServiceImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<NotificationFeedItem> page(Viewer viewer, Cursor after, int limit, boolean unreadOnly) {
+        int n = Math.max(limit, 1);
+        LocalDateTime at = after != null ? after.createdAt() : NO_CURSOR;
+        boolean afterPersonal = after != null && NotificationFeedItem.PERSONAL.equals(after.scope());
+        // Cùng created_at: thông báo riêng đứng trước, nên cursor nằm ở broadcast nghĩa là đã qua hết thông báo riêng
+        int personalBelow = after == null ? Integer.MAX_VALUE : (afterPersonal ? after.sourceId() : Integer.MIN_VALUE);
+        int broadcastBelow = after == null || afterPersonal ? Integer.MAX_VALUE : after.sourceId();
+        Timestamp ts = Timestamp.valueOf(at);
+        int unread = unreadOnly ? 1 : 0;
+
+        List<NotificationFeedItem> personal = jdbcTemplate.query(PERSONAL_FEED, mapper(NotificationFeedItem.PERSONAL),
+                n, viewer.userId(), ts, ts, personalBelow, unread);
+        List<NotificationFeedItem> broadcasts = List.of();
+        if (viewer.role() != null) {
+            int watermark = watermark(viewer.userId());
+            broadcasts = jdbcTemplate.query(BROADCAST_FEED, mapper(NotificationFeedItem.BROADCAST),
+                    n, watermark, viewer.userId(), viewer.role(), since(viewer), ts, ts, broadcastBelow, unread, watermark);
+        }
+        return merge(personal, broadcasts, n);
+    }
+
+    /** Trộn hai danh sách đã sắp theo FEED_ORDER, lấy tối đa {@code limit} dòng */
+    static List<NotificationFeedItem> merge(List<NotificationFeedItem> a, List<NotificationFeedItem> b, int limit) {
+        List<NotificationFeedItem> out = new ArrayList<>(Math.min(limit, a.size() + b.size()));
+        int i = 0, j = 0;
+        while (out.size() < limit && (i < a.size() || j < b.size())) {
+            if (j >= b.size() || (i < a.size() && FEED_ORDER.compare(a.get(i), b.get(j)) <= 0)) {
+                out.add(a.get(i++));
+            } else {
+                out.add(b.get(j++));
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public long count(Viewer viewer) {
+        Long personal = jdbcTemplate.queryForObject(COUNT_PERSONAL, Long.class, viewer.userId());
+        long total = personal != null ? personal : 0;
+        if (viewer.role() != null) {
+            Long b = jdbcTemplate.queryForObject(COUNT_BROADCASTS, Long.class, viewer.role(), since(viewer), viewer.userId());
+            total += b != null ? b : 0;
+        }
+        return total;
+    }
+
+    @Override
+    public long unreadBroadcasts(Viewer viewer) {
+        if (viewer.role() == null) return 0;
+        Long n = jdbcTemplate.queryForObject(COUNT_UNREAD_BROADCASTS, Long.class,
+                viewer.role(), since(viewer), watermark(viewer.userId()), viewer.userId());
+        return n != null ? n : 0;
+    }
+
+    @Override
+    public Optional<NotificationFeedItem> findBroadcast(Viewer viewer, int broadcastId) {
+        if (viewer.role() == null) return Optional.empty();
+        return jdbcTemplate.query(BROADCAST_BY_ID, mapper(NotificationFeedItem.BROADCAST),
+                1, watermark(viewer.userId()), viewer.userId(), viewer.role(), since(viewer), broadcastId).stream().findFirst();
+    }
+
+    @Override
+    public boolean markBroadcastRead(Viewer viewer, int broadcastId) {
+        if (broadcastId <= watermark(viewer.userId())) return false;
+        try {
+            return jdbcTemplate.update(INSERT_READ_RECEIPT, viewer.userId(), broadcastId, now(),
+                    viewer.userId(), broadcastId) > 0;
+        } catch (DuplicateKeyException ex) {
+            // Request song song đã ghi receipt
+            return false;
+        }
+    }
+
+    @Override
+    @Transactional
+    public long markAllBroadcastsRead(Viewer viewer) {
+        if (viewer.role() == null) return 0;
+        long unread = unreadBroadcasts(viewer);
+        Integer max = jdbcTemplate.queryForObject(MAX_BROADCAST, Integer.class, viewer.role());
+        if (max == null || max <= watermark(viewer.userId())) return unread;
+        Timestamp now = now();
+        jdbcTemplate.update(UPSERT_WATERMARK, viewer.userId(), max, now, now);
+        jdbcTemplate.update(COMPACT_RECEIPTS, viewer.userId(), max);
+        return unread;
+    }
+
+    @Override
+    @Transactional
+    public boolean hideBroadcast(Viewer viewer, int broadcastId) {
+        boolean wasUnread = findBroadcast(viewer, broadcastId).map(i -> !Boolean.TRUE.equals(i.getIsRead())).orElse(false);
+        if (jdbcTemplate.update(HIDE_RECEIPT, viewer.userId(), broadcastId) == 0) {
+            jdbcTemplate.update(INSERT_HIDDEN_RECEIPT, viewer.userId(), broadcastId, now());
+        }
+        return wasUnread;
+    }
+
+    private int watermark(Integer userId) {
+        List<Integer> wm = jdbcTemplate.queryForList(SELECT_WATERMARK, Integer.class, userId);
+        return wm.isEmpty() || wm.get(0) == null ? 0 : wm.get(0);
+    }
+
+    private static Timestamp since(Viewer viewer) {
+        return Timestamp.valueOf(viewer.since() != null ? viewer.since() : NO_SINCE);
+    }
+
+    private static Timestamp now() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+
+    private static RowMapper<NotificationFeedItem> mapper(String scope) {
+        return (rs, i) -> {
+            int orderId = rs.getInt(7);
+            boolean hasOrder = !rs.wasNull();
+            int table = rs.getInt(11);
+            boolean hasTable = !rs.wasNull();
+            rs.getObject(10);
+            boolean shipping = !rs.wasNull();
+            return NotificationFeedItem.builder()
+                    .scope(scope)
+                    .sourceId(rs.getInt(1))
+                    .title(rs.getString(2))
+                    .message(rs.getString(3))
+                    .type(rs.getString(4))
+                    .isRead(rs.getInt(5) != 0)
+                    .createdAt(rs.getTimestamp(6).toLocalDateTime())
+                    .orderId(hasOrder ? orderId : null)
+                    .orderCode(hasOrder ? rs.getString(8) : null)
+                    .orderStatus(hasOrder ? rs.getString(9) : null)
+                    .shipping(hasOrder ? shipping : null)
+                    .tableNumber(hasTable ? table : null)
+                    .build();
+        };
+    }
+}
@@ -0,0 +1,149 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.service.NotificationRetentionService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Dọn thông báo cũ để bảng và index luôn nhỏ:
+ * - thông báo riêng đã đọc, cũ hơn read-days;
+ * - thông báo theo role cũ hơn broadcast-days (receipt đọc/ẩn đi theo nhờ ON DELETE CASCADE).
+ * Mỗi lần chỉ xoá TOP (chunk-size) dòng trong transaction riêng (auto-commit) rồi nghỉ pause-ms,
+ * để không giữ lock lâu và không làm phình transaction log. Thông báo chưa đọc không bị xoá.
+ * Lượt theo lịch chạy trên thread riêng: các lần nghỉ giữa chunk không chiếm thread của scheduler dùng chung.
+ */
+@Service
+public class NotificationRetentionServiceImpl implements NotificationRetentionService {
+    private static final Logger log = LoggerFactory.getLogger(NotificationRetentionServiceImpl.class);
+
+    static final String DELETE_READ = """
+            DELETE FROM dbo.notifications
+            WHERE notification_id IN (
+                SELECT TOP (?) notification_id FROM dbo.notifications
+                WHERE is_read = 1 AND created_at < ?
+                ORDER BY created_at)
+            """;
+
+    static final String DELETE_BROADCASTS = """
+            DELETE FROM dbo.broadcast_notifications
+            WHERE broadcast_id IN (
+                SELECT TOP (?) broadcast_id FROM dbo.broadcast_notifications
+                WHERE created_at < ?
+                ORDER BY created_at)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Clock clock;
+    private final Duration keepRead;
+    private final Duration keepBroadcasts;
+    private final int chunkSize;
+    private final int maxChunks;
+    private final long pauseMs;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "notification-retention");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Autowired
+    public NotificationRetentionServiceImpl(JdbcTemplate jdbcTemplate,
+                                            @Value("${app.notifications.retention.read-days:30}") int readDays,
+                                            @Value("${app.notifications.retention.broadcast-days:30}") int broadcastDays,
+                                            @Value("${app.notifications.retention.chunk-size:1000}") int chunkSize,
+                                            @Value("${app.notifications.retention.max-chunks:500}") int maxChunks,
+                                            @Value("${app.notifications.retention.pause-ms:200}") long pauseMs) {
+        this(jdbcTemplate, Clock.systemDefaultZone(), Duration.ofDays(readDays), Duration.ofDays(broadcastDays),
+                chunkSize, maxChunks, pauseMs);
+    }
+
+    NotificationRetentionServiceImpl(JdbcTemplate jdbcTemplate, Clock clock, Duration keepRead, Duration keepBroadcasts,
+                                     int chunkSize, int maxChunks, long pauseMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clock = clock;
+        this.keepRead = keepRead;
+        this.keepBroadcasts = keepBroadcasts;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.maxChunks = Math.max(maxChunks, 1);
+        this.pauseMs = Math.max(pauseMs, 0);
+    }
+
+    @Scheduled(initialDelayString = "${app.notifications.retention.initial-delay-ms:600000}",
+            fixedDelayString = "${app.notifications.retention.fixed-delay-ms:3600000}")
+    public void scheduledPurge() {
+        // Lượt trước còn chạy thì không xếp thêm
+        if (running.get()) return;
+        worker.execute(() -> {
+            try {
+                purge();
+            } catch (Exception ex) {
+                log.warn("Notification retention failed: {}", ex.getMessage());
+            }
+        });
+    }
+
+    // Ngắt lượt đang chạy: interrupt làm dừng lần nghỉ giữa chunk
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    @Override
+    public Map<String, Object> purge() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        // Lượt trước còn chạy (vd. gọi tay trùng lịch) thì bỏ qua
+        if (!running.compareAndSet(false, true)) {
+            out.put("skipped", true);
+            return out;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now(clock);
+            long read = deleteInChunks(DELETE_READ, now.minus(keepRead));
+            long broadcasts = deleteInChunks(DELETE_BROADCASTS, now.minus(keepBroadcasts));
+            if (read + broadcasts > 0) {
+                log.info("Notification retention removed {} read notifications and {} broadcasts", read, broadcasts);
+            }
+            out.put("notifications", read);
+            out.put("broadcasts", broadcasts);
+            return out;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private long deleteInChunks(String sql, LocalDateTime before) {
+        Timestamp cutoff = Timestamp.valueOf(before);
+        long total = 0;
+        // max-chunks giới hạn một lượt; phần còn lại để lượt sau
+        for (int i = 0; i < maxChunks; i++) {
+            int n = jdbcTemplate.update(sql, chunkSize, cutoff);
+            total += n;
+            if (n < chunkSize) break;
+            if (pauseMs > 0) {
+                try {
+                    Thread.sleep(pauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return total;
+    }
+}
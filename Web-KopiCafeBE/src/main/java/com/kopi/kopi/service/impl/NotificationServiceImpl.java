@@ -1,39 +1,38 @@
 package com.kopi.kopi.service.impl;
 
 import com.kopi.kopi.entity.*;
-import com.kopi.kopi.entity.enums.UserStatus;
-import com.kopi.kopi.repository.NotificationRepository;
-import com.kopi.kopi.repository.UserRepository;
-import com.kopi.kopi.service.EmailService;
+import com.kopi.kopi.service.EmailDigestService;
+import com.kopi.kopi.service.EmailDigestService.Recipient;
+import com.kopi.kopi.service.EmailDigestService.StatusChange;
+import com.kopi.kopi.service.NotificationDispatcher;
+import com.kopi.kopi.service.NotificationDispatcher.Message;
 import com.kopi.kopi.service.NotificationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.util.List;
+import java.util.Set;
 
+// Chỉ soạn nội dung rồi đưa cho NotificationDispatcher; ghi DB và gửi email chạy ở worker nền.
+// Email đổi trạng thái đơn đi qua EmailDigestService để gộp nhiều bước liên tiếp thành một email.
 @Service
 public class NotificationServiceImpl implements NotificationService {
     
     private static final Logger logger = LoggerFactory.getLogger(NotificationServiceImpl.class);
+    private static final Set<String> STAFF_ROLES = Set.of("ADMIN", "STAFF");
     
-    private final NotificationRepository notificationRepository;
-    private final UserRepository userRepository;
-    private final EmailService emailService;
+    private static final String CUSTOMER_FOOTER = "Cảm ơn bạn đã sử dụng dịch vụ của chúng tôi!";
+    private static final String STAFF_FOOTER = "Vui lòng kiểm tra hệ thống để xem chi tiết.";
     
-    public NotificationServiceImpl(
-            NotificationRepository notificationRepository,
-            UserRepository userRepository,
-            EmailService emailService) {
-        this.notificationRepository = notificationRepository;
-        this.userRepository = userRepository;
-        this.emailService = emailService;
+    private final NotificationDispatcher dispatcher;
+    private final EmailDigestService digestService;
+    
+    public NotificationServiceImpl(NotificationDispatcher dispatcher, EmailDigestService digestService) {
+        this.dispatcher = dispatcher;
+        this.digestService = digestService;
     }
     
     @Override
-    @Transactional
     public void notifyOrderStatusChangeToCustomer(OrderEntity order, String previousStatus, String newStatus) {
         if (order.getCustomer() == null) {
             logger.warn("Order {} has no customer, skipping customer notification", order.getOrderId());
@@ -51,43 +50,19 @@ public class NotificationServiceImpl implements NotificationService {
             statusMessage
         );
         
-        // Lưu thông báo vào database
-        Notification notification = Notification.builder()
-                .user(customer)
-                .order(order)
-                .title(title)
-                .message(message)
-                .type("ORDER_STATUS_CHANGE")
-                .isRead(false)
-                .createdAt(LocalDateTime.now())
-                .build();
-        notificationRepository.save(notification);
-        
-        // Gửi email thông báo
-        try {
-            emailService.send(
-                customer.getEmail(),
-                title,
-                message + "\n\nCảm ơn bạn đã sử dụng dịch vụ của chúng tôi!"
-            );
-        } catch (Exception ex) {
-            logger.warn("Failed to send email notification to customer {}: {}", 
-                customer.getEmail(), ex.getMessage());
+        // Thông báo trong app vẫn gửi ngay; email được gộp theo khách
+        dispatcher.dispatch(Message.toUser(customer.getUserId(), customer.getEmail(), order.getOrderId(),
+                title, message, "ORDER_STATUS_CHANGE", null));
+        if (customer.getEmail() != null && !customer.getEmail().isBlank()) {
+            String headline = String.format("Đơn hàng của bạn (Mã: %s) hiện ở trạng thái '%s'. %s",
+                    order.getOrderCode(), getStatusDisplayName(newStatus), statusMessage).trim();
+            digestService.record(Recipient.email(customer.getEmail()), statusChange(order, previousStatus, newStatus,
+                    headline, CUSTOMER_FOOTER));
         }
     }
     
     @Override
-    @Transactional
     public void notifyOrderStatusChangeToStaff(OrderEntity order, String previousStatus, String newStatus) {
-        // Lấy tất cả staff (ADMIN và STAFF roles)
-        // findByRoleNameIn sẽ tự động tìm users có role.name trong danh sách
-        List<User> staffUsers = userRepository.findByRoleNameIn(List.of("ADMIN", "STAFF"));
-        
-        if (staffUsers.isEmpty()) {
-            logger.warn("No staff users found to notify");
-            return;
-        }
-        
         String customerName = order.getCustomer() != null 
             ? order.getCustomer().getFullName() 
             : "Khách hàng";
@@ -106,62 +81,23 @@ public class NotificationServiceImpl implements NotificationService {
             getStatusDisplayName(newStatus)
         );
         
-        // Gửi thông báo cho từng staff
-        for (User staff : staffUsers) {
-            // Chỉ gửi cho staff đang active
-            if (staff.getStatus() != UserStatus.ACTIVE) {
-                continue;
-            }
-            
-            // Lưu thông báo vào database
-            Notification notification = Notification.builder()
-                    .user(staff)
-                    .order(order)
-                    .title(title)
-                    .message(message)
-                    .type("ORDER_STATUS_CHANGE")
-                    .isRead(false)
-                    .createdAt(LocalDateTime.now())
-                    .build();
-            notificationRepository.save(notification);
-            
-            // Gửi email thông báo
-            try {
-                emailService.send(
-                    staff.getEmail(),
-                    title,
-                    message + "\n\nVui lòng kiểm tra hệ thống để xem chi tiết."
-                );
-            } catch (Exception ex) {
-                logger.warn("Failed to send email notification to staff {}: {}", 
-                    staff.getEmail(), ex.getMessage());
-            }
-        }
+        // Danh sách staff ACTIVE (ADMIN và STAFF) được tra ở worker, một lần cho cả lô
+        dispatcher.dispatch(Message.toRoles(STAFF_ROLES, order.getOrderId(), title, message, "ORDER_STATUS_CHANGE", null));
+        String headline = String.format("%s hiện ở trạng thái '%s'.", orderInfo, getStatusDisplayName(newStatus));
+        digestService.record(Recipient.roles(STAFF_ROLES), statusChange(order, previousStatus, newStatus,
+                headline, STAFF_FOOTER));
     }
     
     @Override
-    @Transactional
     public void sendNotification(User user, String title, String message, String type, OrderEntity order) {
-        Notification notification = Notification.builder()
-                .user(user)
-                .order(order)
-                .title(title)
-                .message(message)
-                .type(type != null ? type : "SYSTEM")
-                .isRead(false)
-                .createdAt(LocalDateTime.now())
-                .build();
-        notificationRepository.save(notification);
-        
-        // Gửi email nếu có email
-        if (user.getEmail() != null && !user.getEmail().isBlank()) {
-            try {
-                emailService.send(user.getEmail(), title, message);
-            } catch (Exception ex) {
-                logger.warn("Failed to send email notification to user {}: {}", 
-                    user.getEmail(), ex.getMessage());
-            }
-        }
+        dispatcher.dispatch(Message.toUser(user.getUserId(), user.getEmail(),
+                order != null ? order.getOrderId() : null, title, message, type != null ? type : "SYSTEM", message));
+    }
+    
+    private StatusChange statusChange(OrderEntity order, String previousStatus, String newStatus, String headline,
+                                      String footer) {
+        return new StatusChange(order.getOrderId(), order.getOrderCode(), getStatusDisplayName(previousStatus),
+                newStatus, getStatusDisplayName(newStatus), headline, footer);
     }
     
     private String getStatusDisplayName(String status) {
@@ -0,0 +1,246 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.repository.NotificationRepository;
+import com.kopi.kopi.service.NotificationFeedService;
+import com.kopi.kopi.service.NotificationFeedService.Viewer;
+import com.kopi.kopi.service.NotificationStreamService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Đẩy thông báo qua SSE theo từng user và giữ số chưa đọc trong bộ nhớ, để /unread-count không
+ * phải chạy COUNT mỗi lần frontend poll.
+ * - Bộ đếm nạp từ DB lần đầu được hỏi, sau đó cộng/trừ theo tạo mới / đọc / đọc hết / xoá.
+ * - Thông báo theo role không cộng vào từng user: mỗi role có một số thứ tự broadcast, bộ đếm của user
+ *   nhớ số thứ tự lúc nạp và cộng phần chênh lệch khi đọc.
+ * - Đối soát lười: bộ đếm cũ hơn reconcile-after (hoặc bị trừ xuống âm) thì lần hỏi sau đếm lại từ DB.
+ */
+@Service
+public class NotificationStreamServiceImpl implements NotificationStreamService {
+    private final NotificationRepository notificationRepository;
+    private final NotificationFeedService feedService;
+    private final Clock clock;
+    private final long emitterTimeoutMs;
+    private final long reconcileAfterMs;
+    private final int maxUsers;
+    private final int maxEmittersPerUser;
+
+    private final Map<Integer, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> roleBroadcasts = new ConcurrentHashMap<>();
+    private final Map<Integer, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    private final Map<Integer, Viewer> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong pushed = new AtomicLong();
+
+    private static final class Counter {
+        final Viewer viewer;
+        final AtomicLong unread;
+        final long roleBase;
+        final long loadedAt;
+
+        Counter(Viewer viewer, long unread, long roleBase, long loadedAt) {
+            this.viewer = viewer;
+            this.unread = new AtomicLong(unread);
+            this.roleBase = roleBase;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    @Autowired
+    public NotificationStreamServiceImpl(NotificationRepository notificationRepository, NotificationFeedService feedService,
+                                         @Value("${app.notifications.sse-timeout-ms:1800000}") long emitterTimeoutMs,
+                                         @Value("${app.notifications.unread.reconcile-after:PT10M}") Duration reconcileAfter,
+                                         @Value("${app.notifications.unread.max-users:50000}") int maxUsers,
+                                         @Value("${app.notifications.sse-max-per-user:5}") int maxEmittersPerUser) {
+        this(notificationRepository, feedService, Clock.systemUTC(), emitterTimeoutMs, reconcileAfter, maxUsers, maxEmittersPerUser);
+    }
+
+    NotificationStreamServiceImpl(NotificationRepository notificationRepository, NotificationFeedService feedService,
+                                  Clock clock, long emitterTimeoutMs, Duration reconcileAfter, int maxUsers,
+                                  int maxEmittersPerUser) {
+        this.notificationRepository = notificationRepository;
+        this.feedService = feedService;
+        this.clock = clock;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.reconcileAfterMs = reconcileAfter.toMillis();
+        this.maxUsers = Math.max(maxUsers, 16);
+        this.maxEmittersPerUser = Math.max(maxEmittersPerUser, 1);
+    }
+
+    @Override
+    public SseEmitter subscribe(Viewer viewer) {
+        Integer userId = viewer.userId();
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> remove(userId, emitter));
+        emitter.onTimeout(() -> remove(userId, emitter));
+        emitter.onError(e -> remove(userId, emitter));
+        // Thêm trong compute để không lọt vào danh sách vừa bị remove() bỏ khỏi map
+        List<SseEmitter> list = emitters.compute(userId, (k, l) -> {
+            List<SseEmitter> target = l != null ? l : new CopyOnWriteArrayList<>();
+            target.add(emitter);
+            subscribers.put(userId, viewer);
+            return target;
+        });
+        // Quá nhiều tab cùng mở: đóng kết nối cũ nhất
+        while (list.size() > maxEmittersPerUser) {
+            SseEmitter oldest = list.remove(0);
+            oldest.complete();
+        }
+        try {
+            emitter.send(SseEmitter.event().name("unread").data(Map.of("unreadCount", unreadCount(viewer)), MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException ex) {
+            remove(userId, emitter);
+        }
+        return emitter;
+    }
+
+    @Override
+    public long unreadCount(Viewer viewer) {
+        Counter c = counters.get(viewer.userId());
+        if (c == null || stale(c) || !sameRole(c.viewer, viewer)) c = reload(viewer);
+        return total(c);
+    }
+
+    @Override
+    public void onCreated(Integer userId, Map<String, Object> notification) {
+        if (userId == null) return;
+        Counter c = counters.get(userId);
+        Viewer subscriber = subscribers.get(userId);
+        if (c != null && !stale(c)) {
+            c.unread.incrementAndGet();
+        } else if (subscriber != null) {
+            // Chạy sau khi đã ghi DB nên số đếm lại đã gồm thông báo này
+            c = reload(subscriber);
+        }
+        if (subscriber == null) return;
+        send(userId, "notification", notification);
+        send(userId, "unread", Map.of("unreadCount", total(c)));
+    }
+
+    @Override
+    public void onBroadcast(String role, Map<String, Object> notification) {
+        if (role == null) return;
+        roleBroadcasts.computeIfAbsent(role, r -> new AtomicLong()).incrementAndGet();
+        subscribers.forEach((userId, viewer) -> {
+            if (!role.equals(viewer.role())) return;
+            long unread = unreadCount(viewer);
+            send(userId, "notification", notification);
+            send(userId, "unread", Map.of("unreadCount", unread));
+        });
+    }
+
+    @Override
+    public void onRead(Integer userId, long count) {
+        if (userId == null || count <= 0) return;
+        Counter c = counters.get(userId);
+        if (c == null) return;
+        c.unread.addAndGet(-count);
+        long left = c.unread.get() + roleSeq(c.viewer.role()) - c.roleBase;
+        if (left < 0) {
+            // Lệch so với DB: bỏ bộ đếm, lần hỏi sau đếm lại
+            counters.remove(userId, c);
+            left = 0;
+        }
+        send(userId, "unread", Map.of("unreadCount", left));
+    }
+
+    @Override
+    public void onAllRead(Integer userId) {
+        if (userId == null) return;
+        Counter c = counters.get(userId);
+        if (c != null) counters.put(userId, new Counter(c.viewer, 0, roleSeq(c.viewer.role()), clock.millis()));
+        send(userId, "unread", Map.of("unreadCount", 0L));
+    }
+
+    /** Giữ kết nối qua proxy và dọn emitter đã chết */
+    @Scheduled(fixedDelayString = "${app.notifications.sse-heartbeat-ms:25000}")
+    public void heartbeat() {
+        emitters.forEach((userId, list) -> {
+            for (SseEmitter emitter : list) {
+                try {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } catch (IOException | IllegalStateException ex) {
+                    remove(userId, emitter);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("cached_users", counters.size());
+        out.put("subscribed_users", emitters.size());
+        out.put("connections", emitters.values().stream().mapToInt(List::size).sum());
+        out.put("reloads", reloads.get());
+        out.put("pushed", pushed.get());
+        return out;
+    }
+
+    private boolean stale(Counter c) {
+        return clock.millis() - c.loadedAt >= reconcileAfterMs;
+    }
+
+    private static boolean sameRole(Viewer a, Viewer b) {
+        return a.role() == null ? b.role() == null : a.role().equals(b.role());
+    }
+
+    private long roleSeq(String role) {
+        if (role == null) return 0;
+        AtomicLong seq = roleBroadcasts.get(role);
+        return seq != null ? seq.get() : 0;
+    }
+
+    private long total(Counter c) {
+        return Math.max(0, c.unread.get() + roleSeq(c.viewer.role()) - c.roleBase);
+    }
+
+    private Counter reload(Viewer viewer) {
+        reloads.incrementAndGet();
+        // Lấy số thứ tự trước khi đếm: broadcast xen giữa có thể bị tính hai lần, lần đối soát sau sẽ sửa
+        long base = roleSeq(viewer.role());
+        long unread = notificationRepository.countByUser_UserIdAndIsReadFalse(viewer.userId())
+                + feedService.unreadBroadcasts(viewer);
+        Counter fresh = new Counter(viewer, unread, base, clock.millis());
+        // Giới hạn bộ nhớ; user đang mở SSE sẽ được nạp lại ở lần đẩy kế tiếp
+        if (counters.size() >= maxUsers) counters.clear();
+        counters.put(viewer.userId(), fresh);
+        return fresh;
+    }
+
+    private void send(Integer userId, String name, Object data) {
+        List<SseEmitter> list = emitters.get(userId);
+        if (list == null) return;
+        for (SseEmitter emitter : list) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+                pushed.incrementAndGet();
+            } catch (IOException | IllegalStateException ex) {
+                remove(userId, emitter);
+            }
+        }
+    }
+
+    private void remove(Integer userId, SseEmitter emitter) {
+        emitters.computeIfPresent(userId, (k, list) -> {
+            list.remove(emitter);
+            if (!list.isEmpty()) return list;
+            subscribers.remove(userId);
+            return null;
+        });
+    }
+}
@@ -1,13 +1,22 @@
 package com.kopi.kopi.service.impl;
 
 import com.kopi.kopi.controller.GuestOrderController;
+import com.kopi.kopi.dto.EventPriceTable;
 import com.kopi.kopi.entity.*;
 import com.kopi.kopi.entity.enums.PaymentMethod;
 import com.kopi.kopi.entity.enums.PaymentStatus;
+import com.kopi.kopi.event.OrderCreatedEvent;
+import com.kopi.kopi.event.OrderSnapshot;
+import com.kopi.kopi.event.OrderStatusChangedEvent;
+import com.kopi.kopi.event.PaymentPaidEvent;
 import com.kopi.kopi.repository.*;
+import com.kopi.kopi.service.AvailabilityService;
+import com.kopi.kopi.service.CouponLookupService;
+import com.kopi.kopi.service.EventPricingService;
 import com.kopi.kopi.service.NotificationService;
 import com.kopi.kopi.service.OrderService;
 import com.kopi.kopi.service.TableService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -40,7 +49,14 @@ public class OrderServiceImpl implements OrderService {
     private EntityManager entityManager;
     private final MapboxService mapboxService;
     private final NotificationService notificationService;
-
+    private final ApplicationEventPublisher eventPublisher;
+    private final AvailabilityService availabilityService;
+    private final EventPricingService eventPricingService;
+    private final CouponLookupService couponLookupService;
+
+    // publisher phát sự kiện vòng đời đơn hàng cho các bộ đếm/báo cáo; khung giờ bán để chặn đặt món
+    // ngoài giờ; bảng giá discount event để tính giá khuyến mãi; cache tra mã giảm giá để mã không tồn tại
+    // bị loại mà không truy vấn DB
     public OrderServiceImpl(OrderRepository orderRepository, ProductRepository productRepository,
             AddressRepository addressRepository, UserRepository userRepository, TableService tableService,
             DiningTableRepository diningTableRepository, UserAddressRepository userAddressRepository,
@@ -48,7 +64,9 @@ public class OrderServiceImpl implements OrderService {
             ProductSizeRepository productSizeRepository, ProductAddOnRepository productAddOnRepository,
             SizeRepository sizeRepository, OrderDetailAddOnRepository orderDetailAddOnRepository,
             DiscountCodeRepository discountCodeRepository,
-            DiscountCodeRedemptionRepository discountCodeRedemptionRepository) {
+            DiscountCodeRedemptionRepository discountCodeRedemptionRepository,
+            ApplicationEventPublisher eventPublisher, AvailabilityService availabilityService,
+            EventPricingService eventPricingService, CouponLookupService couponLookupService) {
         this.orderRepository = orderRepository;
         this.productRepository = productRepository;
         this.addressRepository = addressRepository;
@@ -64,6 +82,23 @@ public class OrderServiceImpl implements OrderService {
         this.discountCodeRepository = discountCodeRepository;
         this.discountCodeRedemptionRepository = discountCodeRedemptionRepository;
         this.notificationService = notificationService;
+        this.eventPublisher = eventPublisher;
+        this.availabilityService = availabilityService;
+        this.eventPricingService = eventPricingService;
+        this.couponLookupService = couponLookupService;
+    }
+
+    private boolean orderableNow(Product prod) {
+        return availabilityService.isOrderable(prod.getProductId(),
+                prod.getCategory() != null ? prod.getCategory().getCategoryId() : null);
+    }
+
+    private Optional<DiscountCode> findDiscountCode(String code) {
+        return couponLookupService.find(code);
+    }
+
+    private EventPriceTable eventPrices() {
+        return eventPricingService.current();
     }
 
     @Override
@@ -309,8 +344,10 @@ public class OrderServiceImpl implements OrderService {
         order.setStatus(status);
         order.setUpdatedAt(java.time.LocalDateTime.now());
         // Update payment status in tandem
+        Payment newlyPaid = null;
         if (order.getPayments() != null && !order.getPayments().isEmpty()) {
             Payment payment = order.getPayments().get(0);
+            PaymentStatus previousPaymentStatus = payment.getStatus();
             if (Objects.equals(status, "COMPLETED")) {
                 payment.setStatus(PaymentStatus.PAID);
             } else if (Objects.equals(status, "CANCELLED")) {
@@ -320,14 +357,25 @@ public class OrderServiceImpl implements OrderService {
             } else if (Objects.equals(status, "PAID")) {
                 payment.setStatus(PaymentStatus.PAID);
             }
+            // Báo cáo doanh thu lọc theo paid_at nên phải ghi lại thời điểm thanh toán
+            if (payment.getStatus() == PaymentStatus.PAID && previousPaymentStatus != PaymentStatus.PAID) {
+                if (payment.getPaidAt() == null) payment.setPaidAt(order.getUpdatedAt());
+                newlyPaid = payment;
+            }
         }
         orderRepository.save(order);
+        if (newlyPaid != null) {
+            eventPublisher.publishEvent(new PaymentPaidEvent(order.getOrderId(), newlyPaid.getAmount(),
+                    newlyPaid.getPaidAt()));
+        }
         if (order.getTable() != null) {
             tableService.setAvailableIfNoPendingOrders(order.getTable().getTableId());
         }
 
         // Gửi thông báo khi status thay đổi (chỉ khi status thực sự thay đổi)
         if (!Objects.equals(previousStatus, status)) {
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(OrderSnapshot.of(order), previousStatus, status,
+                    order.getUpdatedAt()));
             try {
                 // Gửi thông báo cho customer
                 notificationService.notifyOrderStatusChangeToCustomer(order, previousStatus, status);
@@ -368,11 +416,17 @@ public class OrderServiceImpl implements OrderService {
 
         BigDecimal subtotal = BigDecimal.ZERO;
         List<OrderDetail> details = new ArrayList<>();
+        // Lấy bảng giá khuyến mãi một lần cho cả giỏ: mọi dòng dùng cùng một phiên bản
+        EventPriceTable prices = eventPrices();
         // 1. Kiểm tra tồn kho cho từng sản phẩm
         for (Map<String, Object> p : products) {
             Integer productId = Integer.valueOf(String.valueOf(p.get("product_id")));
             Integer qty = Integer.valueOf(String.valueOf(p.getOrDefault("qty", 1)));
             Product prod = productRepository.findById(productId).orElseThrow();
+            if (!orderableNow(prod)) {
+                return ResponseEntity.badRequest().body(Map.of("message",
+                    "Sản phẩm " + prod.getName() + " hiện không phục vụ trong khung giờ này!"));
+            }
             if (prod.getStockQty() < qty) {
                 return ResponseEntity.badRequest().body(Map.of("message",
                     "Sản phẩm " + prod.getName() + " không đủ số lượng trong kho!"));
@@ -399,7 +453,8 @@ public class OrderServiceImpl implements OrderService {
                 var paOpt = productAddOnRepository.findByProduct_ProductIdAndAddOn_AddOnId(productId, aId);
                 if (paOpt.isPresent() && paOpt.get().getPrice() != null) addOnSum = addOnSum.add(paOpt.get().getPrice());
             }
-            BigDecimal unit = base.add(sizeDelta).add(addOnSum);
+            // Khuyến mãi áp lên giá món + size, không áp lên topping
+            BigDecimal unit = prices.price(productId, base.add(sizeDelta)).add(addOnSum);
 
             subtotal = subtotal.add(unit.multiply(BigDecimal.valueOf(qty)));
             OrderDetail d = OrderDetail.builder()
@@ -514,7 +569,7 @@ public class OrderServiceImpl implements OrderService {
         }
         DiscountCode appliedCode = null;
         if (discountCodeStr != null && !discountCodeStr.isBlank()) {
-            var dcOpt = discountCodeRepository.findByCodeIgnoreCase(discountCodeStr);
+            var dcOpt = findDiscountCode(discountCodeStr);
             if (dcOpt.isPresent()) {
                 DiscountCode dc = dcOpt.get();
                 String validationError = validateDiscountCodeForUser(dc, subtotal, current);
@@ -569,6 +624,7 @@ public class OrderServiceImpl implements OrderService {
                     .method(method)
                     .status(paid ? PaymentStatus.PAID : PaymentStatus.PENDING)
                     .createdAt(LocalDateTime.now())
+                    .paidAt(paid ? order.getCreatedAt() : null)
                     .build();
             order.getPayments().add(payment);
         }
@@ -580,24 +636,36 @@ public class OrderServiceImpl implements OrderService {
         } catch (Exception ignored) {
         }
         // New: persist add-ons by matching request products to saved details
-        persistAddOnsForOrder(saved, products);
+        persistAddOnsForOrder(saved, products, prices);
         // Record discount redemption if applied
         if (appliedCode != null) {
+            // appliedCode có thể là bản sao từ cache: chỉ dùng id để tham chiếu và tăng lượt dùng
             DiscountCodeRedemption redemption = DiscountCodeRedemption.builder()
-                    .discountCode(appliedCode)
+                    .discountCode(discountCodeRepository.getReferenceById(appliedCode.getDiscountCodeId()))
                     .order(saved)
                     .user(current)
                     .redeemedAt(LocalDateTime.now())
                     .build();
             discountCodeRedemptionRepository.save(redemption);
             // increment usage count safely
-            Integer usage = appliedCode.getUsageCount() == null ? 0 : appliedCode.getUsageCount();
-            appliedCode.setUsageCount(usage + 1);
-            discountCodeRepository.save(appliedCode);
+            discountCodeRepository.incrementUsage(appliedCode.getDiscountCodeId());
+            couponLookupService.evict(appliedCode.getCode());
         }
+        eventPublisher.publishEvent(new OrderCreatedEvent(OrderSnapshot.of(saved)));
+        publishPaidOnCreate(saved);
         return ResponseEntity.ok(Map.of("message", "OK", "data", Map.of("id", saved.getOrderId())));
     }
 
+    // Đơn tạo ra đã thanh toán (paid=true): báo cho ticker doanh thu giống như khi changeStatus chuyển sang PAID
+    private void publishPaidOnCreate(OrderEntity saved) {
+        for (Payment payment : saved.getPayments()) {
+            if (payment.getStatus() == PaymentStatus.PAID) {
+                eventPublisher.publishEvent(new PaymentPaidEvent(saved.getOrderId(), payment.getAmount(),
+                        payment.getPaidAt()));
+            }
+        }
+    }
+
     private BigDecimal computeDiscountAmount(DiscountCode dc, BigDecimal subtotal) {
         if (dc == null || subtotal == null)
             return BigDecimal.ZERO;
@@ -657,7 +725,7 @@ public class OrderServiceImpl implements OrderService {
         if (code == null || code.isBlank()) {
             return ResponseEntity.badRequest().body(Map.of("message", "Vui lòng nhập mã giảm giá"));
         }
-        var dcOpt = discountCodeRepository.findByCodeIgnoreCase(code);
+        var dcOpt = findDiscountCode(code);
         if (dcOpt.isEmpty()) {
             return ResponseEntity.badRequest().body(Map.of("message", "Mã giảm giá không tồn tại"));
         }
@@ -710,7 +778,8 @@ public class OrderServiceImpl implements OrderService {
 
     // Persist order_detail_add_ons by matching each request product to a saved
     // detail
-    private void persistAddOnsForOrder(OrderEntity order, List<Map<String, Object>> requestProducts) {
+    private void persistAddOnsForOrder(OrderEntity order, List<Map<String, Object>> requestProducts,
+            EventPriceTable prices) {
         if (order == null || requestProducts == null || requestProducts.isEmpty())
             return;
         List<OrderDetail> details = order.getOrderDetails() == null ? List.of()
@@ -758,7 +827,7 @@ public class OrderServiceImpl implements OrderService {
                 if (pa != null && pa.getPrice() != null)
                     addOnSum = addOnSum.add(pa.getPrice());
             }
-            BigDecimal expectedUnit = base.add(sizeDelta).add(addOnSum);
+            BigDecimal expectedUnit = prices.price(productId, base.add(sizeDelta)).add(addOnSum);
 
             // Find first unmatched detail that matches all fields
             int matchIdx = -1;
@@ -835,11 +904,16 @@ public class OrderServiceImpl implements OrderService {
 
         BigDecimal subtotal = BigDecimal.ZERO;
         List<OrderDetail> details = new ArrayList<>();
+        EventPriceTable prices = eventPrices();
         // 1. Kiểm tra tồn kho cho từng sản phẩm guest
         for (GuestOrderController.GuestOrderItem gi : items) {
             Integer productId = gi.product_id();
             Integer qty = gi.qty() == null ? 1 : gi.qty();
             Product prod = productRepository.findById(productId).orElseThrow();
+            if (!orderableNow(prod)) {
+                return ResponseEntity.badRequest().body(Map.of("message",
+                        "Sản phẩm " + prod.getName() + " hiện không phục vụ trong khung giờ này!"));
+            }
             if (prod.getStockQty() < qty) {
                 return ResponseEntity.badRequest().body(Map.of("message",
                         "Sản phẩm " + prod.getName() + " không đủ số lượng trong kho!"));
@@ -850,7 +924,7 @@ public class OrderServiceImpl implements OrderService {
             Integer productId = gi.product_id();
             Integer qty = gi.qty() == null ? 1 : gi.qty();
             Product prod = productRepository.findById(productId).orElseThrow();
-            BigDecimal unit = prod.getPrice();
+            BigDecimal unit = prices.price(productId, prod.getPrice());
             subtotal = subtotal.add(unit.multiply(BigDecimal.valueOf(qty)));
             details.add(OrderDetail.builder()
                     .product(prod)
@@ -885,11 +959,14 @@ public class OrderServiceImpl implements OrderService {
                 .method(method)
                 .status(Boolean.TRUE.equals(req.paid()) ? PaymentStatus.PAID : PaymentStatus.PENDING)
                 .createdAt(LocalDateTime.now())
+                .paidAt(Boolean.TRUE.equals(req.paid()) ? order.getCreatedAt() : null)
                 .build();
         order.getPayments().add(payment);
 
         OrderEntity saved = orderRepository.save(order);
         tableService.setOccupiedIfHasPendingOrders(table.getTableId());
+        eventPublisher.publishEvent(new OrderCreatedEvent(OrderSnapshot.of(saved)));
+        publishPaidOnCreate(saved);
         return ResponseEntity.ok(Map.of("message", "OK", "data", Map.of(
                 "id", saved.getOrderId(),
                 "table_number", table.getNumber(),
@@ -917,6 +994,10 @@ public class OrderServiceImpl implements OrderService {
                 insufficient.add(Map.of("product_id", productId, "reason", "not_found"));
                 continue;
             }
+            if (!orderableNow(prod)) {
+                insufficient.add(Map.of("product_id", productId, "name", prod.getName(), "reason", "not_orderable"));
+                continue;
+            }
             if (prod.getStockQty() == null || prod.getStockQty() < qty) {
                 insufficient.add(Map.of(
                         "product_id", productId,
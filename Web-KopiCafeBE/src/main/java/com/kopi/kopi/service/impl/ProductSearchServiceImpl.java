@@ -0,0 +1,341 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.event.CatalogChangedEvent;
+import com.kopi.kopi.repository.ProductRepository;
+import com.kopi.kopi.service.CatalogCacheService;
+import com.kopi.kopi.service.ProductSearchService;
+import com.kopi.kopi.util.SlugUtil;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tìm sản phẩm theo tên/mô tả trong bộ nhớ, không dấu ("tra sua" khớp "Trà sữa").
+ * Index trigram: mỗi từ được đệm "  từ " rồi cắt thành các cụm 3 ký tự; posting list là int[] chỉ số
+ * sản phẩm (tăng dần). Cụm có đệm đầu cho phép khớp tiền tố, tỉ lệ cụm trùng cho phép khớp gần đúng.
+ * Index là bất biến, dựng lại toàn bộ ở nền khi catalog đổi rồi thay thế bằng một phép gán.
+ */
+@Service
+public class ProductSearchServiceImpl implements ProductSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchServiceImpl.class);
+    private static final int ALPHABET = 38; // ' ', a-z, 0-9, khác
+
+    private final ProductRepository productRepository;
+    private final CatalogCacheService catalogCache;
+    private final double minSimilarity;
+    private final BlockingQueue<Scratch> scratchPool;
+
+    private volatile Index index;
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "product-search-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ProductSearchServiceImpl(ProductRepository productRepository, CatalogCacheService catalogCache,
+                                    @Value("${app.search.min-similarity:0.5}") double minSimilarity,
+                                    @Value("${app.search.scratch-buffers:8}") int scratchBuffers) {
+        this.productRepository = productRepository;
+        this.catalogCache = catalogCache;
+        this.minSimilarity = minSimilarity;
+        this.scratchPool = new ArrayBlockingQueue<>(Math.max(scratchBuffers, 1));
+    }
+
+    static final class Index {
+        final int[] productIds;
+        final int[] categoryIds;   // 0 nếu không có danh mục
+        final String[] names;      // tên đã fold
+        final int[] nameGrams;     // khoá trigram, tăng dần
+        final int[][] namePostings;
+        final int[] descGrams;
+        final int[][] descPostings;
+
+        Index(int[] productIds, int[] categoryIds, String[] names,
+              int[] nameGrams, int[][] namePostings, int[] descGrams, int[][] descPostings) {
+            this.productIds = productIds;
+            this.categoryIds = categoryIds;
+            this.names = names;
+            this.nameGrams = nameGrams;
+            this.namePostings = namePostings;
+            this.descGrams = descGrams;
+            this.descPostings = descPostings;
+        }
+
+        int size() {
+            return productIds.length;
+        }
+
+        static int[] postings(int[] grams, int[][] postings, int gram) {
+            int i = Arrays.binarySearch(grams, gram);
+            return i >= 0 ? postings[i] : null;
+        }
+    }
+
+    // Posting list đang dựng: int[] tự nới, bỏ trùng khi một sản phẩm có cùng cụm nhiều lần
+    private static final class IntList {
+        int[] a = new int[4];
+        int n;
+
+        void addDoc(int doc) {
+            if (n > 0 && a[n - 1] == doc) return;
+            if (n == a.length) a = Arrays.copyOf(a, n * 2);
+            a[n++] = doc;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(a, n);
+        }
+    }
+
+    static Index build(List<Object[]> source) {
+        // Chỉ số doc theo thứ tự productId để hoà điểm thì sản phẩm cũ hơn đứng trước
+        List<Object[]> rows = new ArrayList<>(source);
+        rows.sort(Comparator.comparingInt(r -> ((Number) r[0]).intValue()));
+        int n = rows.size();
+        int[] productIds = new int[n];
+        int[] categoryIds = new int[n];
+        String[] names = new String[n];
+        Map<Integer, IntList> nameMap = new HashMap<>();
+        Map<Integer, IntList> descMap = new HashMap<>();
+        for (int doc = 0; doc < n; doc++) {
+            Object[] r = rows.get(doc);
+            productIds[doc] = ((Number) r[0]).intValue();
+            categoryIds[doc] = r[1] == null ? 0 : ((Number) r[1]).intValue();
+            names[doc] = SlugUtil.fold((String) r[2]);
+            for (int g : grams(names[doc], false)) nameMap.computeIfAbsent(g, k -> new IntList()).addDoc(doc);
+            for (int g : grams(SlugUtil.fold((String) r[3]), false)) descMap.computeIfAbsent(g, k -> new IntList()).addDoc(doc);
+        }
+        int[] nameGrams = sortedKeys(nameMap);
+        int[] descGrams = sortedKeys(descMap);
+        return new Index(productIds, categoryIds, names,
+                nameGrams, toPostings(nameGrams, nameMap), descGrams, toPostings(descGrams, descMap));
+    }
+
+    private static int[] sortedKeys(Map<Integer, IntList> map) {
+        int[] keys = new int[map.size()];
+        int i = 0;
+        for (Integer k : map.keySet()) keys[i++] = k;
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static int[][] toPostings(int[] keys, Map<Integer, IntList> map) {
+        int[][] out = new int[keys.length][];
+        for (int i = 0; i < keys.length; i++) out[i] = map.get(keys[i]).toArray();
+        return out;
+    }
+
+    /**
+     * Các trigram (không trùng) của chuỗi đã fold. prefixLast = true: từ cuối đang gõ dở nên
+     * không thêm cụm đệm cuối, "tra s" vẫn khớp "tra sua".
+     */
+    static int[] grams(String folded, boolean prefixLast) {
+        if (folded.isEmpty()) return new int[0];
+        String[] words = folded.split(" ");
+        Set<Integer> out = new LinkedHashSet<>();
+        for (int w = 0; w < words.length; w++) {
+            boolean open = prefixLast && w == words.length - 1;
+            String padded = "  " + words[w] + (open ? "" : " ");
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                out.add(code(padded.charAt(i)) * ALPHABET * ALPHABET
+                        + code(padded.charAt(i + 1)) * ALPHABET
+                        + code(padded.charAt(i + 2)));
+            }
+        }
+        int[] a = new int[out.size()];
+        int i = 0;
+        for (Integer g : out) a[i++] = g;
+        return a;
+    }
+
+    private static int code(char c) {
+        if (c == ' ') return 0;
+        if (c >= 'a' && c <= 'z') return 1 + (c - 'a');
+        if (c >= '0' && c <= '9') return 27 + (c - '0');
+        return 37;
+    }
+
+    // Mảng đếm tái sử dụng qua một pool có giới hạn: không cấp phát/xoá cả mảng 100k phần tử cho mỗi truy vấn,
+    // và bộ nhớ giữ lại chỉ là scratch-buffers x 3 mảng (không theo số thread của Tomcat)
+    static final class Scratch {
+        int[] nameHits = new int[0];
+        int[] descHits = new int[0];
+        int[] touched = new int[0];
+
+        // Đúng kích thước index hiện tại: index dựng lại nhỏ hơn thì mảng cũng co lại
+        void ensure(int n) {
+            if (nameHits.length == n) return;
+            nameHits = new int[n];
+            descHits = new int[n];
+            touched = new int[n];
+        }
+    }
+
+    private Scratch acquireScratch() {
+        Scratch sc = scratchPool.poll();
+        return sc != null ? sc : new Scratch();
+    }
+
+    // Pool đầy thì bỏ, để GC thu
+    private void releaseScratch(Scratch sc) {
+        scratchPool.offer(sc);
+    }
+
+    int pooledScratchBuffers() {
+        return scratchPool.size();
+    }
+
+    @Override
+    public List<Integer> search(String query, Integer categoryId, int limit, Set<Integer> excludedProducts, Set<Integer> excludedCategories) {
+        String q = SlugUtil.fold(query);
+        if (q.isEmpty() || limit <= 0) return List.of();
+        Index idx = current();
+        int[] qGrams = grams(q, true);
+        int n = idx.size();
+        if (n == 0 || qGrams.length == 0) return List.of();
+
+        Scratch sc = acquireScratch();
+        sc.ensure(n);
+        int[] nameHits = sc.nameHits, descHits = sc.descHits, touched = sc.touched;
+        int touchedCount = 0;
+        // Đếm số cụm trùng cho từng sản phẩm, chỉ đụng tới các sản phẩm có ít nhất một cụm
+        for (int g : qGrams) {
+            int[] p = Index.postings(idx.nameGrams, idx.namePostings, g);
+            if (p != null) {
+                for (int doc : p) {
+                    if (nameHits[doc] == 0 && descHits[doc] == 0) touched[touchedCount++] = doc;
+                    nameHits[doc]++;
+                }
+            }
+            p = Index.postings(idx.descGrams, idx.descPostings, g);
+            if (p != null) {
+                for (int doc : p) {
+                    if (nameHits[doc] == 0 && descHits[doc] == 0) touched[touchedCount++] = doc;
+                    descHits[doc]++;
+                }
+            }
+        }
+
+        // Giữ k kết quả tốt nhất bằng max-heap trên khoá long (nhỏ hơn = tốt hơn):
+        // [điểm đảo ngược | độ dài tên | chỉ số doc], doc theo thứ tự productId nên hoà điểm thì id nhỏ trước
+        int cat = categoryId != null && categoryId > 0 ? categoryId : 0;
+        int k = Math.min(limit, touchedCount);
+        long[] heap = new long[Math.max(k, 1)];
+        int size = 0;
+        try {
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (cat != 0 && idx.categoryIds[doc] != cat) continue;
+                if (!excludedProducts.isEmpty() && excludedProducts.contains(idx.productIds[doc])) continue;
+                if (!excludedCategories.isEmpty() && excludedCategories.contains(idx.categoryIds[doc])) continue;
+                double nameSim = (double) nameHits[doc] / qGrams.length;
+                double descSim = 0.6 * descHits[doc] / qGrams.length; // khớp mô tả xếp sau khớp tên
+                double sim = Math.max(nameSim, descSim);
+                if (sim < minSimilarity) continue;
+                String name = idx.names[doc];
+                // Chỉ tên khớp đủ mọi cụm mới có thể chứa nguyên chuỗi truy vấn: tránh so chuỗi thừa
+                if (nameHits[doc] == qGrams.length) {
+                    if (name.startsWith(q)) sim += 1.0;
+                    else if (name.contains(q)) sim += 0.5;
+                }
+                long key = ((long) (MAX_SCORE - (int) Math.round(sim * 10_000)) << 42)
+                        | ((long) Math.min(name.length(), 1023) << 32)
+                        | doc;
+                if (size < k) {
+                    heap[size] = key;
+                    siftUp(heap, size++);
+                } else if (key < heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, size);
+                }
+            }
+        } finally {
+            for (int i = 0; i < touchedCount; i++) {
+                nameHits[touched[i]] = 0;
+                descHits[touched[i]] = 0;
+            }
+            releaseScratch(sc);
+        }
+
+        Arrays.sort(heap, 0, size);
+        List<Integer> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) result.add(idx.productIds[(int) (heap[i] & 0xFFFFFFFFL)]);
+        return result;
+    }
+
+    private static final int MAX_SCORE = (1 << 21) - 1;
+
+    private static void siftUp(long[] h, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (h[parent] >= h[i]) return;
+            long t = h[parent]; h[parent] = h[i]; h[i] = t;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(long[] h, int size) {
+        int i = 0;
+        while (true) {
+            int l = 2 * i + 1, r = l + 1, largest = i;
+            if (l < size && h[l] > h[largest]) largest = l;
+            if (r < size && h[r] > h[largest]) largest = r;
+            if (largest == i) return;
+            long t = h[largest]; h[largest] = h[i]; h[i] = t;
+            i = largest;
+        }
+    }
+
+    private Index current() {
+        Index idx = index;
+        if (idx != null) return idx;
+        synchronized (this) {
+            if (index == null) index = build(productRepository.findSearchRows());
+            return index;
+        }
+    }
+
+    @Override
+    public void rebuild() {
+        long started = System.nanoTime();
+        Index idx = build(productRepository.findSearchRows());
+        synchronized (this) {
+            index = idx;
+        }
+        // Các trang danh sách được cache từ index cũ
+        catalogCache.evictPages();
+        log.debug("Product search index rebuilt: {} products in {} ms", idx.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (index == null) return; // chưa ai tìm kiếm: để lần tìm đầu tiên tự dựng
+        // Gộp nhiều thay đổi liên tiếp thành một lần dựng lại
+        if (!rebuildQueued.compareAndSet(false, true)) return;
+        rebuilder.execute(() -> {
+            rebuildQueued.set(false);
+            try {
+                rebuild();
+            } catch (Exception ex) {
+                log.warn("Product search index rebuild failed: {}", ex.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+}
@@ -1,5 +1,6 @@
 package com.kopi.kopi.service.impl;
 
+import com.kopi.kopi.dto.CachedJson;
 import com.kopi.kopi.entity.Category;
 import com.kopi.kopi.entity.Product;
 import com.kopi.kopi.entity.ProductAddOn;
@@ -8,8 +9,15 @@ import com.kopi.kopi.repository.CategoryRepository;
 import com.kopi.kopi.repository.ProductAddOnRepository;
 import com.kopi.kopi.repository.ProductRepository;
 import com.kopi.kopi.repository.ProductSizeRepository;
+import com.kopi.kopi.event.CatalogChangedEvent;
+import com.kopi.kopi.service.AvailabilityService;
+import com.kopi.kopi.service.CatalogCacheService;
+import com.kopi.kopi.service.ImageService;
+import com.kopi.kopi.service.ProductSearchService;
 import com.kopi.kopi.service.ProductService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -21,6 +29,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Service
 public class ProductServiceImpl implements ProductService {
@@ -28,16 +38,59 @@ public class ProductServiceImpl implements ProductService {
     private final CategoryRepository categoryRepository;
     private final ProductSizeRepository productSizeRepository;
     private final ProductAddOnRepository productAddOnRepository;
+    private final CatalogCacheService catalogCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProductSearchService productSearchService;
+    private final ImageService imageService;
+    private final AvailabilityService availabilityService;
 
-    public ProductServiceImpl(ProductRepository productRepository, CategoryRepository categoryRepository, ProductSizeRepository productSizeRepository, ProductAddOnRepository productAddOnRepository) {
+    // SQL Server giới hạn ~2100 tham số cho IN (...)
+    private static final int MAX_SEARCH_MATCHES = 2000;
+    // Trần cỡ trang: expand bind mọi product id của trang vào IN (...)
+    static final int MAX_LIMIT = 100;
+
+    public ProductServiceImpl(ProductRepository productRepository, CategoryRepository categoryRepository, ProductSizeRepository productSizeRepository, ProductAddOnRepository productAddOnRepository,
+                              CatalogCacheService catalogCache, ApplicationEventPublisher eventPublisher,
+                              ProductSearchService productSearchService, ImageService imageService,
+                              AvailabilityService availabilityService) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
         this.productSizeRepository = productSizeRepository;
         this.productAddOnRepository = productAddOnRepository;
+        this.catalogCache = catalogCache;
+        this.eventPublisher = eventPublisher;
+        this.productSearchService = productSearchService;
+        this.imageService = imageService;
+        this.availabilityService = availabilityService;
+    }
+
+    @Override
+    public CachedJson listJson(Integer categoryId, String orderBy, String sort, String searchByName, Integer limit, Integer page, String expand) {
+        // Khoá theo tham số đã chuẩn hoá: các request khác nhau về hình thức nhưng cùng kết quả dùng chung entry
+        int cat = categoryId != null && categoryId > 0 ? categoryId : 0;
+        String by = orderBy == null || orderBy.isBlank() ? "" : orderBy;
+        String dir = by.isEmpty() ? "" : (sort != null && sort.equalsIgnoreCase("desc") ? "desc" : "asc");
+        String q = searchByName == null ? "" : searchByName.toLowerCase(java.util.Locale.ROOT);
+        int lim = Math.min(Math.max(limit == null ? 8 : limit, 1), MAX_LIMIT);
+        int pg = Math.max(page == null ? 1 : page, 1);
+        Set<String> ex = parseExpand(expand);
+        String exp = String.join(",", ex);
+        String key = cat + "|" + by + "|" + dir + "|" + lim + "|" + pg + "|" + exp + "|" + q;
+        return catalogCache.page(key, () -> list(cat, by, dir, q, lim, pg, exp));
+    }
+
+    @Override
+    public CachedJson detailJson(Integer id) {
+        return catalogCache.detail(id, () -> detail(id));
     }
 
     @Override
     public Map<String, Object> list(Integer categoryId, String orderBy, String sort, String searchByName, Integer limit, Integer page) {
+        return list(categoryId, orderBy, sort, searchByName, limit, page, null);
+    }
+
+    @Override
+    public Map<String, Object> list(Integer categoryId, String orderBy, String sort, String searchByName, Integer limit, Integer page, String expand) {
         Sort s = Sort.unsorted();
         if (orderBy != null && !orderBy.isBlank()) {
             Sort.Direction dir = (sort != null && sort.equalsIgnoreCase("desc")) ? Sort.Direction.DESC : Sort.Direction.ASC;
@@ -49,13 +102,30 @@ public class ProductServiceImpl implements ProductService {
             };
             s = Sort.by(dir, prop);
         }
-        Pageable pageable = PageRequest.of(Math.max(page - 1, 0), Math.max(limit, 1), s);
+        Pageable pageable = PageRequest.of(Math.max(page - 1, 0), Math.min(Math.max(limit, 1), MAX_LIMIT), s);
 
+        // Trạng thái khung giờ đã tính sẵn tại mốc gần nhất; đổi mốc thì cache trang bị xoá qua CatalogChangedEvent
+        Set<Integer> closedProducts = availabilityService.closedProductIds();
+        Set<Integer> closedCategories = availabilityService.closedCategoryIds();
+        String name = searchByName == null ? "" : searchByName;
         Page<Product> pageData;
-        if (categoryId != null && categoryId > 0) {
-            pageData = productRepository.findByAvailableTrueAndCategory_CategoryIdAndNameContainingIgnoreCase(categoryId, searchByName == null ? "" : searchByName, pageable);
+        if (searchByName != null && !searchByName.isBlank()) {
+            pageData = searchPage(categoryId, searchByName, pageable, closedProducts, closedCategories);
+        } else if (categoryId != null && categoryId > 0) {
+            if (closedCategories.contains(categoryId)) {
+                pageData = Page.empty(pageable);
+            } else if (closedProducts.isEmpty()) {
+                pageData = productRepository.findByAvailableTrueAndCategory_CategoryIdAndNameContainingIgnoreCase(categoryId, name, pageable);
+            } else {
+                pageData = productRepository.findByAvailableTrueAndCategory_CategoryIdAndNameContainingIgnoreCaseAndProductIdNotIn(categoryId, name, closedProducts, pageable);
+            }
+        } else if (closedProducts.isEmpty() && closedCategories.isEmpty()) {
+            pageData = productRepository.findByAvailableTrueAndNameContainingIgnoreCase(name, pageable);
         } else {
-            pageData = productRepository.findByAvailableTrueAndNameContainingIgnoreCase(searchByName == null ? "" : searchByName, pageable);
+            // NOT IN () rỗng không hợp lệ trên SQL Server: dùng id -1 làm phần tử giữ chỗ
+            pageData = productRepository.findAvailableByNameExcluding(name,
+                    closedProducts.isEmpty() ? Set.of(-1) : closedProducts,
+                    closedCategories.isEmpty() ? Set.of(-1) : closedCategories, pageable);
         }
 
         List<Map<String, Object>> items = new ArrayList<>();
@@ -64,11 +134,13 @@ public class ProductServiceImpl implements ProductService {
             m.put("id", p.getProductId());
             m.put("name", p.getName());
             m.put("img", p.getImgUrl());
+            putImageSet(m, p.getImgUrl());
             m.put("price", p.getPrice() != null ? p.getPrice() : BigDecimal.ZERO);
             m.put("stock", p.getStockQty());
             m.put("category_id", p.getCategory() != null ? p.getCategory().getCategoryId() : null);
             items.add(m);
         }
+        expandItems(items, pageData.getContent(), parseExpand(expand));
 
         Map<String, Object> meta = Map.of(
             "currentPage", pageData.getNumber() + 1,
@@ -83,6 +155,28 @@ public class ProductServiceImpl implements ProductService {
         );
     }
 
+    // Tìm qua index trong bộ nhớ (không dấu, gần đúng). Không có orderBy thì giữ thứ tự liên quan,
+    // có orderBy thì để DB sắp xếp trong tập kết quả.
+    private Page<Product> searchPage(Integer categoryId, String searchByName, Pageable pageable,
+                                     Set<Integer> closedProducts, Set<Integer> closedCategories) {
+        List<Integer> ranked = productSearchService.search(searchByName, categoryId, MAX_SEARCH_MATCHES, closedProducts, closedCategories);
+        if (ranked.isEmpty()) return Page.empty(pageable);
+        if (pageable.getSort().isSorted()) {
+            return productRepository.findByAvailableTrueAndProductIdIn(ranked, pageable);
+        }
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        int to = Math.min(from + pageable.getPageSize(), ranked.size());
+        List<Integer> pageIds = ranked.subList(from, to);
+        Map<Integer, Product> byId = new HashMap<>();
+        for (Product p : productRepository.findAllById(pageIds)) byId.put(p.getProductId(), p);
+        List<Product> content = new ArrayList<>();
+        for (Integer id : pageIds) {
+            Product p = byId.get(id);
+            if (p != null && !Boolean.FALSE.equals(p.getAvailable())) content.add(p);
+        }
+        return new PageImpl<>(content, pageable, ranked.size());
+    }
+
     @Override
     public Map<String, Object> detail(Integer id) {
         Product p = productRepository.findById(id).orElseThrow();
@@ -90,25 +184,18 @@ public class ProductServiceImpl implements ProductService {
         item.put("id", p.getProductId());
         item.put("name", p.getName());
         item.put("img", p.getImgUrl());
+        putImageSet(item, p.getImgUrl());
         item.put("price", p.getPrice() != null ? p.getPrice() : BigDecimal.ZERO);
         item.put("stock", p.getStockQty());
         item.put("desc", p.getDescription());
         item.put("category_id", p.getCategory() != null ? p.getCategory().getCategoryId() : null);
+        item.put("orderable", !Boolean.FALSE.equals(p.getAvailable()) && availabilityService.isOrderable(p.getProductId(),
+                p.getCategory() != null ? p.getCategory().getCategoryId() : null));
         // sizes from DB (available only), include delta and computed price
         try {
             List<Map<String, Object>> sizes = new ArrayList<>();
             for (ProductSize ps : productSizeRepository.findByProduct_ProductIdAndAvailableTrue(p.getProductId())) {
-                var s = ps.getSize();
-                Map<String, Object> m = new HashMap<>();
-                m.put("size_id", s != null ? s.getSizeId() : null);
-                m.put("name", s != null ? s.getName() : null);
-                m.put("code", s != null ? s.getCode() : null);
-                BigDecimal base = p.getPrice() != null ? p.getPrice() : BigDecimal.ZERO;
-                BigDecimal delta = ps.getPrice() != null ? ps.getPrice() : BigDecimal.ZERO;
-                m.put("price_delta", delta);
-                m.put("price", base.add(delta));
-                m.put("available", Boolean.TRUE.equals(ps.getAvailable()));
-                sizes.add(m);
+                sizes.add(sizeView(ps, p.getPrice()));
             }
             item.put("sizes", sizes);
         } catch (Exception ignored) {
@@ -118,13 +205,7 @@ public class ProductServiceImpl implements ProductService {
         try {
             List<Map<String, Object>> addons = new ArrayList<>();
             for (ProductAddOn pa : productAddOnRepository.findByProduct_ProductIdAndAvailableTrue(p.getProductId())) {
-                var a = pa.getAddOn();
-                Map<String, Object> m = new HashMap<>();
-                m.put("add_on_id", a != null ? a.getAddOnId() : null);
-                m.put("name", a != null ? a.getName() : null);
-                m.put("price", pa.getPrice() != null ? pa.getPrice() : BigDecimal.ZERO);
-                m.put("available", Boolean.TRUE.equals(pa.getAvailable()));
-                addons.add(m);
+                addons.add(addOnView(pa));
             }
             item.put("add_ons", addons);
         } catch (Exception ignored) {
@@ -133,6 +214,70 @@ public class ProductServiceImpl implements ProductService {
         return Map.of("data", List.of(item));
     }
 
+    // expand=sizes,addons: nạp size/add-on của cả trang bằng hai truy vấn IN thay vì gọi detail từng sản phẩm
+    private void expandItems(List<Map<String, Object>> items, List<Product> products, Set<String> expand) {
+        if (expand.isEmpty() || products.isEmpty()) return;
+        Map<Integer, Product> byId = new HashMap<>();
+        for (Product p : products) byId.put(p.getProductId(), p);
+        if (expand.contains("sizes")) {
+            Map<Integer, List<Map<String, Object>>> sizes = new HashMap<>();
+            for (ProductSize ps : productSizeRepository.findAvailableByProductIds(byId.keySet())) {
+                Integer pid = ps.getProduct().getProductId();
+                Product p = byId.get(pid);
+                sizes.computeIfAbsent(pid, k -> new ArrayList<>()).add(sizeView(ps, p != null ? p.getPrice() : null));
+            }
+            for (Map<String, Object> item : items) item.put("sizes", sizes.getOrDefault((Integer) item.get("id"), List.of()));
+        }
+        if (expand.contains("addons")) {
+            Map<Integer, List<Map<String, Object>>> addons = new HashMap<>();
+            for (ProductAddOn pa : productAddOnRepository.findAvailableByProductIds(byId.keySet())) {
+                addons.computeIfAbsent(pa.getProduct().getProductId(), k -> new ArrayList<>()).add(addOnView(pa));
+            }
+            for (Map<String, Object> item : items) item.put("add_ons", addons.getOrDefault((Integer) item.get("id"), List.of()));
+        }
+    }
+
+    static Set<String> parseExpand(String expand) {
+        Set<String> out = new TreeSet<>();
+        if (expand == null || expand.isBlank()) return out;
+        for (String part : expand.split(",")) {
+            String v = part.trim().toLowerCase(java.util.Locale.ROOT);
+            if (v.equals("sizes")) out.add("sizes");
+            else if (v.equals("addons") || v.equals("add_ons")) out.add("addons");
+        }
+        return out;
+    }
+
+    // Ảnh upload qua ImageService có thêm bản thumb/card/full + srcset cho client chọn theo màn hình
+    private void putImageSet(Map<String, Object> item, String imgUrl) {
+        Map<String, String> set = imageService.responsive(imgUrl);
+        if (set != null) item.put("img_set", set);
+    }
+
+    private static Map<String, Object> sizeView(ProductSize ps, BigDecimal basePrice) {
+        var s = ps.getSize();
+        Map<String, Object> m = new HashMap<>();
+        m.put("size_id", s != null ? s.getSizeId() : null);
+        m.put("name", s != null ? s.getName() : null);
+        m.put("code", s != null ? s.getCode() : null);
+        BigDecimal base = basePrice != null ? basePrice : BigDecimal.ZERO;
+        BigDecimal delta = ps.getPrice() != null ? ps.getPrice() : BigDecimal.ZERO;
+        m.put("price_delta", delta);
+        m.put("price", base.add(delta));
+        m.put("available", Boolean.TRUE.equals(ps.getAvailable()));
+        return m;
+    }
+
+    private static Map<String, Object> addOnView(ProductAddOn pa) {
+        var a = pa.getAddOn();
+        Map<String, Object> m = new HashMap<>();
+        m.put("add_on_id", a != null ? a.getAddOnId() : null);
+        m.put("name", a != null ? a.getName() : null);
+        m.put("price", pa.getPrice() != null ? pa.getPrice() : BigDecimal.ZERO);
+        m.put("available", Boolean.TRUE.equals(pa.getAvailable()));
+        return m;
+    }
+
     @Override
     public ResponseEntity<?> create(org.springframework.web.multipart.MultipartFile image, String imgUrl, String name, Integer categoryId, String desc, BigDecimal price) {
         Category category = categoryRepository.findById(categoryId).orElseThrow();
@@ -140,7 +285,9 @@ public class ProductServiceImpl implements ProductService {
         p.setName(name);
         p.setCategory(category);
         p.setPrice(price);
-        if (imgUrl != null && !imgUrl.isBlank()) {
+        if (image != null && !image.isEmpty()) {
+            p.setImgUrl(imageService.store(image));
+        } else if (imgUrl != null && !imgUrl.isBlank()) {
             p.setImgUrl(imgUrl);
         }
         p.setDescription(desc);
@@ -150,11 +297,13 @@ public class ProductServiceImpl implements ProductService {
         if (p.getCreatedAt() == null) p.setCreatedAt(java.time.LocalDateTime.now());
         if (p.getUpdatedAt() == null) p.setUpdatedAt(java.time.LocalDateTime.now());
         productRepository.save(p);
+        eventPublisher.publishEvent(CatalogChangedEvent.product(p.getProductId()));
 
         Map<String, Object> item = new HashMap<>();
         item.put("id", p.getProductId());
         item.put("name", p.getName());
         item.put("img", p.getImgUrl());
+        putImageSet(item, p.getImgUrl());
         item.put("price", p.getPrice());
         item.put("desc", p.getDescription());
         item.put("category_id", p.getCategory() != null ? p.getCategory().getCategoryId() : null);
@@ -174,16 +323,20 @@ public class ProductServiceImpl implements ProductService {
         if (price != null) {
             p.setPrice(price);
         }
-        if (imgUrl != null && !imgUrl.isBlank()) {
+        if (image != null && !image.isEmpty()) {
+            p.setImgUrl(imageService.store(image));
+        } else if (imgUrl != null && !imgUrl.isBlank()) {
             p.setImgUrl(imgUrl);
         }
         p.setDescription(desc);
         productRepository.save(p);
+        eventPublisher.publishEvent(CatalogChangedEvent.product(p.getProductId()));
 
         Map<String, Object> item = new HashMap<>();
         item.put("id", p.getProductId());
         item.put("name", p.getName());
         item.put("img", p.getImgUrl());
+        putImageSet(item, p.getImgUrl());
         item.put("price", p.getPrice());
         item.put("desc", p.getDescription());
         item.put("category_id", p.getCategory() != null ? p.getCategory().getCategoryId() : null);
@@ -200,6 +353,7 @@ public class ProductServiceImpl implements ProductService {
         p.setAvailable(false);
         // Optional: also zero out stock or keep it; we keep stock as-is for audit
         productRepository.save(p);
+        eventPublisher.publishEvent(CatalogChangedEvent.product(p.getProductId()));
         return ResponseEntity.ok(Map.of("message", "soft_deleted"));
     }
 }
@@ -2,121 +2,303 @@ package com.kopi.kopi.service.impl;
 
 import com.kopi.kopi.entity.DiscountCode;
 import com.kopi.kopi.entity.DiscountEvent;
+import com.kopi.kopi.event.PromoChangedEvent;
 import com.kopi.kopi.repository.DiscountCodeRepository;
 import com.kopi.kopi.repository.DiscountEventRepository;
 import com.kopi.kopi.service.IPromoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
 
+/**
+ * Danh sách khuyến mãi (mã + chương trình) phục vụ từ index trong bộ nhớ, dựng lại khi có PromoChangedEvent.
+ * - Mọi mục được xếp sẵn theo thứ tự hiển thị (startsAt, không có thì createdAt, mới trước); kết quả lọc là
+ *   BitSet trên thứ hạng đó nên phân trang chỉ cần duyệt bit, không sắp xếp lại.
+ * - current: cây khoảng [startsAt, endsAt] (mảng sắp theo startsAt + maxEnd của cây con), O(log n + k);
+ * - upcoming / available: mảng sắp theo startsAt / endsAt, tìm nhị phân;
+ * - searchByName: postings trigram trên code/tên/mô tả, xác nhận lại bằng contains.
+ * - Mã thuộc lô phát hành (batch_id) không vào index / danh sách: tra theo code qua CouponLookupService.
+ * - listAfter: cursor là khoá (sortKey, kind, id) của mục cuối trang trước; tìm nhị phân vị trí rồi duyệt
+ *   tiếp với bộ lọc O(1) mỗi mục, nên một trang là O(log n + k) và không cần tính tổng.
+ */
 @Service
 public class PromoServiceImpl implements IPromoService {
+    private static final Logger log = LoggerFactory.getLogger(PromoServiceImpl.class);
+    private static final int MAX_CURSOR_LIMIT = 100;
+
     private final DiscountCodeRepository discountCodeRepository;
     private final DiscountEventRepository discountEventRepository;
 
+    private volatile Index index;
+
     public PromoServiceImpl(DiscountCodeRepository discountCodeRepository, DiscountEventRepository discountEventRepository) {
         this.discountCodeRepository = discountCodeRepository;
         this.discountEventRepository = discountEventRepository;
     }
 
-    @Override
-    public Map<String, Object> list(Integer page, Integer limit, String available, String status, String searchByName) {
-        LocalDateTime now = LocalDateTime.now();
-        boolean hasStatus = status != null && !status.isBlank();
-        boolean includeInactiveForAll = hasStatus && status.equalsIgnoreCase("all");
-        boolean availableFlag = !hasStatus && "true".equalsIgnoreCase(available);
-
-        List<Map<String, Object>> items = new ArrayList<>();
-
-        for (DiscountCode dc : discountCodeRepository.findAll()) {
-            boolean nameMatch = searchByName == null || searchByName.isBlank()
-                    || dc.getCode().toLowerCase().contains(searchByName.toLowerCase())
-                    || (dc.getDescription() != null && dc.getDescription().toLowerCase().contains(searchByName.toLowerCase()));
-            if (!nameMatch) continue;
-
-            boolean isCurrent = Boolean.TRUE.equals(dc.getActive()) && dc.getStartsAt() != null && dc.getEndsAt() != null
-                    && (dc.getStartsAt().isBefore(now) || dc.getStartsAt().isEqual(now))
-                    && (dc.getEndsAt().isAfter(now) || dc.getEndsAt().isEqual(now));
-            boolean isUpcoming = Boolean.TRUE.equals(dc.getActive()) && dc.getStartsAt() != null && dc.getStartsAt().isAfter(now);
-            boolean isAvailable = Boolean.TRUE.equals(dc.getActive()) && dc.getEndsAt() != null && (dc.getEndsAt().isAfter(now) || dc.getEndsAt().isEqual(now));
-
-            boolean matched = true;
-            if (includeInactiveForAll) {
-                matched = true;
-            } else if (hasStatus) {
-                if (status.equalsIgnoreCase("current")) matched = isCurrent;
-                else if (status.equalsIgnoreCase("upcoming")) matched = isUpcoming;
-                else if (status.equalsIgnoreCase("available") || status.equalsIgnoreCase("current_or_upcoming")) matched = isAvailable;
-                else if (status.equalsIgnoreCase("all")) matched = true;
-            } else if (availableFlag) {
-                matched = isAvailable;
+    private static final long NONE = Long.MIN_VALUE;
+
+    record Entry(Map<String, Object> view, String title, String description, LocalDateTime startsAt,
+                 LocalDateTime endsAt, boolean active, LocalDateTime createdAt) {
+        LocalDateTime sortKey() {
+            return startsAt != null ? startsAt : createdAt;
+        }
+
+        Key key() {
+            return new Key(sortKey() == null ? NONE : sec(sortKey()), (String) view.get("kind"), (Integer) view.get("id"));
+        }
+    }
+
+    /** Thứ tự hiển thị: sortKey mới trước (không có thì cuối), rồi kind, rồi id để thứ tự là toàn phần */
+    record Key(long sortKey, String kind, int id) {
+        static final Comparator<Key> ORDER = Comparator.comparingLong(Key::sortKey).reversed()
+                .thenComparing(Key::kind).thenComparingInt(Key::id);
+
+        String encode() {
+            String raw = sortKey + "|" + kind + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Key decode(String token) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+                if (parts.length != 3 || !(parts[1].equals("CODE") || parts[1].equals("EVENT"))) {
+                    throw new IllegalArgumentException("invalid cursor");
+                }
+                return new Key(Long.parseLong(parts[0]), parts[1], Integer.parseInt(parts[2]));
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("invalid cursor");
             }
-            if (!matched) continue;
-
-            items.add(Map.of(
-                    "id", dc.getDiscountCodeId(),
-                    "kind", "CODE",
-                    "title", dc.getCode(),
-                    "description", dc.getDescription(),
-                    "discountType", dc.getDiscountType() != null ? dc.getDiscountType().name() : null,
-                    "discountValue", dc.getDiscountValue(),
-                    "startsAt", dc.getStartsAt(),
-                    "endsAt", dc.getEndsAt(),
-                    "active", dc.getActive(),
-                    "createdAt", dc.getCreatedAt()
-            ));
         }
+    }
 
-        for (DiscountEvent ev : discountEventRepository.findAll()) {
-            boolean nameMatch = searchByName == null || searchByName.isBlank()
-                    || ev.getName().toLowerCase().contains(searchByName.toLowerCase())
-                    || (ev.getDescription() != null && ev.getDescription().toLowerCase().contains(searchByName.toLowerCase()));
-            if (!nameMatch) continue;
-
-            boolean isCurrent = Boolean.TRUE.equals(ev.getActive()) && ev.getStartsAt() != null && ev.getEndsAt() != null
-                    && (ev.getStartsAt().isBefore(now) || ev.getStartsAt().isEqual(now))
-                    && (ev.getEndsAt().isAfter(now) || ev.getEndsAt().isEqual(now));
-            boolean isUpcoming = Boolean.TRUE.equals(ev.getActive()) && ev.getStartsAt() != null && ev.getStartsAt().isAfter(now);
-            boolean isAvailable = Boolean.TRUE.equals(ev.getActive()) && ev.getEndsAt() != null && (ev.getEndsAt().isAfter(now) || ev.getEndsAt().isEqual(now));
-
-            boolean matchedEv = true;
-            if (includeInactiveForAll) {
-                matchedEv = true;
-            } else if (hasStatus) {
-                if (status.equalsIgnoreCase("current")) matchedEv = isCurrent;
-                else if (status.equalsIgnoreCase("upcoming")) matchedEv = isUpcoming;
-                else if (status.equalsIgnoreCase("available") || status.equalsIgnoreCase("current_or_upcoming")) matchedEv = isAvailable;
-                else if (status.equalsIgnoreCase("all")) matchedEv = true;
-            } else if (availableFlag) {
-                matchedEv = isAvailable;
+    static final class Index {
+        final Map<String, Object>[] views;
+        final Key[] keys;
+        // Theo thứ hạng, cho bộ lọc O(1) khi duyệt theo cursor (NONE = không có)
+        final boolean[] active;
+        final long[] startSec;
+        final long[] endSec;
+        final String[] titles;
+        final String[] descriptions;
+        // Cây khoảng cho mục đang bật có đủ hai đầu mút, sắp theo start
+        final long[] ivStart;
+        final long[] ivEnd;
+        final long[] ivMaxEnd;
+        final int[] ivRank;
+        // Mục đang bật sắp theo startsAt / endsAt
+        final long[] byStart;
+        final int[] byStartRank;
+        final long[] byEnd;
+        final int[] byEndRank;
+        final Map<String, int[]> grams;
+
+        @SuppressWarnings("unchecked")
+        Index(List<Entry> entries) {
+            List<Entry> sorted = new ArrayList<>(entries);
+            sorted.sort(Comparator.comparing(Entry::key, Key.ORDER));
+            int n = sorted.size();
+            views = new Map[n];
+            keys = new Key[n];
+            active = new boolean[n];
+            startSec = new long[n];
+            endSec = new long[n];
+            titles = new String[n];
+            descriptions = new String[n];
+            List<int[]> intervals = new ArrayList<>();
+            List<Integer> starts = new ArrayList<>();
+            List<Integer> ends = new ArrayList<>();
+            Map<String, List<Integer>> postings = new HashMap<>();
+            for (int r = 0; r < n; r++) {
+                Entry e = sorted.get(r);
+                views[r] = e.view();
+                keys[r] = e.key();
+                active[r] = e.active();
+                startSec[r] = e.startsAt() == null ? NONE : sec(e.startsAt());
+                endSec[r] = e.endsAt() == null ? NONE : sec(e.endsAt());
+                titles[r] = e.title() == null ? "" : e.title().toLowerCase(Locale.ROOT);
+                descriptions[r] = e.description() == null ? "" : e.description().toLowerCase(Locale.ROOT);
+                Set<String> seen = new HashSet<>();
+                addGrams(titles[r], seen);
+                addGrams(descriptions[r], seen);
+                for (String g : seen) postings.computeIfAbsent(g, k -> new ArrayList<>()).add(r);
+                if (!e.active()) continue;
+                if (e.startsAt() != null && e.endsAt() != null) intervals.add(new int[]{r});
+                if (e.startsAt() != null) starts.add(r);
+                if (e.endsAt() != null) ends.add(r);
+            }
+
+            intervals.sort(Comparator.comparingLong(iv -> sec(sorted.get(iv[0]).startsAt())));
+            int m = intervals.size();
+            ivStart = new long[m];
+            ivEnd = new long[m];
+            ivMaxEnd = new long[m];
+            ivRank = new int[m];
+            for (int i = 0; i < m; i++) {
+                Entry e = sorted.get(intervals.get(i)[0]);
+                ivStart[i] = sec(e.startsAt());
+                ivEnd[i] = sec(e.endsAt());
+                ivRank[i] = intervals.get(i)[0];
+            }
+            buildMax(0, m);
+
+            starts.sort(Comparator.comparingLong(r -> sec(sorted.get(r).startsAt())));
+            byStart = starts.stream().mapToLong(r -> sec(sorted.get(r).startsAt())).toArray();
+            byStartRank = starts.stream().mapToInt(Integer::intValue).toArray();
+            ends.sort(Comparator.comparingLong(r -> sec(sorted.get(r).endsAt())));
+            byEnd = ends.stream().mapToLong(r -> sec(sorted.get(r).endsAt())).toArray();
+            byEndRank = ends.stream().mapToInt(Integer::intValue).toArray();
+
+            grams = new HashMap<>(postings.size() * 2);
+            postings.forEach((g, list) -> grams.put(g, list.stream().mapToInt(Integer::intValue).toArray()));
+        }
+
+        int size() {
+            return views.length;
+        }
+
+        private long buildMax(int lo, int hi) {
+            if (lo >= hi) return Long.MIN_VALUE;
+            int mid = (lo + hi) >>> 1;
+            long max = Math.max(ivEnd[mid], Math.max(buildMax(lo, mid), buildMax(mid + 1, hi)));
+            ivMaxEnd[mid] = max;
+            return max;
+        }
+
+        // start <= t <= end, cùng biên bao gồm như cách phân loại cũ
+        void stab(long t, int lo, int hi, BitSet out) {
+            if (lo >= hi) return;
+            int mid = (lo + hi) >>> 1;
+            if (ivMaxEnd[mid] < t) return;
+            stab(t, lo, mid, out);
+            if (ivStart[mid] <= t) {
+                if (ivEnd[mid] >= t) out.set(ivRank[mid]);
+                stab(t, mid + 1, hi, out);
             }
-            if (!matchedEv) continue;
+        }
+
+        BitSet current(long t) {
+            BitSet out = new BitSet(size());
+            stab(t, 0, ivStart.length, out);
+            return out;
+        }
 
-            items.add(Map.of(
-                    "id", ev.getDiscountEventId(),
-                    "kind", "EVENT",
-                    "title", ev.getName(),
-                    "description", ev.getDescription(),
-                    "discountType", ev.getDiscountType() != null ? ev.getDiscountType().name() : null,
-                    "discountValue", ev.getDiscountValue(),
-                    "startsAt", ev.getStartsAt(),
-                    "endsAt", ev.getEndsAt(),
-                    "active", ev.getActive(),
-                    "createdAt", ev.getCreatedAt()
-            ));
+        BitSet upcoming(long t) {
+            BitSet out = new BitSet(size());
+            for (int i = firstAbove(byStart, t); i < byStart.length; i++) out.set(byStartRank[i]);
+            return out;
         }
 
-        items.sort(Comparator.comparing((Map<String, Object> m) -> (LocalDateTime) (m.get("startsAt") != null ? m.get("startsAt") : m.get("createdAt")))
-                .reversed());
+        BitSet available(long t) {
+            BitSet out = new BitSet(size());
+            for (int i = firstAbove(byEnd, t - 1); i < byEnd.length; i++) out.set(byEndRank[i]);
+            return out;
+        }
+
+        // Thứ hạng đầu tiên đứng sau key (key có thể đã bị xoá ở lần dựng lại index)
+        int rankAfter(Key key) {
+            int i = Arrays.binarySearch(keys, key, Key.ORDER);
+            return i >= 0 ? i + 1 : -i - 1;
+        }
+
+        // Cùng điều kiện với current / upcoming / available ở trên, kiểm tra từng mục
+        boolean accepts(String mode, long t, String q, int r) {
+            boolean ok = switch (mode) {
+                case "current" -> active[r] && startSec[r] != NONE && endSec[r] != NONE && startSec[r] <= t && endSec[r] >= t;
+                case "upcoming" -> active[r] && startSec[r] != NONE && startSec[r] > t;
+                case "available" -> active[r] && endSec[r] != NONE && endSec[r] >= t;
+                default -> true;
+            };
+            return ok && (q == null || titles[r].contains(q) || descriptions[r].contains(q));
+        }
+
+        BitSet matching(String q) {
+            BitSet out = new BitSet(size());
+            if (q.length() >= 3) {
+                BitSet candidates = null;
+                for (int i = 0; i + 3 <= q.length(); i++) {
+                    int[] p = grams.get(q.substring(i, i + 3));
+                    if (p == null) return out;
+                    BitSet b = new BitSet(size());
+                    for (int r : p) b.set(r);
+                    if (candidates == null) candidates = b;
+                    else candidates.and(b);
+                }
+                for (int r = candidates.nextSetBit(0); r >= 0; r = candidates.nextSetBit(r + 1)) {
+                    if (titles[r].contains(q) || descriptions[r].contains(q)) out.set(r);
+                }
+            } else {
+                for (int r = 0; r < size(); r++) {
+                    if (titles[r].contains(q) || descriptions[r].contains(q)) out.set(r);
+                }
+            }
+            return out;
+        }
+
+        private static void addGrams(String s, Set<String> out) {
+            for (int i = 0; i + 3 <= s.length(); i++) out.add(s.substring(i, i + 3));
+        }
+
+        // chỉ số đầu tiên có giá trị > t
+        private static int firstAbove(long[] sorted, long t) {
+            int lo = 0, hi = sorted.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sorted[mid] <= t) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    static long sec(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @Override
+    public Map<String, Object> list(Integer page, Integer limit, String available, String status, String searchByName) {
+        Index idx = current();
+        long now = sec(LocalDateTime.now());
+        String mode = mode(available, status);
+        String q = query(searchByName);
 
         int safeLimit = Math.max(1, limit == null ? 8 : limit);
         int safePage = Math.max(1, page == null ? 1 : page);
-        int from = Math.min((safePage - 1) * safeLimit, Math.max(items.size() - 1, 0));
-        int to = Math.min(from + safeLimit, items.size());
-        List<Map<String, Object>> pageItems = from >= to ? List.of() : items.subList(from, to);
+        long skip = (long) (safePage - 1) * safeLimit;
+        int total;
+        List<Map<String, Object>> pageItems = new ArrayList<>();
+        if (mode.equals("all") && q == null) {
+            // Không lọc: thứ hạng chính là vị trí, cắt thẳng
+            total = idx.size();
+            for (long r = skip; r < total && pageItems.size() < safeLimit; r++) pageItems.add(idx.views[(int) r]);
+        } else {
+            // Có lọc: page/limit cần tổng số trang nên vẫn phải biết mọi mục khớp (dùng listAfter để seek)
+            BitSet matched = switch (mode) {
+                case "current" -> idx.current(now);
+                case "upcoming" -> idx.upcoming(now);
+                case "available" -> idx.available(now);
+                default -> null;
+            };
+            if (q != null) {
+                BitSet byName = idx.matching(q);
+                if (matched == null) matched = byName;
+                else matched.and(byName);
+            }
+            total = matched.cardinality();
+            if (skip < total) {
+                int r = matched.nextSetBit(0);
+                for (long i = 0; i < skip; i++) r = matched.nextSetBit(r + 1);
+                for (; r >= 0 && pageItems.size() < safeLimit; r = matched.nextSetBit(r + 1)) pageItems.add(idx.views[r]);
+            }
+        }
 
-        int totalPages = (int) Math.ceil(items.size() / (double) safeLimit);
+        int totalPages = (int) Math.ceil(total / (double) safeLimit);
         Map<String, Object> meta = Map.of(
                 "currentPage", safePage,
                 "totalPage", totalPages,
@@ -129,6 +311,109 @@ public class PromoServiceImpl implements IPromoService {
                 "meta", meta
         );
     }
-}
 
+    @Override
+    public Map<String, Object> listAfter(String cursor, Integer limit, String available, String status, String searchByName) {
+        Index idx = current();
+        long now = sec(LocalDateTime.now());
+        String mode = mode(available, status);
+        String q = query(searchByName);
+        int safeLimit = Math.min(Math.max(1, limit == null ? 8 : limit), MAX_CURSOR_LIMIT);
+
+        int r = cursor == null || cursor.isBlank() ? 0 : idx.rankAfter(Key.decode(cursor));
+        List<Map<String, Object>> pageItems = new ArrayList<>(safeLimit);
+        int last = -1;
+        for (; r < idx.size() && pageItems.size() < safeLimit; r++) {
+            if (!idx.accepts(mode, now, q, r)) continue;
+            pageItems.add(idx.views[r]);
+            last = r;
+        }
+        boolean hasMore = false;
+        for (; r < idx.size(); r++) {
+            if (idx.accepts(mode, now, q, r)) {
+                hasMore = true;
+                break;
+            }
+        }
+
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("limit", safeLimit);
+        meta.put("hasMore", hasMore);
+        meta.put("nextCursor", hasMore ? idx.keys[last].encode() : null);
+        return Map.of("data", pageItems, "meta", meta);
+    }
 
+    // status=all hoặc không lọc: gồm cả mục đã tắt
+    private static String mode(String available, String status) {
+        if (status != null && !status.isBlank()) {
+            String s = status.toLowerCase(Locale.ROOT);
+            if (s.equals("current") || s.equals("upcoming")) return s;
+            if (s.equals("available") || s.equals("current_or_upcoming")) return "available";
+            return "all";
+        }
+        return "true".equalsIgnoreCase(available) ? "available" : "all";
+    }
+
+    private static String query(String searchByName) {
+        return searchByName == null || searchByName.isBlank() ? null : searchByName.toLowerCase(Locale.ROOT);
+    }
+
+    private Index current() {
+        Index idx = index;
+        if (idx != null) return idx;
+        synchronized (this) {
+            if (index == null) index = load();
+            return index;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPromoChanged(PromoChangedEvent event) {
+        synchronized (this) {
+            try {
+                index = load();
+            } catch (Exception ex) {
+                // Để request kế tiếp tự dựng lại thay vì phục vụ danh sách cũ
+                index = null;
+                log.warn("Promo index rebuild failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private Index load() {
+        List<Entry> entries = new ArrayList<>();
+        for (DiscountCode dc : discountCodeRepository.findByBatchIdIsNull()) {
+            entries.add(new Entry(view(dc.getDiscountCodeId(), "CODE", dc.getCode(), dc.getDescription(),
+                    dc.getDiscountType() != null ? dc.getDiscountType().name() : null, dc.getDiscountValue(),
+                    dc.getStartsAt(), dc.getEndsAt(), dc.getActive(), dc.getCreatedAt()),
+                    dc.getCode(), dc.getDescription(), dc.getStartsAt(), dc.getEndsAt(),
+                    Boolean.TRUE.equals(dc.getActive()), dc.getCreatedAt()));
+        }
+        for (DiscountEvent ev : discountEventRepository.findAll()) {
+            entries.add(new Entry(view(ev.getDiscountEventId(), "EVENT", ev.getName(), ev.getDescription(),
+                    ev.getDiscountType() != null ? ev.getDiscountType().name() : null, ev.getDiscountValue(),
+                    ev.getStartsAt(), ev.getEndsAt(), ev.getActive(), ev.getCreatedAt()),
+                    ev.getName(), ev.getDescription(), ev.getStartsAt(), ev.getEndsAt(),
+                    Boolean.TRUE.equals(ev.getActive()), ev.getCreatedAt()));
+        }
+        return new Index(entries);
+    }
+
+    // Map.of không nhận null (mô tả trống): dùng map thường, bọc chỉ đọc vì được chia sẻ giữa các request
+    private static Map<String, Object> view(Integer id, String kind, String title, String description, String discountType,
+                                            Object discountValue, LocalDateTime startsAt, LocalDateTime endsAt,
+                                            Boolean active, LocalDateTime createdAt) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", id);
+        m.put("kind", kind);
+        m.put("title", title);
+        m.put("description", description);
+        m.put("discountType", discountType);
+        m.put("discountValue", discountValue);
+        m.put("startsAt", startsAt);
+        m.put("endsAt", endsAt);
+        m.put("active", active);
+        m.put("createdAt", createdAt);
+        return Collections.unmodifiableMap(m);
+    }
+}
@@ -0,0 +1,353 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.ProductCompanion;
+import com.kopi.kopi.entity.Product;
+import com.kopi.kopi.event.OrderCreatedEvent;
+import com.kopi.kopi.event.OrderSnapshot;
+import com.kopi.kopi.event.OrderStatusChangedEvent;
+import com.kopi.kopi.repository.ProductRepository;
+import com.kopi.kopi.service.AvailabilityService;
+import com.kopi.kopi.service.RecommendationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * "Thường được mua cùng": ma trận đồng xuất hiện thưa giữa các sản phẩm trong cùng đơn COMPLETED.
+ * - Dựng một lượt từ order_details (JDBC, đọc tuần tự theo order_id), sau đó cập nhật từng đơn khi
+ *   đơn chuyển sang COMPLETED.
+ * - Mỗi hàng là bảng băm địa chỉ mở int -> double, không boxing; truy vấn chỉ đọc các hàng của giỏ.
+ * - Suy giảm theo thời gian (half-life): thay vì nhân mọi ô mỗi ngày, trọng số mới được phóng to theo
+ *   exp(lambda * (t - t0)); mọi ô chung một hệ số nên thứ hạng không đổi, chỉ chuẩn hoá lại khi hệ số quá lớn.
+ * - Điểm = tổng đồng xuất hiện / sqrt(độ phổ biến) để món bán chạy (nước suối...) không lấn hết gợi ý.
+ */
+@Service
+public class RecommendationServiceImpl implements RecommendationService {
+    private static final Logger log = LoggerFactory.getLogger(RecommendationServiceImpl.class);
+
+    static final String HISTORY_SQL = """
+            SELECT d.order_id, d.product_id, o.created_at
+            FROM dbo.order_details d JOIN dbo.orders o ON o.order_id = d.order_id
+            WHERE o.status = 'COMPLETED' AND o.created_at >= ? AND d.product_id IS NOT NULL
+            ORDER BY d.order_id""";
+
+    // Đơn quá lớn (đặt tiệc) sinh O(n^2) cặp và hầu như không mang tín hiệu "mua kèm"
+    private static final int MAX_ITEMS_PER_ORDER = 30;
+    private static final double RESCALE_AT = 1e9;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+    private final AvailabilityService availabilityService;
+    private final double lambdaPerMs;
+    private final long historyMs;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Matrix matrix;                 // null = chưa dựng
+    private List<OrderSnapshot> buffered;  // khác null khi đang dựng lại: đơn tới trong lúc đọc lịch sử
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "recommendation-build");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RecommendationServiceImpl(JdbcTemplate jdbcTemplate, ProductRepository productRepository,
+                                     AvailabilityService availabilityService,
+                                     @Value("${app.recommendations.half-life-days:30}") double halfLifeDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productRepository = productRepository;
+        this.availabilityService = availabilityService;
+        double halfLifeMs = Math.max(halfLifeDays, 1) * 86_400_000d;
+        this.lambdaPerMs = Math.log(2) / halfLifeMs;
+        // Sau 8 half-life trọng số còn < 0.4%: không cần đọc xa hơn
+        this.historyMs = (long) (halfLifeMs * 8);
+    }
+
+    // Hàng thưa: productId kèm -> trọng số, địa chỉ mở dò tuyến tính, khoá 0 = ô trống
+    static final class Row {
+        int[] keys = new int[8];
+        double[] vals = new double[8];
+        int size;
+
+        void add(int key, double w) {
+            if ((size + 1) * 2 > keys.length) grow();
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+            if (keys[i] == 0) {
+                keys[i] = key;
+                size++;
+            }
+            vals[i] += w;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            double[] oldVals = vals;
+            keys = new int[oldKeys.length * 2];
+            vals = new double[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) if (oldKeys[i] != 0) add(oldKeys[i], oldVals[i]);
+        }
+
+        void scale(double f) {
+            for (int i = 0; i < vals.length; i++) vals[i] *= f;
+        }
+
+        private static int mix(int k) {
+            int h = k * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    static final class Matrix {
+        final Map<Integer, Row> rows = new HashMap<>();
+        final Map<Integer, double[]> support = new HashMap<>();
+        final BitSet seenOrders = new BitSet();
+        final double lambdaPerMs;
+        long t0;
+
+        Matrix(double lambdaPerMs, long t0) {
+            this.lambdaPerMs = lambdaPerMs;
+            this.t0 = t0;
+        }
+
+        void addOrder(int orderId, int[] productIds, int n, long atMs) {
+            if (orderId > 0) seenOrders.set(orderId);
+            if (n == 0) return;
+            double w = Math.exp(lambdaPerMs * (atMs - t0));
+            if (w > RESCALE_AT) {
+                rescale(1 / w, atMs);
+                w = 1;
+            }
+            for (int i = 0; i < n; i++) {
+                support.computeIfAbsent(productIds[i], k -> new double[1])[0] += w;
+                Row row = rows.computeIfAbsent(productIds[i], k -> new Row());
+                for (int j = 0; j < n; j++) if (j != i) row.add(productIds[j], w);
+            }
+        }
+
+        private void rescale(double f, long newT0) {
+            for (Row r : rows.values()) r.scale(f);
+            for (double[] s : support.values()) s[0] *= f;
+            t0 = newT0;
+        }
+
+        List<ProductCompanion> top(Collection<Integer> cart, int k) {
+            Set<Integer> inCart = new HashSet<>(cart);
+            Map<Integer, double[]> acc = new HashMap<>();
+            for (Integer c : inCart) {
+                Row row = c == null ? null : rows.get(c);
+                if (row == null) continue;
+                for (int i = 0; i < row.keys.length; i++) {
+                    int p = row.keys[i];
+                    if (p == 0 || inCart.contains(p)) continue;
+                    acc.computeIfAbsent(p, x -> new double[1])[0] += row.vals[i];
+                }
+            }
+            List<ProductCompanion> out = new ArrayList<>(acc.size());
+            acc.forEach((p, v) -> {
+                double[] s = support.get(p);
+                out.add(new ProductCompanion(p, v[0] / Math.sqrt(s != null && s[0] > 0 ? s[0] : 1)));
+            });
+            out.sort((a, b) -> a.score() != b.score() ? Double.compare(b.score(), a.score()) : Integer.compare(a.productId(), b.productId()));
+            List<ProductCompanion> top = out.subList(0, Math.min(k, out.size()));
+            if (top.isEmpty()) return List.of();
+            double best = top.get(0).score();
+            return top.stream().map(c -> new ProductCompanion(c.productId(), Math.round(c.score() / best * 1000) / 1000d)).toList();
+        }
+    }
+
+    // Sản phẩm khác nhau trong đơn, tối đa MAX_ITEMS_PER_ORDER; trả về số phần tử đã ghi vào buf
+    static int distinct(Collection<Integer> productIds, int[] buf) {
+        int n = 0;
+        outer:
+        for (Integer id : productIds) {
+            if (id == null || id <= 0) continue;
+            for (int i = 0; i < n; i++) if (buf[i] == id) continue outer;
+            if (n == buf.length) return 0;
+            buf[n++] = id;
+        }
+        return n;
+    }
+
+    @Override
+    public List<ProductCompanion> companions(Collection<Integer> cartProductIds, int limit) {
+        if (cartProductIds == null || cartProductIds.isEmpty() || limit <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            return matrix == null ? List.of() : matrix.top(cartProductIds, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> companionViews(Collection<Integer> cartProductIds, int limit) {
+        // Lấy dư để còn đủ k sau khi lọc sản phẩm ngừng bán / ngoài khung giờ
+        List<ProductCompanion> ranked = companions(cartProductIds, limit * 2 + availabilityService.closedProductIds().size());
+        if (ranked.isEmpty()) return List.of();
+        Map<Integer, Product> byId = new HashMap<>();
+        for (Product p : productRepository.findAllById(ranked.stream().map(ProductCompanion::productId).toList())) {
+            byId.put(p.getProductId(), p);
+        }
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (ProductCompanion c : ranked) {
+            Product p = byId.get(c.productId());
+            if (p == null || Boolean.FALSE.equals(p.getAvailable())) continue;
+            Integer categoryId = p.getCategory() != null ? p.getCategory().getCategoryId() : null;
+            if (!availabilityService.isOrderable(p.getProductId(), categoryId)) continue;
+            Map<String, Object> m = new HashMap<>();
+            m.put("id", p.getProductId());
+            m.put("name", p.getName());
+            m.put("img", p.getImgUrl());
+            m.put("price", p.getPrice() != null ? p.getPrice() : BigDecimal.ZERO);
+            m.put("category_id", categoryId);
+            m.put("score", c.score());
+            out.add(m);
+            if (out.size() == limit) break;
+        }
+        return out;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        builder.execute(() -> {
+            try {
+                rebuild();
+            } catch (Exception ex) {
+                log.warn("Recommendation matrix build failed: {}", ex.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            if (buffered != null) return; // đang dựng ở thread khác
+            buffered = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Matrix built;
+        long started = System.currentTimeMillis();
+        try {
+            built = load(started);
+        } catch (RuntimeException ex) {
+            lock.writeLock().lock();
+            try {
+                buffered = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw ex;
+        }
+        lock.writeLock().lock();
+        try {
+            // Đơn hoàn tất trong lúc đọc: chỉ áp những đơn mà lượt đọc chưa thấy
+            for (OrderSnapshot s : buffered) {
+                if (s.orderId() == null || !built.seenOrders.get(s.orderId())) apply(built, s);
+            }
+            matrix = built;
+            buffered = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Recommendation matrix built: {} products in {} ms", built.rows.size(), System.currentTimeMillis() - started);
+    }
+
+    // Các dòng cùng order_id liền nhau: gom xong một đơn thì ghi ngay, không giữ lịch sử trong bộ nhớ
+    static final class OrderGrouper implements RowCallbackHandler {
+        private final Matrix target;
+        private final long defaultAt;
+        private final int[] buf = new int[MAX_ITEMS_PER_ORDER];
+        private final List<Integer> products = new ArrayList<>();
+        private int orderId = -1;
+        private long at;
+
+        OrderGrouper(Matrix target, long defaultAt) {
+            this.target = target;
+            this.defaultAt = defaultAt;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            int id = rs.getInt(1);
+            if (id != orderId) {
+                finish();
+                orderId = id;
+                Timestamp ts = rs.getTimestamp(3);
+                at = ts != null ? ts.getTime() : defaultAt;
+            }
+            products.add(rs.getInt(2));
+        }
+
+        void finish() {
+            if (orderId > 0) target.addOrder(orderId, buf, distinct(products, buf), at);
+            products.clear();
+        }
+    }
+
+    private Matrix load(long nowMs) {
+        long since = nowMs - historyMs;
+        Matrix built = new Matrix(lambdaPerMs, since);
+        OrderGrouper grouper = new OrderGrouper(built, nowMs);
+        jdbcTemplate.query(HISTORY_SQL, grouper, new Timestamp(since));
+        grouper.finish();
+        return built;
+    }
+
+    private void apply(Matrix m, OrderSnapshot s) {
+        List<Integer> ids = new ArrayList<>(s.lines().size());
+        for (OrderSnapshot.Line l : s.lines()) ids.add(l.productId());
+        int[] buf = new int[MAX_ITEMS_PER_ORDER];
+        LocalDateTime at = s.createdAt() != null ? s.createdAt() : LocalDateTime.now();
+        m.addOrder(s.orderId() != null ? s.orderId() : 0, buf, distinct(ids, buf), Timestamp.valueOf(at).getTime());
+    }
+
+    private void record(OrderSnapshot s) {
+        if (s == null || s.lines().isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            if (buffered != null) buffered.add(s);
+            else if (matrix != null) apply(matrix, s);
+            // matrix == null: lượt dựng đầu tiên sẽ đọc đơn này từ DB
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (event.becameCompleted()) record(event.order());
+    }
+
+    // Đơn tại bàn đã thanh toán được tạo thẳng ở trạng thái COMPLETED
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        if (event.order() != null && "COMPLETED".equals(event.order().status())) record(event.order());
+    }
+}
@@ -0,0 +1,282 @@
+package com.kopi.kopi.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.kopi.kopi.dto.RevenuePoint;
+import com.kopi.kopi.dto.ReportJobStatus;
+import com.kopi.kopi.service.ReportJobService;
+import com.kopi.kopi.service.ReportService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chạy báo cáo dài (doanh thu nhiều năm, xuất Excel) trên một pool worker giới hạn thay vì
+ * trên thread request. Kết quả được ghi ra đĩa, đặt tên theo hash của tham số:
+ * - yêu cầu giống hệt đang chạy sẽ dùng chung một job;
+ * - kỳ đã đóng (to < hôm nay) dùng lại vô thời hạn, kỳ còn mở hết hạn sau open-ttl.
+ */
+@Service
+public class ReportJobServiceImpl implements ReportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportJobServiceImpl.class);
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    private final ReportService reportService;
+    private final ObjectMapper om = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final Path cacheDir;
+    private final Duration openTtl;
+    private final Duration jobRetention;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Job> inflight = new ConcurrentHashMap<>();
+
+    public ReportJobServiceImpl(ReportService reportService,
+                                @Value("${app.reports.jobs.dir:./data/report-cache}") String cacheDir,
+                                @Value("${app.reports.jobs.workers:2}") int workers,
+                                @Value("${app.reports.jobs.queue-capacity:20}") int queueCapacity,
+                                @Value("${app.reports.jobs.open-ttl:PT5M}") Duration openTtl,
+                                @Value("${app.reports.jobs.retention:PT1H}") Duration jobRetention) {
+        this.reportService = reportService;
+        this.cacheDir = Paths.get(cacheDir);
+        this.openTtl = openTtl;
+        this.jobRetention = jobRetention;
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "report-job-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final String key;
+        final JobType type;
+        final ReportService.Granularity g;
+        final LocalDate from;
+        final LocalDate to;
+        final int buckets;
+        final LocalDateTime createdAt = LocalDateTime.now();
+        final AtomicInteger progress = new AtomicInteger();
+        volatile String status = "QUEUED";
+        volatile boolean cached;
+        volatile Path file;
+        volatile String error;
+        volatile LocalDateTime finishedAt;
+
+        Job(String key, JobType type, ReportService.Granularity g, LocalDate from, LocalDate to, int buckets) {
+            this.key = key;
+            this.type = type;
+            this.g = g;
+            this.from = from;
+            this.to = to;
+            this.buckets = buckets;
+        }
+    }
+
+    @Override
+    public ReportJobStatus submit(JobType type, ReportService.Granularity g, LocalDate from, LocalDate to, int buckets) {
+        // Chuẩn hoá tham số trước khi tạo khoá, để "to=null" hôm nay và hôm sau là hai kết quả khác nhau
+        LocalDate today = LocalDate.now(ZONE);
+        LocalDate resolvedTo = to != null ? to : today;
+        LocalDate resolvedFrom = from != null ? from : ReportServiceImpl.defaultFrom(g, resolvedTo);
+        if (resolvedFrom.isAfter(resolvedTo)) throw new IllegalArgumentException("from must be before to");
+        int b = Math.max(buckets, 0);
+        String key = type + "|" + g + "|" + resolvedFrom + "|" + resolvedTo + "|" + b;
+
+        Path file = freshResult(key, type);
+        if (file != null) {
+            Job hit = new Job(key, type, g, resolvedFrom, resolvedTo, b);
+            hit.file = file;
+            hit.cached = true;
+            hit.status = "DONE";
+            hit.progress.set(100);
+            hit.finishedAt = LocalDateTime.now();
+            jobs.put(hit.id, hit);
+            return toStatus(hit);
+        }
+
+        Job job = inflight.computeIfAbsent(key, k -> {
+            Job created = new Job(k, type, g, resolvedFrom, resolvedTo, b);
+            jobs.put(created.id, created);
+            try {
+                executor.execute(() -> run(created));
+            } catch (RejectedExecutionException ex) {
+                jobs.remove(created.id);
+                throw ex;
+            }
+            return created;
+        });
+        return toStatus(job);
+    }
+
+    @Override
+    public Optional<ReportJobStatus> status(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(this::toStatus);
+    }
+
+    @Override
+    public Optional<Path> result(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null || !"DONE".equals(job.status) || job.file == null || !Files.exists(job.file)) {
+            return Optional.empty();
+        }
+        return Optional.of(job.file);
+    }
+
+    private void run(Job job) {
+        job.status = "RUNNING";
+        try {
+            List<RevenuePoint> points = computeInChunks(job);
+            byte[] bytes;
+            if (job.type == JobType.export) {
+                bytes = reportService.writeRevenueExcel(job.g, job.from, job.to, points);
+            } else {
+                Map<String, Object> meta = new LinkedHashMap<>();
+                meta.put("view", job.g.name());
+                meta.put("from", job.from.toString());
+                meta.put("to", job.to.toString());
+                meta.put("count", points.size());
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("data", points);
+                body.put("meta", meta);
+                bytes = om.writeValueAsBytes(body);
+            }
+            job.progress.set(95);
+            boolean closed = job.to.isBefore(LocalDate.now(ZONE));
+            job.file = write(cacheFile(job.key, job.type, closed), bytes);
+            job.progress.set(100);
+            job.status = "DONE";
+        } catch (Exception ex) {
+            log.warn("Report job {} failed: {}", job.id, ex.getMessage());
+            job.error = ex.getClass().getSimpleName() + ": " + (ex.getMessage() == null ? "" : ex.getMessage());
+            job.status = "FAILED";
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            inflight.remove(job.key, job);
+        }
+    }
+
+    // Chia khoảng dài theo năm dương lịch: mỗi truy vấn ngắn, không giữ connection lâu, và có tiến độ thật.
+    // Tuần không trùng ranh giới năm nên weekly chạy một lần.
+    private List<RevenuePoint> computeInChunks(Job job) {
+        List<LocalDate[]> chunks = new ArrayList<>();
+        if (job.g == ReportService.Granularity.weekly) {
+            chunks.add(new LocalDate[]{job.from, job.to});
+        } else {
+            LocalDate start = job.from;
+            while (!start.isAfter(job.to)) {
+                LocalDate yearEnd = start.withDayOfYear(start.lengthOfYear());
+                LocalDate end = yearEnd.isAfter(job.to) ? job.to : yearEnd;
+                chunks.add(new LocalDate[]{start, end});
+                start = end.plusDays(1);
+            }
+        }
+        List<RevenuePoint> points = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            points.addAll(reportService.revenue(job.g, chunks.get(i)[0], chunks.get(i)[1], 0));
+            job.progress.set(5 + (int) (85L * (i + 1) / chunks.size()));
+        }
+        if (job.buckets > 0 && points.size() > job.buckets) {
+            points = new ArrayList<>(points.subList(points.size() - job.buckets, points.size()));
+        }
+        return points;
+    }
+
+    // Kết quả kỳ đã đóng dùng mãi; kỳ còn mở chỉ dùng trong open-ttl
+    private Path freshResult(String key, JobType type) {
+        Path closed = cacheFile(key, type, true);
+        if (Files.exists(closed)) return closed;
+        Path open = cacheFile(key, type, false);
+        try {
+            if (Files.exists(open)
+                    && Files.getLastModifiedTime(open).toInstant().plus(openTtl).isAfter(Instant.now())) {
+                return open;
+            }
+        } catch (IOException ignored) {
+        }
+        return null;
+    }
+
+    private Path write(Path target, byte[] bytes) throws IOException {
+        Files.createDirectories(cacheDir);
+        // Ghi ra file tạm rồi move để request khác không bao giờ đọc phải file ghi dở
+        Path tmp = Files.createTempFile(cacheDir, "job-", ".tmp");
+        Files.write(tmp, bytes);
+        return Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path cacheFile(String key, JobType type, boolean closedPeriod) {
+        return cacheDir.resolve(sha256(key) + (closedPeriod ? ".closed" : ".open")
+                + (type == JobType.export ? ".xlsx" : ".json"));
+    }
+
+    private static String sha256(String s) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(d);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ReportJobStatus toStatus(Job job) {
+        String fileName = "revenue_" + job.g.name() + "_" + job.from + "_" + job.to
+                + (job.type == JobType.export ? ".xlsx" : ".json");
+        return ReportJobStatus.builder()
+                .jobId(job.id)
+                .type(job.type.name())
+                .status(job.status)
+                .progress(job.progress.get())
+                .cached(job.cached)
+                .fileName(fileName)
+                .error(job.error)
+                .createdAt(job.createdAt)
+                .finishedAt(job.finishedAt)
+                .build();
+    }
+
+    /** Dọn job đã xong quá hạn giữ, file tạm và file kết quả kỳ còn mở đã hết hạn. */
+    @Scheduled(fixedDelayString = "${app.reports.jobs.cleanup-ms:600000}")
+    public void cleanup() {
+        LocalDateTime threshold = LocalDateTime.now().minus(jobRetention);
+        jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(threshold));
+        if (!Files.isDirectory(cacheDir)) return;
+        Instant expiry = Instant.now().minus(jobRetention.compareTo(openTtl) > 0 ? jobRetention : openTtl);
+        try (var files = Files.list(cacheDir)) {
+            files.filter(p -> !p.getFileName().toString().contains(".closed."))
+                    .forEach(p -> {
+                        try {
+                            if (Files.getLastModifiedTime(p).toInstant().isBefore(expiry)) Files.deleteIfExists(p);
+                        } catch (IOException ignored) {
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("Report cache cleanup failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
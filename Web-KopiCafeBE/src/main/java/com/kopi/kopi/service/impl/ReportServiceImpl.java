@@ -30,15 +30,7 @@ public class ReportServiceImpl implements ReportService {
     @Override
     public List<RevenuePoint> revenue(Granularity g, LocalDate from, LocalDate to, int buckets) {
         if (to == null) to = LocalDate.now(ZoneId.of("Asia/Ho_Chi_Minh"));
-        if (from == null) {
-            switch (g) {
-                case daily     -> from = to.minusDays(6);
-                case weekly    -> from = to.minusWeeks(6);
-                case monthly   -> from = to.minusMonths(6);
-                case quarterly -> from = to.minusMonths(18); // 6 quý
-                case yearly    -> from = to.minusYears(6);
-            }
-        }
+        if (from == null) from = defaultFrom(g, to);
         var fromDt = from.atStartOfDay();
         var toDt   = to.plusDays(1).atStartOfDay().minusNanos(1);
 
@@ -124,6 +116,16 @@ public class ReportServiceImpl implements ReportService {
         return list;
     }
 
+    static LocalDate defaultFrom(Granularity g, LocalDate to) {
+        return switch (g) {
+            case daily     -> to.minusDays(6);
+            case weekly    -> to.minusWeeks(6);
+            case monthly   -> to.minusMonths(6);
+            case quarterly -> to.minusMonths(18); // 6 quý
+            case yearly    -> to.minusYears(6);
+        };
+    }
+
     private BigDecimal toBigDecimal(Object v) {
         if (v == null) return BigDecimal.ZERO;
         if (v instanceof BigDecimal bd) return bd;
@@ -133,7 +135,11 @@ public class ReportServiceImpl implements ReportService {
 
     @Override
     public byte[] exportRevenueToExcel(Granularity g, LocalDate from, LocalDate to, int buckets) {
-        var points = revenue(g, from, to, buckets);
+        return writeRevenueExcel(g, from, to, revenue(g, from, to, buckets));
+    }
+
+    @Override
+    public byte[] writeRevenueExcel(Granularity g, LocalDate from, LocalDate to, List<RevenuePoint> points) {
         try (XSSFWorkbook wb = new XSSFWorkbook()) {
             var sheet = wb.createSheet("Revenue");
             int r = 0;
@@ -0,0 +1,201 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.RevenueTicker;
+import com.kopi.kopi.event.PaymentPaidEvent;
+import com.kopi.kopi.repository.PaymentRepository;
+import com.kopi.kopi.service.RevenueTickerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.WeekFields;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Doanh thu hôm nay/tuần/tháng giữ trong bộ nhớ và đẩy qua SSE mỗi khi có payment PAID,
+ * để dashboard không phải poll /reports/summary. Chỉ đọc DB một lần lúc khởi tạo; sang ngày mới
+ * (Asia/Ho_Chi_Minh) thì reset hôm nay, và reset tuần/tháng khi sang tuần/tháng mới.
+ */
+@Service
+public class RevenueTickerServiceImpl implements RevenueTickerService {
+
+    private static final Logger log = LoggerFactory.getLogger(RevenueTickerServiceImpl.class);
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    private final PaymentRepository paymentRepository;
+    private final long emitterTimeoutMs;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    // Toàn bộ trạng thái dưới đây được bảo vệ bởi "this"
+    private boolean seeded;
+    private LocalDate day;
+    private BigDecimal todayRevenue = BigDecimal.ZERO;
+    private int todayOrders;
+    private BigDecimal weekRevenue = BigDecimal.ZERO;
+    private int weekOrders;
+    private BigDecimal monthRevenue = BigDecimal.ZERO;
+    private int monthOrders;
+
+    public RevenueTickerServiceImpl(PaymentRepository paymentRepository,
+                                    @Value("${app.reports.ticker.sse-timeout-ms:1800000}") long emitterTimeoutMs) {
+        this.paymentRepository = paymentRepository;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+    }
+
+    @Override
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        try {
+            emitter.send(SseEmitter.event().name("snapshot").data(current(), MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException ex) {
+            emitters.remove(emitter);
+        }
+        return emitter;
+    }
+
+    @Override
+    public synchronized RevenueTicker current() {
+        roll(LocalDate.now(ZONE));
+        return snapshot(null, null);
+    }
+
+    @Override
+    public void recordPaid(Integer orderId, BigDecimal amount) {
+        RevenueTicker tick;
+        synchronized (this) {
+            boolean wasSeeded = seeded;
+            roll(LocalDate.now(ZONE));
+            BigDecimal delta = amount != null ? amount : BigDecimal.ZERO;
+            // Listener chạy sau commit: nếu vừa seed từ DB thì payment này đã nằm trong tổng rồi
+            if (wasSeeded || !seeded) {
+                todayRevenue = todayRevenue.add(delta);
+                weekRevenue = weekRevenue.add(delta);
+                monthRevenue = monthRevenue.add(delta);
+                todayOrders++;
+                weekOrders++;
+                monthOrders++;
+            }
+            tick = snapshot(orderId, delta);
+        }
+        broadcast("revenue", tick);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentPaid(PaymentPaidEvent event) {
+        recordPaid(event.orderId(), event.amount());
+    }
+
+    /** Giữ kết nối qua proxy và phát "reset" ngay khi qua nửa đêm, kể cả khi không có đơn nào. */
+    @Scheduled(fixedDelayString = "${app.reports.ticker.heartbeat-ms:25000}")
+    public void heartbeat() {
+        if (emitters.isEmpty()) return;
+        RevenueTicker reset = null;
+        synchronized (this) {
+            if (roll(LocalDate.now(ZONE))) reset = snapshot(null, null);
+        }
+        if (reset != null) {
+            broadcast("reset", reset);
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().comment("ping"));
+            } catch (IOException | IllegalStateException ex) {
+                emitters.remove(emitter);
+            }
+        }
+    }
+
+    /**
+     * Đưa bộ đếm về ngày {@code today}. Lần đầu thì seed từ DB.
+     * Trả về true nếu vừa chuyển sang ngày mới (đã reset ít nhất tổng hôm nay).
+     */
+    boolean roll(LocalDate today) {
+        if (!seeded) {
+            day = today;
+            seed();
+            return false;
+        }
+        if (today.equals(day)) return false;
+        todayRevenue = BigDecimal.ZERO;
+        todayOrders = 0;
+        if (!weekStart(today).equals(weekStart(day))) {
+            weekRevenue = BigDecimal.ZERO;
+            weekOrders = 0;
+        }
+        if (today.getMonthValue() != day.getMonthValue() || today.getYear() != day.getYear()) {
+            monthRevenue = BigDecimal.ZERO;
+            monthOrders = 0;
+        }
+        day = today;
+        return true;
+    }
+
+    // Cùng mốc thời gian với ReportServiceImpl.summary()
+    private void seed() {
+        LocalDateTime end = day.plusDays(1).atStartOfDay().minusNanos(1);
+        LocalDateTime startToday = day.atStartOfDay();
+        LocalDateTime weekStart = weekStart(day).atStartOfDay();
+        LocalDateTime monthStart = day.withDayOfMonth(1).atStartOfDay();
+        try {
+            todayRevenue = nz(paymentRepository.sumPaidBetween(startToday, end));
+            todayOrders = paymentRepository.countPaidBetween(startToday, end);
+            weekRevenue = nz(paymentRepository.sumPaidBetween(weekStart, end));
+            weekOrders = paymentRepository.countPaidBetween(weekStart, end);
+            monthRevenue = nz(paymentRepository.sumPaidBetween(monthStart, end));
+            monthOrders = paymentRepository.countPaidBetween(monthStart, end);
+            seeded = true;
+        } catch (Exception ex) {
+            // Lần sau sẽ thử lại; trong lúc đó trả về số 0 thay vì làm hỏng request
+            log.warn("Revenue ticker seed failed: {}", ex.getMessage());
+        }
+    }
+
+    synchronized RevenueTicker snapshot(Integer orderId, BigDecimal delta) {
+        return RevenueTicker.builder()
+                .day(day)
+                .todayRevenue(todayRevenue)
+                .todayOrders(todayOrders)
+                .weekRevenue(weekRevenue)
+                .weekOrders(weekOrders)
+                .monthRevenue(monthRevenue)
+                .monthOrders(monthOrders)
+                .orderId(orderId)
+                .delta(delta)
+                .at(LocalDateTime.now(ZONE))
+                .build();
+    }
+
+    private void broadcast(String name, RevenueTicker data) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException ex) {
+                emitters.remove(emitter);
+            }
+        }
+    }
+
+    private static LocalDate weekStart(LocalDate d) {
+        return d.with(WeekFields.ISO.dayOfWeek(), 1);
+    }
+
+    private static BigDecimal nz(BigDecimal v) {
+        return v == null ? BigDecimal.ZERO : v;
+    }
+}
@@ -0,0 +1,301 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.SketchSummary;
+import com.kopi.kopi.entity.DailySketch;
+import com.kopi.kopi.event.OrderCreatedEvent;
+import com.kopi.kopi.event.OrderSnapshot;
+import com.kopi.kopi.event.OrderStatusChangedEvent;
+import com.kopi.kopi.repository.DailySketchRepository;
+import com.kopi.kopi.repository.OrderRepository;
+import com.kopi.kopi.service.SketchAnalyticsService;
+import com.kopi.kopi.util.HyperLogLog;
+import com.tdunning.math.stats.MergingDigest;
+import com.tdunning.math.stats.TDigest;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thống kê gần đúng cho admin: số khách phân biệt (HyperLogLog) và median/p90 giá trị đơn
+ * (t-digest), mỗi ngày một sketch. Khoảng bất kỳ = gộp các sketch ngày, không cần
+ * COUNT(DISTINCT) hay PERCENTILE_CONT trên bảng orders.
+ */
+@Service
+public class SketchAnalyticsServiceImpl implements SketchAnalyticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(SketchAnalyticsServiceImpl.class);
+    static final double COMPRESSION = 100;
+
+    private final DailySketchRepository sketchRepository;
+    private final OrderRepository orderRepository;
+
+    // Các ngày đang được ghi; ngày cũ đã flush sẽ bị bỏ khỏi bộ nhớ
+    private final Map<LocalDate, DaySketch> hotDays = new ConcurrentHashMap<>();
+
+    public SketchAnalyticsServiceImpl(DailySketchRepository sketchRepository, OrderRepository orderRepository) {
+        this.sketchRepository = sketchRepository;
+        this.orderRepository = orderRepository;
+    }
+
+    static final class DaySketch {
+        private final HyperLogLog customers;
+        private final TDigest values;
+        private long orders;
+        private boolean dirty;
+
+        DaySketch(HyperLogLog customers, TDigest values, long orders) {
+            this.customers = customers;
+            this.values = values;
+            this.orders = orders;
+        }
+
+        static DaySketch empty() {
+            return new DaySketch(new HyperLogLog(), TDigest.createMergingDigest(COMPRESSION), 0);
+        }
+
+        static DaySketch of(DailySketch row) {
+            return new DaySketch(HyperLogLog.fromBytes(row.getCustomersHll()),
+                    MergingDigest.fromBytes(ByteBuffer.wrap(row.getOrderValueDigest())),
+                    row.getOrderCount() == null ? 0 : row.getOrderCount());
+        }
+
+        synchronized void add(Integer customerId, BigDecimal value) {
+            orders++;
+            if (customerId != null) customers.add(customerId);
+            if (value != null) values.add(value.doubleValue());
+            dirty = true;
+        }
+
+        synchronized void mergeInto(HyperLogLog hll, TDigest digest, long[] orderCount) {
+            hll.merge(customers);
+            if (values.size() > 0) digest.add(values);
+            orderCount[0] += orders;
+        }
+
+        synchronized boolean isDirty() {
+            return dirty;
+        }
+
+        /** Chụp trạng thái để ghi DB và xoá cờ dirty; trả về null nếu không có gì thay đổi. */
+        synchronized DailySketch takeDirty(LocalDate day) {
+            if (!dirty) return null;
+            dirty = false;
+            return toRow(day);
+        }
+
+        synchronized void markDirty() {
+            dirty = true;
+        }
+
+        DailySketch toRow(LocalDate day) {
+            values.compress();
+            ByteBuffer buf = ByteBuffer.allocate(values.smallByteSize());
+            values.asSmallBytes(buf);
+            return DailySketch.builder()
+                    .sketchDate(day)
+                    .orderCount(orders)
+                    .customersHll(customers.toBytes())
+                    .orderValueDigest(buf.array())
+                    .updatedAt(LocalDateTime.now())
+                    .build();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        // Đơn tạo ở trạng thái đã thanh toán (paid=true) được tính là hoàn tất ngay
+        OrderSnapshot o = event.order();
+        if (o != null && "COMPLETED".equals(o.status())) record(o);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (event.becameCompleted() && event.order() != null) record(event.order());
+    }
+
+    private void record(OrderSnapshot o) {
+        LocalDate day = o.createdAt() != null ? o.createdAt().toLocalDate() : LocalDate.now();
+        recordCompleted(day, o.customerId(), o.amount());
+    }
+
+    @Override
+    public void recordCompleted(LocalDate day, Integer customerId, BigDecimal orderValue) {
+        DaySketch sketch = hotDays.computeIfAbsent(day, this::loadDay);
+        if (sketch == null) {
+            log.warn("Sketch for {} unavailable, dropping one sample", day);
+            return;
+        }
+        sketch.add(customerId, orderValue);
+    }
+
+    @Override
+    public SketchSummary summary(LocalDate from, LocalDate to, boolean compareExact) {
+        if (to == null) to = LocalDate.now(ZoneId.of("Asia/Ho_Chi_Minh"));
+        if (from == null) from = to.withDayOfMonth(1);
+        if (from.isAfter(to)) {
+            LocalDate tmp = from; from = to; to = tmp;
+        }
+
+        HyperLogLog hll = new HyperLogLog();
+        TDigest digest = TDigest.createMergingDigest(COMPRESSION);
+        long[] orders = {0};
+        Set<LocalDate> seen = new HashSet<>();
+        for (var e : hotDays.entrySet()) {
+            if (e.getKey().isBefore(from) || e.getKey().isAfter(to)) continue;
+            e.getValue().mergeInto(hll, digest, orders);
+            seen.add(e.getKey());
+        }
+        for (DailySketch row : sketchRepository.findBySketchDateBetween(from, to)) {
+            if (seen.contains(row.getSketchDate())) continue;
+            DaySketch.of(row).mergeInto(hll, digest, orders);
+        }
+
+        SketchSummary result = SketchSummary.builder()
+                .from(from.toString())
+                .to(to.toString())
+                .orders(orders[0])
+                .distinctCustomers(hll.estimate())
+                .medianOrderValue(quantile(digest, 0.5))
+                .p90OrderValue(quantile(digest, 0.9))
+                .build();
+        if (compareExact) result.setExact(exact(from, to, result));
+        return result;
+    }
+
+    private SketchSummary.Exact exact(LocalDate from, LocalDate to, SketchSummary approx) {
+        long started = System.nanoTime();
+        LocalDateTime fromDt = from.atStartOfDay();
+        LocalDateTime toDt = to.plusDays(1).atStartOfDay();
+        long orders = 0, customers = 0;
+        List<Object[]> counts = orderRepository.countCompletedAndDistinctCustomers(fromDt, toDt);
+        if (!counts.isEmpty() && counts.get(0) != null) {
+            orders = toLong(counts.get(0)[0]);
+            customers = toLong(counts.get(0)[1]);
+        }
+        BigDecimal p50 = null, p90 = null;
+        List<Object[]> pct = orderRepository.completedOrderValuePercentiles(fromDt, toDt);
+        if (!pct.isEmpty() && pct.get(0) != null) {
+            p50 = toMoney(pct.get(0)[0]);
+            p90 = toMoney(pct.get(0)[1]);
+        }
+        return SketchSummary.Exact.builder()
+                .orders(orders)
+                .distinctCustomers(customers)
+                .medianOrderValue(p50)
+                .p90OrderValue(p90)
+                .distinctCustomersErrorPct(errorPct(approx.getDistinctCustomers(), customers))
+                .medianErrorPct(errorPct(approx.getMedianOrderValue(), p50))
+                .p90ErrorPct(errorPct(approx.getP90OrderValue(), p90))
+                .elapsedMs((System.nanoTime() - started) / 1_000_000)
+                .build();
+    }
+
+    /**
+     * Dựng lại sketch ngày từ bảng orders (backfill), từng tháng một để không nạp cả khoảng vào bộ nhớ.
+     */
+    @Override
+    public int rebuild(LocalDate from, LocalDate to) {
+        int days = 0;
+        LocalDate monthStart = from;
+        while (!monthStart.isAfter(to)) {
+            LocalDate monthEnd = monthStart.withDayOfMonth(monthStart.lengthOfMonth());
+            if (monthEnd.isAfter(to)) monthEnd = to;
+            Map<LocalDate, DaySketch> rebuilt = new TreeMap<>();
+            for (LocalDate d = monthStart; !d.isAfter(monthEnd); d = d.plusDays(1)) rebuilt.put(d, DaySketch.empty());
+            for (Object[] row : orderRepository.findCompletedForSketch(monthStart.atStartOfDay(),
+                    monthEnd.plusDays(1).atStartOfDay())) {
+                DaySketch s = rebuilt.get(toLocalDate(row[0]));
+                if (s == null) continue;
+                Integer customerId = row[1] == null ? null : ((Number) row[1]).intValue();
+                s.add(customerId, toMoney(row[2]));
+            }
+            List<DailySketch> batch = new ArrayList<>();
+            for (var e : rebuilt.entrySet()) batch.add(e.getValue().toRow(e.getKey()));
+            sketchRepository.saveAll(batch);
+            rebuilt.keySet().forEach(hotDays::remove);
+            days += batch.size();
+            monthStart = monthEnd.plusDays(1);
+        }
+        return days;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.reports.sketch.flush-ms:60000}")
+    public void flush() {
+        List<DailySketch> batch = new ArrayList<>();
+        List<DaySketch> flushed = new ArrayList<>();
+        for (var e : hotDays.entrySet()) {
+            DailySketch row = e.getValue().takeDirty(e.getKey());
+            if (row == null) continue;
+            batch.add(row);
+            flushed.add(e.getValue());
+        }
+        if (!batch.isEmpty()) {
+            try {
+                sketchRepository.saveAll(batch);
+            } catch (Exception ex) {
+                flushed.forEach(DaySketch::markDirty);
+                log.warn("Failed to persist {} daily sketches: {}", batch.size(), ex.getMessage());
+                return;
+            }
+        }
+        LocalDate keepFrom = LocalDate.now().minusDays(2);
+        hotDays.entrySet().removeIf(e -> e.getKey().isBefore(keepFrom) && !e.getValue().isDirty());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private DaySketch loadDay(LocalDate day) {
+        try {
+            return sketchRepository.findById(day).map(DaySketch::of).orElseGet(DaySketch::empty);
+        } catch (Exception ex) {
+            log.warn("Failed to load sketch for {}: {}", day, ex.getMessage());
+            return null;
+        }
+    }
+
+    private static BigDecimal quantile(TDigest digest, double q) {
+        if (digest.size() == 0) return null;
+        return BigDecimal.valueOf(digest.quantile(q)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static Double errorPct(Number approx, Number exact) {
+        if (approx == null || exact == null || exact.doubleValue() == 0) return null;
+        double pct = (approx.doubleValue() - exact.doubleValue()) / exact.doubleValue() * 100;
+        return Math.round(pct * 100) / 100.0;
+    }
+
+    private static long toLong(Object v) {
+        return v instanceof Number n ? n.longValue() : 0L;
+    }
+
+    private static BigDecimal toMoney(Object v) {
+        if (v == null) return null;
+        if (v instanceof BigDecimal bd) return bd.setScale(2, RoundingMode.HALF_UP);
+        if (v instanceof Number n) return BigDecimal.valueOf(n.doubleValue()).setScale(2, RoundingMode.HALF_UP);
+        return new BigDecimal(v.toString()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static LocalDate toLocalDate(Object v) {
+        if (v instanceof java.sql.Date d) return d.toLocalDate();
+        if (v instanceof java.sql.Timestamp ts) return ts.toLocalDateTime().toLocalDate();
+        if (v instanceof LocalDate ld) return ld;
+        if (v instanceof LocalDateTime ldt) return ldt.toLocalDate();
+        return LocalDate.parse(String.valueOf(v).substring(0, 10));
+    }
+}
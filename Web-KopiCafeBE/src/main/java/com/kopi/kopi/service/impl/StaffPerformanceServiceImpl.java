@@ -0,0 +1,427 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.StaffPerformance;
+import com.kopi.kopi.entity.StaffDailyStat;
+import com.kopi.kopi.entity.User;
+import com.kopi.kopi.event.OrderCreatedEvent;
+import com.kopi.kopi.event.OrderSnapshot;
+import com.kopi.kopi.event.OrderStatusChangedEvent;
+import com.kopi.kopi.repository.OrderRepository;
+import com.kopi.kopi.repository.StaffDailyStatRepository;
+import com.kopi.kopi.repository.UserRepository;
+import com.kopi.kopi.service.StaffPerformanceService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hiệu suất nhân viên/shipper từ bộ đếm theo (user, ngày) cập nhật theo vòng đời đơn hàng,
+ * thay vì join toàn bộ bảng orders mỗi lần xem báo cáo. Báo cáo = cộng các dòng ngày: O(nhân viên × ngày).
+ * - Đơn tạo: tính cho created_by, theo ngày tạo (bỏ qua khách tự đặt: created_by = customer).
+ * - Hoàn tất/huỷ: tính theo ngày chuyển trạng thái; thời gian hoàn tất đo từ lúc tạo đơn.
+ */
+@Service
+public class StaffPerformanceServiceImpl implements StaffPerformanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(StaffPerformanceServiceImpl.class);
+
+    // Cận trên (phút) của từng bucket; bucket cuối là "lâu hơn 240 phút"
+    static final int[] BUCKET_UPPER_MINUTES = {5, 10, 15, 20, 30, 45, 60, 90, 120, 180, 240};
+    static final int BUCKETS = BUCKET_UPPER_MINUTES.length + 1;
+
+    private final StaffDailyStatRepository statRepository;
+    private final OrderRepository orderRepository;
+    private final UserRepository userRepository;
+
+    private final Map<StatKey, UserDay> hot = new ConcurrentHashMap<>();
+
+    public StaffPerformanceServiceImpl(StaffDailyStatRepository statRepository, OrderRepository orderRepository,
+                                       UserRepository userRepository) {
+        this.statRepository = statRepository;
+        this.orderRepository = orderRepository;
+        this.userRepository = userRepository;
+    }
+
+    record StatKey(Integer userId, LocalDate day) {
+    }
+
+    static final class UserDay {
+        private Long statId;
+        private int created;
+        private int completed;
+        private int cancelled;
+        private long completeSeconds;
+        private final long[] completeHist;
+        private int deliveries;
+        private long deliverySeconds;
+        private final long[] deliveryHist;
+        private boolean dirty;
+
+        UserDay() {
+            this.completeHist = new long[BUCKETS];
+            this.deliveryHist = new long[BUCKETS];
+        }
+
+        static UserDay of(StaffDailyStat row) {
+            UserDay d = new UserDay();
+            d.statId = row.getStatId();
+            d.created = nz(row.getOrdersCreated());
+            d.completed = nz(row.getOrdersCompleted());
+            d.cancelled = nz(row.getOrdersCancelled());
+            d.completeSeconds = row.getCompleteSecondsSum() == null ? 0 : row.getCompleteSecondsSum();
+            decodeInto(row.getCompleteHistogram(), d.completeHist);
+            d.deliveries = nz(row.getDeliveries());
+            d.deliverySeconds = row.getDeliverySecondsSum() == null ? 0 : row.getDeliverySecondsSum();
+            decodeInto(row.getDeliveryHistogram(), d.deliveryHist);
+            return d;
+        }
+
+        synchronized void created() {
+            created++;
+            dirty = true;
+        }
+
+        synchronized void completed(long seconds) {
+            completed++;
+            completeSeconds += seconds;
+            completeHist[bucketOf(seconds)]++;
+            dirty = true;
+        }
+
+        synchronized void delivered(long seconds) {
+            deliveries++;
+            deliverySeconds += seconds;
+            deliveryHist[bucketOf(seconds)]++;
+            dirty = true;
+        }
+
+        synchronized void cancelled() {
+            cancelled++;
+            dirty = true;
+        }
+
+        synchronized void addTo(Totals t) {
+            t.created += created;
+            t.completed += completed;
+            t.cancelled += cancelled;
+            t.completeSeconds += completeSeconds;
+            t.deliveries += deliveries;
+            t.deliverySeconds += deliverySeconds;
+            for (int i = 0; i < BUCKETS; i++) {
+                t.completeHist[i] += completeHist[i];
+                t.deliveryHist[i] += deliveryHist[i];
+            }
+        }
+
+        synchronized boolean isDirty() {
+            return dirty;
+        }
+
+        synchronized void markDirty() {
+            dirty = true;
+        }
+
+        synchronized StaffDailyStat takeDirty(StatKey key) {
+            if (!dirty) return null;
+            dirty = false;
+            return toRow(key);
+        }
+
+        synchronized void assignId(Long id) {
+            if (statId == null) statId = id;
+        }
+
+        StaffDailyStat toRow(StatKey key) {
+            return StaffDailyStat.builder()
+                    .statId(statId)
+                    .userId(key.userId())
+                    .statDate(key.day())
+                    .ordersCreated(created)
+                    .ordersCompleted(completed)
+                    .ordersCancelled(cancelled)
+                    .completeSecondsSum(completeSeconds)
+                    .completeHistogram(encode(completeHist))
+                    .deliveries(deliveries)
+                    .deliverySecondsSum(deliverySeconds)
+                    .deliveryHistogram(encode(deliveryHist))
+                    .updatedAt(LocalDateTime.now())
+                    .build();
+        }
+    }
+
+    static final class Totals {
+        int created, completed, cancelled, deliveries;
+        long completeSeconds, deliverySeconds;
+        final long[] completeHist = new long[BUCKETS];
+        final long[] deliveryHist = new long[BUCKETS];
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        OrderSnapshot o = event.order();
+        if (o == null) return;
+        LocalDateTime at = o.createdAt() != null ? o.createdAt() : LocalDateTime.now();
+        Integer staffId = staffOf(o);
+        if (staffId != null) day(staffId, at.toLocalDate()).ifPresent(UserDay::created);
+        // Đơn tạo ở trạng thái đã thanh toán tại quầy: hoàn tất ngay
+        if ("COMPLETED".equals(o.status())) recordFinished(o, "COMPLETED", at);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (event.order() == null || Objects.equals(event.previousStatus(), event.status())) return;
+        LocalDateTime at = event.changedAt() != null ? event.changedAt() : LocalDateTime.now();
+        recordFinished(event.order(), event.status(), at);
+    }
+
+    private void recordFinished(OrderSnapshot o, String status, LocalDateTime at) {
+        LocalDate day = at.toLocalDate();
+        Integer staffId = staffOf(o);
+        if ("COMPLETED".equals(status)) {
+            long seconds = o.createdAt() == null ? 0 : Math.max(0, Duration.between(o.createdAt(), at).getSeconds());
+            if (staffId != null) day(staffId, day).ifPresent(d -> d.completed(seconds));
+            if (o.delivery() && o.shipperId() != null) day(o.shipperId(), day).ifPresent(d -> d.delivered(seconds));
+        } else if ("CANCELLED".equals(status) || "REJECTED".equals(status)) {
+            if (staffId != null) day(staffId, day).ifPresent(UserDay::cancelled);
+        }
+    }
+
+    // Khách tự đặt thì created_by chính là customer: không phải đơn nhân viên xử lý
+    private static Integer staffOf(OrderSnapshot o) {
+        if (o.createdById() == null || Objects.equals(o.createdById(), o.customerId())) return null;
+        return o.createdById();
+    }
+
+    private Optional<UserDay> day(Integer userId, LocalDate day) {
+        UserDay d = hot.computeIfAbsent(new StatKey(userId, day), this::load);
+        if (d == null) log.warn("Staff stats for user {} on {} unavailable, dropping one sample", userId, day);
+        return Optional.ofNullable(d);
+    }
+
+    private UserDay load(StatKey key) {
+        try {
+            return statRepository.findByUserIdAndStatDate(key.userId(), key.day())
+                    .map(UserDay::of).orElseGet(UserDay::new);
+        } catch (Exception ex) {
+            log.warn("Failed to load staff stats for user {} on {}: {}", key.userId(), key.day(), ex.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public List<StaffPerformance> report(LocalDate from, LocalDate to) {
+        if (to == null) to = LocalDate.now(ZoneId.of("Asia/Ho_Chi_Minh"));
+        if (from == null) from = to.minusDays(29);
+        if (from.isAfter(to)) {
+            LocalDate tmp = from; from = to; to = tmp;
+        }
+
+        Map<Integer, Totals> byUser = new TreeMap<>();
+        Set<StatKey> seen = new HashSet<>();
+        for (var e : hot.entrySet()) {
+            LocalDate d = e.getKey().day();
+            if (d.isBefore(from) || d.isAfter(to)) continue;
+            e.getValue().addTo(byUser.computeIfAbsent(e.getKey().userId(), k -> new Totals()));
+            seen.add(e.getKey());
+        }
+        for (StaffDailyStat row : statRepository.findByStatDateBetween(from, to)) {
+            if (seen.contains(new StatKey(row.getUserId(), row.getStatDate()))) continue;
+            UserDay.of(row).addTo(byUser.computeIfAbsent(row.getUserId(), k -> new Totals()));
+        }
+
+        Map<Integer, User> users = new HashMap<>();
+        if (!byUser.isEmpty()) {
+            for (User u : userRepository.findAllById(byUser.keySet())) users.put(u.getUserId(), u);
+        }
+        List<StaffPerformance> result = new ArrayList<>();
+        for (var e : byUser.entrySet()) {
+            Totals t = e.getValue();
+            User u = users.get(e.getKey());
+            result.add(StaffPerformance.builder()
+                    .userId(e.getKey())
+                    .fullName(u != null ? u.getFullName() : null)
+                    .role(u != null && u.getRole() != null ? u.getRole().getName() : null)
+                    .ordersCreated(t.created)
+                    .ordersCompleted(t.completed)
+                    .ordersCancelled(t.cancelled)
+                    .avgCompleteMinutes(avgMinutes(t.completeSeconds, t.completed))
+                    .p50CompleteMinutes(percentile(t.completeHist, 0.5))
+                    .p90CompleteMinutes(percentile(t.completeHist, 0.9))
+                    .completeHistogram(t.completeHist)
+                    .deliveries(t.deliveries)
+                    .avgDeliveryMinutes(avgMinutes(t.deliverySeconds, t.deliveries))
+                    .p90DeliveryMinutes(percentile(t.deliveryHist, 0.9))
+                    .deliveryHistogram(t.deliveryHist)
+                    .build());
+        }
+        return result;
+    }
+
+    @Override
+    public int[] bucketUpperMinutes() {
+        return BUCKET_UPPER_MINUTES.clone();
+    }
+
+    /**
+     * Dựng lại bộ đếm từ bảng orders, từng tháng một. Thời điểm hoàn tất lấy closed_at, không có thì updated_at.
+     */
+    @Override
+    public int rebuild(LocalDate from, LocalDate to) {
+        int rows = 0;
+        LocalDate monthStart = from;
+        while (!monthStart.isAfter(to)) {
+            LocalDate monthEnd = monthStart.withDayOfMonth(monthStart.lengthOfMonth());
+            if (monthEnd.isAfter(to)) monthEnd = to;
+            LocalDate start = monthStart, end = monthEnd;
+
+            Map<StatKey, UserDay> rebuilt = new HashMap<>();
+            for (Object[] r : orderRepository.findForStaffStats(start.atStartOfDay(), end.plusDays(1).atStartOfDay())) {
+                Integer createdBy = toInt(r[0]);
+                Integer customerId = toInt(r[1]);
+                Integer shipperId = toInt(r[2]);
+                boolean delivery = toInt(r[3]) != null && toInt(r[3]) == 1;
+                String status = r[4] == null ? null : r[4].toString();
+                LocalDateTime createdAt = toLocalDateTime(r[5]);
+                LocalDateTime finishedAt = toLocalDateTime(r[6]);
+                Integer staffId = createdBy != null && !createdBy.equals(customerId) ? createdBy : null;
+
+                if (staffId != null && createdAt != null && inRange(createdAt.toLocalDate(), start, end)) {
+                    rebuilt.computeIfAbsent(new StatKey(staffId, createdAt.toLocalDate()), k -> new UserDay()).created();
+                }
+                if (finishedAt == null || !inRange(finishedAt.toLocalDate(), start, end)) continue;
+                LocalDate day = finishedAt.toLocalDate();
+                if ("COMPLETED".equals(status)) {
+                    long seconds = createdAt == null ? 0 : Math.max(0, Duration.between(createdAt, finishedAt).getSeconds());
+                    if (staffId != null) rebuilt.computeIfAbsent(new StatKey(staffId, day), k -> new UserDay()).completed(seconds);
+                    if (delivery && shipperId != null) {
+                        rebuilt.computeIfAbsent(new StatKey(shipperId, day), k -> new UserDay()).delivered(seconds);
+                    }
+                } else if ("CANCELLED".equals(status) || "REJECTED".equals(status)) {
+                    if (staffId != null) rebuilt.computeIfAbsent(new StatKey(staffId, day), k -> new UserDay()).cancelled();
+                }
+            }
+
+            // Giữ stat_id của dòng cũ để update; dòng cũ không còn số liệu thì xoá
+            List<StaffDailyStat> stale = new ArrayList<>();
+            for (StaffDailyStat existing : statRepository.findByStatDateBetween(start, end)) {
+                UserDay d = rebuilt.get(new StatKey(existing.getUserId(), existing.getStatDate()));
+                if (d != null) d.assignId(existing.getStatId());
+                else stale.add(existing);
+            }
+            List<StaffDailyStat> batch = new ArrayList<>();
+            for (var e : rebuilt.entrySet()) batch.add(e.getValue().toRow(e.getKey()));
+            if (!stale.isEmpty()) statRepository.deleteAll(stale);
+            statRepository.saveAll(batch);
+            hot.keySet().removeIf(k -> inRange(k.day(), start, end));
+            rows += batch.size();
+            monthStart = monthEnd.plusDays(1);
+        }
+        return rows;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.reports.staff.flush-ms:60000}")
+    public void flush() {
+        List<StaffDailyStat> batch = new ArrayList<>();
+        List<UserDay> flushed = new ArrayList<>();
+        for (var e : hot.entrySet()) {
+            StaffDailyStat row = e.getValue().takeDirty(e.getKey());
+            if (row == null) continue;
+            batch.add(row);
+            flushed.add(e.getValue());
+        }
+        if (!batch.isEmpty()) {
+            try {
+                List<StaffDailyStat> saved = statRepository.saveAll(batch);
+                // Dòng mới nhận stat_id từ DB; lần flush sau phải update chứ không insert lại
+                for (int i = 0; i < saved.size() && i < flushed.size(); i++) {
+                    flushed.get(i).assignId(saved.get(i).getStatId());
+                }
+            } catch (Exception ex) {
+                flushed.forEach(UserDay::markDirty);
+                log.warn("Failed to persist {} staff stat rows: {}", batch.size(), ex.getMessage());
+                return;
+            }
+        }
+        LocalDate keepFrom = LocalDate.now().minusDays(2);
+        hot.entrySet().removeIf(e -> e.getKey().day().isBefore(keepFrom) && !e.getValue().isDirty());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    static int bucketOf(long seconds) {
+        long minutes = seconds / 60;
+        for (int i = 0; i < BUCKET_UPPER_MINUTES.length; i++) {
+            if (minutes < BUCKET_UPPER_MINUTES[i]) return i;
+        }
+        return BUCKETS - 1;
+    }
+
+    // Trả về cận trên của bucket chứa phân vị q; null nếu rơi vào bucket cuối (không có cận trên)
+    static Integer percentile(long[] hist, double q) {
+        long total = 0;
+        for (long c : hist) total += c;
+        if (total == 0) return null;
+        long rank = (long) Math.ceil(q * total);
+        long cum = 0;
+        for (int i = 0; i < hist.length; i++) {
+            cum += hist[i];
+            if (cum >= rank) return i < BUCKET_UPPER_MINUTES.length ? BUCKET_UPPER_MINUTES[i] : null;
+        }
+        return null;
+    }
+
+    static byte[] encode(long[] hist) {
+        ByteBuffer buf = ByteBuffer.allocate(BUCKETS * Integer.BYTES);
+        for (long c : hist) buf.putInt((int) Math.min(c, Integer.MAX_VALUE));
+        return buf.array();
+    }
+
+    private static void decodeInto(byte[] bytes, long[] hist) {
+        if (bytes == null) return;
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        for (int i = 0; i < hist.length && buf.remaining() >= Integer.BYTES; i++) hist[i] = buf.getInt();
+    }
+
+    private static Double avgMinutes(long seconds, int count) {
+        if (count == 0) return null;
+        return Math.round(seconds / 60.0 / count * 10) / 10.0;
+    }
+
+    private static boolean inRange(LocalDate d, LocalDate from, LocalDate to) {
+        return !d.isBefore(from) && !d.isAfter(to);
+    }
+
+    private static int nz(Integer v) {
+        return v == null ? 0 : v;
+    }
+
+    private static Integer toInt(Object v) {
+        if (v == null) return null;
+        if (v instanceof Number n) return n.intValue();
+        if (v instanceof Boolean b) return b ? 1 : 0;
+        return Integer.valueOf(v.toString());
+    }
+
+    private static LocalDateTime toLocalDateTime(Object v) {
+        if (v == null) return null;
+        if (v instanceof java.sql.Timestamp ts) return ts.toLocalDateTime();
+        if (v instanceof LocalDateTime ldt) return ldt;
+        if (v instanceof java.sql.Date d) return d.toLocalDate().atStartOfDay();
+        return LocalDateTime.parse(String.valueOf(v).replace(' ', 'T'));
+    }
+}
@@ -76,7 +76,8 @@ public class UserServiceImpl implements IUserService {
         forceChangeStore.set(user.getEmail(), true);
 
         try {
-            emailService.send(
+            // Mật khẩu tạm: gửi ngay, không lưu nội dung vào outbox
+            emailService.sendNow(
                     user.getEmail(),
                     "[Kopi] Your temporary password",
                     "Hi " + user.getFullName() + ",\n\nYour temporary password is: " + tmp +
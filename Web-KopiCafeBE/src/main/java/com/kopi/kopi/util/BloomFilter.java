@@ -0,0 +1,80 @@
+package com.kopi.kopi.util;
+
+/**
+ * Bloom filter cho chuỗi: {@link #mightContain} false thì chắc chắn chưa có, true thì có thể là
+ * dương tính giả (xác suất ~fpp khi số phần tử không vượt quá capacity) nên cần kiểm tra chính xác.
+ * Dùng double hashing (h1 + i*h2) trên một hash 64-bit. Không thread-safe.
+ */
+public final class BloomFilter {
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+
+    private BloomFilter(long numBits, int numHashes) {
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.bits = new long[(int) ((numBits + 63) >>> 6)];
+    }
+
+    public static BloomFilter forCapacity(long expected, double fpp) {
+        if (fpp <= 0 || fpp >= 1) throw new IllegalArgumentException("fpp must be in (0, 1)");
+        long n = Math.max(expected, 1);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        if (m > Integer.MAX_VALUE) throw new IllegalArgumentException("capacity too large");
+        int k = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        return new BloomFilter(Math.max(m, 64), Math.min(k, 16));
+    }
+
+    /** Thêm phần tử; trả về true nếu có ít nhất một bit mới được bật (tức là chắc chắn chưa có trước đó) */
+    public boolean put(String value) {
+        long h = hash(value);
+        int h1 = (int) h, h2 = (int) (h >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= numHashes; i++) {
+            long idx = index(h1 + i * h2);
+            long mask = 1L << idx;
+            int word = (int) (idx >>> 6);
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public boolean mightContain(String value) {
+        long h = hash(value);
+        int h1 = (int) h, h2 = (int) (h >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long idx = index(h1 + i * h2);
+            if ((bits[(int) (idx >>> 6)] & (1L << idx)) == 0) return false;
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return numBits;
+    }
+
+    public int hashCount() {
+        return numHashes;
+    }
+
+    private long index(int combined) {
+        // Đổi về số không âm rồi lấy phần dư theo số bit
+        return (combined & 0x7fffffffL) % numBits;
+    }
+
+    // FNV-1a 64-bit trên từng char rồi trộn splitmix64 để 32 bit thấp/cao đều tốt
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h += 0x9e3779b97f4a7c15L;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
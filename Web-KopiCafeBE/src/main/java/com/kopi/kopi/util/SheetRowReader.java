@@ -0,0 +1,165 @@
+package com.kopi.kopi.util;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Đọc từng dòng của sheet đầu tiên (.xlsx) hoặc file CSV mà không dựng cả workbook trong bộ nhớ.
+ * - xlsx: POI event API (SAX trên XML của sheet), shared strings chỉ đọc;
+ * - csv: RFC 4180 (ngoặc kép, "" bên trong ô, xuống dòng trong ô), bỏ BOM UTF-8.
+ * Số được trả về dạng thô (35000, không phải "35,000" theo định dạng ô).
+ */
+public final class SheetRowReader {
+
+    private SheetRowReader() {
+    }
+
+    @FunctionalInterface
+    public interface RowHandler {
+        /** rowNum bắt đầu từ 1 như trên Excel; ô trống ở giữa là "" */
+        void row(int rowNum, List<String> cells);
+    }
+
+    public static void read(Path file, String fileName, RowHandler handler) throws IOException {
+        String name = fileName == null ? "" : fileName.toLowerCase();
+        if (name.endsWith(".csv")) {
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                readCsv(in, handler);
+            }
+        } else if (name.endsWith(".xlsx")) {
+            readXlsx(file, handler);
+        } else {
+            throw new IllegalArgumentException("Chỉ hỗ trợ file .xlsx hoặc .csv");
+        }
+    }
+
+    public static void readXlsx(Path file, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) return;
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings,
+                        new Collector(handler), new RawNumberFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalArgumentException("File .xlsx không đọc được: " + ex.getMessage(), ex);
+        }
+    }
+
+    public static void readCsv(Reader source, RowHandler handler) throws IOException {
+        BufferedReader in = source instanceof BufferedReader b ? b : new BufferedReader(source);
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        int rowNum = 1;
+        int c = in.read();
+        if (c == '\uFEFF') c = in.read();
+        for (; c != -1; c = in.read()) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    in.mark(1);
+                    int next = in.read();
+                    if (next == '"') {
+                        cell.append('"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) in.reset();
+                    }
+                } else {
+                    cell.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    in.mark(1);
+                    if (in.read() != '\n') in.reset();
+                }
+                cells.add(cell.toString());
+                cell.setLength(0);
+                handler.row(rowNum++, cells);
+                cells = new ArrayList<>();
+                any = false;
+            } else {
+                cell.append((char) c);
+            }
+        }
+        if (any) {
+            cells.add(cell.toString());
+            handler.row(rowNum, cells);
+        }
+    }
+
+    // Gom các ô (có thể bị bỏ qua nếu trống) thành list theo đúng chỉ số cột
+    private static final class Collector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private List<String> cells;
+
+        Collector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells = new ArrayList<>();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            handler.row(rowNum + 1, cells);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference != null ? new CellReference(cellReference).getCol() : cells.size();
+            while (cells.size() < col) cells.add("");
+            cells.add(formattedValue != null ? formattedValue : "");
+        }
+    }
+
+    // Giữ nguyên giá trị số, chỉ áp định dạng cho ô ngày
+    static final class RawNumberFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString)) {
+                return super.formatRawCellContents(value, formatIndex, formatString, use1904Windowing);
+            }
+            return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        }
+    }
+}
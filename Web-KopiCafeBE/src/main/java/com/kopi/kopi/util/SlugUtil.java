@@ -15,4 +15,31 @@ public final class SlugUtil {
                 .replaceAll("^-|-$", "");
         return n;
     }
+
+    /**
+     * Chuẩn hoá để tìm kiếm: bỏ dấu (kể cả đ -> d), chữ thường, chỉ giữ a-z0-9, các từ cách nhau một dấu cách.
+     * "Trà sữa Đào" -> "tra sua dao".
+     */
+    public static String fold(String s) {
+        if (s == null) return "";
+        String n = Normalizer.normalize(s, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(n.length());
+        boolean space = true;
+        for (int i = 0; i < n.length(); i++) {
+            char c = n.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (c == 'đ' || c == 'Đ') c = 'd';
+            c = Character.toLowerCase(c);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                sb.append(c);
+                space = false;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int len = sb.length();
+        if (len > 0 && sb.charAt(len - 1) == ' ') sb.setLength(len - 1);
+        return sb.toString();
+    }
 }
@@ -0,0 +1,55 @@
+package com.kopi.kopi.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket: tối đa {@code capacity} token, nạp lại {@code refillPerSecond} token mỗi giây.
+ * Dùng để giới hạn tốc độ gửi (vd. giới hạn gửi của Gmail). Thread-safe.
+ */
+public final class TokenBucket {
+    private final double capacity;
+    private final double refillPerNano;
+    private final LongSupplier nanoClock;
+    private double tokens;
+    private long last;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this(capacity, refillPerSecond, System::nanoTime);
+    }
+
+    public TokenBucket(double capacity, double refillPerSecond, LongSupplier nanoClock) {
+        if (capacity < 1 || refillPerSecond <= 0) throw new IllegalArgumentException("capacity >= 1 and refill > 0 required");
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000d;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.last = nanoClock.getAsLong();
+    }
+
+    /** Lấy tối đa {@code wanted} token đang có; trả về số token thực sự lấy được (có thể 0) */
+    public synchronized int tryAcquireUpTo(int wanted) {
+        refill();
+        int granted = (int) Math.min(Math.max(wanted, 0), Math.floor(tokens));
+        tokens -= granted;
+        return granted;
+    }
+
+    /** Trả lại token chưa dùng (vd. lô gửi ít hơn số đã lấy) */
+    public synchronized void release(int unused) {
+        if (unused > 0) tokens = Math.min(capacity, tokens + unused);
+    }
+
+    public synchronized double available() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        long elapsed = now - last;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * refillPerNano);
+            last = now;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+-- Weekly order-volume grids for the demand heatmap (7 days x 96 quarter-hour slots, int32 big-endian)
+IF OBJECT_ID(N'dbo.demand_heatmap_weeks', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.demand_heatmap_weeks (
+        week_start  DATE            NOT NULL,
+        counts      VARBINARY(MAX)  NOT NULL,
+        updated_at  DATETIME2(3)    NOT NULL,
+        CONSTRAINT PK_demand_heatmap_weeks PRIMARY KEY (week_start)
+    );
+END
@@ -0,0 +1,13 @@
+-- Per-day approximate analytics for completed orders (keyed by order created date):
+-- HyperLogLog of customer ids and t-digest of order values, both serialized
+IF OBJECT_ID(N'dbo.analytics_daily_sketches', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.analytics_daily_sketches (
+        sketch_date         DATE            NOT NULL,
+        order_count         BIGINT          NOT NULL,
+        customers_hll       VARBINARY(MAX)  NOT NULL,
+        order_value_digest  VARBINARY(MAX)  NOT NULL,
+        updated_at          DATETIME2(3)    NOT NULL,
+        CONSTRAINT PK_analytics_daily_sketches PRIMARY KEY (sketch_date)
+    );
+END
@@ -0,0 +1,24 @@
+-- Per user per day performance counters, maintained from order lifecycle events.
+-- Staff columns: orders the user created (not self-orders by customers) and their time-to-complete.
+-- Delivery columns: completed delivery orders where the user is the shipper.
+-- *_histogram: fixed minute buckets, one big-endian int32 per bucket
+IF OBJECT_ID(N'dbo.staff_daily_stats', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.staff_daily_stats (
+        stat_id               BIGINT IDENTITY(1,1) NOT NULL,
+        user_id               INT             NOT NULL,
+        stat_date             DATE            NOT NULL,
+        orders_created        INT             NOT NULL DEFAULT 0,
+        orders_completed      INT             NOT NULL DEFAULT 0,
+        orders_cancelled      INT             NOT NULL DEFAULT 0,
+        complete_seconds_sum  BIGINT          NOT NULL DEFAULT 0,
+        complete_histogram    VARBINARY(MAX)  NOT NULL,
+        deliveries            INT             NOT NULL DEFAULT 0,
+        delivery_seconds_sum  BIGINT          NOT NULL DEFAULT 0,
+        delivery_histogram    VARBINARY(MAX)  NOT NULL,
+        updated_at            DATETIME2(3)    NOT NULL,
+        CONSTRAINT PK_staff_daily_stats PRIMARY KEY (stat_id),
+        CONSTRAINT UQ_staff_daily_stats_user_date UNIQUE (user_id, stat_date)
+    );
+    CREATE INDEX IX_staff_daily_stats_date ON dbo.staff_daily_stats (stat_date);
+END
@@ -0,0 +1,25 @@
+-- Recipe: how much of each inventory item one unit of a product / size / add-on consumes.
+-- product_id only          -> base recipe of the product
+-- product_id + size_id     -> signed delta added on top of the base for that size (L: +100 ml milk)
+-- add_on_id only           -> per add-on unit (extra shot: +9 g coffee)
+IF OBJECT_ID(N'dbo.recipe_items', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.recipe_items (
+        recipe_item_id     INT IDENTITY(1,1) NOT NULL,
+        product_id         INT            NULL,
+        size_id            INT            NULL,
+        add_on_id          INT            NULL,
+        inventory_item_id  INT            NOT NULL,
+        quantity           DECIMAL(18,3)  NOT NULL,
+        CONSTRAINT PK_recipe_items PRIMARY KEY (recipe_item_id),
+        CONSTRAINT FK_recipe_items_inventory_item FOREIGN KEY (inventory_item_id) REFERENCES dbo.inventory_items(inventory_item_id),
+        CONSTRAINT CK_recipe_items_owner CHECK ((product_id IS NOT NULL AND add_on_id IS NULL)
+                                             OR (product_id IS NULL AND size_id IS NULL AND add_on_id IS NOT NULL))
+    );
+    CREATE INDEX IX_recipe_items_product ON dbo.recipe_items (product_id);
+    CREATE INDEX IX_recipe_items_add_on ON dbo.recipe_items (add_on_id);
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_inventory_log_item_created' AND object_id = OBJECT_ID(N'dbo.inventory_log'))
+    CREATE INDEX IX_inventory_log_item_created ON dbo.inventory_log (inventory_item_id, created_at);
@@ -0,0 +1,27 @@
+-- Scheduled availability per product or category (giờ Asia/Ho_Chi_Minh).
+-- days_mask: bit 0 = Monday ... bit 6 = Sunday (127 = every day)
+-- start_time/end_time NULL = whole day; end_time <= start_time = window runs past midnight
+-- starts_on/ends_on (inclusive) bound seasonal windows; NULL = open-ended
+-- A target with at least one window is orderable only inside one of its windows.
+IF OBJECT_ID(N'dbo.availability_windows', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.availability_windows (
+        window_id    INT IDENTITY(1,1) NOT NULL,
+        product_id   INT           NULL,
+        category_id  INT           NULL,
+        days_mask    INT           NOT NULL CONSTRAINT DF_availability_windows_days DEFAULT 127,
+        start_time   TIME(0)       NULL,
+        end_time     TIME(0)       NULL,
+        starts_on    DATE          NULL,
+        ends_on      DATE          NULL,
+        note         NVARCHAR(255) NULL,
+        created_at   DATETIME2(0)  NOT NULL CONSTRAINT DF_availability_windows_created DEFAULT SYSDATETIME(),
+        CONSTRAINT PK_availability_windows PRIMARY KEY (window_id),
+        CONSTRAINT FK_availability_windows_product FOREIGN KEY (product_id) REFERENCES dbo.products(product_id),
+        CONSTRAINT FK_availability_windows_category FOREIGN KEY (category_id) REFERENCES dbo.categories(category_id),
+        CONSTRAINT CK_availability_windows_owner CHECK ((product_id IS NOT NULL AND category_id IS NULL)
+                                                  OR (product_id IS NULL AND category_id IS NOT NULL)),
+        CONSTRAINT CK_availability_windows_days CHECK (days_mask BETWEEN 1 AND 127)
+    );
+END
+GO
@@ -0,0 +1,14 @@
+-- Bulk-generated coupon codes carry the id of the generation job so a batch can be exported again.
+-- Codes created one at a time keep batch_id NULL.
+IF COL_LENGTH(N'dbo.discount_codes', N'batch_id') IS NULL
+BEGIN
+    ALTER TABLE dbo.discount_codes ADD batch_id NVARCHAR(36) NULL;
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_discount_codes_batch' AND object_id = OBJECT_ID(N'dbo.discount_codes'))
+BEGIN
+    CREATE INDEX IX_discount_codes_batch ON dbo.discount_codes(batch_id, discount_code_id) INCLUDE (code)
+        WHERE batch_id IS NOT NULL;
+END
+GO
@@ -0,0 +1,27 @@
+-- Durable outbox for outgoing mail. EmailService.send only inserts here (inside the caller's transaction);
+-- a background sender drains due rows in batches over one SMTP connection, rate limited.
+-- status: PENDING (waiting / retrying at next_attempt_at) | SENT | FAILED (gave up after max attempts)
+IF OBJECT_ID(N'dbo.email_outbox', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.email_outbox (
+        email_id        BIGINT IDENTITY(1,1) NOT NULL,
+        to_address      NVARCHAR(320)  NOT NULL,
+        subject         NVARCHAR(255)  NOT NULL,
+        body            NVARCHAR(MAX)  NOT NULL,
+        status          NVARCHAR(10)   NOT NULL CONSTRAINT DF_email_outbox_status DEFAULT N'PENDING',
+        attempts        INT            NOT NULL CONSTRAINT DF_email_outbox_attempts DEFAULT 0,
+        next_attempt_at DATETIME2(3)   NOT NULL,
+        last_error      NVARCHAR(500)  NULL,
+        created_at      DATETIME2(3)   NOT NULL CONSTRAINT DF_email_outbox_created DEFAULT SYSDATETIME(),
+        sent_at         DATETIME2(3)   NULL,
+        CONSTRAINT PK_email_outbox PRIMARY KEY (email_id),
+        CONSTRAINT CK_email_outbox_status CHECK (status IN (N'PENDING', N'SENT', N'FAILED'))
+    );
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_email_outbox_due' AND object_id = OBJECT_ID(N'dbo.email_outbox'))
+BEGIN
+    CREATE INDEX IX_email_outbox_due ON dbo.email_outbox(next_attempt_at) WHERE status = N'PENDING';
+END
+GO
@@ -0,0 +1,52 @@
+-- Notifications addressed to a role (e.g. every ADMIN / STAFF on an order status change) are stored once per
+-- event per audience instead of once per staff member. Per-user read state for them is kept compactly:
+--   notification_read_marks.broadcast_watermark: every broadcast with id <= watermark counts as read ("read all")
+--   broadcast_receipts: individual broadcasts above the watermark marked read, or hidden (deleted) for that user
+IF OBJECT_ID(N'dbo.broadcast_notifications', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.broadcast_notifications (
+        broadcast_id INT IDENTITY(1,1) NOT NULL,
+        audience     NVARCHAR(50)   NOT NULL,
+        order_id     INT            NULL,
+        title        NVARCHAR(255)  NOT NULL,
+        message      NVARCHAR(1000) NOT NULL,
+        type         NVARCHAR(50)   NOT NULL,
+        created_at   DATETIME2(3)   NOT NULL CONSTRAINT DF_broadcast_notifications_created DEFAULT SYSDATETIME(),
+        CONSTRAINT PK_broadcast_notifications PRIMARY KEY (broadcast_id),
+        CONSTRAINT FK_broadcast_notifications_order FOREIGN KEY (order_id) REFERENCES dbo.orders(order_id)
+    );
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_broadcast_notifications_feed' AND object_id = OBJECT_ID(N'dbo.broadcast_notifications'))
+BEGIN
+    CREATE INDEX IX_broadcast_notifications_feed ON dbo.broadcast_notifications(audience, created_at DESC, broadcast_id DESC);
+END
+GO
+
+IF OBJECT_ID(N'dbo.notification_read_marks', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.notification_read_marks (
+        user_id             INT          NOT NULL,
+        broadcast_watermark INT          NOT NULL CONSTRAINT DF_notification_read_marks_wm DEFAULT 0,
+        updated_at          DATETIME2(3) NOT NULL CONSTRAINT DF_notification_read_marks_updated DEFAULT SYSDATETIME(),
+        CONSTRAINT PK_notification_read_marks PRIMARY KEY (user_id),
+        CONSTRAINT FK_notification_read_marks_user FOREIGN KEY (user_id) REFERENCES dbo.users(user_id)
+    );
+END
+GO
+
+IF OBJECT_ID(N'dbo.broadcast_receipts', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.broadcast_receipts (
+        user_id      INT          NOT NULL,
+        broadcast_id INT          NOT NULL,
+        is_hidden    BIT          NOT NULL CONSTRAINT DF_broadcast_receipts_hidden DEFAULT 0,
+        created_at   DATETIME2(3) NOT NULL CONSTRAINT DF_broadcast_receipts_created DEFAULT SYSDATETIME(),
+        CONSTRAINT PK_broadcast_receipts PRIMARY KEY (user_id, broadcast_id),
+        CONSTRAINT FK_broadcast_receipts_user FOREIGN KEY (user_id) REFERENCES dbo.users(user_id),
+        CONSTRAINT FK_broadcast_receipts_broadcast FOREIGN KEY (broadcast_id)
+            REFERENCES dbo.broadcast_notifications(broadcast_id) ON DELETE CASCADE
+    );
+END
+GO
@@ -0,0 +1,13 @@
+-- Supports the notification retention job: read personal notifications and old broadcasts are deleted
+-- in small TOP (n) chunks ordered by created_at, so each chunk is a short range seek instead of a scan.
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_notifications_read_created' AND object_id = OBJECT_ID(N'dbo.notifications'))
+BEGIN
+    CREATE INDEX IX_notifications_read_created ON dbo.notifications(created_at) WHERE is_read = 1;
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_broadcast_notifications_created' AND object_id = OBJECT_ID(N'dbo.broadcast_notifications'))
+BEGIN
+    CREATE INDEX IX_broadcast_notifications_created ON dbo.broadcast_notifications(created_at);
+END
+GO
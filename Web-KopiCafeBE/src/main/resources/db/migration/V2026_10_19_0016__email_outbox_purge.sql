@@ -0,0 +1,11 @@
+-- Outbox retention: sent rows no longer keep their body, and a daily job deletes SENT / FAILED rows
+-- older than app.mail.outbox.keep-sent / keep-failed. OTP and temporary-password mail bypasses the outbox.
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_email_outbox_status_created' AND object_id = OBJECT_ID(N'dbo.email_outbox'))
+BEGIN
+    CREATE INDEX IX_email_outbox_status_created ON dbo.email_outbox(status, created_at);
+END
+GO
+
+-- Rows sent before this change may still hold OTPs / temporary passwords
+UPDATE dbo.email_outbox SET body = N'' WHERE status = N'SENT' AND body <> N'';
+GO
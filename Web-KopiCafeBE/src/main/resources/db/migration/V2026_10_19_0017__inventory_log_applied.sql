@@ -0,0 +1,14 @@
+-- Completed orders write their ingredient deductions to inventory_log inside the order's transaction
+-- with applied = 0; the inventory flush claims those rows (UPDATE TOP ... OUTPUT) and applies them to
+-- inventory_items.quantity_on_hand. Existing rows and manual adjustments are already applied (default 1).
+IF COL_LENGTH(N'dbo.inventory_log', N'applied') IS NULL
+BEGIN
+    ALTER TABLE dbo.inventory_log ADD applied BIT NOT NULL CONSTRAINT DF_inventory_log_applied DEFAULT 1;
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_inventory_log_unapplied' AND object_id = OBJECT_ID(N'dbo.inventory_log'))
+BEGIN
+    CREATE INDEX IX_inventory_log_unapplied ON dbo.inventory_log(inventory_log_id) INCLUDE (inventory_item_id, quantity_change, order_id) WHERE applied = 0;
+END
+GO
@@ -0,0 +1,123 @@
+package com.kopi.kopi.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtTokenProviderTest {
+    private static final String SECRET = "test-secret-for-jwt-token-provider-0123456789";
+
+    private MutableClock clock;
+    private JwtTokenProvider provider;
+    private String access;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock();
+        provider = new JwtTokenProvider(SECRET, Duration.ofDays(1).toMillis(), Duration.ofDays(7).toMillis(),
+                Duration.ofSeconds(60).toMillis(), Duration.ofHours(12).toMillis(), clock);
+        access = provider.generateToken("khach@kopi.vn", 3, 7, "Khach", "khach@kopi.vn", false);
+    }
+
+    private Claims claims(String token) {
+        assertThat(provider.validateToken(token)).isTrue();
+        return provider.parseClaims(token);
+    }
+
+    @Test
+    void reconnectAfterConnectWindow_isAccepted_onceTheTokenHasConnected() {
+        String stream = provider.generateStreamToken(access);
+        assertThat(claims(stream).get("scope")).isEqualTo(JwtTokenProvider.STREAM_SCOPE);
+        assertThat(provider.acceptStreamConnect(claims(stream))).isTrue();
+
+        // EventSource tự kết nối lại bằng đúng URL cũ sau khi cửa sổ 60s đã qua
+        clock.advance(Duration.ofMinutes(30));
+        assertThat(provider.acceptStreamConnect(claims(stream))).isTrue();
+        clock.advance(Duration.ofHours(11));
+        assertThat(provider.acceptStreamConnect(claims(stream))).isTrue();
+
+        // Hết cửa sổ reconnect thì token không còn hợp lệ, client phải xin token mới
+        clock.advance(Duration.ofHours(1));
+        assertThat(provider.validateToken(stream)).isFalse();
+    }
+
+    @Test
+    void unusedStreamToken_mustConnectWithinTheConnectWindow() {
+        String stream = provider.generateStreamToken(access);
+
+        clock.advance(Duration.ofSeconds(61));
+
+        assertThat(provider.acceptStreamConnect(claims(stream))).isFalse();
+        assertThat(provider.acceptStreamConnect(claims(provider.generateStreamToken(access)))).isTrue();
+    }
+
+    @Test
+    void streamToken_neverOutlivesTheAccessToken() {
+        clock.advance(Duration.ofHours(20));
+        String stream = provider.generateStreamToken(access);
+        assertThat(provider.acceptStreamConnect(claims(stream))).isTrue();
+
+        clock.advance(Duration.ofHours(4).plusSeconds(1));
+
+        assertThat(provider.validateToken(stream)).isFalse();
+    }
+
+    @Test
+    void accessTokenWithoutRole_mintsStreamTokenWithoutRole() {
+        String noRole = Jwts.builder()
+                .setSubject("khach@kopi.vn")
+                .setIssuedAt(Date.from(clock.instant()))
+                .setExpiration(Date.from(clock.instant().plus(Duration.ofHours(1))))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS256)
+                .compact();
+
+        Claims stream = claims(provider.generateStreamToken(noRole));
+
+        assertThat(stream.getSubject()).isEqualTo("khach@kopi.vn");
+        assertThat(stream.get("role")).isNull();
+        assertThat(provider.acceptStreamConnect(stream)).isTrue();
+    }
+
+    @Test
+    void streamToken_cannotMintAnotherStreamToken() {
+        String stream = provider.generateStreamToken(access);
+
+        assertThatThrownBy(() -> provider.generateStreamToken(stream)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-10-19T03:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("Asia/Ho_Chi_Minh");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.AvailabilityWindow;
+import com.kopi.kopi.event.CatalogChangedEvent;
+import com.kopi.kopi.repository.AvailabilityWindowRepository;
+import com.kopi.kopi.repository.CategoryRepository;
+import com.kopi.kopi.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AvailabilityServiceImplTest {
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    // 2026-10-19 là thứ Hai
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 19);
+
+    private static final class MutableClock extends Clock {
+        Instant now;
+
+        void set(LocalDateTime t) {
+            now = t.atZone(ZONE).toInstant();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZONE;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private AvailabilityWindowRepository windowRepository;
+    private ApplicationEventPublisher publisher;
+    private TaskScheduler scheduler;
+    private MutableClock clock;
+    private AvailabilityServiceImpl svc;
+
+    private static AvailabilityWindow breakfast() {
+        return AvailabilityWindow.builder().windowId(1).productId(1).daysMask(127)
+                .startTime(LocalTime.of(6, 0)).endTime(LocalTime.of(11, 0)).build();
+    }
+
+    // Danh mục "đêm cuối tuần": 22:00 thứ Sáu/thứ Bảy đến 02:00 hôm sau
+    private static AvailabilityWindow lateNight() {
+        return AvailabilityWindow.builder().windowId(2).categoryId(5).daysMask((1 << 4) | (1 << 5))
+                .startTime(LocalTime.of(22, 0)).endTime(LocalTime.of(2, 0)).build();
+    }
+
+    private static AvailabilityWindow seasonal() {
+        return AvailabilityWindow.builder().windowId(3).productId(3).daysMask(127)
+                .startsOn(MONDAY.plusDays(3)).endsOn(MONDAY.plusDays(30)).build();
+    }
+
+    @BeforeEach
+    void setUp() {
+        windowRepository = mock(AvailabilityWindowRepository.class);
+        publisher = mock(ApplicationEventPublisher.class);
+        scheduler = mock(TaskScheduler.class);
+        clock = new MutableClock();
+        clock.set(MONDAY.atTime(10, 30));
+        when(windowRepository.findAll()).thenReturn(List.of(breakfast(), lateNight(), seasonal()));
+        svc = new AvailabilityServiceImpl(windowRepository, mock(ProductRepository.class), mock(CategoryRepository.class),
+                publisher, scheduler, clock, 7);
+    }
+
+    private static long at(LocalDateTime t) {
+        return AvailabilityServiceImpl.Index.minute(t);
+    }
+
+    @Test
+    void compile_mergesDailyOvernightAndSeasonalWindows() {
+        AvailabilityServiceImpl.Index idx = AvailabilityServiceImpl.compile(List.of(breakfast(), lateNight(), seasonal()), MONDAY, 7);
+
+        long[] p1 = idx.products.get(1);
+        assertThat(AvailabilityServiceImpl.Index.open(p1, at(MONDAY.atTime(6, 0)))).isTrue();
+        assertThat(AvailabilityServiceImpl.Index.open(p1, at(MONDAY.atTime(10, 59)))).isTrue();
+        assertThat(AvailabilityServiceImpl.Index.open(p1, at(MONDAY.atTime(11, 0)))).isFalse();
+
+        long[] c5 = idx.categories.get(5);
+        LocalDate friday = MONDAY.plusDays(4);
+        assertThat(AvailabilityServiceImpl.Index.open(c5, at(friday.atTime(21, 59)))).isFalse();
+        assertThat(AvailabilityServiceImpl.Index.open(c5, at(friday.plusDays(1).atTime(1, 30)))).isTrue();
+        assertThat(AvailabilityServiceImpl.Index.open(c5, at(friday.plusDays(1).atTime(2, 0)))).isFalse();
+        // Khung thứ Bảy mở lại lúc 22:00 sau khoảng đóng 02:00-22:00
+        assertThat(AvailabilityServiceImpl.Index.open(c5, at(friday.plusDays(1).atTime(23, 0)))).isTrue();
+
+        long[] p3 = idx.products.get(3);
+        assertThat(AvailabilityServiceImpl.Index.open(p3, at(MONDAY.atTime(12, 0)))).isFalse();
+        assertThat(AvailabilityServiceImpl.Index.open(p3, at(MONDAY.plusDays(3).atStartOfDay()))).isTrue();
+        // Cả ngày liên tiếp được gộp thành một đoạn
+        assertThat(p3).hasSize(2);
+
+        assertThat(idx.nextBoundary(at(MONDAY.atTime(10, 30)))).isEqualTo(at(MONDAY.atTime(11, 0)));
+        assertThat(idx.nextBoundary(at(MONDAY.atTime(11, 0)))).isEqualTo(at(MONDAY.plusDays(1).atTime(6, 0)));
+    }
+
+    @Test
+    void boundary_tickFlipsStateAndPushesCatalogChange() {
+        assertThat(svc.isOrderable(1, 9)).isTrue();
+        assertThat(svc.isOrderable(3, 9)).isFalse();
+        assertThat(svc.isOrderable(7, 5)).isFalse();
+        verify(scheduler).schedule(any(Runnable.class), eq(MONDAY.atTime(11, 0).atZone(ZONE).toInstant()));
+        verifyNoInteractions(publisher);
+
+        clock.set(MONDAY.atTime(11, 0));
+        svc.tick();
+
+        assertThat(svc.closedProductIds()).containsExactlyInAnyOrder(1, 3);
+        verify(publisher).publishEvent(any(CatalogChangedEvent.class));
+        verify(scheduler).schedule(any(Runnable.class), eq(MONDAY.plusDays(1).atTime(6, 0).atZone(ZONE).toInstant()));
+        // Chỉ biên dịch một lần trong tầm nhìn, mỗi mốc chỉ tính lại trạng thái
+        verify(windowRepository, times(1)).findAll();
+
+        // Qua mốc mà không đổi trạng thái thì không phát sự kiện
+        clock.set(MONDAY.atTime(11, 1));
+        svc.tick();
+        verify(publisher, times(1)).publishEvent(any(CatalogChangedEvent.class));
+    }
+
+    @Test
+    void create_rejectsWindowWithoutSingleOwner() {
+        AvailabilityWindow both = AvailabilityWindow.builder().productId(1).categoryId(5).build();
+        assertThatThrownBy(() -> svc.create(both)).isInstanceOf(IllegalArgumentException.class);
+        verify(windowRepository, never()).save(any());
+    }
+}
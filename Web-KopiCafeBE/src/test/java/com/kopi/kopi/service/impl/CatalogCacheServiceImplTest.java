@@ -0,0 +1,93 @@
+package com.kopi.kopi.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kopi.kopi.dto.CachedJson;
+import com.kopi.kopi.event.CatalogChangedEvent;
+import com.kopi.kopi.event.OrderSnapshot;
+import com.kopi.kopi.event.OrderStatusChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogCacheServiceImplTest {
+    private CatalogCacheServiceImpl cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = new CatalogCacheServiceImpl(new ObjectMapper(), 2, 10);
+    }
+
+    private Object load(Object v) {
+        loads.incrementAndGet();
+        return Map.of("data", v);
+    }
+
+    @Test
+    void detail_secondReadIsServedFromCache_withSameStrongEtag() {
+        CachedJson a = cache.detail(1, () -> load("cà phê"));
+        CachedJson b = cache.detail(1, () -> load("other"));
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(b).isSameAs(a);
+        assertThat(a.etag()).startsWith("\"").endsWith("\"").doesNotStartWith("W/");
+        assertThat(new String(a.body(), StandardCharsets.UTF_8)).isEqualTo("{\"data\":\"cà phê\"}");
+    }
+
+    @Test
+    void productChange_evictsThatDetailAndAllPages_only() {
+        cache.detail(1, () -> load(1));
+        cache.detail(2, () -> load(2));
+        cache.page("p1", () -> load("page"));
+
+        cache.onCatalogChanged(CatalogChangedEvent.product(1));
+        cache.detail(1, () -> load(1));
+        cache.detail(2, () -> load(2));
+        cache.page("p1", () -> load("page"));
+
+        assertThat(loads.get()).isEqualTo(5);
+    }
+
+    @Test
+    void completedOrder_evictsProductsWhoseStockChanged() {
+        CachedJson before = cache.detail(7, () -> load(10));
+        OrderSnapshot order = new OrderSnapshot(1, "COMPLETED", LocalDateTime.now(), null, null, null, null, false,
+                BigDecimal.TEN, List.of(new OrderSnapshot.Line(1, 7, null, 1, BigDecimal.TEN)));
+        cache.onOrderStatusChanged(new OrderStatusChangedEvent(order, "READY", "COMPLETED", LocalDateTime.now()));
+
+        CachedJson after = cache.detail(7, () -> load(9));
+
+        assertThat(after.etag()).isNotEqualTo(before.etag());
+    }
+
+    @Test
+    void loadRacingWithInvalidation_isNotCached() {
+        cache.page("p1", () -> {
+            cache.evictAll(); // sản phẩm bị sửa trong lúc đang đọc DB
+            return load("stale");
+        });
+        cache.page("p1", () -> load("fresh"));
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void pages_areBoundedLru() {
+        cache.page("a", () -> load("a"));
+        cache.page("b", () -> load("b"));
+        cache.page("a", () -> load("a"));
+        cache.page("c", () -> load("c")); // đẩy "b" ra
+        cache.page("a", () -> load("a"));
+        cache.page("b", () -> load("b"));
+
+        assertThat(loads.get()).isEqualTo(4);
+    }
+}
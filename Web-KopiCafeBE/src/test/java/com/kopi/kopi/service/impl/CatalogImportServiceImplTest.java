@@ -0,0 +1,164 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.CatalogImportResult;
+import com.kopi.kopi.entity.AddOn;
+import com.kopi.kopi.entity.Category;
+import com.kopi.kopi.entity.Size;
+import com.kopi.kopi.event.CatalogChangedEvent;
+import com.kopi.kopi.repository.AddOnRepository;
+import com.kopi.kopi.repository.CategoryRepository;
+import com.kopi.kopi.repository.SizeRepository;
+import com.kopi.kopi.util.SheetRowReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CatalogImportServiceImplTest {
+
+    private JdbcTemplate jdbc;
+    private ApplicationEventPublisher publisher;
+    private SizeRepository sizes;
+    private CatalogImportServiceImpl svc;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = mock(JdbcTemplate.class);
+        publisher = mock(ApplicationEventPublisher.class);
+        CategoryRepository categories = mock(CategoryRepository.class);
+        Category coffee = new Category();
+        coffee.setCategoryId(1);
+        coffee.setName("Cà phê");
+        when(categories.findAll()).thenReturn(List.of(coffee));
+        sizes = mock(SizeRepository.class);
+        when(sizes.findAll()).thenReturn(List.of(Size.builder().sizeId(3).name("Lớn").code("L").displayOrder(3).build()));
+        AddOnRepository addOns = mock(AddOnRepository.class);
+        when(addOns.findAll()).thenReturn(List.of(AddOn.builder().addOnId(7).name("Shot espresso").displayOrder(1).build()));
+
+        // Sản phẩm có sẵn: id 5, sku LATTE; id 8, sku MOCHA
+        List<Object[]> existing = new ArrayList<>();
+        existing.add(new Object[]{5, "LATTE", 1, "Latte"});
+        existing.add(new Object[]{8, "MOCHA", 1, "Mocha"});
+        doReturn(existing).when(jdbc).query(eq(CatalogImportServiceImpl.SELECT_PRODUCTS), any(RowMapper.class));
+        // INSERT ... OUTPUT trả về id mới cho sản phẩm không có sku
+        List<Object[]> inserted = new ArrayList<>();
+        inserted.add(new Object[]{6, null, 1, "Bạc xỉu"});
+        doReturn(inserted).when(jdbc).query(any(PreparedStatementCreator.class), any(RowMapper.class));
+
+        svc = new CatalogImportServiceImpl(jdbc, mock(PlatformTransactionManager.class), categories, sizes, addOns,
+                publisher, 1000, 1000);
+    }
+
+    private static MockMultipartFile csv(String body) {
+        return new MockMultipartFile("file", "menu.csv", "text/csv", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> batch(String sql) {
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbc).batchUpdate(eq(sql), args.capture());
+        return args.getValue();
+    }
+
+    @Test
+    void import_upsertsValidRows_andReportsRowErrors() {
+        CatalogImportResult result = svc.importCatalog(csv(
+                "sku,name,category,price,sizes,addons\n"
+                        + "latte,Latte nóng,Cà phê,45000,L:10000,Shot espresso:12000\n"
+                        + ",Bạc xỉu,cà phê,30000,,\n"
+                        + ",Trà sữa,Trà,30000,,\n"
+                        + ",Espresso,Cà phê,abc,,\n"
+                        + "LATTE,Latte,Cà phê,40000,,\n"));
+
+        assertThat(result.getTotalRows()).isEqualTo(5);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(3);
+        assertThat(result.getErrors()).extracting(CatalogImportResult.RowError::row).containsExactly(4, 5, 6);
+        assertThat(result.getErrors().get(0).message()).contains("Trà");
+        assertThat(result.getErrors().get(2).message()).contains("dòng 2");
+
+        List<Object[]> updates = batch(CatalogImportServiceImpl.UPDATE_PRODUCT);
+        assertThat(updates).hasSize(1);
+        assertThat(updates.get(0)[0]).isEqualTo("Latte nóng");
+        assertThat(updates.get(0)[9]).isEqualTo(5);
+
+        // Cột sizes/addons có mặt: thay toàn bộ, kể cả sản phẩm mới với ô trống
+        assertThat(batch(CatalogImportServiceImpl.DELETE_SIZES)).extracting(r -> r[0]).containsExactly(5);
+        List<Object[]> sizeRows = batch(CatalogImportServiceImpl.INSERT_SIZE);
+        assertThat(sizeRows).hasSize(1);
+        assertThat(sizeRows.get(0)).containsExactly(5, 3, new BigDecimal("10000"));
+        assertThat(batch(CatalogImportServiceImpl.INSERT_ADD_ON).get(0)).containsExactly(5, 7, new BigDecimal("12000"));
+
+        verify(publisher).publishEvent(any(CatalogChangedEvent.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedChunk_isRetriedRowByRow_andNewSizesFollowTheRollback() {
+        // Ghi sản phẩm "Hỏng" lỗi ở DB: cả chunk rollback, kể cả size XL vừa tạo
+        doAnswer(inv -> {
+            for (Object[] row : (List<Object[]>) inv.getArgument(1)) {
+                if ("Hỏng".equals(row[0])) throw new IllegalStateException("String or binary data would be truncated");
+            }
+            return new int[0];
+        }).when(jdbc).batchUpdate(eq(CatalogImportServiceImpl.UPDATE_PRODUCT), anyList());
+        when(sizes.save(any(Size.class))).thenReturn(Size.builder().sizeId(11).build(), Size.builder().sizeId(12).build());
+
+        CatalogImportResult result = svc.importCatalog(csv(
+                "sku,name,category,price,sizes\n"
+                        + "LATTE,Latte,Cà phê,40000,XL:15000\n"
+                        + "MOCHA,Hỏng,Cà phê,42000,\n"
+                        + ",Espresso,Cà phê,30000,Khổng lồ quá cỡ vượt mọi giới hạn tên size cho phép:1\n"));
+
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(CatalogImportResult.RowError::row).containsExactly(4, 3);
+        assertThat(result.getErrors().get(0).message()).contains("quá 50 ký tự");
+        assertThat(result.getErrors().get(1).message()).contains("truncated");
+        // Lần ghi lại dòng LATTE tạo lại XL thay vì dùng id 11 đã rollback
+        verify(sizes, times(2)).save(any(Size.class));
+        assertThat(batch(CatalogImportServiceImpl.INSERT_SIZE)).singleElement()
+                .satisfies(row -> assertThat(row).containsExactly(5, 12, new BigDecimal("15000")));
+    }
+
+    @Test
+    void import_withoutRequiredColumns_isRejected() {
+        org.assertj.core.api.Assertions.assertThatThrownBy(() -> svc.importCatalog(csv("sku,name\nA,B\n")))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(publisher);
+    }
+
+    @Test
+    void csvSink_roundTripsThroughReader() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CatalogImportServiceImpl.CsvSink sink = new CatalogImportServiceImpl.CsvSink(out)) {
+            sink.row(new ArrayList<>(CatalogImportServiceImpl.COLUMNS));
+            sink.row(new ArrayList<>(java.util.Arrays.asList(5, "LATTE", "Latte \"đặc biệt\", nóng", "Cà phê",
+                    new BigDecimal("45000.00"), 1, 10, null, "dòng 1\ndòng 2", "L:10000", "")));
+        }
+
+        List<List<String>> rows = new ArrayList<>();
+        SheetRowReader.readCsv(new StringReader(out.toString(StandardCharsets.UTF_8)), (n, cells) -> rows.add(cells));
+
+        assertThat(rows.get(0)).containsExactlyElementsOf(CatalogImportServiceImpl.COLUMNS);
+        assertThat(rows.get(1)).containsExactly("5", "LATTE", "Latte \"đặc biệt\", nóng", "Cà phê", "45000", "1", "10",
+                "", "dòng 1\ndòng 2", "L:10000", "");
+    }
+}
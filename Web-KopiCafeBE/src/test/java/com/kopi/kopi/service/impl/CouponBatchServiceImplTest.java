@@ -0,0 +1,127 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.CouponBatchStatus;
+import com.kopi.kopi.entity.enums.DiscountType;
+import com.kopi.kopi.event.PromoChangedEvent;
+import com.kopi.kopi.repository.DiscountCodeRepository;
+import com.kopi.kopi.service.CouponBatchService.BatchRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CouponBatchServiceImplTest {
+    private static final LocalDateTime START = LocalDateTime.of(2026, 11, 1, 0, 0);
+
+    private JdbcTemplate jdbc;
+    private DiscountCodeRepository codeRepository;
+    private ApplicationEventPublisher publisher;
+    private final List<String> existing = new ArrayList<>();
+    private final List<List<Object[]>> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbc = mock(JdbcTemplate.class);
+        codeRepository = mock(DiscountCodeRepository.class);
+        publisher = mock(ApplicationEventPublisher.class);
+        when(jdbc.queryForObject(CouponBatchServiceImpl.COUNT_CODES, Long.class)).thenAnswer(inv -> (long) existing.size());
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            if (existing.isEmpty()) return null;
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString(1)).thenReturn(existing.get(0), existing.subList(1, existing.size()).toArray(new String[0]));
+            for (int i = 0; i < existing.size(); i++) handler.processRow(rs);
+            return null;
+        }).when(jdbc).query(eq(CouponBatchServiceImpl.SELECT_CODES), any(RowCallbackHandler.class));
+        when(jdbc.batchUpdate(eq(CouponBatchServiceImpl.INSERT_CODE), anyList())).thenAnswer(inv -> {
+            List<Object[]> args = inv.getArgument(1);
+            batches.add(new ArrayList<>(args));
+            return new int[args.size()];
+        });
+        when(codeRepository.existsByCodeIgnoreCase(anyString())).thenAnswer(inv -> existing.contains(inv.<String>getArgument(0)));
+    }
+
+    private CouponBatchServiceImpl service(String alphabet, long seed) {
+        return new CouponBatchServiceImpl(jdbc, mock(PlatformTransactionManager.class), codeRepository, publisher,
+                Runnable::run, new Random(seed), alphabet, 8, 100, 10_000, 0.01, Duration.ofHours(1));
+    }
+
+    private static BatchRequest request(int count, String prefix, Integer length) {
+        return new BatchRequest(count, prefix, length, DiscountType.PERCENT, new BigDecimal("15"), null,
+                "Tết", START, START.plusDays(30));
+    }
+
+    @Test
+    void generatesUniqueCodes_inChunks_withPrefixAndProgress() {
+        CouponBatchServiceImpl svc = service("ABCDEFGHJKLMNPQRSTUVWXYZ23456789", 1);
+        CouponBatchStatus submitted = svc.submit(request(250, "tet-", null));
+
+        CouponBatchStatus done = svc.status(submitted.getBatchId()).orElseThrow();
+        assertThat(done.getStatus()).isEqualTo("DONE");
+        assertThat(done.getProgress()).isEqualTo(100);
+        assertThat(done.getInserted()).isEqualTo(250);
+        assertThat(batches).extracting(List::size).containsExactly(100, 100, 50);
+
+        Set<String> codes = new HashSet<>();
+        for (List<Object[]> b : batches) {
+            for (Object[] row : b) {
+                String code = (String) row[0];
+                assertThat(code).startsWith("TET-").hasSize(12).matches("TET-[A-HJ-NP-Z2-9]{8}");
+                assertThat(row[8]).isEqualTo(submitted.getBatchId());
+                codes.add(code);
+            }
+        }
+        assertThat(codes).hasSize(250);
+        verify(publisher, times(1)).publishEvent(any(PromoChangedEvent.class));
+    }
+
+    @Test
+    void collisionsWithExistingCodes_areRegenerated_afterExactCheck() {
+        // Bảng chữ 2 ký tự, độ dài 10: 1024 mã khả dĩ, tất cả đã tồn tại trừ BBBBBBBBBB
+        for (int i = 0; i < 1023; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int b = 9; b >= 0; b--) sb.append(((i >> b) & 1) == 0 ? 'A' : 'B');
+            existing.add(sb.toString());
+        }
+        CouponBatchServiceImpl svc = service("AB", 7);
+        CouponBatchStatus done = svc.submit(request(1, null, 10));
+
+        done = svc.status(done.getBatchId()).orElseThrow();
+        assertThat(done.getStatus()).isEqualTo("DONE");
+        assertThat(done.getInserted()).isEqualTo(1);
+        assertThat(done.getCollisions()).isPositive();
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0).get(0)[0]).isEqualTo("BBBBBBBBBB");
+        // Chỉ mã bị Bloom filter báo "có thể trùng" mới phải kiểm tra DB
+        verify(codeRepository, times(done.getCollisions() + done.getFalsePositives())).existsByCodeIgnoreCase(anyString());
+    }
+
+    @Test
+    void submit_rejectsBadParameters_beforeQueueing() {
+        CouponBatchServiceImpl svc = service("ABCDEFGHJKLMNPQRSTUVWXYZ23456789", 3);
+        assertThatThrownBy(() -> svc.submit(request(0, null, null))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> svc.submit(request(10, "bad prefix!", null))).isInstanceOf(IllegalArgumentException.class);
+        // 32^4 ≈ 1 triệu mã, quá nhỏ cho 5.000 mã
+        assertThatThrownBy(() -> svc.submit(request(5_000, null, 4))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> svc.submit(new BatchRequest(10, null, null, DiscountType.PERCENT, new BigDecimal("120"),
+                null, null, START, START.plusDays(1)))).isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(jdbc);
+    }
+}
@@ -0,0 +1,86 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.DiscountCode;
+import com.kopi.kopi.entity.enums.DiscountType;
+import com.kopi.kopi.event.PromoChangedEvent;
+import com.kopi.kopi.repository.DiscountCodeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CouponLookupServiceImplTest {
+    private JdbcTemplate jdbc;
+    private DiscountCodeRepository codeRepository;
+    private CouponLookupServiceImpl svc;
+    private final List<String> codes = new ArrayList<>(List.of("SUMMER10", "WELCOME"));
+
+    private static DiscountCode code(int id, String code) {
+        return DiscountCode.builder().discountCodeId(id).code(code).discountType(DiscountType.PERCENT)
+                .discountValue(BigDecimal.TEN).startsAt(LocalDateTime.now().minusDays(1))
+                .endsAt(LocalDateTime.now().plusDays(1)).active(true).usageCount(0).build();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbc = mock(JdbcTemplate.class);
+        codeRepository = mock(DiscountCodeRepository.class);
+        when(jdbc.queryForObject(CouponLookupServiceImpl.COUNT_CODES, Long.class)).thenAnswer(inv -> (long) codes.size());
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (String c : codes) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn(c);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbc).query(eq(CouponLookupServiceImpl.SELECT_CODES), any(RowCallbackHandler.class));
+        when(codeRepository.findByCodeIgnoreCase("SUMMER10")).thenReturn(Optional.of(code(1, "SUMMER10")));
+        svc = new CouponLookupServiceImpl(codeRepository, jdbc, 100, 0.001);
+    }
+
+    @Test
+    void unknownCodes_areRejected_withoutQuery() {
+        for (String guess : List.of("S", "SU", "SUM", "SUMM", "SUMME", "SUMMER", "SUMMER1", "XYZ")) {
+            assertThat(svc.find(guess)).isEmpty();
+        }
+        verify(codeRepository, never()).findByCodeIgnoreCase(anyString());
+        // Filter chỉ dựng một lần
+        verify(jdbc, times(1)).query(eq(CouponLookupServiceImpl.SELECT_CODES), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void knownCode_isCaseFolded_andCachedAfterFirstLoad() {
+        assertThat(svc.find(" summer10 ")).map(DiscountCode::getDiscountCodeId).contains(1);
+        assertThat(svc.find("Summer10")).map(DiscountCode::getCode).contains("SUMMER10");
+        verify(codeRepository, times(1)).findByCodeIgnoreCase("SUMMER10");
+
+        // Có trong filter nhưng DB không có (vd. vừa bị xoá): nhớ kết quả âm
+        assertThat(svc.find("WELCOME")).isEmpty();
+        assertThat(svc.find("welcome")).isEmpty();
+        verify(codeRepository, times(1)).findByCodeIgnoreCase("WELCOME");
+    }
+
+    @Test
+    void promoChange_rebuildsFilter_soNewCodesAreFound() {
+        assertThat(svc.find("NEWYEAR")).isEmpty();
+
+        codes.add("NEWYEAR");
+        when(codeRepository.findByCodeIgnoreCase("NEWYEAR")).thenReturn(Optional.of(code(3, "NEWYEAR")));
+        svc.onPromoChanged(new PromoChangedEvent());
+
+        assertThat(svc.find("newyear")).map(DiscountCode::getDiscountCodeId).contains(3);
+        verify(jdbc, times(2)).query(eq(CouponLookupServiceImpl.SELECT_CODES), any(RowCallbackHandler.class));
+    }
+}
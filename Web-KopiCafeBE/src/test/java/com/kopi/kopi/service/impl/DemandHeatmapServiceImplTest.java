@@ -0,0 +1,129 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.DemandHeatmap;
+import com.kopi.kopi.entity.DemandHeatmapWeek;
+import com.kopi.kopi.repository.DemandHeatmapWeekRepository;
+import com.kopi.kopi.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class DemandHeatmapServiceImplTest {
+    private DemandHeatmapWeekRepository weekRepository;
+    private DemandHeatmapServiceImpl svc;
+
+    // 2025-11-03 là thứ Hai
+    private static final LocalDate MONDAY = LocalDate.of(2025, 11, 3);
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final Clock CLOCK = Clock.fixed(MONDAY.atTime(10, 0).atZone(ZONE).toInstant(), ZONE);
+
+    @BeforeEach
+    void setUp() {
+        weekRepository = mock(DemandHeatmapWeekRepository.class);
+        when(weekRepository.findById(any())).thenReturn(Optional.empty());
+        when(weekRepository.findByWeekStartBetween(any(), any())).thenReturn(List.of());
+        svc = new DemandHeatmapServiceImpl(weekRepository, mock(OrderRepository.class), CLOCK, ZONE);
+    }
+
+    @Test
+    void record_countsIntoHourlyCells() {
+        svc.record(MONDAY.atTime(8, 5));
+        svc.record(MONDAY.atTime(8, 50));
+        svc.record(MONDAY.plusDays(2).atTime(14, 0));
+
+        DemandHeatmap h = svc.heatmap(MONDAY, MONDAY.plusDays(6), 60);
+
+        assertThat(h.getSlotMinutes()).isEqualTo(60);
+        assertThat(h.getCounts()[0][8]).isEqualTo(2);
+        assertThat(h.getCounts()[2][14]).isEqualTo(1);
+        assertThat(h.getTotal()).isEqualTo(3);
+        assertThat(h.getWeeks()).isEqualTo(1);
+    }
+
+    @Test
+    void heatmap_partialWeek_onlySumsDaysInRange() {
+        svc.record(MONDAY.atTime(9, 0));
+        svc.record(MONDAY.plusDays(1).atTime(9, 0));
+
+        DemandHeatmap h = svc.heatmap(MONDAY.plusDays(1), MONDAY.plusDays(1), 15);
+
+        assertThat(h.getCounts()[0][36]).isZero();
+        assertThat(h.getCounts()[1][36]).isEqualTo(1);
+        assertThat(h.getTotal()).isEqualTo(1);
+    }
+
+    @Test
+    void heatmap_mergesPersistedWeeks() {
+        long[] cells = new long[DemandHeatmapServiceImpl.CELLS];
+        cells[DemandHeatmapServiceImpl.cellIndex(MONDAY.minusWeeks(1).atTime(10, 0))] = 5;
+        when(weekRepository.findByWeekStartBetween(any(), any())).thenReturn(List.of(
+                DemandHeatmapWeek.builder().weekStart(MONDAY.minusWeeks(1))
+                        .counts(DemandHeatmapServiceImpl.encode(cells)).build()));
+        svc.record(MONDAY.atTime(10, 10));
+
+        DemandHeatmap h = svc.heatmap(MONDAY.minusWeeks(1), MONDAY.plusDays(6), 60);
+
+        assertThat(h.getCounts()[0][10]).isEqualTo(6);
+        assertThat(h.getWeeks()).isEqualTo(2);
+    }
+
+    @Test
+    void flush_savesOnlyDirtyWeeks() {
+        svc.record(LocalDateTime.now(CLOCK));
+        svc.flush();
+        svc.flush();
+
+        verify(weekRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void record_bucketsStoredServerTime_inShopTimeZone() {
+        // Máy chủ chạy UTC: 01:00 UTC là 08:00 giờ Việt Nam
+        svc = new DemandHeatmapServiceImpl(weekRepository, mock(OrderRepository.class), CLOCK, ZoneId.of("UTC"));
+        svc.record(MONDAY.atTime(1, 0));
+        svc.record(MONDAY.minusDays(1).atTime(23, 0));
+
+        DemandHeatmap h = svc.heatmap(MONDAY, MONDAY.plusDays(6), 60);
+
+        assertThat(h.getCounts()[0][8]).isEqualTo(1);
+        assertThat(h.getCounts()[0][6]).isEqualTo(1);
+        assertThat(h.getTotal()).isEqualTo(2);
+    }
+
+    @Test
+    void lateSampleForEvictedWeek_isAddedOnTopOfThePersistedGrid() {
+        Map<LocalDate, DemandHeatmapWeek> db = new HashMap<>();
+        when(weekRepository.findById(any())).thenAnswer(inv -> Optional.ofNullable(db.get((LocalDate) inv.getArgument(0))));
+        List<DemandHeatmapWeek> saved = new ArrayList<>();
+        when(weekRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<DemandHeatmapWeek> batch = inv.getArgument(0);
+            batch.forEach(w -> db.put(w.getWeekStart(), w));
+            saved.addAll(batch);
+            return batch;
+        });
+        LocalDateTime old = MONDAY.minusWeeks(3).atTime(9, 0);
+
+        svc.record(old);
+        svc.flush(); // lưu rồi bỏ tuần cũ khỏi bộ nhớ
+        svc.record(old);
+        svc.flush();
+
+        assertThat(saved).hasSize(2);
+        long[] cells = DemandHeatmapServiceImpl.decode(saved.get(1).getCounts());
+        assertThat(cells[DemandHeatmapServiceImpl.cellIndex(old)]).isEqualTo(2);
+    }
+}
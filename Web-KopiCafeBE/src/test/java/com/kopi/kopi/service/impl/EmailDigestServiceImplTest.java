@@ -0,0 +1,169 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.service.EmailDigestService.Recipient;
+import com.kopi.kopi.service.EmailDigestService.StatusChange;
+import com.kopi.kopi.service.NotificationDispatcher;
+import com.kopi.kopi.service.NotificationDispatcher.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class EmailDigestServiceImplTest {
+    private static final Recipient KHACH = Recipient.email("Khach@Kopi.vn");
+    private static final Recipient STAFF = Recipient.roles(Set.of("ADMIN", "STAFF"));
+
+    private NotificationDispatcher dispatcher;
+    private MutableClock clock;
+    private EmailDigestServiceImpl svc;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = mock(NotificationDispatcher.class);
+        when(dispatcher.dispatch(any())).thenReturn(true);
+        clock = new MutableClock();
+        svc = new EmailDigestServiceImpl(dispatcher, clock, Duration.ofMinutes(2), 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static StatusChange change(int orderId, String from, String to) {
+        return new StatusChange(orderId, "K" + orderId, from, to.toUpperCase(), to, "Đơn K" + orderId + " hiện ở trạng thái '" + to + "'.",
+                "Cảm ơn bạn!");
+    }
+
+    private List<Message> sent() {
+        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+        verify(dispatcher, atLeast(0)).dispatch(captor.capture());
+        return captor.getAllValues();
+    }
+
+    @Test
+    void wholeLifecycle_becomesOneEmail_flushedOnTerminalState() {
+        svc.record(KHACH, change(1, "Pending", "Accepted"));
+        svc.record(KHACH, change(1, "Accepted", "Ready"));
+        svc.record(KHACH, change(1, "Ready", "Shipping"));
+        assertThat(svc.flushDue()).isZero();
+
+        svc.record(KHACH, change(1, "Shipping", "Completed"));
+        assertThat(svc.flushDue()).isEqualTo(1);
+
+        assertThat(sent()).singleElement().satisfies(m -> {
+            assertThat(m.email()).isEqualTo("khach@kopi.vn");
+            assertThat(m.message()).isNull();
+            assertThat(m.title()).isEqualTo("Cập nhật đơn hàng #K1");
+            assertThat(m.emailText()).isEqualTo("""
+                    Đơn K1 hiện ở trạng thái 'Completed'.
+                    Trước đó: Pending → Accepted → Ready → Shipping
+
+                    Cảm ơn bạn!""");
+        });
+        assertThat(svc.stats()).containsEntry("events", 4L).containsEntry("emails", 1L)
+                .containsEntry("flushed_early", 1L).containsEntry("pending_recipients", 0);
+    }
+
+    @Test
+    void nonTerminalDigest_isSentWhenWindowExpires_andMergesOrders() {
+        svc.record(STAFF, change(1, "Pending", "Accepted"));
+        clock.advance(Duration.ofSeconds(90));
+        svc.record(STAFF, change(2, "Pending", "Accepted"));
+        assertThat(svc.flushDue()).isZero();
+
+        // Cửa sổ tính từ sự kiện đầu tiên, sự kiện sau không kéo dài thêm
+        clock.advance(Duration.ofSeconds(30));
+        assertThat(svc.flushDue()).isEqualTo(1);
+
+        Message m = sent().get(0);
+        assertThat(m.roles()).containsExactlyInAnyOrder("ADMIN", "STAFF");
+        assertThat(m.title()).isEqualTo("Cập nhật 2 đơn hàng");
+        assertThat(m.emailText()).contains("Đơn K1 hiện ở trạng thái 'Accepted'.\nTrước đó: Pending",
+                "Đơn K2 hiện ở trạng thái 'Accepted'.");
+        assertThat(svc.stats()).containsEntry("flushed_window", 1L);
+    }
+
+    @Test
+    void recipientsAreBufferedSeparately() {
+        svc.record(KHACH, change(1, "Pending", "Accepted"));
+        svc.record(STAFF, change(1, "Pending", "Accepted"));
+        svc.record(Recipient.email("khach@kopi.vn"), change(1, "Accepted", "Cancelled"));
+
+        assertThat(svc.flushDue()).isEqualTo(1);
+        assertThat(sent()).singleElement().extracting(Message::email).isEqualTo("khach@kopi.vn");
+        assertThat(svc.stats()).containsEntry("pending_recipients", 1);
+    }
+
+    @Test
+    void zeroWindow_sendsEachChangeImmediately() {
+        EmailDigestServiceImpl direct = new EmailDigestServiceImpl(dispatcher, clock, Duration.ZERO, 20);
+
+        direct.record(KHACH, change(1, "Pending", "Accepted"));
+        direct.record(KHACH, change(1, "Accepted", "Ready"));
+
+        assertThat(sent()).hasSize(2).allSatisfy(m -> assertThat(m.emailText()).startsWith("Đơn K1").contains("Trước đó: "));
+    }
+
+    @Test
+    void insideTransaction_onlyBuffersAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        svc.record(KHACH, change(1, "Shipping", "Completed"));
+        assertThat(svc.stats()).containsEntry("pending_recipients", 0);
+
+        List<TransactionSynchronization> syncs = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        syncs.forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(svc.flushDue()).isEqualTo(1);
+    }
+
+    @Test
+    void shutdown_flushesPendingDigests() {
+        svc.record(KHACH, change(1, "Pending", "Accepted"));
+        svc.record(STAFF, change(1, "Pending", "Accepted"));
+
+        svc.flushAll();
+
+        assertThat(sent()).hasSize(2);
+        assertThat(svc.stats()).containsEntry("pending_recipients", 0);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-10-19T03:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("Asia/Ho_Chi_Minh");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.EmailOutbox;
+import com.kopi.kopi.repository.EmailOutboxRepository;
+import com.kopi.kopi.util.TokenBucket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EmailOutboxServiceImplTest {
+    private static final Duration BASE = Duration.ofSeconds(30);
+
+    private FakeSmtpServer smtp;
+    private MutableClock clock;
+    private AtomicLong nanos;
+    private List<EmailOutbox> table;
+    private EmailOutboxRepository repo;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtp = new FakeSmtpServer();
+        clock = new MutableClock(Instant.parse("2026-10-19T03:00:00Z"));
+        nanos = new AtomicLong();
+        table = new CopyOnWriteArrayList<>();
+        repo = mock(EmailOutboxRepository.class);
+        AtomicLong ids = new AtomicLong();
+        when(repo.save(any(EmailOutbox.class))).thenAnswer(inv -> {
+            EmailOutbox e = inv.getArgument(0);
+            e.setEmailId(ids.incrementAndGet());
+            table.add(e);
+            return e;
+        });
+        when(repo.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(repo.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(anyString(), any(), any())).thenAnswer(inv -> {
+            String status = inv.getArgument(0);
+            LocalDateTime now = inv.getArgument(1);
+            Pageable page = inv.getArgument(2);
+            return table.stream()
+                    .filter(e -> e.getStatus().equals(status) && !e.getNextAttemptAt().isAfter(now))
+                    .sorted(Comparator.comparing(EmailOutbox::getNextAttemptAt))
+                    .limit(page.getPageSize())
+                    .toList();
+        });
+        when(repo.countByStatus(anyString())).thenAnswer(inv ->
+                table.stream().filter(e -> e.getStatus().equals(inv.getArgument(0))).count());
+    }
+
+    @AfterEach
+    void tearDown() {
+        smtp.close();
+    }
+
+    private EmailOutboxServiceImpl service(int port, TokenBucket bucket, int maxAttempts) {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("127.0.0.1");
+        sender.setPort(port);
+        Properties props = new Properties();
+        props.put("mail.smtp.connectiontimeout", "2000");
+        props.put("mail.smtp.timeout", "5000");
+        sender.setJavaMailProperties(props);
+        return new EmailOutboxServiceImpl(repo, sender, bucket, clock, "shop@kopi.vn", 50, maxAttempts, BASE, Duration.ofHours(2),
+                Duration.ofDays(7), Duration.ofDays(30));
+    }
+
+    private TokenBucket bucket(int capacity) {
+        return new TokenBucket(capacity, 1, nanos::get);
+    }
+
+    @Test
+    void drain_sendsWholeBatchOverOneSmtpConnection() {
+        EmailOutboxServiceImpl svc = service(smtp.port(), bucket(20), 8);
+        for (int i = 1; i <= 5; i++) svc.enqueue("khach" + i + "@kopi.vn", "Đơn #" + i, "Cảm ơn bạn");
+        assertThat(smtp.connections.get()).isZero();
+
+        assertThat(svc.drain()).isEqualTo(5);
+
+        assertThat(smtp.connections.get()).isEqualTo(1);
+        assertThat(smtp.delivered).hasSize(5);
+        assertThat(table).allSatisfy(e -> {
+            assertThat(e.getStatus()).isEqualTo(EmailOutbox.SENT);
+            assertThat(e.getAttempts()).isEqualTo(1);
+            assertThat(e.getSentAt()).isNotNull();
+            assertThat(e.getBody()).isEmpty();
+        });
+        // Không còn gì đến hạn: không mở kết nối mới
+        assertThat(svc.drain()).isZero();
+        assertThat(smtp.connections.get()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectedRecipient_isRetriedWithExponentialBackoff() {
+        EmailOutboxServiceImpl svc = service(smtp.port(), bucket(20), 8);
+        svc.enqueue("ok@kopi.vn", "A", "a");
+        svc.enqueue("reject@kopi.vn", "B", "b");
+        LocalDateTime t0 = LocalDateTime.now(clock);
+
+        assertThat(svc.drain()).isEqualTo(1);
+
+        EmailOutbox bad = table.get(1);
+        assertThat(table.get(0).getStatus()).isEqualTo(EmailOutbox.SENT);
+        assertThat(bad.getStatus()).isEqualTo(EmailOutbox.PENDING);
+        assertThat(bad.getAttempts()).isEqualTo(1);
+        assertThat(bad.getLastError()).isNotBlank();
+        assertThat(bad.getNextAttemptAt()).isBetween(t0.plus(BASE), t0.plusSeconds(36));
+
+        // Chưa đến hạn thì không thử lại
+        assertThat(svc.drain()).isZero();
+        assertThat(bad.getAttempts()).isEqualTo(1);
+
+        clock.advance(Duration.ofSeconds(40));
+        LocalDateTime t1 = LocalDateTime.now(clock);
+        svc.drain();
+        assertThat(bad.getAttempts()).isEqualTo(2);
+        assertThat(bad.getNextAttemptAt()).isBetween(t1.plusSeconds(60), t1.plusSeconds(72));
+    }
+
+    @Test
+    void tokenBucket_capsMessagesPerDrain() {
+        EmailOutboxServiceImpl svc = service(smtp.port(), bucket(3), 8);
+        for (int i = 0; i < 5; i++) svc.enqueue("k" + i + "@kopi.vn", "S", "b");
+
+        assertThat(svc.drain()).isEqualTo(3);
+        assertThat(smtp.delivered).hasSize(3);
+        assertThat(svc.drain()).isZero();
+
+        nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(svc.drain()).isEqualTo(2);
+        assertThat(table).extracting(EmailOutbox::getStatus).containsOnly(EmailOutbox.SENT);
+    }
+
+    @Test
+    void serverDown_retriesThenFailsAfterMaxAttempts() throws IOException {
+        int deadPort;
+        try (ServerSocket s = new ServerSocket(0)) {
+            deadPort = s.getLocalPort();
+        }
+        EmailOutboxServiceImpl svc = service(deadPort, bucket(20), 2);
+        svc.enqueue("a@kopi.vn", "S", "b");
+        svc.enqueue("b@kopi.vn", "S", "b");
+
+        assertThat(svc.drain()).isZero();
+        assertThat(table).extracting(EmailOutbox::getStatus).containsOnly(EmailOutbox.PENDING);
+
+        clock.advance(Duration.ofMinutes(1));
+        assertThat(svc.drain()).isZero();
+        assertThat(table).extracting(EmailOutbox::getStatus).containsOnly(EmailOutbox.FAILED);
+        assertThat(svc.stats()).containsEntry("failed", 2L).containsEntry("retried", 2L);
+    }
+
+    @Test
+    void sendNow_deliversImmediatelyWithoutStoringOrWaitingForTokens() {
+        TokenBucket empty = bucket(1);
+        empty.tryAcquireUpTo(1);
+        EmailOutboxServiceImpl svc = service(smtp.port(), empty, 8);
+
+        svc.sendNow("khach@kopi.vn", "OTP xác thực tài khoản", "Mã OTP của bạn: 123456");
+
+        assertThat(smtp.delivered).singleElement().asString().contains("123456");
+        assertThat(table).isEmpty();
+        verify(repo, never()).save(any(EmailOutbox.class));
+        assertThat(svc.stats()).containsEntry("sent_direct", 1L);
+    }
+
+    @Test
+    void purge_deletesSentAndFailedRowsPastRetention() {
+        EmailOutboxServiceImpl svc = service(smtp.port(), bucket(1), 8);
+        LocalDateTime now = LocalDateTime.now(clock);
+        when(repo.deleteByStatusCreatedBefore(EmailOutbox.SENT, now.minusDays(7))).thenReturn(40);
+        when(repo.deleteByStatusCreatedBefore(EmailOutbox.FAILED, now.minusDays(30))).thenReturn(2);
+
+        assertThat(svc.purge()).isEqualTo(42);
+        verify(repo, never()).deleteByStatusCreatedBefore(eq(EmailOutbox.PENDING), any());
+    }
+
+    @Test
+    void backoff_doublesAndIsCapped() {
+        EmailOutboxServiceImpl svc = service(smtp.port(), bucket(1), 8);
+        assertThat(svc.backoff(1)).isBetween(BASE, BASE.multipliedBy(12).dividedBy(10));
+        assertThat(svc.backoff(3)).isBetween(BASE.multipliedBy(4), BASE.multipliedBy(48).dividedBy(10));
+        assertThat(svc.backoff(40)).isBetween(Duration.ofHours(2), Duration.ofMinutes(144));
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("Asia/Ho_Chi_Minh");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    /** SMTP server tối giản trên localhost: đếm số kết nối, nhận DATA, từ chối RCPT có chữ "reject" */
+    private static final class FakeSmtpServer implements AutoCloseable {
+        final AtomicInteger connections = new AtomicInteger();
+        final List<String> delivered = new CopyOnWriteArrayList<>();
+        private final ServerSocket server;
+        private final Thread acceptor;
+
+        FakeSmtpServer() throws IOException {
+            server = new ServerSocket(0);
+            acceptor = new Thread(this::acceptLoop, "fake-smtp");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!server.isClosed()) {
+                try {
+                    Socket s = server.accept();
+                    connections.incrementAndGet();
+                    Thread t = new Thread(() -> handle(s), "fake-smtp-session");
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter out = new PrintWriter(socket.getOutputStream(), false, StandardCharsets.UTF_8)) {
+                reply(out, "220 localhost fake ESMTP");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String cmd = line.toUpperCase();
+                    if (cmd.startsWith("EHLO")) {
+                        reply(out, "250-localhost\r\n250 8BITMIME");
+                    } else if (cmd.startsWith("RCPT") && cmd.contains("REJECT")) {
+                        reply(out, "550 5.1.1 mailbox unavailable");
+                    } else if (cmd.equals("DATA")) {
+                        reply(out, "354 end with .");
+                        List<String> body = new ArrayList<>();
+                        while ((line = in.readLine()) != null && !line.equals(".")) body.add(line);
+                        delivered.add(String.join("\n", body));
+                        reply(out, "250 queued");
+                    } else if (cmd.equals("QUIT")) {
+                        reply(out, "221 bye");
+                        return;
+                    } else {
+                        // HELO, MAIL, RCPT, RSET, NOOP
+                        reply(out, "250 OK");
+                    }
+                }
+            } catch (IOException ignored) {
+                // client đóng kết nối
+            }
+        }
+
+        private static void reply(PrintWriter out, String s) {
+            out.print(s + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            try {
+                server.close();
+            } catch (IOException ignored) {
+                // đang tắt
+            }
+        }
+    }
+}
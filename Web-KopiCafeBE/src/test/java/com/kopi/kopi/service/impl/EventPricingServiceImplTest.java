@@ -0,0 +1,123 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.EventPriceTable;
+import com.kopi.kopi.entity.enums.DiscountType;
+import com.kopi.kopi.event.PromoChangedEvent;
+import com.kopi.kopi.repository.DiscountEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class EventPricingServiceImplTest {
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 19, 10, 0);
+    private static final int LATTE = 1, CROISSANT = 2, TEA = 3;
+
+    private static final class MutableClock extends Clock {
+        Instant now;
+
+        void set(LocalDateTime t) {
+            now = t.atZone(ZONE).toInstant();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZONE;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private DiscountEventRepository eventRepository;
+    private TaskScheduler scheduler;
+    private MutableClock clock;
+    private EventPricingServiceImpl svc;
+    private final List<Object[]> rows = new ArrayList<>();
+
+    private void rule(int eventId, int productId, DiscountType type, String value, LocalDateTime from, LocalDateTime to) {
+        rows.add(new Object[]{eventId, type, new BigDecimal(value), from, to, productId});
+    }
+
+    @BeforeEach
+    void setUp() {
+        eventRepository = mock(DiscountEventRepository.class);
+        scheduler = mock(TaskScheduler.class);
+        clock = new MutableClock();
+        clock.set(NOW);
+        when(eventRepository.findActiveRuleRows(any())).thenAnswer(inv -> List.copyOf(rows));
+        svc = new EventPricingServiceImpl(eventRepository, scheduler, clock);
+    }
+
+    @Test
+    void overlappingEvents_pickBestPriceForEachUnitPrice() {
+        // Latte: giảm 10% và giảm 5.000đ cùng lúc; tuỳ giá mà luật nào có lợi hơn
+        rule(1, LATTE, DiscountType.PERCENT, "10", NOW.minusDays(1), NOW.plusDays(1));
+        rule(2, LATTE, DiscountType.AMOUNT, "5000", NOW.minusDays(1), NOW.plusDays(1));
+        rule(3, LATTE, DiscountType.PERCENT, "5", NOW.minusDays(1), NOW.plusDays(1));
+        rule(4, CROISSANT, DiscountType.AMOUNT, "50000", NOW.minusDays(1), NOW.plusDays(1));
+
+        EventPriceTable table = svc.current();
+        assertThat(table.price(LATTE, new BigDecimal("30000"))).isEqualByComparingTo("25000");
+        assertThat(table.price(LATTE, new BigDecimal("80000"))).isEqualByComparingTo("72000");
+        assertThat(table.bestRule(LATTE, new BigDecimal("80000")).eventId()).isEqualTo(1);
+        // Không để giá âm; sản phẩm không có event giữ nguyên giá
+        assertThat(table.price(CROISSANT, new BigDecimal("20000"))).isEqualByComparingTo("0");
+        assertThat(table.price(TEA, new BigDecimal("25000"))).isEqualByComparingTo("25000");
+    }
+
+    @Test
+    void boundaries_swapTableWithoutRereadingEvents() {
+        rule(1, LATTE, DiscountType.PERCENT, "20", NOW.minusHours(1), NOW.plusHours(2));
+        rule(2, TEA, DiscountType.AMOUNT, "3000", NOW.plusHours(1), NOW.plusHours(3));
+
+        EventPriceTable before = svc.current();
+        assertThat(before.price(LATTE, new BigDecimal("40000"))).isEqualByComparingTo("32000");
+        assertThat(before.price(TEA, new BigDecimal("25000"))).isEqualByComparingTo("25000");
+        verify(scheduler).schedule(any(Runnable.class), eq(NOW.plusHours(1).atZone(ZONE).toInstant()));
+
+        clock.set(NOW.plusHours(1));
+        svc.tick();
+        EventPriceTable during = svc.current();
+        assertThat(during.price(TEA, new BigDecimal("25000"))).isEqualByComparingTo("22000");
+        // Bảng cũ không bị sửa: ai đang giữ nó vẫn tính giá nhất quán
+        assertThat(before.price(TEA, new BigDecimal("25000"))).isEqualByComparingTo("25000");
+        verify(scheduler).schedule(any(Runnable.class), eq(NOW.plusHours(2).plusSeconds(1).atZone(ZONE).toInstant()));
+
+        clock.set(NOW.plusHours(2).plusSeconds(1));
+        svc.tick();
+        assertThat(svc.current().price(LATTE, new BigDecimal("40000"))).isEqualByComparingTo("40000");
+        verify(eventRepository, times(1)).findActiveRuleRows(any());
+    }
+
+    @Test
+    void promoChange_reloadsTimeline() {
+        assertThat(svc.current().isEmpty()).isTrue();
+        verifyNoInteractions(scheduler);
+
+        rule(7, CROISSANT, DiscountType.PERCENT, "50", NOW.minusMinutes(5), NOW.plusDays(2));
+        svc.onPromoChanged(new PromoChangedEvent());
+
+        assertThat(svc.current().price(CROISSANT, new BigDecimal("35000"))).isEqualByComparingTo("17500");
+        verify(eventRepository, times(2)).findActiveRuleRows(any());
+    }
+}
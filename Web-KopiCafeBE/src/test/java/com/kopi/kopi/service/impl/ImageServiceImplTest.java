@@ -0,0 +1,104 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.ImageFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageServiceImplTest {
+
+    @TempDir
+    Path dir;
+
+    private ImageServiceImpl svc;
+
+    @BeforeEach
+    void setUp() {
+        // Sinh variant ngay trên thread gọi: kiểm tra không phụ thuộc thời điểm worker nền chạy xong
+        svc = new ImageServiceImpl(dir.toString(), "/Kopi", 5_000_000, 40_000_000, 0.8f, Runnable::run);
+    }
+
+    private static MockMultipartFile png(int w, int h) throws Exception {
+        BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        for (int x = 0; x < w; x++) img.setRGB(x, x % h, 0xFF336699);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", out);
+        return new MockMultipartFile("image", "latte.png", "image/png", out.toByteArray());
+    }
+
+    private static String hashOf(String url) {
+        return url.substring("/Kopi/apiv1/images/".length(), url.lastIndexOf('/'));
+    }
+
+    @Test
+    void store_sameContent_returnsSameContentAddressedUrl() throws Exception {
+        MockMultipartFile file = png(300, 200);
+        String first = svc.store(file);
+        String second = svc.store(file);
+
+        assertThat(first).isEqualTo(second).matches("/Kopi/apiv1/images/[0-9a-f]{64}/full\\.jpg");
+    }
+
+    @Test
+    void store_writesVariantsWithinBounds_withoutUpscaling() throws Exception {
+        String hash = hashOf(svc.store(png(2000, 1000)));
+
+        ImageFile thumb = svc.resolve(hash, "thumb").orElseThrow();
+        ImageFile full = svc.resolve(hash, "full").orElseThrow();
+        assertThat(thumb.fallback()).isFalse();
+        assertThat(thumb.contentType()).isEqualTo("image/jpeg");
+        BufferedImage t = ImageIO.read(thumb.path().toFile());
+        assertThat(t.getWidth()).isEqualTo(160);
+        assertThat(t.getHeight()).isEqualTo(80);
+        assertThat(ImageIO.read(full.path().toFile()).getWidth()).isEqualTo(1280);
+
+        String small = hashOf(svc.store(png(100, 50)));
+        assertThat(ImageIO.read(svc.resolve(small, "full").orElseThrow().path().toFile()).getWidth()).isEqualTo(100);
+    }
+
+    @Test
+    void resolve_beforeVariantsExist_fallsBackToOriginal_andRejectsBadInput() throws Exception {
+        // Hàng đợi đầy: lịch sinh variant bị từ chối, ảnh chỉ có bản gốc
+        svc = new ImageServiceImpl(dir.toString(), "/Kopi", 5_000_000, 40_000_000, 0.8f, task -> {
+            throw new RejectedExecutionException();
+        });
+        String hash = hashOf(svc.store(png(50, 50)));
+
+        ImageFile file = svc.resolve(hash, "card").orElseThrow();
+        assertThat(file.fallback()).isTrue();
+        assertThat(file.contentType()).isEqualTo("image/png");
+
+        assertThat(svc.resolve("../../etc", "full")).isEmpty();
+        assertThat(svc.resolve(hash, "huge")).isEmpty();
+        assertThat(svc.resolve("a".repeat(64), "full")).isEmpty();
+    }
+
+    @Test
+    void store_rejectsNonImage() {
+        MockMultipartFile text = new MockMultipartFile("image", "a.png", "image/png", "hello".getBytes());
+        assertThatThrownBy(() -> svc.store(text)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void responsive_onlyForOwnUrls() {
+        String hash = "ab".repeat(32);
+        Map<String, String> set = svc.responsive("/Kopi/apiv1/images/" + hash + "/full.jpg");
+
+        assertThat(set).containsEntry("thumb", "/Kopi/apiv1/images/" + hash + "/thumb.jpg")
+                .containsEntry("card", "/Kopi/apiv1/images/" + hash + "/card.jpg");
+        assertThat(set.get("srcset")).contains("thumb.jpg 160w").contains("full.jpg 1280w");
+        assertThat(svc.responsive("https://cdn.example.com/latte.png")).isNull();
+        assertThat(svc.responsive(null)).isNull();
+    }
+}
@@ -0,0 +1,160 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.RecipeItem;
+import com.kopi.kopi.event.OrderSnapshot;
+import com.kopi.kopi.event.OrderStatusChangedEvent;
+import com.kopi.kopi.repository.InventoryItemRepository;
+import com.kopi.kopi.repository.OrderDetailAddOnRepository;
+import com.kopi.kopi.repository.RecipeItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InventoryServiceImplTest {
+
+    private static final int MILK = 1;
+    private static final int COFFEE = 2;
+    private static final int LATTE = 10;
+    private static final int SIZE_L = 3;
+    private static final int SIZE_S = 1;
+    private static final int EXTRA_SHOT = 7;
+
+    private JdbcTemplate jdbc;
+    private OrderDetailAddOnRepository addOnRepository;
+    private PlatformTransactionManager txManager;
+    private InventoryServiceImpl svc;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = mock(JdbcTemplate.class);
+        addOnRepository = mock(OrderDetailAddOnRepository.class);
+        RecipeItemRepository recipeRepository = mock(RecipeItemRepository.class);
+        when(recipeRepository.findAll()).thenReturn(List.of(
+                RecipeItem.builder().productId(LATTE).inventoryItemId(MILK).quantity(new BigDecimal("200")).build(),
+                RecipeItem.builder().productId(LATTE).inventoryItemId(COFFEE).quantity(new BigDecimal("18")).build(),
+                RecipeItem.builder().productId(LATTE).sizeId(SIZE_L).inventoryItemId(MILK).quantity(new BigDecimal("100")).build(),
+                RecipeItem.builder().productId(LATTE).sizeId(SIZE_S).inventoryItemId(MILK).quantity(new BigDecimal("-500")).build(),
+                RecipeItem.builder().addOnId(EXTRA_SHOT).inventoryItemId(COFFEE).quantity(new BigDecimal("9")).build()));
+        txManager = mock(PlatformTransactionManager.class);
+        svc = new InventoryServiceImpl(mock(InventoryItemRepository.class), recipeRepository, addOnRepository,
+                jdbc, txManager, mock(ApplicationEventPublisher.class), 5000);
+    }
+
+    private static OrderStatusChangedEvent completed(int orderId, OrderSnapshot.Line... lines) {
+        OrderSnapshot order = new OrderSnapshot(orderId, "COMPLETED", LocalDateTime.now(), null, null, null, null, false,
+                BigDecimal.TEN, List.of(lines));
+        return new OrderStatusChangedEvent(order, "PENDING", "COMPLETED", LocalDateTime.now());
+    }
+
+    private static OrderSnapshot.Line line(int detailId, Integer sizeId, int qty) {
+        return new OrderSnapshot.Line(detailId, LATTE, sizeId, qty, BigDecimal.TEN);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> captured(String sql) {
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbc).batchUpdate(eq(sql), args.capture());
+        return args.getValue();
+    }
+
+    // Giả lập UPDATE TOP ... OUTPUT trả về các dòng (inventory_item_id, quantity_change, order_id)
+    private void claimReturns(Object[]... rows) {
+        when(jdbc.query(eq(InventoryServiceImpl.CLAIM_JOURNAL), any(ResultSetExtractor.class), eq(5000))).thenAnswer(inv -> {
+            ResultSetExtractor<?> extractor = inv.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            int[] i = {-1};
+            when(rs.next()).thenAnswer(x -> ++i[0] < rows.length);
+            when(rs.getInt(1)).thenAnswer(x -> rows[i[0]][0]);
+            when(rs.getBigDecimal(2)).thenAnswer(x -> rows[i[0]][1]);
+            when(rs.getInt(3)).thenAnswer(x -> rows[i[0]][2]);
+            return extractor.extractData(rs);
+        });
+    }
+
+    @Test
+    void completedOrder_isJournaledInTheCallersTransaction_withoutTouchingStock() {
+        List<Object[]> addOns = new ArrayList<>();
+        addOns.add(new Object[]{101, EXTRA_SHOT});
+        when(addOnRepository.findAddOnIdsByOrderDetailIds(anyCollection())).thenReturn(addOns);
+
+        // 2 ly L có thêm shot: sữa 2 x 300, cà phê 2 x 27
+        svc.onOrderStatusChanged(completed(1, line(101, SIZE_L, 2)));
+
+        List<Object[]> rows = captured(InventoryServiceImpl.INSERT_JOURNAL);
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0)[0]).isEqualTo(MILK);
+        assertThat((BigDecimal) rows.get(0)[2]).isEqualByComparingTo("-600");
+        assertThat(rows.get(1)[0]).isEqualTo(COFFEE);
+        assertThat((BigDecimal) rows.get(1)[2]).isEqualByComparingTo("-54");
+        assertThat(rows).allSatisfy(row -> {
+            assertThat(row[1]).isEqualTo("OUT");
+            assertThat(row[4]).isEqualTo(1);
+        });
+        verify(jdbc, never()).batchUpdate(eq(InventoryServiceImpl.UPDATE_ON_HAND), anyList());
+    }
+
+    @Test
+    void flush_appliesPersistedJournalRows_oneUpdatePerIngredient() {
+        claimReturns(
+                new Object[]{MILK, new BigDecimal("-600"), 1},
+                new Object[]{COFFEE, new BigDecimal("-54"), 1},
+                new Object[]{MILK, new BigDecimal("-200"), 2},
+                new Object[]{COFFEE, new BigDecimal("-18"), 2});
+
+        assertThat(svc.flush()).isEqualTo(2);
+
+        List<Object[]> updates = captured(InventoryServiceImpl.UPDATE_ON_HAND);
+        assertThat(updates).hasSize(2);
+        // Thứ tự id tăng dần để không deadlock với điều chỉnh tay
+        assertThat(updates.get(0)[2]).isEqualTo(MILK);
+        assertThat((BigDecimal) updates.get(0)[0]).isEqualByComparingTo("-800");
+        assertThat(updates.get(1)[2]).isEqualTo(COFFEE);
+        assertThat((BigDecimal) updates.get(1)[0]).isEqualByComparingTo("-72");
+        verify(txManager).commit(any());
+    }
+
+    @Test
+    void lineConsumption_negativeSizeDeltaNeverGoesBelowZero() {
+        InventoryServiceImpl.Recipes r = InventoryServiceImpl.Recipes.of(List.of(
+                RecipeItem.builder().productId(LATTE).inventoryItemId(MILK).quantity(new BigDecimal("200")).build(),
+                RecipeItem.builder().productId(LATTE).sizeId(SIZE_S).inventoryItemId(MILK).quantity(new BigDecimal("-500")).build()));
+
+        assertThat(InventoryServiceImpl.lineConsumption(r, line(1, SIZE_S, 3), null)).isEmpty();
+        assertThat(InventoryServiceImpl.lineConsumption(r, line(1, null, 3), null).get(MILK)).isEqualByComparingTo("600");
+    }
+
+    @Test
+    void flush_failure_rollsBackSoJournalRowsStayPending() {
+        claimReturns(new Object[]{MILK, new BigDecimal("-200"), 1});
+        when(jdbc.batchUpdate(eq(InventoryServiceImpl.UPDATE_ON_HAND), anyList())).thenThrow(new RuntimeException("db down"));
+
+        assertThatThrownBy(svc::flush).hasMessage("db down");
+        verify(txManager).rollback(any());
+        verify(txManager, never()).commit(any());
+        svc.scheduledFlush(); // lượt nền chỉ log, không ném
+    }
+
+    @Test
+    void nonCompletionEvents_areIgnored() {
+        OrderSnapshot order = new OrderSnapshot(1, "PREPARING", LocalDateTime.now(), null, null, null, null, false,
+                BigDecimal.TEN, List.of(line(1, null, 1)));
+        svc.onOrderStatusChanged(new OrderStatusChangedEvent(order, "PENDING", "PREPARING", LocalDateTime.now()));
+
+        verifyNoInteractions(jdbc);
+    }
+}
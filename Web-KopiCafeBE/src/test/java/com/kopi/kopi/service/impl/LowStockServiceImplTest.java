@@ -0,0 +1,112 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.InventoryItem;
+import com.kopi.kopi.entity.User;
+import com.kopi.kopi.entity.enums.UserStatus;
+import com.kopi.kopi.event.InventoryChangedEvent;
+import com.kopi.kopi.repository.InventoryItemRepository;
+import com.kopi.kopi.repository.UserRepository;
+import com.kopi.kopi.service.NotificationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LowStockServiceImplTest {
+
+    private InventoryItemRepository itemRepository;
+    private NotificationService notificationService;
+    private LowStockServiceImpl svc;
+    private User admin;
+
+    @BeforeEach
+    void setUp() {
+        itemRepository = mock(InventoryItemRepository.class);
+        notificationService = mock(NotificationService.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        admin = new User();
+        admin.setUserId(1);
+        admin.setStatus(UserStatus.ACTIVE);
+        when(userRepository.findByRoleNameIn(anyCollection())).thenReturn(List.of(admin));
+        when(itemRepository.findLowStock()).thenReturn(List.of());
+        svc = new LowStockServiceImpl(itemRepository, userRepository, notificationService, new BigDecimal("1.2"));
+    }
+
+    private void stock(String onHand) {
+        InventoryItem milk = InventoryItem.builder().inventoryItemId(5).name("Sữa tươi").unit("ml")
+                .quantityOnHand(new BigDecimal(onHand)).reorderLevel(new BigDecimal("1000")).active(true).build();
+        when(itemRepository.findAllById(anyCollection())).thenReturn(List.of(milk));
+    }
+
+    @Test
+    void crossingThreshold_withHysteresis_notifiesOncePerTransition() {
+        stock("1500");
+        svc.onInventoryChanged(new InventoryChangedEvent(List.of(5)));
+        assertThat(svc.current()).isEmpty();
+
+        stock("900");
+        svc.onInventoryChanged(new InventoryChangedEvent(List.of(5)));
+        // Dao động quanh ngưỡng nhưng chưa vượt 120%: vẫn low, không báo thêm
+        stock("1100");
+        svc.onInventoryChanged(new InventoryChangedEvent(List.of(5)));
+        stock("950");
+        svc.onInventoryChanged(new InventoryChangedEvent(List.of(5)));
+
+        assertThat(svc.current()).singleElement()
+                .satisfies(i -> assertThat(i.quantityOnHand()).isEqualByComparingTo("950"));
+        verify(notificationService, times(1)).sendNotification(eq(admin), anyString(), anyString(), eq("LOW_STOCK"), isNull());
+
+        stock("1300");
+        svc.onInventoryChanged(new InventoryChangedEvent(List.of(5)));
+        assertThat(svc.current()).isEmpty();
+        verify(notificationService, times(1)).sendNotification(eq(admin), anyString(), anyString(), eq("LOW_STOCK_CLEARED"), isNull());
+    }
+
+    @Test
+    void seededLowItems_areListedWithoutAlert() {
+        InventoryItem matcha = InventoryItem.builder().inventoryItemId(9).name("Matcha").unit("g")
+                .quantityOnHand(new BigDecimal("10")).reorderLevel(new BigDecimal("100")).active(true).build();
+        when(itemRepository.findLowStock()).thenReturn(List.of(matcha));
+
+        assertThat(svc.current()).extracting(i -> i.itemId()).containsExactly(9);
+        verifyNoInteractions(notificationService);
+        verify(itemRepository, never()).findAll();
+    }
+
+    @Test
+    void concurrentEvaluations_readStockInsideTheLock_andAlertOnce() throws Exception {
+        InventoryItem milk = InventoryItem.builder().inventoryItemId(5).name("Sữa tươi").unit("ml")
+                .quantityOnHand(new BigDecimal("900")).reorderLevel(new BigDecimal("1000")).active(true).build();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(itemRepository.findAllById(anyCollection())).thenAnswer(inv -> {
+            reading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(milk);
+        });
+
+        Thread first = new Thread(() -> svc.evaluate(List.of(5)));
+        first.start();
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread second = new Thread(() -> svc.evaluate(List.of(5)));
+        second.start();
+        // Lượt thứ hai phải chờ khoá trước khi đọc tồn
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (second.getState() != Thread.State.BLOCKED && System.nanoTime() < deadline) Thread.onSpinWait();
+        assertThat(second.getState()).isEqualTo(Thread.State.BLOCKED);
+        verify(itemRepository, times(1)).findAllById(anyCollection());
+
+        release.countDown();
+        first.join(5000);
+        second.join(5000);
+        verify(itemRepository, times(2)).findAllById(anyCollection());
+        verify(notificationService, times(1)).sendNotification(eq(admin), anyString(), anyString(), eq("LOW_STOCK"), isNull());
+    }
+}
@@ -0,0 +1,74 @@
+package com.kopi.kopi.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kopi.kopi.dto.MenuSnapshot;
+import com.kopi.kopi.event.CatalogChangedEvent;
+import com.kopi.kopi.repository.CategoryRepository;
+import com.kopi.kopi.service.AvailabilityService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class MenuServiceImplTest {
+    private CategoryRepository categoryRepository;
+    private MenuServiceImpl svc;
+
+    private static List<Object[]> rows(Object[]... r) {
+        return new ArrayList<>(List.of(r));
+    }
+
+    @BeforeEach
+    void setUp() {
+        categoryRepository = mock(CategoryRepository.class);
+        when(categoryRepository.findMenuRows()).thenReturn(rows(
+                new Object[]{1, "Coffee", "Latte", new BigDecimal("45000"), 10},
+                new Object[]{1, "Coffee", "Espresso", new BigDecimal("35000"), 11},
+                new Object[]{2, "Tea", null, null, null}));
+        svc = new MenuServiceImpl(categoryRepository, new ObjectMapper(), mock(AvailabilityService.class));
+    }
+
+    @Test
+    void snapshot_isBuiltOnceFromSingleQuery_andGzipMatchesJson() throws Exception {
+        MenuSnapshot a = svc.snapshot();
+        MenuSnapshot b = svc.snapshot();
+
+        assertThat(b).isSameAs(a);
+        verify(categoryRepository, times(1)).findMenuRows();
+        String json = new String(a.json(), StandardCharsets.UTF_8);
+        assertThat(json).isEqualTo("[{\"name\":\"Coffee\",\"products\":[{\"name\":\"Latte\",\"price\":45000},"
+                + "{\"name\":\"Espresso\",\"price\":35000}]},{\"name\":\"Tea\",\"products\":[]}]");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(a.gzip()))) {
+            assertThat(in.readAllBytes()).isEqualTo(a.json());
+        }
+    }
+
+    @Test
+    void catalogChange_rebuildsSnapshot() {
+        MenuSnapshot before = svc.snapshot();
+        when(categoryRepository.findMenuRows()).thenReturn(rows(
+                new Object[]{1, "Coffee", "Latte", new BigDecimal("49000"), 10}));
+
+        svc.onCatalogChanged(CatalogChangedEvent.product(1));
+
+        assertThat(svc.snapshot().etag()).isNotEqualTo(before.etag());
+        verify(categoryRepository, times(2)).findMenuRows();
+    }
+
+    @Test
+    void gzipAndIdentityBodies_getDistinctStrongEtags() {
+        MenuSnapshot menu = svc.snapshot();
+
+        assertThat(menu.etag(false)).isEqualTo(menu.etag()).matches("\"[0-9a-f]{32}\"");
+        assertThat(menu.etag(true)).isEqualTo(menu.etag().replaceAll("\"$", "-gz\""));
+        assertThat(menu.etag(true)).isNotEqualTo(menu.etag(false));
+    }
+}
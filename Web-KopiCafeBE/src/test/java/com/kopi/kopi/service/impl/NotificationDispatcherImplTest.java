@@ -0,0 +1,152 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.User;
+import com.kopi.kopi.entity.enums.UserStatus;
+import com.kopi.kopi.repository.UserRepository;
+import com.kopi.kopi.service.EmailService;
+import com.kopi.kopi.service.NotificationDispatcher.Message;
+import com.kopi.kopi.service.NotificationStreamService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NotificationDispatcherImplTest {
+    private static final Set<String> STAFF = Set.of("ADMIN", "STAFF");
+
+    private JdbcTemplate jdbc;
+    private UserRepository userRepository;
+    private EmailService emailService;
+    private NotificationStreamService stream;
+
+    private static User user(int id, String email, UserStatus status) {
+        User u = new User();
+        u.setUserId(id);
+        u.setEmail(email);
+        u.setStatus(status);
+        return u;
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbc = mock(JdbcTemplate.class);
+        userRepository = mock(UserRepository.class);
+        emailService = mock(EmailService.class);
+        stream = mock(NotificationStreamService.class);
+        when(userRepository.findByRoleNameIn(STAFF)).thenReturn(List.of(
+                user(1, "admin@kopi.vn", UserStatus.ACTIVE),
+                user(2, "staff@kopi.vn", UserStatus.ACTIVE),
+                user(3, "old@kopi.vn", UserStatus.INACTIVE)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private NotificationDispatcherImpl dispatcher(int capacity) {
+        return new NotificationDispatcherImpl(jdbc, userRepository, emailService, stream, capacity, 0, 200);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batch_storesOneBroadcastPerRole_andResolvesStaffOnceForEmail() {
+        NotificationDispatcherImpl d = dispatcher(100);
+        for (int orderId = 1; orderId <= 3; orderId++) {
+            assertThat(d.dispatch(Message.toRoles(STAFF, orderId, "Cập nhật", "Đơn #" + orderId, "ORDER_STATUS_CHANGE", "mail"))).isTrue();
+        }
+        d.dispatch(Message.toUser(9, "khach@kopi.vn", 1, "Đơn của bạn", "Đã nhận", "ORDER_STATUS_CHANGE", "mail"));
+        verifyNoInteractions(jdbc, userRepository, emailService);
+
+        assertThat(d.drainOnce()).isEqualTo(4);
+
+        verify(userRepository, times(1)).findByRoleNameIn(STAFF);
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbc, times(1)).batchUpdate(eq(NotificationDispatcherImpl.INSERT_NOTIFICATION), rows.capture());
+        assertThat(rows.getValue()).hasSize(1);
+        assertThat(rows.getValue().get(0)[0]).isEqualTo(9);
+        ArgumentCaptor<List<Object[]>> broadcasts = ArgumentCaptor.forClass(List.class);
+        verify(jdbc, times(1)).batchUpdate(eq(NotificationDispatcherImpl.INSERT_BROADCAST), broadcasts.capture());
+        // 3 đơn x 2 role, không nhân theo số staff
+        assertThat(broadcasts.getValue()).hasSize(6);
+        assertThat(broadcasts.getValue()).extracting(r -> r[0]).containsOnly("ADMIN", "STAFF");
+        // Email vẫn gửi cho từng staff ACTIVE: 3 đơn x 2 staff + 1 khách
+        verify(emailService, times(7)).send(anyString(), anyString(), anyString());
+        assertThat(d.stats()).containsEntry("inserted", 7L).containsEntry("batches", 1L).containsEntry("emails_sent", 7L);
+    }
+
+    @Test
+    void fullQueue_dropsWithoutBlocking_andCountsDrops() {
+        NotificationDispatcherImpl d = dispatcher(2);
+        Message m = Message.toUser(9, null, null, "t", "m", "SYSTEM", null);
+        assertThat(d.dispatch(m)).isTrue();
+        assertThat(d.dispatch(m)).isTrue();
+        assertThat(d.dispatch(m)).isFalse();
+
+        assertThat(d.stats()).containsEntry("dropped", 1L).containsEntry("queued", 2L).containsEntry("queue_high_water", 2L);
+        // Không có email thì không gọi SMTP; lỗi ghi DB không làm worker chết
+        doThrow(new RuntimeException("db down")).when(jdbc).batchUpdate(anyString(), anyList());
+        assertThat(d.drainOnce()).isEqualTo(2);
+        assertThat(d.stats()).containsEntry("insert_failures", 2L);
+        verifyNoInteractions(emailService);
+    }
+
+    @Test
+    void insideTransaction_enqueuesOnlyAfterCommit() {
+        NotificationDispatcherImpl d = dispatcher(10);
+        TransactionSynchronizationManager.initSynchronization();
+        d.dispatch(Message.toUser(9, null, 5, "t", "m", "SYSTEM", null));
+        d.dispatch(Message.toUser(9, null, 6, "t", "m", "SYSTEM", null));
+        assertThat(d.stats()).containsEntry("queue_size", 0);
+
+        List<TransactionSynchronization> syncs = TransactionSynchronizationManager.getSynchronizations();
+        syncs.get(0).afterCommit();
+        // Chỉ gọi afterCommit cho đăng ký thứ nhất; đăng ký còn lại coi như rollback nên không vào hàng đợi
+        assertThat(d.stats()).containsEntry("queue_size", 1);
+        assertThat(d.drainOnce()).isEqualTo(1);
+    }
+
+    @Test
+    void insertedRows_arePushedToStream_butFailedInsertsAreNot() {
+        NotificationDispatcherImpl d = dispatcher(10);
+        d.dispatch(Message.toRoles(STAFF, 5, "t", "m", "ORDER_STATUS_CHANGE", null));
+        d.drainOnce();
+
+        verify(stream).onBroadcast(eq("ADMIN"), argThat(p -> "t".equals(p.get("title")) && Integer.valueOf(5).equals(p.get("orderId"))));
+        verify(stream).onBroadcast(eq("STAFF"), anyMap());
+        // Không có email thì không cần tra danh sách staff
+        verifyNoInteractions(userRepository);
+
+        doThrow(new RuntimeException("db down")).when(jdbc).batchUpdate(anyString(), anyList());
+        d.dispatch(Message.toUser(9, null, null, "t", "m", "SYSTEM", null));
+        d.drainOnce();
+        verify(stream, never()).onCreated(anyInt(), anyMap());
+    }
+
+    @Test
+    void emailOnly_sendsMailWithoutStoringNotifications() {
+        NotificationDispatcherImpl d = dispatcher(100);
+        d.dispatch(Message.emailOnly("khach@kopi.vn", "Cập nhật đơn hàng #K1", "digest"));
+        d.dispatch(Message.emailOnlyToRoles(STAFF, "Cập nhật 2 đơn hàng", "digest"));
+
+        assertThat(d.drainOnce()).isEqualTo(2);
+
+        verify(jdbc, never()).batchUpdate(anyString(), anyList());
+        verify(emailService).send("khach@kopi.vn", "Cập nhật đơn hàng #K1", "digest");
+        verify(emailService).send("admin@kopi.vn", "Cập nhật 2 đơn hàng", "digest");
+        verify(emailService).send("staff@kopi.vn", "Cập nhật 2 đơn hàng", "digest");
+        verifyNoMoreInteractions(emailService);
+    }
+}
@@ -0,0 +1,113 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.NotificationFeedItem;
+import com.kopi.kopi.service.NotificationFeedService.Cursor;
+import com.kopi.kopi.service.NotificationFeedService.Viewer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NotificationFeedServiceImplTest {
+    private static final LocalDateTime T = LocalDateTime.of(2026, 10, 19, 9, 0);
+    private static final Viewer STAFF = new Viewer(3, "STAFF", null);
+
+    private JdbcTemplate jdbc;
+    private NotificationFeedServiceImpl svc;
+
+    private static NotificationFeedItem item(String scope, int id, LocalDateTime at) {
+        return NotificationFeedItem.builder().scope(scope).sourceId(id).createdAt(at).isRead(false).build();
+    }
+
+    private static NotificationFeedItem personal(int id, LocalDateTime at) {
+        return item(NotificationFeedItem.PERSONAL, id, at);
+    }
+
+    private static NotificationFeedItem broadcast(int id, LocalDateTime at) {
+        return item(NotificationFeedItem.BROADCAST, id, at);
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbc = mock(JdbcTemplate.class);
+        svc = new NotificationFeedServiceImpl(jdbc);
+    }
+
+    @Test
+    void merge_interleavesByTimeThenPersonalFirst_andStopsAtLimit() {
+        List<NotificationFeedItem> p = List.of(personal(10, T), personal(8, T.minusMinutes(5)));
+        List<NotificationFeedItem> b = List.of(broadcast(4, T.plusMinutes(1)), broadcast(3, T), broadcast(2, T.minusMinutes(9)));
+
+        List<NotificationFeedItem> out = NotificationFeedServiceImpl.merge(p, b, 4);
+
+        assertThat(out).extracting(NotificationFeedItem::getId).containsExactly(-4, 10, -3, 8);
+    }
+
+    @Test
+    void page_passesKeysetBoundsToBothSources() {
+        when(jdbc.queryForList(eq(NotificationFeedServiceImpl.SELECT_WATERMARK), eq(Integer.class), any())).thenReturn(List.of(2));
+        when(jdbc.query(eq(NotificationFeedServiceImpl.PERSONAL_FEED), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(personal(5, T.minusMinutes(1))));
+        when(jdbc.query(eq(NotificationFeedServiceImpl.BROADCAST_FEED), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(broadcast(9, T), broadcast(7, T.minusMinutes(2))));
+
+        // Cursor ở thông báo riêng #6 lúc T: broadcast cùng thời điểm vẫn còn phía sau
+        List<NotificationFeedItem> out = svc.page(STAFF, new Cursor(T, NotificationFeedItem.PERSONAL, 6), 2, false);
+
+        assertThat(out).extracting(NotificationFeedItem::getId).containsExactly(-9, 5);
+        verify(jdbc).query(eq(NotificationFeedServiceImpl.PERSONAL_FEED), any(RowMapper.class),
+                eq(2), eq(3), any(), any(), eq(6), eq(0));
+        verify(jdbc).query(eq(NotificationFeedServiceImpl.BROADCAST_FEED), any(RowMapper.class),
+                eq(2), eq(2), eq(3), eq("STAFF"), any(), any(), any(), eq(Integer.MAX_VALUE), eq(0), eq(2));
+    }
+
+    @Test
+    void page_afterBroadcastCursor_skipsPersonalRowsAtSameTime() {
+        when(jdbc.queryForList(eq(NotificationFeedServiceImpl.SELECT_WATERMARK), eq(Integer.class), any())).thenReturn(List.of());
+
+        svc.page(STAFF, new Cursor(T, NotificationFeedItem.BROADCAST, 9), 20, true);
+
+        verify(jdbc).query(eq(NotificationFeedServiceImpl.PERSONAL_FEED), any(RowMapper.class),
+                eq(20), eq(3), any(), any(), eq(Integer.MIN_VALUE), eq(1));
+        verify(jdbc).query(eq(NotificationFeedServiceImpl.BROADCAST_FEED), any(RowMapper.class),
+                eq(20), eq(0), eq(3), eq("STAFF"), any(), any(), any(), eq(9), eq(1), eq(0));
+    }
+
+    @Test
+    void markAllRead_movesWatermarkAndCompactsReceipts() {
+        when(jdbc.queryForList(eq(NotificationFeedServiceImpl.SELECT_WATERMARK), eq(Integer.class), any())).thenReturn(List.of(5));
+        when(jdbc.queryForObject(eq(NotificationFeedServiceImpl.COUNT_UNREAD_BROADCASTS), eq(Long.class), any(Object[].class)))
+                .thenReturn(3L);
+        when(jdbc.queryForObject(NotificationFeedServiceImpl.MAX_BROADCAST, Integer.class, "STAFF")).thenReturn(12);
+
+        assertThat(svc.markAllBroadcastsRead(STAFF)).isEqualTo(3);
+
+        verify(jdbc).update(eq(NotificationFeedServiceImpl.UPSERT_WATERMARK), eq(3), eq(12), any(), any());
+        verify(jdbc).update(NotificationFeedServiceImpl.COMPACT_RECEIPTS, 3, 12);
+    }
+
+    @Test
+    void markRead_atOrBelowWatermark_isNoop() {
+        when(jdbc.queryForList(eq(NotificationFeedServiceImpl.SELECT_WATERMARK), eq(Integer.class), any())).thenReturn(List.of(5));
+
+        assertThat(svc.markBroadcastRead(STAFF, 5)).isFalse();
+        verify(jdbc, never()).update(eq(NotificationFeedServiceImpl.INSERT_READ_RECEIPT), any(Object[].class));
+    }
+
+    @Test
+    void cursor_roundTripsAndRejectsGarbage() {
+        Cursor c = new Cursor(T.plusNanos(123_000_000), NotificationFeedItem.BROADCAST, 42);
+
+        assertThat(Cursor.decode(c.encode())).isEqualTo(c);
+        assertThatThrownBy(() -> Cursor.decode("not-a-cursor")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Cursor.decode(new Cursor(T, "OTHER", 1).encode())).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,68 @@
+package com.kopi.kopi.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NotificationRetentionServiceImplTest {
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 19, 3, 0);
+
+    private JdbcTemplate jdbc;
+    private NotificationRetentionServiceImpl svc;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = mock(JdbcTemplate.class);
+        Clock clock = Clock.fixed(NOW.atZone(ZONE).toInstant(), ZONE);
+        svc = new NotificationRetentionServiceImpl(jdbc, clock, Duration.ofDays(30), Duration.ofDays(7), 100, 3, 0);
+    }
+
+    @Test
+    void purge_deletesInChunksUntilAShortChunk() {
+        when(jdbc.update(eq(NotificationRetentionServiceImpl.DELETE_READ), anyInt(), any())).thenReturn(100, 100, 42);
+        when(jdbc.update(eq(NotificationRetentionServiceImpl.DELETE_BROADCASTS), anyInt(), any())).thenReturn(5);
+
+        assertThat(svc.purge()).containsEntry("notifications", 242L).containsEntry("broadcasts", 5L);
+
+        verify(jdbc, times(3)).update(NotificationRetentionServiceImpl.DELETE_READ, 100, Timestamp.valueOf(NOW.minusDays(30)));
+        verify(jdbc, times(1)).update(NotificationRetentionServiceImpl.DELETE_BROADCASTS, 100, Timestamp.valueOf(NOW.minusDays(7)));
+    }
+
+    @Test
+    void purge_stopsAtMaxChunksPerRun() {
+        when(jdbc.update(anyString(), anyInt(), any())).thenReturn(100);
+
+        assertThat(svc.purge()).containsEntry("notifications", 300L).containsEntry("broadcasts", 300L);
+        verify(jdbc, times(6)).update(anyString(), anyInt(), any());
+    }
+
+    @Test
+    void scheduledPurge_runsOffTheSchedulerThread() {
+        Thread caller = Thread.currentThread();
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        when(jdbc.update(anyString(), anyInt(), any())).thenAnswer(inv -> {
+            ranOn.compareAndSet(null, Thread.currentThread());
+            return 0;
+        });
+
+        svc.scheduledPurge();
+
+        verify(jdbc, timeout(2000).times(2)).update(anyString(), anyInt(), any());
+        assertThat(ranOn.get()).isNotSameAs(caller);
+        assertThat(ranOn.get().getName()).isEqualTo("notification-retention");
+        svc.shutdown();
+    }
+}
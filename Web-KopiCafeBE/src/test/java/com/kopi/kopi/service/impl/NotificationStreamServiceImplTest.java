@@ -0,0 +1,138 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.repository.NotificationRepository;
+import com.kopi.kopi.service.NotificationFeedService;
+import com.kopi.kopi.service.NotificationFeedService.Viewer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class NotificationStreamServiceImplTest {
+    private static final Viewer CUSTOMER = new Viewer(7, "CUSTOMER", null);
+
+    private NotificationRepository repo;
+    private NotificationFeedService feed;
+    private MutableClock clock;
+    private NotificationStreamServiceImpl svc;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(NotificationRepository.class);
+        feed = mock(NotificationFeedService.class);
+        clock = new MutableClock();
+        svc = new NotificationStreamServiceImpl(repo, feed, clock, 60_000, Duration.ofMinutes(10), 1000, 2);
+    }
+
+    @Test
+    void unreadCount_loadsOnce_thenFollowsCreateReadAndReadAll() {
+        when(repo.countByUser_UserIdAndIsReadFalse(7)).thenReturn(3L);
+
+        assertThat(svc.unreadCount(CUSTOMER)).isEqualTo(3);
+        svc.onCreated(7, Map.of("title", "Mới"));
+        svc.onCreated(7, Map.of("title", "Mới nữa"));
+        assertThat(svc.unreadCount(CUSTOMER)).isEqualTo(5);
+        svc.onRead(7, 1);
+        assertThat(svc.unreadCount(CUSTOMER)).isEqualTo(4);
+        svc.onAllRead(7);
+        assertThat(svc.unreadCount(CUSTOMER)).isZero();
+
+        verify(repo, times(1)).countByUser_UserIdAndIsReadFalse(7);
+    }
+
+    @Test
+    void created_forUncachedUserWithoutStream_doesNotQuery() {
+        svc.onCreated(9, Map.of("title", "x"));
+        svc.onRead(9, 1);
+
+        verifyNoInteractions(repo, feed);
+        assertThat(svc.stats()).containsEntry("cached_users", 0);
+    }
+
+    @Test
+    void subscribe_sendsUnreadAndLoadsCounter_createdIsNotCountedTwice() {
+        when(repo.countByUser_UserIdAndIsReadFalse(7)).thenReturn(2L, 3L);
+
+        svc.subscribe(CUSTOMER);
+        svc.onCreated(7, Map.of("title", "Mới"));
+
+        assertThat(svc.unreadCount(CUSTOMER)).isEqualTo(3);
+        verify(repo, times(1)).countByUser_UserIdAndIsReadFalse(7);
+        assertThat(svc.stats()).containsEntry("subscribed_users", 1).containsEntry("connections", 1);
+    }
+
+    @Test
+    void subscribe_keepsAtMostMaxEmittersPerUser() {
+        svc.subscribe(CUSTOMER);
+        svc.subscribe(CUSTOMER);
+        svc.subscribe(CUSTOMER);
+
+        assertThat(svc.stats()).containsEntry("connections", 2);
+    }
+
+    @Test
+    void counter_isReconciledWhenStaleOrNegative() {
+        when(repo.countByUser_UserIdAndIsReadFalse(7)).thenReturn(1L, 4L, 6L);
+
+        assertThat(svc.unreadCount(CUSTOMER)).isEqualTo(1);
+        svc.onRead(7, 2); // lệch: bỏ bộ đếm
+        assertThat(svc.unreadCount(CUSTOMER)).isEqualTo(4);
+
+        clock.advance(Duration.ofMinutes(11));
+        assertThat(svc.unreadCount(CUSTOMER)).isEqualTo(6);
+        verify(repo, times(3)).countByUser_UserIdAndIsReadFalse(7);
+    }
+
+    @Test
+    void broadcast_isCountedPerRoleWithoutPerUserWrites() {
+        Viewer staff = new Viewer(3, "STAFF", null);
+        Viewer admin = new Viewer(4, "ADMIN", null);
+        when(repo.countByUser_UserIdAndIsReadFalse(anyInt())).thenReturn(1L);
+        when(feed.unreadBroadcasts(staff)).thenReturn(2L);
+        when(feed.unreadBroadcasts(admin)).thenReturn(0L);
+
+        assertThat(svc.unreadCount(staff)).isEqualTo(3);
+        assertThat(svc.unreadCount(admin)).isEqualTo(1);
+        svc.onBroadcast("STAFF", Map.of("title", "Đơn mới"));
+        svc.onBroadcast("STAFF", Map.of("title", "Đơn mới nữa"));
+
+        assertThat(svc.unreadCount(staff)).isEqualTo(5);
+        assertThat(svc.unreadCount(admin)).isEqualTo(1);
+        svc.onRead(3, 1);
+        assertThat(svc.unreadCount(staff)).isEqualTo(4);
+        svc.onAllRead(3);
+        svc.onBroadcast("STAFF", Map.of("title", "x"));
+        assertThat(svc.unreadCount(staff)).isEqualTo(1);
+        verify(feed, times(1)).unreadBroadcasts(staff);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-10-19T03:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -4,11 +4,15 @@ import com.kopi.kopi.entity.*;
 import com.kopi.kopi.entity.enums.PaymentMethod;
 import com.kopi.kopi.entity.enums.PaymentStatus;
 import com.kopi.kopi.repository.*;
+import com.kopi.kopi.service.AvailabilityService;
+import com.kopi.kopi.service.CouponLookupService;
+import com.kopi.kopi.service.EventPricingService;
 import com.kopi.kopi.service.NotificationService;
 import com.kopi.kopi.service.TableService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 
 import java.math.BigDecimal;
@@ -49,7 +53,8 @@ class OrderServiceImplChangeStatusTest {
         orderService = new OrderServiceImpl(orderRepository, productRepository, addressRepository, userRepository,
                 tableService, diningTableRepository, userAddressRepository, mapboxService, notificationService,
                 productSizeRepository, productAddOnRepository, sizeRepository, orderDetailAddOnRepository,
-                discountCodeRepository, discountCodeRedemptionRepository);
+                discountCodeRepository, discountCodeRedemptionRepository, mock(ApplicationEventPublisher.class),
+                mock(AvailabilityService.class), mock(EventPricingService.class), mock(CouponLookupService.class));
     }
 
     @Test
@@ -0,0 +1,125 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.controller.GuestOrderController.GuestOrderItem;
+import com.kopi.kopi.controller.GuestOrderController.GuestOrderRequest;
+import com.kopi.kopi.dto.EventPriceTable;
+import com.kopi.kopi.entity.*;
+import com.kopi.kopi.entity.enums.PaymentStatus;
+import com.kopi.kopi.event.PaymentPaidEvent;
+import com.kopi.kopi.repository.*;
+import com.kopi.kopi.service.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OrderServiceImplPaidOnCreateTest {
+    private OrderRepository orderRepository;
+    private ProductRepository productRepository;
+    private DiningTableRepository diningTableRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = mock(OrderRepository.class);
+        productRepository = mock(ProductRepository.class);
+        diningTableRepository = mock(DiningTableRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        AvailabilityService availabilityService = mock(AvailabilityService.class);
+        EventPricingService eventPricingService = mock(EventPricingService.class);
+        when(availabilityService.isOrderable(any(), any())).thenReturn(true);
+        when(eventPricingService.current()).thenReturn(EventPriceTable.EMPTY);
+
+        orderService = new OrderServiceImpl(orderRepository, productRepository, mock(AddressRepository.class),
+                mock(UserRepository.class), mock(TableService.class), diningTableRepository,
+                mock(UserAddressRepository.class), mock(MapboxService.class), mock(NotificationService.class),
+                mock(ProductSizeRepository.class), mock(ProductAddOnRepository.class), mock(SizeRepository.class),
+                mock(OrderDetailAddOnRepository.class), mock(DiscountCodeRepository.class),
+                mock(DiscountCodeRedemptionRepository.class), eventPublisher, availabilityService,
+                eventPricingService, mock(CouponLookupService.class));
+
+        Product latte = new Product();
+        latte.setProductId(1);
+        latte.setName("Latte");
+        latte.setPrice(new BigDecimal("20000"));
+        latte.setStockQty(10);
+        when(productRepository.findById(1)).thenReturn(Optional.of(latte));
+        when(orderRepository.save(any(OrderEntity.class))).thenAnswer(inv -> {
+            OrderEntity o = inv.getArgument(0);
+            o.setOrderId(77);
+            return o;
+        });
+    }
+
+    private PaymentPaidEvent paidEvent() {
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, atLeastOnce()).publishEvent(events.capture());
+        List<PaymentPaidEvent> paid = events.getAllValues().stream()
+                .filter(PaymentPaidEvent.class::isInstance).map(PaymentPaidEvent.class::cast).toList();
+        assertThat(paid).hasSize(1);
+        return paid.get(0);
+    }
+
+    private Payment savedPayment() {
+        ArgumentCaptor<OrderEntity> order = ArgumentCaptor.forClass(OrderEntity.class);
+        verify(orderRepository).save(order.capture());
+        return order.getValue().getPayments().get(0);
+    }
+
+    @Test
+    void createTransaction_paid_setsPaidAtAndPublishesPaymentPaid() {
+        User staff = User.builder().userId(5).role(Role.builder().roleId(2).build()).build();
+
+        ResponseEntity<?> res = orderService.createTransaction(Map.of(
+                "products", List.of(Map.of("product_id", 1, "qty", 2)),
+                "payment_id", 1,
+                "paid", true), staff);
+
+        assertThat(res.getStatusCode().value()).isEqualTo(200);
+        Payment payment = savedPayment();
+        assertThat(payment.getStatus()).isEqualTo(PaymentStatus.PAID);
+        assertThat(payment.getPaidAt()).isNotNull();
+        PaymentPaidEvent event = paidEvent();
+        assertThat(event.orderId()).isEqualTo(77);
+        assertThat(event.amount()).isEqualByComparingTo("40000");
+        assertThat(event.paidAt()).isEqualTo(payment.getPaidAt());
+    }
+
+    @Test
+    void createTransaction_unpaid_doesNotPublishPaymentPaid() {
+        User staff = User.builder().userId(5).role(Role.builder().roleId(2).build()).build();
+
+        orderService.createTransaction(Map.of("products", List.of(Map.of("product_id", 1, "qty", 1))), staff);
+
+        assertThat(savedPayment().getPaidAt()).isNull();
+        verify(eventPublisher, never()).publishEvent(isA(PaymentPaidEvent.class));
+    }
+
+    @Test
+    void createGuestTableOrder_paid_setsPaidAtAndPublishesPaymentPaid() {
+        DiningTable table = DiningTable.builder().tableId(3).number(5).status("AVAILABLE").build();
+        when(diningTableRepository.findByNumber(5)).thenReturn(Optional.of(table));
+
+        ResponseEntity<?> res = orderService.createGuestTableOrder(new GuestOrderRequest(null, 5,
+                List.of(new GuestOrderItem(1, 3)), null, 2, true));
+
+        assertThat(res.getStatusCode().value()).isEqualTo(200);
+        Payment payment = savedPayment();
+        assertThat(payment.getPaidAt()).isNotNull();
+        PaymentPaidEvent event = paidEvent();
+        assertThat(event.orderId()).isEqualTo(77);
+        assertThat(event.amount()).isEqualByComparingTo("60000");
+        assertThat(event.paidAt()).isEqualTo(payment.getPaidAt());
+    }
+}
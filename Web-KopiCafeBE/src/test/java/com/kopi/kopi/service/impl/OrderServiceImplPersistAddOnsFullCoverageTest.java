@@ -1,5 +1,6 @@
 package com.kopi.kopi.service.impl;
 
+import com.kopi.kopi.dto.EventPriceTable;
 import com.kopi.kopi.entity.*;
 import com.kopi.kopi.repository.*;
 import org.junit.jupiter.api.Test;
@@ -34,7 +35,8 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
     OrderServiceImpl orderService;
 
     private Method getPersistMethod() throws Exception {
-        Method m = OrderServiceImpl.class.getDeclaredMethod("persistAddOnsForOrder", OrderEntity.class, List.class);
+        Method m = OrderServiceImpl.class.getDeclaredMethod("persistAddOnsForOrder", OrderEntity.class, List.class,
+                EventPriceTable.class);
         m.setAccessible(true);
         return m;
     }
@@ -43,13 +45,13 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
     void orderNullOrEmptyProducts_returnEarly() throws Exception {
         Method m = getPersistMethod();
         // null order
-        m.invoke(orderService, null, List.of(Map.of("product_id", 1, "qty", 1, "add_on_ids", List.of(1))));
+        m.invoke(orderService, null, List.of(Map.of("product_id", 1, "qty", 1, "add_on_ids", List.of(1))), EventPriceTable.EMPTY);
         verifyNoInteractions(productRepository, productSizeRepository, productAddOnRepository,
                 orderDetailAddOnRepository);
 
         // empty products
         OrderEntity o = new OrderEntity();
-        m.invoke(orderService, o, Collections.emptyList());
+        m.invoke(orderService, o, Collections.emptyList(), EventPriceTable.EMPTY);
         verifyNoInteractions(productRepository, productSizeRepository, productAddOnRepository,
                 orderDetailAddOnRepository);
     }
@@ -66,7 +68,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
         order.setOrderDetails(null); // branch: order.getOrderDetails() == null -> List.of()
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 2000, "qty", 1, "add_on_ids", List.of(3000)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         // no details to match -> saveAll should not be called
         verify(orderDetailAddOnRepository, never()).saveAll(anyList());
     }
@@ -95,7 +97,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
 
         List<Map<String, Object>> req = List
                 .of(Map.of("product_id", 2100, "qty", 1, "size_id", "not-a-number", "add_on_ids", List.of(3101)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
     }
 
@@ -106,7 +108,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
         OrderEntity order = OrderEntity.builder().orderId(2201).build();
         order.setOrderDetails(new ArrayList<>());
         List<Map<String, Object>> req = List.of(Map.of("product_id", 2200, "qty", 1, "add_on_ids", List.of(3300)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verifyNoInteractions(productAddOnRepository, orderDetailAddOnRepository);
     }
 
@@ -132,7 +134,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
         order.setOrderDetails(new ArrayList<>(List.of(d)));
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 2300, "qty", 1, "add_on_ids", List.of(3301)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
     }
 
@@ -164,7 +166,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
 
         List<Map<String, Object>> req = List
                 .of(Map.of("product_id", 2400, "qty", 1, "size_id", 6, "add_on_ids", List.of(3401)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
     }
 
@@ -196,7 +198,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
 
         List<Map<String, Object>> req = List
                 .of(Map.of("product_id", 2500, "qty", 1, "size_id", 7, "add_on_ids", List.of(3501)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
     }
 
@@ -222,7 +224,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
         order.setOrderDetails(new ArrayList<>(List.of(d)));
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 2600, "qty", 1, "add_on_ids", List.of(3601)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         // capture iterable passed to saveAll and assert unitPriceSnapshot fallback to
         // ZERO
@@ -266,7 +268,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
         List<Map<String, Object>> req = List.of(
                 Map.of("product_id", 2700, "qty", 1, "add_on_ids", List.of(3701)),
                 Map.of("product_id", 2700, "qty", 1, "add_on_ids", List.of(3701)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
     }
 
@@ -285,7 +287,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
         order.setOrderDetails(new ArrayList<>(List.of(d)));
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 2800, "qty", 1, "add_on_ids", List.of(3800)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, never()).saveAll(anyList());
     }
 
@@ -304,7 +306,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
         order.setOrderDetails(new ArrayList<>(List.of(d)));
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 2900, "qty", 1, "add_on_ids", List.of(3900)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, never()).saveAll(anyList());
     }
 
@@ -324,7 +326,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
 
         List<Map<String, Object>> req = List
                 .of(Map.of("product_id", 3000, "qty", 1, "size_id", 66, "add_on_ids", List.of(4000)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, never()).saveAll(anyList());
     }
 
@@ -347,7 +349,7 @@ class OrderServiceImplPersistAddOnsFullCoverageTest {
         order.setOrderDetails(new ArrayList<>(List.of(d)));
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 3100, "qty", 1, "add_on_ids", List.of(4100)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
     }
 }
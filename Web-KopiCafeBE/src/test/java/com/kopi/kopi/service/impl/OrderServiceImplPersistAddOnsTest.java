@@ -1,5 +1,6 @@
 package com.kopi.kopi.service.impl;
 
+import com.kopi.kopi.dto.EventPriceTable;
 import com.kopi.kopi.entity.*;
 import com.kopi.kopi.repository.*;
 import org.junit.jupiter.api.Test;
@@ -39,7 +40,8 @@ class OrderServiceImplPersistAddOnsTest {
     OrderServiceImpl orderService;
 
     private Method getPersistMethod() throws Exception {
-        Method m = OrderServiceImpl.class.getDeclaredMethod("persistAddOnsForOrder", OrderEntity.class, List.class);
+        Method m = OrderServiceImpl.class.getDeclaredMethod("persistAddOnsForOrder", OrderEntity.class, List.class,
+                EventPriceTable.class);
         m.setAccessible(true);
         return m;
     }
@@ -49,13 +51,13 @@ class OrderServiceImplPersistAddOnsTest {
         Method m = getPersistMethod();
 
         // null order
-        m.invoke(orderService, null, List.of(Map.of("product_id", 1, "qty", 1, "add_on_ids", List.of(1))));
+        m.invoke(orderService, null, List.of(Map.of("product_id", 1, "qty", 1, "add_on_ids", List.of(1))), EventPriceTable.EMPTY);
         verifyNoInteractions(productRepository, productSizeRepository, productAddOnRepository,
                 orderDetailAddOnRepository);
 
         // empty products
         OrderEntity o = new OrderEntity();
-        m.invoke(orderService, o, Collections.emptyList());
+        m.invoke(orderService, o, Collections.emptyList(), EventPriceTable.EMPTY);
         verifyNoInteractions(productRepository, productSizeRepository, productAddOnRepository,
                 orderDetailAddOnRepository);
     }
@@ -68,7 +70,7 @@ class OrderServiceImplPersistAddOnsTest {
 
         List<Map<String, Object>> req = List
                 .of(Map.of("product_id", "not-a-number", "qty", 1, "add_on_ids", List.of(1)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verifyNoInteractions(productRepository, productSizeRepository, productAddOnRepository,
                 orderDetailAddOnRepository);
     }
@@ -110,7 +112,7 @@ class OrderServiceImplPersistAddOnsTest {
         List<Map<String, Object>> req = List
                 .of(Map.of("product_id", 10, "qty", 1, "size_id", 5, "add_on_ids", List.of(501)));
 
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         // verify saveAll called with one OrderDetailAddOn
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
@@ -153,7 +155,7 @@ class OrderServiceImplPersistAddOnsTest {
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 20, "qty", 2, "add_on_ids", List.of(601, 602)));
 
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         // only one add-on exists, so saveAll should be called with one element
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
@@ -212,7 +214,7 @@ class OrderServiceImplPersistAddOnsTest {
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 701, "qty", 1, "add_ons", addOns));
 
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
     }
@@ -241,7 +243,7 @@ class OrderServiceImplPersistAddOnsTest {
         List<Map<String, Object>> req = List.of(Map.of("product_id", 800, "qty", 1, "add_on_ids", List.of(900)));
 
         // should not throw
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         verify(orderDetailAddOnRepository, never()).saveAll(anyList());
     }
@@ -277,7 +279,7 @@ class OrderServiceImplPersistAddOnsTest {
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 900, "qty", 1, "add_on_ids", List.of(901)));
 
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         verify(orderDetailAddOnRepository, never()).saveAll(anyList());
     }
@@ -297,7 +299,7 @@ class OrderServiceImplPersistAddOnsTest {
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 500, "qty", 1, "add_on_ids", List.of(600)));
 
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         verify(orderDetailAddOnRepository, never()).saveAll(anyList());
     }
@@ -330,7 +332,7 @@ class OrderServiceImplPersistAddOnsTest {
         List<Map<String, Object>> req = List
                 .of(Map.of("product_id", 510, "qty", 1, "size_id", "bad", "add_on_ids", List.of(611)));
 
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
     }
 
@@ -345,7 +347,7 @@ class OrderServiceImplPersistAddOnsTest {
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 520, "qty", 1, "add_on_ids", List.of(700)));
 
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         verifyNoInteractions(productAddOnRepository, orderDetailAddOnRepository);
     }
@@ -375,7 +377,7 @@ class OrderServiceImplPersistAddOnsTest {
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 530, "qty", 1, "add_on_ids", List.of(731)));
 
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
     }
 
@@ -410,7 +412,7 @@ class OrderServiceImplPersistAddOnsTest {
         List<Map<String, Object>> req = List
                 .of(Map.of("product_id", 540, "qty", 1, "size_id", 8, "add_on_ids", List.of(741)));
 
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
     }
 
@@ -440,7 +442,7 @@ class OrderServiceImplPersistAddOnsTest {
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 560, "qty", 1, "add_on_ids", List.of(761)));
 
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         ArgumentCaptor<Iterable> cap = ArgumentCaptor.forClass(Iterable.class);
         verify(orderDetailAddOnRepository, times(1)).saveAll(cap.capture());
@@ -484,7 +486,7 @@ class OrderServiceImplPersistAddOnsTest {
                 Map.of("product_id", 570, "qty", 1, "add_on_ids", List.of(771)),
                 Map.of("product_id", 570, "qty", 1, "add_on_ids", List.of(771)));
 
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         // even with two requests, used[] should cause only one set of add-ons to be
         // saved
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
@@ -510,7 +512,7 @@ class OrderServiceImplPersistAddOnsTest {
 
         // request uses different product id so should skip
         List<Map<String, Object>> req = List.of(Map.of("product_id", 881, "qty", 1, "add_on_ids", List.of(990)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
         verify(orderDetailAddOnRepository, never()).saveAll(anyList());
     }
 
@@ -530,7 +532,7 @@ class OrderServiceImplPersistAddOnsTest {
         order.setOrderDetails(new ArrayList<>(List.of(d)));
 
         // requestProducts is null -> method should return early and not save
-        m.invoke(orderService, order, null);
+        m.invoke(orderService, order, null, EventPriceTable.EMPTY);
         verifyNoInteractions(orderDetailAddOnRepository);
     }
 
@@ -559,7 +561,7 @@ class OrderServiceImplPersistAddOnsTest {
         order.setOrderDetails(new ArrayList<>(List.of(d)));
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 1300, "qty", 1, "add_on_ids", List.of(1301)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         verify(orderDetailAddOnRepository, never()).saveAll(anyList());
     }
@@ -590,7 +592,7 @@ class OrderServiceImplPersistAddOnsTest {
 
         List<Map<String, Object>> req = List
                 .of(Map.of("product_id", 1400, "qty", 1, "size_id", 8, "add_on_ids", List.of(1401)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         verify(orderDetailAddOnRepository, never()).saveAll(anyList());
     }
@@ -620,7 +622,7 @@ class OrderServiceImplPersistAddOnsTest {
         order.setOrderDetails(new ArrayList<>(List.of(d)));
 
         List<Map<String, Object>> req = List.of(Map.of("product_id", 1500, "qty", 1, "add_on_ids", List.of(1501)));
-        m.invoke(orderService, order, req);
+        m.invoke(orderService, order, req, EventPriceTable.EMPTY);
 
         verify(orderDetailAddOnRepository, times(1)).saveAll(anyList());
     }
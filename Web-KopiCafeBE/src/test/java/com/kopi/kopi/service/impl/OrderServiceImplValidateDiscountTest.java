@@ -4,11 +4,15 @@ import com.kopi.kopi.entity.DiscountCode;
 import com.kopi.kopi.entity.User;
 import com.kopi.kopi.entity.enums.DiscountType;
 import com.kopi.kopi.repository.*;
+import com.kopi.kopi.service.AvailabilityService;
+import com.kopi.kopi.service.CouponLookupService;
+import com.kopi.kopi.service.EventPricingService;
 import com.kopi.kopi.service.NotificationService;
 import com.kopi.kopi.service.TableService;
 import com.kopi.kopi.service.impl.MapboxService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 
 import java.math.BigDecimal;
@@ -41,13 +45,15 @@ class OrderServiceImplValidateDiscountTest {
     private DiscountCodeRedemptionRepository discountCodeRedemptionRepository = mock(
             DiscountCodeRedemptionRepository.class);
     private NotificationService notificationService = mock(NotificationService.class);
+    private CouponLookupService couponLookupService = mock(CouponLookupService.class);
 
     @BeforeEach
     void setUp() {
         svc = new OrderServiceImpl(orderRepository, productRepository, addressRepository, userRepository,
                 tableService, diningTableRepository, userAddressRepository, mapboxService, notificationService,
                 productSizeRepository, productAddOnRepository, sizeRepository, orderDetailAddOnRepository,
-                discountCodeRepository, discountCodeRedemptionRepository);
+                discountCodeRepository, discountCodeRedemptionRepository, mock(ApplicationEventPublisher.class),
+                mock(AvailabilityService.class), mock(EventPricingService.class), couponLookupService);
     }
 
     @Test
@@ -59,7 +65,7 @@ class OrderServiceImplValidateDiscountTest {
 
     @Test
     void validateDiscount_codeNotExist_returnsBadRequest() {
-        when(discountCodeRepository.findByCodeIgnoreCase(anyString())).thenReturn(Optional.empty());
+        when(couponLookupService.find(anyString())).thenReturn(Optional.empty());
         ResponseEntity<?> r = svc.validateDiscount(Map.of("code", "NOPE"), null);
         assertThat(r.getStatusCodeValue()).isEqualTo(400);
         assertThat(((Map<?, ?>) r.getBody()).get("message")).isEqualTo("Mã giảm giá không tồn tại");
@@ -75,7 +81,7 @@ class OrderServiceImplValidateDiscountTest {
                 .discountType(DiscountType.AMOUNT)
                 .discountValue(new BigDecimal("100"))
                 .build();
-        when(discountCodeRepository.findByCodeIgnoreCase(anyString())).thenReturn(Optional.of(dc));
+        when(couponLookupService.find(anyString())).thenReturn(Optional.of(dc));
         ResponseEntity<?> r = svc.validateDiscount(Map.of("code", "X", "subtotal", "200"), null);
         assertThat(r.getStatusCodeValue()).isEqualTo(400);
         assertThat(((Map<?, ?>) r.getBody()).get("message")).isEqualTo("Mã giảm giá đã bị vô hiệu hoá");
@@ -92,7 +98,7 @@ class OrderServiceImplValidateDiscountTest {
                 .discountValue(new BigDecimal("50"))
                 .minOrderAmount(new BigDecimal("100"))
                 .build();
-        when(discountCodeRepository.findByCodeIgnoreCase(anyString())).thenReturn(Optional.of(dc));
+        when(couponLookupService.find(anyString())).thenReturn(Optional.of(dc));
         ResponseEntity<?> r = svc.validateDiscount(Map.of("code", "MIN", "subtotal", "50"), mock(User.class));
         assertThat(r.getStatusCodeValue()).isEqualTo(400);
         assertThat(((Map<?, ?>) r.getBody()).get("message")).isEqualTo("Chưa đạt giá trị đơn tối thiểu");
@@ -108,7 +114,7 @@ class OrderServiceImplValidateDiscountTest {
                 .discountType(DiscountType.PERCENT)
                 .discountValue(new BigDecimal("200"))
                 .build();
-        when(discountCodeRepository.findByCodeIgnoreCase(anyString())).thenReturn(Optional.of(dc));
+        when(couponLookupService.find(anyString())).thenReturn(Optional.of(dc));
         ResponseEntity<?> r = svc.validateDiscount(Map.of("code", "PCT", "subtotal", "50"), mock(User.class));
         assertThat(r.getStatusCode().is2xxSuccessful()).isTrue();
         Map<?, ?> body = (Map<?, ?>) r.getBody();
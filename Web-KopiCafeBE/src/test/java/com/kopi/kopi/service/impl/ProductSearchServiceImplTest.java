@@ -0,0 +1,124 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.repository.ProductRepository;
+import com.kopi.kopi.service.CatalogCacheService;
+import com.kopi.kopi.util.SlugUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ProductSearchServiceImplTest {
+    private ProductRepository productRepository;
+    private CatalogCacheService catalogCache;
+    private ProductSearchServiceImpl svc;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        catalogCache = mock(CatalogCacheService.class);
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{1, 1, "Cà phê sữa đá", "Cà phê phin truyền thống"});
+        rows.add(new Object[]{2, 2, "Trà sữa trân châu", "Trà đen, sữa tươi"});
+        rows.add(new Object[]{3, 2, "Trà đào cam sả", null});
+        rows.add(new Object[]{4, 1, "Cappuccino", "Espresso với sữa đánh bọt"});
+        rows.add(new Object[]{5, 3, "Bánh mì", "Ăn kèm cà phê sữa"});
+        when(productRepository.findSearchRows()).thenReturn(rows);
+        svc = new ProductSearchServiceImpl(productRepository, catalogCache, 0.5, 2);
+    }
+
+    @Test
+    void fold_stripsVietnameseDiacritics() {
+        assertThat(SlugUtil.fold("  Trà SỮA – Đào!! ")).isEqualTo("tra sua dao");
+    }
+
+    @Test
+    void search_withoutDiacritics_matchesAccentedName() {
+        assertThat(svc.search("tra sua", null, 10)).first().isEqualTo(2);
+    }
+
+    @Test
+    void search_prefixOfLastWord_matches() {
+        assertThat(svc.search("ca ph", null, 10)).first().isEqualTo(1);
+        assertThat(svc.search("tr", null, 10)).contains(2, 3);
+    }
+
+    @Test
+    void search_typo_isMatchedFuzzily() {
+        assertThat(svc.search("capuchino", null, 10)).containsExactly(4);
+    }
+
+    @Test
+    void search_nameMatchRanksAboveDescriptionMatch_andCategoryFilters() {
+        assertThat(svc.search("ca phe sua", null, 10)).startsWith(1).contains(5);
+        assertThat(svc.search("ca phe sua", 3, 10)).containsExactly(5);
+    }
+
+    @Test
+    void rebuild_swapsIndexAndEvictsCachedPages() {
+        svc.search("tra", null, 10);
+        when(productRepository.findSearchRows()).thenReturn(List.<Object[]>of(new Object[]{9, 1, "Trà gừng", null}));
+
+        svc.rebuild();
+
+        assertThat(svc.search("tra", null, 10)).containsExactly(9);
+        verify(catalogCache).evictPages();
+    }
+
+    @Test
+    void search_exactNameAmong100kProducts_ranksFirst() {
+        String[] words = {"tra", "sua", "ca", "phe", "dao", "cam", "matcha", "latte", "kem", "banh", "da", "nong"};
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            String name = words[i % 12] + " " + words[(i / 12) % 12] + " " + words[(i / 144) % 12] + " " + i;
+            rows.add(new Object[]{i + 1, i % 10 + 1, name, null});
+        }
+        when(productRepository.findSearchRows()).thenReturn(rows);
+        svc.rebuild();
+
+        String name = (String) rows.get(12345)[2];
+        List<Integer> hits = svc.search(name, null, 20);
+
+        assertThat(hits).first().isEqualTo(12346);
+    }
+
+    @Test
+    void concurrentSearches_keepAtMostTheConfiguredScratchBuffers() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return svc.search("tra sua", null, 10);
+                }));
+            }
+            start.countDown();
+            for (Future<List<Integer>> f : results) assertThat(f.get()).first().isEqualTo(2);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(svc.pooledScratchBuffers()).isBetween(1, 2);
+    }
+
+    @Test
+    void scratch_shrinksToTheCurrentIndexSize() {
+        ProductSearchServiceImpl.Scratch sc = new ProductSearchServiceImpl.Scratch();
+        sc.ensure(100_000);
+        sc.ensure(5);
+
+        assertThat(sc.nameHits).hasSize(5);
+        assertThat(sc.descHits).hasSize(5);
+        assertThat(sc.touched).hasSize(5);
+    }
+}
@@ -0,0 +1,117 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.*;
+import com.kopi.kopi.repository.*;
+import com.kopi.kopi.service.AvailabilityService;
+import com.kopi.kopi.service.CatalogCacheService;
+import com.kopi.kopi.service.ImageService;
+import com.kopi.kopi.service.ProductSearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ProductServiceImplListExpandTest {
+    private ProductRepository productRepository;
+    private ProductSizeRepository productSizeRepository;
+    private ProductAddOnRepository productAddOnRepository;
+    private ProductServiceImpl svc;
+
+    private Product latte;
+    private Product tea;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        productSizeRepository = mock(ProductSizeRepository.class);
+        productAddOnRepository = mock(ProductAddOnRepository.class);
+        svc = new ProductServiceImpl(productRepository, mock(CategoryRepository.class), productSizeRepository,
+                productAddOnRepository, mock(CatalogCacheService.class), mock(ApplicationEventPublisher.class),
+                mock(ProductSearchService.class), mock(ImageService.class), mock(AvailabilityService.class));
+
+        latte = new Product();
+        latte.setProductId(1);
+        latte.setName("Latte");
+        latte.setPrice(new BigDecimal("40000"));
+        tea = new Product();
+        tea.setProductId(2);
+        tea.setName("Trà");
+        tea.setPrice(new BigDecimal("30000"));
+        when(productRepository.findByAvailableTrueAndNameContainingIgnoreCase(eq(""), any()))
+                .thenReturn(new PageImpl<>(List.of(latte, tea), PageRequest.of(0, 8), 2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void list_expandSizesAndAddons_usesTwoBulkQueries() {
+        Size large = new Size();
+        large.setSizeId(3);
+        large.setName("Lớn");
+        ProductSize ps = new ProductSize();
+        ps.setProduct(latte);
+        ps.setSize(large);
+        ps.setPrice(new BigDecimal("5000"));
+        ps.setAvailable(true);
+        AddOn pearl = new AddOn();
+        pearl.setAddOnId(9);
+        pearl.setName("Trân châu");
+        ProductAddOn pa = new ProductAddOn();
+        pa.setProduct(tea);
+        pa.setAddOn(pearl);
+        pa.setPrice(new BigDecimal("7000"));
+        pa.setAvailable(true);
+        when(productSizeRepository.findAvailableByProductIds(anyCollection())).thenReturn(List.of(ps));
+        when(productAddOnRepository.findAvailableByProductIds(anyCollection())).thenReturn(List.of(pa));
+
+        Map<String, Object> body = svc.list(null, null, null, "", 8, 1, "sizes, addons");
+
+        List<Map<String, Object>> items = (List<Map<String, Object>>) body.get("data");
+        List<Map<String, Object>> latteSizes = (List<Map<String, Object>>) items.get(0).get("sizes");
+        assertThat(latteSizes).singleElement().satisfies(m -> {
+            assertThat(m.get("size_id")).isEqualTo(3);
+            assertThat((BigDecimal) m.get("price")).isEqualByComparingTo("45000");
+        });
+        assertThat((List<?>) items.get(1).get("sizes")).isEmpty();
+        assertThat((List<Map<String, Object>>) items.get(1).get("add_ons")).singleElement()
+                .satisfies(m -> assertThat(m.get("add_on_id")).isEqualTo(9));
+        verify(productSizeRepository, times(1)).findAvailableByProductIds(anyCollection());
+        verify(productAddOnRepository, times(1)).findAvailableByProductIds(anyCollection());
+        verify(productSizeRepository, never()).findByProduct_ProductIdAndAvailableTrue(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void list_withoutExpand_doesNotLoadSizesOrAddons() {
+        Map<String, Object> body = svc.list(null, null, null, "", 8, 1);
+
+        List<Map<String, Object>> items = (List<Map<String, Object>>) body.get("data");
+        assertThat(items.get(0)).doesNotContainKeys("sizes", "add_ons");
+        verifyNoInteractions(productSizeRepository, productAddOnRepository);
+    }
+
+    @Test
+    void list_hugeLimit_isCappedSoExpandStaysUnderParameterLimit() {
+        svc.list(null, null, null, "", 5000, 1, "sizes");
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(productRepository).findByAvailableTrueAndNameContainingIgnoreCase(eq(""), pageable.capture());
+        assertThat(pageable.getValue().getPageSize()).isEqualTo(ProductServiceImpl.MAX_LIMIT);
+    }
+
+    @Test
+    void parseExpand_normalizesAndIgnoresUnknown() {
+        assertThat(ProductServiceImpl.parseExpand(" ADDONS,sizes,foo,add_ons")).containsExactly("addons", "sizes");
+        assertThat(ProductServiceImpl.parseExpand(null)).isEmpty();
+    }
+}
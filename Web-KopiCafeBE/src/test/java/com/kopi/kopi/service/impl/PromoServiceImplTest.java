@@ -0,0 +1,132 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.entity.DiscountCode;
+import com.kopi.kopi.entity.DiscountEvent;
+import com.kopi.kopi.entity.enums.DiscountType;
+import com.kopi.kopi.event.PromoChangedEvent;
+import com.kopi.kopi.repository.DiscountCodeRepository;
+import com.kopi.kopi.repository.DiscountEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class PromoServiceImplTest {
+    private DiscountCodeRepository codeRepository;
+    private DiscountEventRepository eventRepository;
+    private PromoServiceImpl svc;
+    private final LocalDateTime now = LocalDateTime.now();
+
+    private DiscountCode code(int id, String code, String desc, long startDays, long endDays, boolean active) {
+        return DiscountCode.builder().discountCodeId(id).code(code).description(desc).discountType(DiscountType.PERCENT)
+                .discountValue(BigDecimal.TEN).startsAt(now.plusDays(startDays)).endsAt(now.plusDays(endDays))
+                .active(active).usageCount(0).createdAt(now.minusDays(30)).build();
+    }
+
+    private DiscountEvent event(int id, String name, long startDays, long endDays) {
+        DiscountEvent ev = new DiscountEvent();
+        ev.setDiscountEventId(id);
+        ev.setName(name);
+        ev.setDiscountType(DiscountType.AMOUNT);
+        ev.setDiscountValue(new BigDecimal("5000"));
+        ev.setStartsAt(now.plusDays(startDays));
+        ev.setEndsAt(now.plusDays(endDays));
+        ev.setActive(true);
+        ev.setCreatedAt(now.minusDays(30));
+        return ev;
+    }
+
+    @BeforeEach
+    void setUp() {
+        codeRepository = mock(DiscountCodeRepository.class);
+        eventRepository = mock(DiscountEventRepository.class);
+        when(codeRepository.findByBatchIdIsNull()).thenReturn(List.of(
+                code(1, "SUMMER10", "Giảm giá mùa hè", -5, 5, true),
+                code(2, "OLD", null, -20, -10, true),
+                code(3, "SOON", "Sắp mở", 3, 10, true),
+                code(4, "OFF", "Đã tắt", -5, 5, false)));
+        when(eventRepository.findAll()).thenReturn(List.of(event(10, "Tuần lễ cà phê", -1, 1)));
+        svc = new PromoServiceImpl(codeRepository, eventRepository);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> ids(Map<String, Object> res) {
+        List<Object> out = new ArrayList<>();
+        for (Map<String, Object> m : (List<Map<String, Object>>) res.get("data")) out.add(m.get("id"));
+        return out;
+    }
+
+    @Test
+    void statusFilters_classifyByInterval_newestStartFirst() {
+        assertThat(ids(svc.list(1, 10, null, "current", ""))).containsExactly(10, 1);
+        assertThat(ids(svc.list(1, 10, null, "upcoming", ""))).containsExactly(3);
+        assertThat(ids(svc.list(1, 10, "true", null, ""))).containsExactly(3, 10, 1);
+        // all gồm cả mã đã tắt và đã hết hạn; mô tả null không làm hỏng danh sách
+        assertThat(ids(svc.list(1, 10, null, "all", ""))).containsExactly(3, 10, 1, 4, 2);
+    }
+
+    @Test
+    void search_usesNameIndex_caseInsensitive_onTitleAndDescription() {
+        assertThat(ids(svc.list(1, 10, null, "all", "summer"))).containsExactly(1);
+        assertThat(ids(svc.list(1, 10, null, "all", "CÀ PHÊ"))).containsExactly(10);
+        assertThat(ids(svc.list(1, 10, null, "current", "mùa"))).containsExactly(1);
+        assertThat(ids(svc.list(1, 10, null, "all", "of"))).containsExactly(4);
+        assertThat(ids(svc.list(1, 10, null, "all", "zzz"))).isEmpty();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void pagination_isReal_andIndexRebuildsOnlyOnPromoChange() {
+        Map<String, Object> p2 = svc.list(2, 2, null, "all", "");
+        assertThat(ids(p2)).containsExactly(1, 4);
+        assertThat((Map<String, Object>) p2.get("meta")).containsEntry("totalPage", 3).containsEntry("next", true);
+        // Trang vượt quá cuối trả về rỗng thay vì lặp lại mục cuối
+        assertThat(ids(svc.list(9, 2, null, "all", ""))).isEmpty();
+        verify(codeRepository, times(1)).findByBatchIdIsNull();
+        verify(codeRepository, never()).findAll();
+
+        when(codeRepository.findByBatchIdIsNull()).thenReturn(List.of(code(5, "NEW", null, -1, 1, true)));
+        svc.onPromoChanged(new PromoChangedEvent());
+        assertThat(ids(svc.list(1, 10, null, "current", ""))).containsExactly(5, 10);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cursorPaging_seeksFromLastKey_andSurvivesRebuild() {
+        Map<String, Object> first = svc.listAfter("", 2, null, "all", "");
+        assertThat(ids(first)).containsExactly(3, 10);
+        Map<String, Object> meta = (Map<String, Object>) first.get("meta");
+        assertThat(meta).containsEntry("hasMore", true).doesNotContainKey("totalPage");
+
+        String cursor = (String) meta.get("nextCursor");
+        Map<String, Object> second = svc.listAfter(cursor, 2, null, "all", "");
+        assertThat(ids(second)).containsExactly(1, 4);
+
+        // Mục làm cursor bị xoá: vẫn tiếp tục đúng chỗ theo khoá
+        when(codeRepository.findByBatchIdIsNull()).thenReturn(List.of(
+                code(1, "SUMMER10", "Giảm giá mùa hè", -5, 5, true),
+                code(2, "OLD", null, -20, -10, true),
+                code(4, "OFF", "Đã tắt", -5, 5, false)));
+        when(eventRepository.findAll()).thenReturn(List.of());
+        svc.onPromoChanged(new PromoChangedEvent());
+        Map<String, Object> resumed = svc.listAfter(cursor, 10, null, "all", "");
+        assertThat(ids(resumed)).containsExactly(1, 4, 2);
+        assertThat((Map<String, Object>) resumed.get("meta")).containsEntry("hasMore", false).containsEntry("nextCursor", null);
+    }
+
+    @Test
+    void cursorPaging_appliesSameFiltersAsPages() {
+        assertThat(ids(svc.listAfter(null, 10, null, "current", ""))).containsExactly(10, 1);
+        assertThat(ids(svc.listAfter(null, 10, "true", null, ""))).containsExactly(3, 10, 1);
+        assertThat(ids(svc.listAfter(null, 10, null, "all", "mùa"))).containsExactly(1);
+        assertThatThrownBy(() -> svc.listAfter("garbage", 10, null, "all", "")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,99 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.ProductCompanion;
+import com.kopi.kopi.event.OrderSnapshot;
+import com.kopi.kopi.event.OrderStatusChangedEvent;
+import com.kopi.kopi.repository.ProductRepository;
+import com.kopi.kopi.service.AvailabilityService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RecommendationServiceImplTest {
+    private static final int LATTE = 1, CROISSANT = 2, MOONCAKE = 3, WATER = 4, ICED_TEA = 5, CAKE = 6;
+
+    private JdbcTemplate jdbc;
+    private RecommendationServiceImpl svc;
+    private final List<Object[]> history = new ArrayList<>();
+    private int nextOrderId = 1;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbc = mock(JdbcTemplate.class);
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (Object[] row : history) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getInt(1)).thenReturn((Integer) row[0]);
+                when(rs.getInt(2)).thenReturn((Integer) row[1]);
+                when(rs.getTimestamp(3)).thenReturn((Timestamp) row[2]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbc).query(eq(RecommendationServiceImpl.HISTORY_SQL), any(RowCallbackHandler.class), any(Object[].class));
+        svc = new RecommendationServiceImpl(jdbc, mock(ProductRepository.class), mock(AvailabilityService.class), 30);
+    }
+
+    private void order(int daysAgo, int... productIds) {
+        int id = nextOrderId++;
+        Timestamp at = Timestamp.valueOf(LocalDateTime.now().minusDays(daysAgo));
+        for (int p : productIds) history.add(new Object[]{id, p, at});
+    }
+
+    private static OrderSnapshot completed(int orderId, int... productIds) {
+        List<OrderSnapshot.Line> lines = new ArrayList<>();
+        for (int p : productIds) lines.add(new OrderSnapshot.Line(null, p, null, 1, BigDecimal.ONE));
+        return new OrderSnapshot(orderId, "COMPLETED", LocalDateTime.now(), null, null, null, null, false, BigDecimal.ONE, lines);
+    }
+
+    @Test
+    void companions_rankByCoOccurrence_normalisedByPopularity() {
+        order(1, LATTE, CROISSANT);
+        order(1, LATTE, CROISSANT, CROISSANT);
+        order(1, LATTE, WATER);
+        order(1, WATER, CAKE);
+        order(1, WATER, ICED_TEA);
+        order(1, WATER, CAKE);
+        svc.rebuild();
+
+        List<ProductCompanion> top = svc.companions(List.of(LATTE), 5);
+        assertThat(top).extracting(ProductCompanion::productId).containsExactly(CROISSANT, WATER);
+        assertThat(top.get(0).score()).isEqualTo(1.0);
+        // Sản phẩm đã có trong giỏ không được gợi ý lại
+        assertThat(svc.companions(List.of(LATTE, CROISSANT), 5)).extracting(ProductCompanion::productId).containsExactly(WATER);
+    }
+
+    @Test
+    void oldPairings_decay_belowRecentOnes() {
+        for (int i = 0; i < 6; i++) order(120, LATTE, MOONCAKE);
+        for (int i = 0; i < 2; i++) order(2, LATTE, CROISSANT);
+        svc.rebuild();
+
+        assertThat(svc.companions(List.of(LATTE), 2)).extracting(ProductCompanion::productId).containsExactly(CROISSANT, MOONCAKE);
+    }
+
+    @Test
+    void completedOrders_updateMatrixIncrementally_withoutRereadingHistory() {
+        order(1, LATTE, CROISSANT);
+        svc.rebuild();
+        assertThat(svc.companions(List.of(ICED_TEA), 3)).isEmpty();
+
+        svc.onOrderStatusChanged(new OrderStatusChangedEvent(completed(100, ICED_TEA, CAKE), "PENDING", "COMPLETED", LocalDateTime.now()));
+        svc.onOrderStatusChanged(new OrderStatusChangedEvent(completed(101, ICED_TEA, LATTE), "PENDING", "CANCELLED", LocalDateTime.now()));
+
+        assertThat(svc.companions(List.of(ICED_TEA), 3)).extracting(ProductCompanion::productId).containsExactly(CAKE);
+        verify(jdbc, times(1)).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+}
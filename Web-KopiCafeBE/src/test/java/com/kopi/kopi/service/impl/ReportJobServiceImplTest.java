@@ -0,0 +1,99 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.ReportJobStatus;
+import com.kopi.kopi.dto.RevenuePoint;
+import com.kopi.kopi.service.ReportJobService;
+import com.kopi.kopi.service.ReportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReportJobServiceImplTest {
+    @TempDir
+    Path dir;
+
+    private ReportJobServiceImpl svc;
+
+    @AfterEach
+    void tearDown() {
+        if (svc != null) svc.shutdown();
+    }
+
+    private ReportJobServiceImpl newService(ReportService reportService) {
+        return new ReportJobServiceImpl(reportService, dir.toString(), 1, 4, Duration.ofMinutes(5), Duration.ofHours(1));
+    }
+
+    private ReportJobStatus await(String id) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            ReportJobStatus s = svc.status(id).orElseThrow();
+            if ("DONE".equals(s.getStatus()) || "FAILED".equals(s.getStatus())) return s;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("job did not finish");
+    }
+
+    @Test
+    void submit_identicalConcurrentRequests_shareOneJob() throws Exception {
+        ReportService reportService = mock(ReportService.class);
+        CountDownLatch release = new CountDownLatch(1);
+        when(reportService.revenue(any(), any(), any(), anyInt())).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(RevenuePoint.builder().label("x").total_sum(BigDecimal.TEN).build());
+        });
+        svc = newService(reportService);
+        LocalDate from = LocalDate.of(2024, 1, 1), to = LocalDate.of(2024, 1, 31);
+
+        ReportJobStatus a = svc.submit(ReportJobService.JobType.revenue, ReportService.Granularity.daily, from, to, 0);
+        ReportJobStatus b = svc.submit(ReportJobService.JobType.revenue, ReportService.Granularity.daily, from, to, 0);
+        release.countDown();
+
+        assertThat(b.getJobId()).isEqualTo(a.getJobId());
+        assertThat(await(a.getJobId()).getStatus()).isEqualTo("DONE");
+        assertThat(Files.readString(svc.result(a.getJobId()).orElseThrow())).contains("\"total_sum\":10");
+        verify(reportService, times(1)).revenue(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void submit_closedPeriod_isServedFromDiskCache() throws Exception {
+        ReportService reportService = mock(ReportService.class);
+        when(reportService.revenue(any(), any(), any(), anyInt())).thenReturn(List.of());
+        svc = newService(reportService);
+        LocalDate from = LocalDate.of(2023, 1, 1), to = LocalDate.of(2023, 12, 31);
+
+        ReportJobStatus first = svc.submit(ReportJobService.JobType.revenue, ReportService.Granularity.monthly, from, to, 0);
+        await(first.getJobId());
+        ReportJobStatus second = svc.submit(ReportJobService.JobType.revenue, ReportService.Granularity.monthly, from, to, 0);
+
+        assertThat(second.getCached()).isTrue();
+        assertThat(second.getStatus()).isEqualTo("DONE");
+        verify(reportService, times(1)).revenue(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void submit_multiYearRange_runsOneQueryPerCalendarYear() throws Exception {
+        ReportService reportService = mock(ReportService.class);
+        when(reportService.revenue(any(), any(), any(), anyInt())).thenReturn(List.of());
+        svc = newService(reportService);
+
+        ReportJobStatus job = svc.submit(ReportJobService.JobType.revenue, ReportService.Granularity.daily,
+                LocalDate.of(2019, 6, 1), LocalDate.of(2023, 5, 31), 0);
+        assertThat(await(job.getJobId()).getProgress()).isEqualTo(100);
+
+        verify(reportService, times(5)).revenue(eq(ReportService.Granularity.daily), any(), any(), eq(0));
+        verify(reportService).revenue(ReportService.Granularity.daily,
+                LocalDate.of(2019, 6, 1), LocalDate.of(2019, 12, 31), 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.RevenueTicker;
+import com.kopi.kopi.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RevenueTickerServiceImplTest {
+    private PaymentRepository paymentRepository;
+    private RevenueTickerServiceImpl svc;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository = mock(PaymentRepository.class);
+        when(paymentRepository.sumPaidBetween(any(), any())).thenReturn(new BigDecimal("100000"));
+        when(paymentRepository.countPaidBetween(any(), any())).thenReturn(2);
+        svc = new RevenueTickerServiceImpl(paymentRepository, 60_000);
+    }
+
+    @Test
+    void recordPaid_addsDeltaToAllPeriods_withoutRequerying() {
+        svc.current();
+        svc.recordPaid(7, new BigDecimal("45000"));
+        RevenueTicker t = svc.current();
+
+        assertThat(t.getTodayRevenue()).isEqualByComparingTo("145000");
+        assertThat(t.getWeekRevenue()).isEqualByComparingTo("145000");
+        assertThat(t.getMonthRevenue()).isEqualByComparingTo("145000");
+        assertThat(t.getTodayOrders()).isEqualTo(3);
+        verify(paymentRepository, times(3)).sumPaidBetween(any(), any());
+    }
+
+    @Test
+    void recordPaid_firstEventSeedsFromDb_andIsNotCountedTwice() {
+        // listener chạy sau commit nên payment đã có trong kết quả seed
+        svc.recordPaid(7, new BigDecimal("45000"));
+
+        assertThat(svc.current().getTodayRevenue()).isEqualByComparingTo("100000");
+    }
+
+    @Test
+    void roll_resetsTodayDaily_weekOnMonday_monthOnFirst() {
+        svc.roll(LocalDate.of(2025, 11, 29)); // thứ Bảy, seed từ DB
+        assertThat(svc.roll(LocalDate.of(2025, 11, 29))).isFalse();
+
+        assertThat(svc.roll(LocalDate.of(2025, 11, 30))).isTrue();
+        RevenueTicker sunday = svc.snapshot(null, null);
+        assertThat(sunday.getTodayRevenue()).isEqualByComparingTo("0");
+        assertThat(sunday.getWeekRevenue()).isEqualByComparingTo("100000");
+        assertThat(sunday.getMonthRevenue()).isEqualByComparingTo("100000");
+
+        svc.roll(LocalDate.of(2025, 12, 1)); // thứ Hai, đầu tháng
+        RevenueTicker monday = svc.snapshot(null, null);
+        assertThat(monday.getWeekRevenue()).isEqualByComparingTo("0");
+        assertThat(monday.getMonthRevenue()).isEqualByComparingTo("0");
+    }
+}
@@ -0,0 +1,116 @@
+package com.kopi.kopi.service.impl;
+
+import com.kopi.kopi.dto.StaffPerformance;
+import com.kopi.kopi.entity.StaffDailyStat;
+import com.kopi.kopi.event.OrderCreatedEvent;
+import com.kopi.kopi.event.OrderSnapshot;
+import com.kopi.kopi.event.OrderStatusChangedEvent;
+import com.kopi.kopi.repository.OrderRepository;
+import com.kopi.kopi.repository.StaffDailyStatRepository;
+import com.kopi.kopi.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StaffPerformanceServiceImplTest {
+    private StaffDailyStatRepository statRepository;
+    private StaffPerformanceServiceImpl svc;
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 11, 3, 9, 0);
+
+    @BeforeEach
+    void setUp() {
+        statRepository = mock(StaffDailyStatRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(statRepository.findByUserIdAndStatDate(any(), any())).thenReturn(Optional.empty());
+        when(statRepository.findByStatDateBetween(any(), any())).thenReturn(List.of());
+        when(userRepository.findAllById(any())).thenReturn(List.of());
+        svc = new StaffPerformanceServiceImpl(statRepository, mock(OrderRepository.class), userRepository);
+    }
+
+    private static OrderSnapshot order(int id, Integer createdBy, Integer customer, Integer shipper, boolean delivery) {
+        return new OrderSnapshot(id, "PENDING", T0, customer, createdBy, shipper, null, delivery, BigDecimal.TEN, List.of());
+    }
+
+    @Test
+    void lifecycleEvents_countPerStaffAndShipper() {
+        OrderSnapshot a = order(1, 2, null, null, false);
+        OrderSnapshot b = order(2, 2, 50, 7, true);
+        OrderSnapshot c = order(3, 2, null, null, false);
+        svc.onOrderCreated(new OrderCreatedEvent(a));
+        svc.onOrderCreated(new OrderCreatedEvent(b));
+        svc.onOrderCreated(new OrderCreatedEvent(c));
+        svc.onOrderStatusChanged(new OrderStatusChangedEvent(a, "PENDING", "COMPLETED", T0.plusMinutes(8)));
+        svc.onOrderStatusChanged(new OrderStatusChangedEvent(b, "SHIPPING", "COMPLETED", T0.plusMinutes(50)));
+        svc.onOrderStatusChanged(new OrderStatusChangedEvent(c, "PENDING", "CANCELLED", T0.plusMinutes(1)));
+
+        List<StaffPerformance> report = svc.report(T0.toLocalDate(), T0.toLocalDate());
+
+        assertThat(report).extracting(StaffPerformance::getUserId).containsExactly(2, 7);
+        StaffPerformance staff = report.get(0);
+        assertThat(staff.getOrdersCreated()).isEqualTo(3);
+        assertThat(staff.getOrdersCompleted()).isEqualTo(2);
+        assertThat(staff.getOrdersCancelled()).isEqualTo(1);
+        assertThat(staff.getAvgCompleteMinutes()).isEqualTo(29.0);
+        assertThat(staff.getP50CompleteMinutes()).isEqualTo(10);
+        assertThat(staff.getP90CompleteMinutes()).isEqualTo(60);
+        StaffPerformance shipper = report.get(1);
+        assertThat(shipper.getDeliveries()).isEqualTo(1);
+        assertThat(shipper.getOrdersCreated()).isZero();
+        assertThat(shipper.getAvgDeliveryMinutes()).isEqualTo(50.0);
+    }
+
+    @Test
+    void customerSelfOrder_isNotAttributedToStaff() {
+        OrderSnapshot self = order(1, 50, 50, null, false);
+        svc.onOrderCreated(new OrderCreatedEvent(self));
+        svc.onOrderStatusChanged(new OrderStatusChangedEvent(self, "PENDING", "COMPLETED", T0.plusMinutes(5)));
+
+        assertThat(svc.report(T0.toLocalDate(), T0.toLocalDate())).isEmpty();
+    }
+
+    @Test
+    void flush_insertsOnceThenUpdatesById() {
+        List<Long> idsSaved = new ArrayList<>();
+        List<Integer> completedSaved = new ArrayList<>();
+        when(statRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<StaffDailyStat> rows = inv.getArgument(0);
+            for (StaffDailyStat s : rows) {
+                idsSaved.add(s.getStatId());
+                completedSaved.add(s.getOrdersCompleted());
+                if (s.getStatId() == null) s.setStatId(99L);
+            }
+            return rows;
+        });
+        // ngày hiện tại: flush không đẩy ngày này ra khỏi bộ nhớ
+        LocalDateTime now = LocalDateTime.now();
+        OrderSnapshot a = new OrderSnapshot(1, "PENDING", now, null, 2, null, null, false, BigDecimal.TEN, List.of());
+        svc.onOrderCreated(new OrderCreatedEvent(a));
+        svc.flush();
+        svc.onOrderStatusChanged(new OrderStatusChangedEvent(a, "PENDING", "COMPLETED", now));
+        svc.flush();
+        svc.flush();
+
+        verify(statRepository, times(2)).saveAll(anyList());
+        assertThat(idsSaved).containsExactly(null, 99L);
+        assertThat(completedSaved).containsExactly(0, 1);
+    }
+
+    @Test
+    void bucketOf_usesFixedMinuteBounds() {
+        assertThat(StaffPerformanceServiceImpl.bucketOf(0)).isZero();
+        assertThat(StaffPerformanceServiceImpl.bucketOf(5 * 60)).isEqualTo(1);
+        assertThat(StaffPerformanceServiceImpl.bucketOf(LocalDate.of(2025, 1, 2).toEpochDay() * 86400))
+                .isEqualTo(StaffPerformanceServiceImpl.BUCKETS - 1);
+    }
+}
@@ -0,0 +1,37 @@
+package com.kopi.kopi.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BloomFilterTest {
+
+    @Test
+    void noFalseNegatives() {
+        BloomFilter bf = BloomFilter.forCapacity(10_000, 0.01);
+        int alreadySet = 0;
+        for (int i = 0; i < 10_000; i++) if (!bf.put("KOPI" + i)) alreadySet++;
+        // put() chỉ trả false khi mọi bit đã bật sẵn, tức là đúng những lần dương tính giả
+        assertThat(alreadySet).isLessThan(200);
+        for (int i = 0; i < 10_000; i++) assertThat(bf.mightContain("KOPI" + i)).isTrue();
+        // Thêm lại phần tử đã có không bật bit mới
+        assertThat(bf.put("KOPI42")).isFalse();
+    }
+
+    @Test
+    void falsePositiveRate_staysNearTarget_atCapacity() {
+        BloomFilter bf = BloomFilter.forCapacity(50_000, 0.01);
+        for (int i = 0; i < 50_000; i++) bf.put("A" + i);
+        int hits = 0;
+        for (int i = 0; i < 50_000; i++) if (bf.mightContain("B" + i)) hits++;
+        assertThat(hits / 50_000d).isLessThan(0.02);
+        assertThat(bf.hashCount()).isEqualTo(7);
+    }
+
+    @Test
+    void rejectsInvalidRate() {
+        assertThatThrownBy(() -> BloomFilter.forCapacity(10, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BloomFilter.forCapacity(10, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,51 @@
+package com.kopi.kopi.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimate_smallSet_isNearlyExact() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 1; i <= 300; i++) {
+            hll.add(i);
+            hll.add(i); // trùng lặp không làm tăng số đếm
+        }
+        assertThat(hll.estimate()).isCloseTo(300L, within(3L));
+    }
+
+    @Test
+    void estimate_largeSet_withinThreePercent() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 200_000; i++) hll.add(i);
+        assertThat((double) hll.estimate()).isCloseTo(200_000d, within(6_000d));
+    }
+
+    @Test
+    void merge_equalsUnion() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (int i = 0; i < 5_000; i++) a.add(i);
+        for (int i = 2_500; i < 7_500; i++) b.add(i);
+        a.merge(b);
+        assertThat((double) a.estimate()).isCloseTo(7_500d, within(225d));
+    }
+
+    @Test
+    void toBytes_roundTrip_sparseAndDense() {
+        HyperLogLog sparse = new HyperLogLog();
+        for (int i = 0; i < 50; i++) sparse.add(i);
+        byte[] sparseBytes = sparse.toBytes();
+        assertThat(sparseBytes.length).isLessThan(200);
+        assertThat(HyperLogLog.fromBytes(sparseBytes).estimate()).isEqualTo(sparse.estimate());
+
+        HyperLogLog dense = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) dense.add(i);
+        byte[] denseBytes = dense.toBytes();
+        assertThat(denseBytes.length).isEqualTo(2 + (1 << HyperLogLog.DEFAULT_PRECISION));
+        assertThat(HyperLogLog.fromBytes(denseBytes).estimate()).isEqualTo(dense.estimate());
+    }
+}
@@ -0,0 +1,77 @@
+package com.kopi.kopi.util;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SheetRowReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void csv_handlesBomQuotesEmbeddedNewlinesAndCrLf() throws Exception {
+        String csv = "\uFEFFname,price,description\r\n"
+                + "\"Cà phê, sữa\",35000,\"Đậm \"\"đà\"\"\nthơm\"\r\n"
+                + "Trà,,\n"
+                + "Bạc xỉu,30000,";
+        List<List<String>> rows = new ArrayList<>();
+        List<Integer> nums = new ArrayList<>();
+        SheetRowReader.readCsv(new StringReader(csv), (n, cells) -> {
+            nums.add(n);
+            rows.add(cells);
+        });
+
+        assertThat(nums).containsExactly(1, 2, 3, 4);
+        assertThat(rows.get(0)).containsExactly("name", "price", "description");
+        assertThat(rows.get(1)).containsExactly("Cà phê, sữa", "35000", "Đậm \"đà\"\nthơm");
+        assertThat(rows.get(2)).containsExactly("Trà", "", "");
+        assertThat(rows.get(3)).containsExactly("Bạc xỉu", "30000", "");
+    }
+
+    @Test
+    void xlsx_returnsRawNumbers_andKeepsBlankColumnsInPlace() throws Exception {
+        Path file = dir.resolve("menu.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = wb.createSheet("products");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("name");
+            header.createCell(1).setCellValue("sku");
+            header.createCell(2).setCellValue("price");
+            CellStyle thousands = wb.createCellStyle();
+            thousands.setDataFormat(wb.createDataFormat().getFormat("#,##0"));
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue("Latte");
+            Cell price = row.createCell(2);
+            price.setCellValue(45000);
+            price.setCellStyle(thousands);
+            wb.write(out);
+        }
+
+        List<List<String>> rows = new ArrayList<>();
+        SheetRowReader.read(file, "menu.xlsx", (n, cells) -> rows.add(cells));
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(1)).containsExactly("Latte", "", "45000");
+    }
+
+    @Test
+    void unsupportedExtension_isRejected() {
+        assertThatThrownBy(() -> SheetRowReader.read(dir.resolve("a.xls"), "a.xls", (n, c) -> {}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}